@@ -0,0 +1,422 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.algorithm.componenttree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.Point;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.componenttree.pixellist.PixelListComponentTree;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.view.Views;
+
+/**
+ * Build the component tree of an image by sorting the pixels and merging them
+ * into a union-find forest, level by level. This produces the same components
+ * as {@link ComponentTree} and emits them in the same way to a
+ * {@link Component.Handler}, i.e., every component is emitted when it is
+ * completed, components that are extended to a higher threshold are emitted
+ * again after {@link Component#setValue(Object)}, and components that join
+ * are {@link Component#merge(Component) merged} into the largest of them.
+ *
+ * Pixels of integer images are sorted by counting sort, all other images are
+ * sorted by their distinct values. Apart from the components, the algorithm
+ * needs three ints per pixel which makes it suitable for large (e.g., 16-bit
+ * 3D) images. Images with more than {@link Integer#MAX_VALUE} pixels are
+ * handed to {@link ComponentTree}.
+ *
+ * <p>
+ * The input may have a non-zero min. Positions are passed to the components
+ * in the coordinates of the input. (Note that {@link PixelListComponentTree}
+ * and the MSER tree still assume a <em>zero-min</em> interval.)
+ * </p>
+ *
+ * @param <T>
+ *            value type of the input image.
+ * @param <C>
+ *            component type.
+ *
+ * @see PixelListComponentTree#buildUnionFindComponentTree(RandomAccessibleInterval,
+ *      RealType, boolean)
+ */
+public final class UnionFindComponentTree< T extends RealType< T >, C extends Component< T > >
+{
+	/**
+	 * Run the algorithm. Completed components are emitted to the
+	 * {@link Component.Handler} which is responsible for building up the tree
+	 * structure.
+	 *
+	 * @param input
+	 *            input image.
+	 * @param componentGenerator
+	 *            provides new {@link Component} instances.
+	 * @param componentHandler
+	 *            receives completed {@link Component}s.
+	 * @param darkToBright
+	 *            determines ordering of threshold values. If it is true, then
+	 *            thresholds are applied from low to high values.
+	 */
+	public static < T extends RealType< T >, C extends Component< T > > void buildComponentTree( final RandomAccessibleInterval< T > input, final Component.Generator< T, C > componentGenerator, final Component.Handler< C > componentHandler, final boolean darkToBright )
+	{
+		long size = 1;
+		for ( int d = 0; d < input.numDimensions(); ++d )
+			size *= input.dimension( d );
+		if ( size >= Integer.MAX_VALUE )
+			ComponentTree.buildComponentTree( input, componentGenerator, componentHandler, darkToBright );
+		else if ( size > 0 )
+			new UnionFindComponentTree< T, C >( input, componentGenerator, componentHandler, darkToBright );
+	}
+
+	private final Component.Generator< T, C > componentGenerator;
+
+	private final Component.Handler< C > componentOutput;
+
+	/**
+	 * Union-find forest over the flat pixel indices. -1 for pixels that were
+	 * not visited yet.
+	 */
+	private final int[] parent;
+
+	/**
+	 * For every root of the forest, the first of a chain of components that
+	 * make up its set of pixels (or -1 if there is none yet). Chains of more
+	 * than one component occur while joining components at a new threshold.
+	 */
+	private final int[] rootComponent;
+
+	/**
+	 * Components by id. Entries are cleared when the component is merged into
+	 * another one.
+	 */
+	private final ArrayList< C > components;
+
+	/**
+	 * Next component in the chain, by component id.
+	 */
+	private int[] chainNext;
+
+	/**
+	 * Last component in the chain, by component id of the chain head.
+	 */
+	private int[] chainTail;
+
+	/**
+	 * Threshold rank at which the component was last completed, by component
+	 * id.
+	 */
+	private int[] componentRank;
+
+	/**
+	 * Number of pixels in the component, by component id.
+	 */
+	private long[] componentSize;
+
+	/**
+	 * Set up data structures and run the algorithm. Completed components are
+	 * emitted to the provided {@link Component.Handler}.
+	 */
+	private UnionFindComponentTree( final RandomAccessibleInterval< T > input, final Component.Generator< T, C > componentGenerator, final Component.Handler< C > componentOutput, final boolean darkToBright )
+	{
+		this.componentGenerator = componentGenerator;
+		this.componentOutput = componentOutput;
+
+		final int n = input.numDimensions();
+		final long[] min = new long[ n ];
+		input.min( min );
+		final int[] dimensions = new int[ n ];
+		int numPixels = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			dimensions[ d ] = ( int ) input.dimension( d );
+			numPixels *= dimensions[ d ];
+		}
+
+		parent = new int[ numPixels ];
+		final int[] ranks = new int[ numPixels ];
+		final IterableInterval< T > pixels = Views.flatIterable( input );
+		final double[] levels = computeRanks( pixels, ranks, darkToBright );
+
+		// counting sort of the pixels by rank
+		final int numLevels = levels.length;
+		final int[] levelStart = new int[ numLevels + 1 ];
+		for ( int i = 0; i < numPixels; ++i )
+			++levelStart[ ranks[ i ] + 1 ];
+		for ( int r = 0; r < numLevels; ++r )
+			levelStart[ r + 1 ] += levelStart[ r ];
+		final int[] next = levelStart.clone();
+		final int[] order = new int[ numPixels ];
+		for ( int i = 0; i < numPixels; ++i )
+			order[ next[ ranks[ i ] ]++ ] = i;
+
+		// the ranks are not needed any more
+		rootComponent = ranks;
+		Arrays.fill( rootComponent, -1 );
+		Arrays.fill( parent, -1 );
+		components = new ArrayList< C >();
+		chainNext = new int[ 16 ];
+		chainTail = new int[ 16 ];
+		componentRank = new int[ 16 ];
+		componentSize = new long[ 16 ];
+
+		run( pixels.firstElement().createVariable(), min, dimensions, levels, levelStart, order );
+	}
+
+	/**
+	 * Compute the rank of the value of every pixel in flat iteration order.
+	 *
+	 * @return the value of each rank.
+	 */
+	private static < T extends RealType< T > > double[] computeRanks( final IterableInterval< T > pixels, final int[] ranks, final boolean darkToBright )
+	{
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		for ( final T t : pixels )
+		{
+			final double v = t.getRealDouble();
+			if ( v < min )
+				min = v;
+			if ( v > max )
+				max = v;
+		}
+
+		if ( pixels.firstElement() instanceof IntegerType && max - min < Math.max( 1 << 16, ranks.length ) )
+		{
+			final int numLevels = ( int ) ( max - min ) + 1;
+			final double[] levels = new double[ numLevels ];
+			for ( int r = 0; r < numLevels; ++r )
+				levels[ r ] = darkToBright ? min + r : max - r;
+			final Cursor< T > c = pixels.cursor();
+			for ( int i = 0; i < ranks.length; ++i )
+			{
+				final double v = c.next().getRealDouble();
+				ranks[ i ] = ( int ) ( darkToBright ? v - min : max - v );
+			}
+			return levels;
+		}
+
+		final double[] values = new double[ ranks.length ];
+		final Cursor< T > c = pixels.cursor();
+		for ( int i = 0; i < ranks.length; ++i )
+			values[ i ] = c.next().getRealDouble();
+		final double[] sorted = values.clone();
+		Arrays.sort( sorted );
+		int numLevels = 0;
+		for ( int i = 0; i < sorted.length; ++i )
+			if ( i == 0 || sorted[ i ] != sorted[ numLevels - 1 ] )
+				sorted[ numLevels++ ] = sorted[ i ];
+		final double[] levels = new double[ numLevels ];
+		for ( int r = 0; r < numLevels; ++r )
+			levels[ r ] = darkToBright ? sorted[ r ] : sorted[ numLevels - 1 - r ];
+		for ( int i = 0; i < ranks.length; ++i )
+		{
+			final int r = Arrays.binarySearch( sorted, 0, numLevels, values[ i ] );
+			ranks[ i ] = darkToBright ? r : numLevels - 1 - r;
+		}
+		return levels;
+	}
+
+	/**
+	 * Main loop of the algorithm. For every threshold, first join all pixels
+	 * at this threshold with their visited 4-neighbors (or N-d equivalent),
+	 * then complete and emit the components that contain any of the pixels.
+	 */
+	private void run( final T level, final long[] min, final int[] dimensions, final double[] levels, final int[] levelStart, final int[] order )
+	{
+		final int n = dimensions.length;
+		final int[] steps = new int[ n ];
+		IntervalIndexer.createAllocationSteps( dimensions, steps );
+		final int[] position = new int[ n ];
+		final long[] longPosition = new long[ n ];
+		final Point point = new Point( n );
+		final ArrayList< C > completed = new ArrayList< C >();
+
+		for ( int r = 0; r < levels.length; ++r )
+		{
+			final int lo = levelStart[ r ];
+			final int hi = levelStart[ r + 1 ];
+			if ( lo == hi )
+				continue;
+			level.setReal( levels[ r ] );
+
+			for ( int k = lo; k < hi; ++k )
+			{
+				final int i = order[ k ];
+				parent[ i ] = i;
+				IntervalIndexer.indexToPosition( i, dimensions, position );
+				for ( int d = 0; d < n; ++d )
+				{
+					if ( position[ d ] > 0 && parent[ i - steps[ d ] ] >= 0 )
+						union( i, i - steps[ d ] );
+					if ( position[ d ] < dimensions[ d ] - 1 && parent[ i + steps[ d ] ] >= 0 )
+						union( i, i + steps[ d ] );
+				}
+			}
+
+			for ( int k = lo; k < hi; ++k )
+			{
+				final int i = order[ k ];
+				final int id = complete( find( i ), r, level, completed );
+				IntervalIndexer.indexToPosition( i, dimensions, longPosition );
+				for ( int d = 0; d < n; ++d )
+					longPosition[ d ] += min[ d ];
+				point.setPosition( longPosition );
+				components.get( id ).addPosition( point );
+				++componentSize[ id ];
+			}
+
+			for ( final C component : completed )
+				componentOutput.emit( component );
+			completed.clear();
+		}
+	}
+
+	/**
+	 * Get the component for the set of pixels with the given root at
+	 * threshold rank r. If this is the first time the set is seen at this
+	 * threshold, then join its chain of components into the largest one (or
+	 * create a new one if there is none) and add it to the list of completed
+	 * components.
+	 *
+	 * @return id of the component.
+	 */
+	private int complete( final int root, final int r, final T level, final ArrayList< C > completed )
+	{
+		final int head = rootComponent[ root ];
+		if ( head >= 0 && chainNext[ head ] < 0 && componentRank[ head ] == r )
+			return head;
+
+		final int id;
+		if ( head < 0 )
+		{
+			id = newComponent( componentGenerator.createComponent( level ) );
+		}
+		else
+		{
+			int largest = head;
+			for ( int c = chainNext[ head ]; c >= 0; c = chainNext[ c ] )
+				if ( componentSize[ c ] > componentSize[ largest ] )
+					largest = c;
+			id = largest;
+			final C component = components.get( id );
+			component.setValue( level );
+			for ( int c = head; c >= 0; c = chainNext[ c ] )
+			{
+				if ( c != id )
+				{
+					component.merge( components.get( c ) );
+					componentSize[ id ] += componentSize[ c ];
+					components.set( c, null );
+				}
+			}
+		}
+		rootComponent[ root ] = id;
+		chainNext[ id ] = -1;
+		chainTail[ id ] = id;
+		componentRank[ id ] = r;
+		completed.add( components.get( id ) );
+		return id;
+	}
+
+	private int newComponent( final C component )
+	{
+		final int id = components.size();
+		if ( id == chainNext.length )
+		{
+			final int capacity = 2 * id;
+			chainNext = grow( chainNext, capacity );
+			chainTail = grow( chainTail, capacity );
+			componentRank = grow( componentRank, capacity );
+			final long[] size = new long[ capacity ];
+			System.arraycopy( componentSize, 0, size, 0, id );
+			componentSize = size;
+		}
+		components.add( component );
+		componentSize[ id ] = 0;
+		return id;
+	}
+
+	private static int[] grow( final int[] array, final int capacity )
+	{
+		final int[] grown = new int[ capacity ];
+		System.arraycopy( array, 0, grown, 0, array.length );
+		return grown;
+	}
+
+	/**
+	 * Find the root of a pixel, halving the path on the way.
+	 */
+	private int find( int i )
+	{
+		while ( parent[ i ] != i )
+		{
+			final int p = parent[ parent[ i ] ];
+			parent[ i ] = p;
+			i = p;
+		}
+		return i;
+	}
+
+	/**
+	 * Join the sets of two visited pixels and concatenate their component
+	 * chains. The root of the second pixel becomes the root of the joined set.
+	 */
+	private void union( final int i, final int j )
+	{
+		final int ri = find( i );
+		final int rj = find( j );
+		if ( ri == rj )
+			return;
+		parent[ ri ] = rj;
+		final int ci = rootComponent[ ri ];
+		if ( ci >= 0 )
+		{
+			final int cj = rootComponent[ rj ];
+			if ( cj < 0 )
+				rootComponent[ rj ] = ci;
+			else
+			{
+				chainNext[ chainTail[ cj ] ] = ci;
+				chainTail[ cj ] = chainTail[ ci ];
+			}
+		}
+	}
+}
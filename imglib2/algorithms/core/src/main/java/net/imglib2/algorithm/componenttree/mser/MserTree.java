@@ -45,6 +45,7 @@ import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.algorithm.componenttree.Component;
 import net.imglib2.algorithm.componenttree.ComponentTree;
+import net.imglib2.algorithm.componenttree.UnionFindComponentTree;
 import net.imglib2.algorithm.componenttree.pixellist.PixelList;
 import net.imglib2.algorithm.componenttree.pixellist.PixelListComponent;
 import net.imglib2.img.ImgFactory;
@@ -58,7 +59,8 @@ import net.imglib2.type.numeric.integer.LongType;
  * MSER tree of an image stored as a tree of {@link PixelListComponent}s. This
  * class is used both to represent and build the tree. For building the tree
  * {@link Component.Handler} is implemented to gather
- * {@link MserComponentIntermediate} emitted by {@link ComponentTree}.
+ * {@link MserComponentIntermediate} emitted by {@link ComponentTree} or
+ * {@link UnionFindComponentTree}.
  *
  * <p>
  * Maximally Stable Extremal Regions (MSER) are selected from the component tree
@@ -269,6 +271,109 @@ public final class MserTree< T extends Type< T > > implements Component.Handler<
 		return tree;
 	}
 
+	/**
+	 * Build a MSER tree from an input image using
+	 * {@link UnionFindComponentTree}. Calls
+	 * {@link #buildUnionFindMserTree(RandomAccessibleInterval, RealType, long, long, double, double, ImgFactory, boolean)}
+	 * using an {@link ArrayImgFactory} or {@link CellImgFactory} depending on
+	 * input image size.
+	 *
+	 * @param input
+	 *            the input image.
+	 * @param delta
+	 *            delta for computing instability score.
+	 * @param minSize
+	 *            minimum size (in pixels) of accepted MSER.
+	 * @param maxSize
+	 *            maximum size (in pixels) of accepted MSER.
+	 * @param maxVar
+	 *            maximum instability score of accepted MSER.
+	 * @param minDiversity
+	 *            minimal diversity of adjacent accepted MSER.
+	 * @param darkToBright
+	 *            whether to apply thresholds from dark to bright (true) or
+	 *            bright to dark (false)
+	 * @return MSER tree of the image.
+	 */
+	public static < T extends RealType< T > > MserTree< T > buildUnionFindMserTree( final RandomAccessibleInterval< T > input, final double delta, final long minSize, final long maxSize, final double maxVar, final double minDiversity, boolean darkToBright )
+	{
+		return buildUnionFindMserTree( input, MserTree.getDeltaVariable( input, delta ), minSize, maxSize, maxVar, minDiversity, darkToBright );
+	}
+
+	/**
+	 * Build a MSER tree from an input image using
+	 * {@link UnionFindComponentTree}. Calls
+	 * {@link #buildUnionFindMserTree(RandomAccessibleInterval, RealType, long, long, double, double, ImgFactory, boolean)}
+	 * using an {@link ArrayImgFactory} or {@link CellImgFactory} depending on
+	 * input image size.
+	 *
+	 * @param input
+	 *            the input image.
+	 * @param delta
+	 *            delta for computing instability score.
+	 * @param minSize
+	 *            minimum size (in pixels) of accepted MSER.
+	 * @param maxSize
+	 *            maximum size (in pixels) of accepted MSER.
+	 * @param maxVar
+	 *            maximum instability score of accepted MSER.
+	 * @param minDiversity
+	 *            minimal diversity of adjacent accepted MSER.
+	 * @param darkToBright
+	 *            whether to apply thresholds from dark to bright (true) or
+	 *            bright to dark (false)
+	 * @return MSER tree of the image.
+	 */
+	public static < T extends RealType< T > > MserTree< T > buildUnionFindMserTree( final RandomAccessibleInterval< T > input, final T delta, final long minSize, final long maxSize, final double maxVar, final double minDiversity, boolean darkToBright )
+	{
+		final int numDimensions = input.numDimensions();
+		long size = 1;
+		for ( int d = 0; d < numDimensions; ++d )
+			size *= input.dimension( d );
+		if( size > Integer.MAX_VALUE ) {
+			int cellSize = ( int ) Math.pow( Integer.MAX_VALUE / new LongType().getEntitiesPerPixel(), 1.0 / numDimensions );
+			return buildUnionFindMserTree( input, delta, minSize, maxSize, maxVar, minDiversity, new CellImgFactory< LongType >( cellSize ), darkToBright );
+		} else
+			return buildUnionFindMserTree( input, delta, minSize, maxSize, maxVar, minDiversity, new ArrayImgFactory< LongType >(), darkToBright );
+	}
+
+	/**
+	 * Build a MSER tree from an input image using
+	 * {@link UnionFindComponentTree}.
+	 *
+	 * @param input
+	 *            the input image.
+	 * @param delta
+	 *            delta for computing instability score.
+	 * @param minSize
+	 *            minimum size (in pixels) of accepted MSER.
+	 * @param maxSize
+	 *            maximum size (in pixels) of accepted MSER.
+	 * @param maxVar
+	 *            maximum instability score of accepted MSER.
+	 * @param minDiversity
+	 *            minimal diversity of adjacent accepted MSER.
+	 * @param imgFactory
+	 *            used for creating the {@link PixelList} image {@see
+	 *            MserComponentGenerator}.
+	 * @param darkToBright
+	 *            whether to apply thresholds from dark to bright (true) or
+	 *            bright to dark (false)
+	 * @return MSER tree of the image.
+	 */
+	public static < T extends RealType< T > > MserTree< T > buildUnionFindMserTree( final RandomAccessibleInterval< T > input, final T delta, final long minSize, final long maxSize, final double maxVar, final double minDiversity, final ImgFactory< LongType > imgFactory, boolean darkToBright )
+	{
+		final T max = delta.createVariable();
+		max.setReal( darkToBright ? delta.getMaxValue() : delta.getMinValue() );
+		final MserComponentGenerator< T > generator = new MserComponentGenerator< T >( max, input, imgFactory );
+		final Comparator< T > comparator = darkToBright ? new ComponentTree.DarkToBright< T >() : new ComponentTree.BrightToDark< T >();
+		final ComputeDelta< T > computeDelta = darkToBright ? new ComputeDeltaDarkToBright< T >( delta ) : new ComputeDeltaBrightToDark< T >( delta );
+		final MserTree< T > tree = new MserTree< T >( comparator, computeDelta, minSize, maxSize, maxVar, minDiversity );
+		UnionFindComponentTree.buildComponentTree( input, generator, tree, darkToBright );
+		tree.pruneDuplicates();
+		return tree;
+	}
+
 	/**
 	 * Create a variable of type T with value delta by copying
 	 * and setting a value from the input {@link RandomAccessibleInterval}.
@@ -43,6 +43,7 @@ import java.util.Iterator;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.algorithm.componenttree.Component;
 import net.imglib2.algorithm.componenttree.ComponentTree;
+import net.imglib2.algorithm.componenttree.UnionFindComponentTree;
 import net.imglib2.img.ImgFactory;
 import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.img.cell.CellImgFactory;
@@ -54,7 +55,8 @@ import net.imglib2.type.numeric.integer.LongType;
  * Component tree of an image stored as a tree of {@link PixelListComponent}s.
  * This class is used both to represent and build the tree.
  * For building the tree {@link Component.Handler} is implemented to gather
- * {@link PixelListComponentIntermediate} emitted by {@link ComponentTree}.
+ * {@link PixelListComponentIntermediate} emitted by {@link ComponentTree} or
+ * {@link UnionFindComponentTree}.
  *
  * <p>
  * <strong>TODO</strong> Add support for non-zero-min RandomAccessibleIntervals.
@@ -121,6 +123,61 @@ public final class PixelListComponentTree< T extends Type< T > > implements Comp
 		return tree;
 	}
 
+	/**
+	 * Build a component tree from an input image using
+	 * {@link UnionFindComponentTree}. Calls
+	 * {@link #buildUnionFindComponentTree(RandomAccessibleInterval, RealType, ImgFactory, boolean)}
+	 * using an {@link ArrayImgFactory} or {@link CellImgFactory} depending on
+	 * input image size.
+	 *
+	 * @param input
+	 *            the input image.
+	 * @param type
+	 *            a variable of the input image type.
+	 * @param darkToBright
+	 *            whether to apply thresholds from dark to bright (true) or
+	 *            bright to dark (false)
+	 * @return component tree of the image.
+	 */
+	public static < T extends RealType< T > > PixelListComponentTree< T > buildUnionFindComponentTree( final RandomAccessibleInterval< T > input, final T type, boolean darkToBright )
+	{
+		final int numDimensions = input.numDimensions();
+		long size = 1;
+		for ( int d = 0; d < numDimensions; ++d )
+			size *= input.dimension( d );
+		if( size > Integer.MAX_VALUE ) {
+			int cellSize = ( int ) Math.pow( Integer.MAX_VALUE / new LongType().getEntitiesPerPixel(), 1.0 / numDimensions );
+			return buildUnionFindComponentTree( input, type, new CellImgFactory< LongType >( cellSize ), darkToBright );
+		} else
+			return buildUnionFindComponentTree( input, type, new ArrayImgFactory< LongType >(), darkToBright );
+	}
+
+	/**
+	 * Build a component tree from an input image using
+	 * {@link UnionFindComponentTree}.
+	 *
+	 * @param input
+	 *            the input image.
+	 * @param type
+	 *            a variable of the input image type.
+	 * @param imgFactory
+	 *            used for creating the {@link PixelList} image {@see
+	 *            PixelListComponentGenerator}.
+	 * @param darkToBright
+	 *            whether to apply thresholds from dark to bright (true) or
+	 *            bright to dark (false)
+	 * @return component tree of the image.
+	 */
+	public static < T extends RealType< T > > PixelListComponentTree< T > buildUnionFindComponentTree( final RandomAccessibleInterval< T > input, final T type, final ImgFactory< LongType > imgFactory, boolean darkToBright )
+	{
+		T max = type.createVariable();
+		max.setReal( darkToBright ? type.getMaxValue() : type.getMinValue() );
+		final PixelListComponentGenerator< T > generator = new PixelListComponentGenerator< T >( max, input, imgFactory );
+		final PixelListComponentTree< T > tree = new PixelListComponentTree< T >();
+		UnionFindComponentTree.buildComponentTree( input, generator, tree, darkToBright );
+		return tree;
+	}
+
 	/**
 	 * Build a component tree from an input image. Calls
 	 * {@link #buildComponentTree(RandomAccessibleInterval, Type, Comparator, ImgFactory)}
@@ -0,0 +1,389 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+package net.imglib2.algorithm.gauss;
+
+import java.util.ArrayList;
+
+import net.imglib2.ExtendedRandomAccessibleInterval;
+import net.imglib2.Interval;
+import net.imglib2.Localizable;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.multithreading.Chunk;
+import net.imglib2.multithreading.ChunkTask;
+import net.imglib2.multithreading.TaskExecutor;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.Util;
+
+/**
+ * Separable Gaussian convolution on flat primitive buffers.
+ *
+ * <p>
+ * The first pass reads lines along dimension 0 from the input into a reused
+ * line buffer and convolves them into a flat temporary buffer. All further
+ * passes convolve directly between two flat temporary buffers. For dimension
+ * <em>d &gt; 0</em> the lines are strided, so instead of gathering single
+ * lines, blocks of {@link #getBlockSize()} adjacent lines are convolved
+ * together, which keeps the inner loop running over contiguous memory. Work is
+ * split into contiguous tiles of lines (or blocks) that are processed by the
+ * shared {@link TaskExecutor}.
+ * </p>
+ *
+ * <p>
+ * The temporary buffers are kept between passes and calls to
+ * {@link #process(RandomAccessible, Interval, RandomAccessible, Localizable)},
+ * and only grow if a larger interval is processed. The interval (extended by
+ * the kernel size) must fit into a single primitive array.
+ * </p>
+ */
+public abstract class AbstractBlockedGauss
+{
+	final int numDimensions;
+
+	final double[] sigma;
+
+	final double[][] kernel;
+
+	int numThreads;
+
+	int blockSize;
+
+	public AbstractBlockedGauss( final double[] sigma )
+	{
+		this.numDimensions = sigma.length;
+		this.sigma = sigma.clone();
+		this.kernel = new double[ numDimensions ][];
+		for ( int d = 0; d < numDimensions; ++d )
+			this.kernel[ d ] = Util.createGaussianKernel1DDouble( sigma[ d ], true );
+		this.numThreads = TaskExecutor.getDefault().getNumThreads();
+		this.blockSize = 1024;
+	}
+
+	public int numDimensions() { return numDimensions; }
+
+	public double[] getSigma() { return sigma.clone(); }
+
+	public int getNumThreads() { return numThreads; }
+	public void setNumThreads( final int numThreads ) { this.numThreads = Math.max( 1, numThreads ); }
+
+	/**
+	 * @return the number of adjacent lines that are convolved together in
+	 *         passes along dimensions &gt; 0.
+	 */
+	public int getBlockSize() { return blockSize; }
+	public void setBlockSize( final int blockSize ) { this.blockSize = Math.max( 1, blockSize ); }
+
+	/**
+	 * Make sure that both temporary buffers can hold <em>size</em> elements.
+	 */
+	protected abstract void ensureCapacity( int size );
+
+	/**
+	 * Get a line buffer of at least <em>length</em> elements from the pool.
+	 */
+	protected abstract Object takeLineBuffer( int length );
+
+	/**
+	 * Return a line buffer obtained by {@link #takeLineBuffer(int)}.
+	 */
+	protected abstract void releaseLineBuffer( Object line );
+
+	/**
+	 * Read <em>length + kernel.length - 1</em> values along dimension 0,
+	 * starting at the current position of <em>in</em>, into <em>line</em> and
+	 * convolve them into temporary buffer 0 starting at <em>dstOffset</em>.
+	 * The position of <em>in</em> is undefined afterwards.
+	 */
+	protected abstract void convolveInputLine( RandomAccess< ? extends RealType< ? > > in, Object line, int length, int dstOffset );
+
+	/**
+	 * Convolve a block of adjacent lines along a dimension &gt; 0 from one
+	 * temporary buffer into the other.
+	 *
+	 * @param src
+	 *            index of the source buffer (0 or 1), the destination is the
+	 *            other one.
+	 * @param dim
+	 *            the dimension along which to convolve.
+	 * @param srcOffset
+	 *            offset of the first element of the block in the source.
+	 * @param dstOffset
+	 *            offset of the first element of the block in the destination.
+	 * @param stride
+	 *            distance between subsequent elements of a line.
+	 * @param blockLength
+	 *            the number of adjacent lines in the block.
+	 * @param length
+	 *            the length of the convolved lines.
+	 */
+	protected abstract void convolveBlock( int src, int dim, int srcOffset, int dstOffset, int stride, int blockLength, int length );
+
+	/**
+	 * Write <em>length</em> values from temporary buffer <em>src</em>,
+	 * starting at <em>srcOffset</em>, along dimension 0 starting at the
+	 * current position of <em>out</em>.
+	 */
+	protected abstract void writeOutputLine( int src, int srcOffset, RandomAccess< ? extends RealType< ? > > out, int length );
+
+	/**
+	 * Convolve the input in the given interval and write the result to the
+	 * output such that the interval min corresponds to
+	 * <em>outputOffset</em>.
+	 *
+	 * @param input
+	 *            the input, must be defined in the interval extended by half
+	 *            the kernel size.
+	 * @param interval
+	 *            the area that is convolved
+	 * @param output
+	 *            where the result is written to.
+	 * @param outputOffset
+	 *            the position in output corresponding to the min of the
+	 *            interval.
+	 */
+	public synchronized void process( final RandomAccessible< ? extends RealType< ? > > input, final Interval interval, final RandomAccessible< ? extends RealType< ? > > output, final Localizable outputOffset )
+	{
+		final int n = numDimensions;
+		final long[] dims = new long[ n ];
+		final long[] sizes = new long[ n ];
+		long maxSize = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			dims[ d ] = interval.dimension( d );
+			sizes[ d ] = dims[ d ] + kernel[ d ].length - 1;
+		}
+
+		// the temporary buffers are largest after the first pass
+		for ( int d = 0; d < n; ++d )
+			maxSize *= d == 0 ? dims[ d ] : sizes[ d ];
+		if ( maxSize > Integer.MAX_VALUE )
+			throw new RuntimeException( "Interval is too large to be convolved in a single primitive array, use " + GaussFloat.class.getSimpleName() + " instead." );
+		ensureCapacity( ( int ) maxSize );
+
+		final TaskExecutor executor = TaskExecutor.getDefault();
+
+		// pass 0: input -> buffer 0
+		final long[] inputMin = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			inputMin[ d ] = interval.min( d ) - kernel[ d ].length / 2;
+		final long[] firstPassSizes = sizes.clone();
+		firstPassSizes[ 0 ] = dims[ 0 ];
+		final int lineLength = ( int ) dims[ 0 ];
+
+		// if the input is extended, lines that do not leave the source interval
+		// are read without out-of-bounds checks
+		final ExtendedRandomAccessibleInterval< ? extends RealType< ? >, ? > extended;
+		final Interval interior;
+		if ( input instanceof ExtendedRandomAccessibleInterval )
+		{
+			final long[] reachMin = new long[ n ];
+			final long[] reachMax = new long[ n ];
+			reachMax[ 0 ] = lineLength + kernel[ 0 ].length - 2;
+			final ExtendedRandomAccessibleInterval< ? extends RealType< ? >, ? > e = ( ExtendedRandomAccessibleInterval< ? extends RealType< ? >, ? > ) input;
+			final Interval i = e.interior( e.getSource(), reachMin, reachMax );
+			extended = Intervals.isEmpty( i ) ? null : e;
+			interior = i;
+		}
+		else
+		{
+			extended = null;
+			interior = null;
+		}
+
+		executor.run( numLines( firstPassSizes ), numThreads, new ChunkTask()
+		{
+			@Override
+			public void run( final Chunk chunk )
+			{
+				final RandomAccess< ? extends RealType< ? > > outOfBoundsIn = input.randomAccess();
+				final RandomAccess< ? extends RealType< ? > > interiorIn = extended == null ? null : extended.getSource().randomAccess();
+				final Object line = takeLineBuffer( lineLength + kernel[ 0 ].length - 1 );
+				try
+				{
+					final long[] position = new long[ n ];
+					long index = chunk.getStartPosition();
+					setLinePosition( index, firstPassSizes, position );
+					for ( long i = 0; i < chunk.getLoopSize(); ++i, ++index )
+					{
+						final RandomAccess< ? extends RealType< ? > > in = interiorIn != null && isInterior( inputMin, position, interior ) ? interiorIn : outOfBoundsIn;
+						in.setPosition( inputMin[ 0 ], 0 );
+						for ( int d = 1; d < n; ++d )
+							in.setPosition( inputMin[ d ] + position[ d ], d );
+						convolveInputLine( in, line, lineLength, ( int ) ( index * lineLength ) );
+						nextLinePosition( firstPassSizes, position );
+					}
+				}
+				finally
+				{
+					releaseLineBuffer( line );
+				}
+			}
+		} );
+
+		// passes 1 ... n-1: buffer (d-1)%2 -> buffer d%2
+		final long[] passSizes = firstPassSizes.clone();
+		for ( int d = 1; d < n; ++d )
+		{
+			final int dim = d;
+			final int src = ( d - 1 ) % 2;
+			int stride = 1;
+			for ( int e = 0; e < d; ++e )
+				stride *= ( int ) passSizes[ e ];
+			long outer = 1;
+			for ( int e = d + 1; e < n; ++e )
+				outer *= passSizes[ e ];
+			final int innerStride = stride;
+			final int srcLength = ( int ) sizes[ d ];
+			final int dstLength = ( int ) dims[ d ];
+			final int blocksPerSlice = ( innerStride + blockSize - 1 ) / blockSize;
+			executor.run( outer * blocksPerSlice, numThreads, new ChunkTask()
+			{
+				@Override
+				public void run( final Chunk chunk )
+				{
+					long index = chunk.getStartPosition();
+					for ( long i = 0; i < chunk.getLoopSize(); ++i, ++index )
+					{
+						final long slice = index / blocksPerSlice;
+						final int blockStart = ( int ) ( index - slice * blocksPerSlice ) * blockSize;
+						final int blockLength = Math.min( blockSize, innerStride - blockStart );
+						final int srcOffset = ( int ) ( slice * srcLength * innerStride ) + blockStart;
+						final int dstOffset = ( int ) ( slice * dstLength * innerStride ) + blockStart;
+						convolveBlock( src, dim, srcOffset, dstOffset, innerStride, blockLength, dstLength );
+					}
+				}
+			} );
+			passSizes[ d ] = dims[ d ];
+		}
+
+		// write buffer (n-1)%2 -> output
+		final int result = ( n - 1 ) % 2;
+		executor.run( numLines( dims ), numThreads, new ChunkTask()
+		{
+			@Override
+			public void run( final Chunk chunk )
+			{
+				final RandomAccess< ? extends RealType< ? > > out = output.randomAccess();
+				final long[] position = new long[ n ];
+				long index = chunk.getStartPosition();
+				setLinePosition( index, dims, position );
+				for ( long i = 0; i < chunk.getLoopSize(); ++i, ++index )
+				{
+					out.setPosition( outputOffset.getLongPosition( 0 ), 0 );
+					for ( int d = 1; d < n; ++d )
+						out.setPosition( outputOffset.getLongPosition( d ) + position[ d ], d );
+					writeOutputLine( result, ( int ) ( index * lineLength ), out, lineLength );
+					nextLinePosition( dims, position );
+				}
+			}
+		} );
+	}
+
+	/**
+	 * @return the number of lines along dimension 0 in an interval of the
+	 *         given size.
+	 */
+	static long numLines( final long[] sizes )
+	{
+		long numLines = 1;
+		for ( int d = 1; d < sizes.length; ++d )
+			numLines *= sizes[ d ];
+		return numLines;
+	}
+
+	/**
+	 * Set dimensions 1 ... n-1 of <em>position</em> to the start of the line
+	 * with the given flat index.
+	 */
+	static void setLinePosition( long index, final long[] sizes, final long[] position )
+	{
+		for ( int d = 1; d < sizes.length; ++d )
+		{
+			position[ d ] = index % sizes[ d ];
+			index /= sizes[ d ];
+		}
+	}
+
+	/**
+	 * Move dimensions 1 ... n-1 of <em>position</em> to the next line.
+	 */
+	static void nextLinePosition( final long[] sizes, final long[] position )
+	{
+		for ( int d = 1; d < sizes.length; ++d )
+		{
+			if ( ++position[ d ] < sizes[ d ] )
+				return;
+			position[ d ] = 0;
+		}
+	}
+
+	/**
+	 * @return true, if the line starting at <em>min + position</em> (with
+	 *         <em>position[0]</em> ignored) starts within <em>interior</em>.
+	 */
+	static boolean isInterior( final long[] min, final long[] position, final Interval interior )
+	{
+		if ( min[ 0 ] < interior.min( 0 ) || min[ 0 ] > interior.max( 0 ) )
+			return false;
+		for ( int d = 1; d < min.length; ++d )
+		{
+			final long p = min[ d ] + position[ d ];
+			if ( p < interior.min( d ) || p > interior.max( d ) )
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Pool of buffers that is kept between calls.
+	 */
+	static final class BufferPool< A >
+	{
+		private final ArrayList< A > buffers = new ArrayList< A >();
+
+		synchronized A take()
+		{
+			final int n = buffers.size();
+			return n == 0 ? null : buffers.remove( n - 1 );
+		}
+
+		synchronized void release( final A buffer )
+		{
+			buffers.add( buffer );
+		}
+	}
+}
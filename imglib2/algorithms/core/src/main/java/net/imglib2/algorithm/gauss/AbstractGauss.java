@@ -39,6 +39,7 @@ package net.imglib2.algorithm.gauss;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import net.imglib2.Cursor;
+import net.imglib2.ExtendedRandomAccessibleInterval;
 import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
 import net.imglib2.Iterator;
@@ -54,6 +55,7 @@ import net.imglib2.iterator.LocalizingZeroMinIntervalIterator;
 import net.imglib2.multithreading.SimpleMultiThreading;
 import net.imglib2.type.Type;
 import net.imglib2.type.numeric.NumericType;
+import net.imglib2.util.Intervals;
 import net.imglib2.util.Util;
 
 /**
@@ -230,6 +232,20 @@ public abstract class AbstractGauss< T extends NumericType< T > >
 			randomAccess.move( -(kernel[ dim ].length / 2), dim );
 		}
 		
+		// if the input is extended, lines that do not leave the source interval
+		// are sampled without out-of-bounds checks
+		if ( dim == 0 && input instanceof ExtendedRandomAccessibleInterval )
+		{
+			final ExtendedRandomAccessibleInterval< T, ? > extended = ( ExtendedRandomAccessibleInterval< T, ? > ) input;
+			final long[] reachMin = new long[ numDimensions ];
+			final long[] reachMax = new long[ numDimensions ];
+			reachMax[ 0 ] = sizeInputData - 1;
+			final Interval interior = extended.interior( extended.getSource(), reachMin, reachMax );
+
+			if ( !Intervals.isEmpty( interior ) )
+				return new SamplingLineIterator<T>( dim, sizeInputData, randomAccess, extended.getSource().randomAccess(), interior, getProcessingLine( sizeProcessLine ), getProcessingType(), getProcessingType() );
+		}
+
 		// return a new SamplingLineIterator that also keeps the instance of the processing line,
 		// which is important for multithreading so that each SamplingLineIterator has its own
 		// temporary space
@@ -622,10 +638,7 @@ public abstract class AbstractGauss< T extends NumericType< T > >
 	 */
 	protected void updateInputLineSampler( final SamplingLineIterator< T > a, final Interval range, final long[] offset, final Localizable originalLocation )
 	{
-		final Positionable positionable = a.getPositionable();
-		
-		for ( int d = 0; d < numDimensions; ++d )
-			positionable.setPosition( originalLocation.getLongPosition( d ) + offset[ d ], d );
+		a.setLinePosition( originalLocation, offset );
 		
 		// clear the processing line
 		for ( final T v : a.getProcessLine() )
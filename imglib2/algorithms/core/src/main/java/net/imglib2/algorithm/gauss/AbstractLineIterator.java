@@ -53,7 +53,7 @@ public abstract class AbstractLineIterator implements Iterator
 	
 	final int d;
 	final long size;
-	final Positionable positionable;
+	Positionable positionable;
 	final Localizable offset;
 
 	/**
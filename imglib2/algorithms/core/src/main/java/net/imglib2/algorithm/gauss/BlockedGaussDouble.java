@@ -0,0 +1,281 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+package net.imglib2.algorithm.gauss;
+
+import java.lang.ref.SoftReference;
+
+import net.imglib2.Interval;
+import net.imglib2.Localizable;
+import net.imglib2.Point;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.Img;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory.Boundary;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.view.Views;
+
+/**
+ * Gaussian convolution with double precision on flat double[] buffers, see
+ * {@link AbstractBlockedGauss}.
+ *
+ * <p>
+ * An instance can be reused for many inputs; its temporary buffers are kept
+ * between calls. The static gauss methods hand their buffers on to the next
+ * static call, until they are needed by the garbage collector. The input is
+ * read completely before the output is written, so input and output may be
+ * the same.
+ * </p>
+ */
+public class BlockedGaussDouble extends AbstractBlockedGauss
+{
+	final double[][] kernelDouble;
+
+	final double[][] buffers;
+
+	final BufferPool< double[] > lines;
+
+	public BlockedGaussDouble( final double[] sigma )
+	{
+		super( sigma );
+		kernelDouble = kernel;
+		buffers = new double[ 2 ][];
+		lines = new BufferPool< double[] >();
+	}
+
+	/**
+	 * Release the temporary buffers. They are re-allocated by the next call to
+	 * {@link #process(RandomAccessible, Interval, RandomAccessible, Localizable)}.
+	 */
+	public synchronized void releaseBuffers()
+	{
+		buffers[ 0 ] = null;
+		buffers[ 1 ] = null;
+		while ( lines.take() != null );
+	}
+
+	@Override
+	protected void ensureCapacity( final int size )
+	{
+		for ( int i = 0; i < 2; ++i )
+			if ( buffers[ i ] == null || buffers[ i ].length < size )
+				buffers[ i ] = new double[ size ];
+	}
+
+	@Override
+	protected Object takeLineBuffer( final int length )
+	{
+		final double[] line = lines.take();
+		return ( line == null || line.length < length ) ? new double[ length ] : line;
+	}
+
+	@Override
+	protected void releaseLineBuffer( final Object line )
+	{
+		lines.release( ( double[] ) line );
+	}
+
+	@Override
+	protected void convolveInputLine( final RandomAccess< ? extends RealType< ? > > in, final Object line, final int length, final int dstOffset )
+	{
+		final double[] l = ( double[] ) line;
+		final double[] dst = buffers[ 0 ];
+		final double[] k = kernelDouble[ 0 ];
+		final int kernelSizeMinus1 = k.length - 1;
+		final int kernelSizeHalf = k.length / 2;
+		final double center = k[ kernelSizeHalf ];
+
+		l[ 0 ] = in.get().getRealDouble();
+		for ( int i = 1; i < length + kernelSizeMinus1; ++i )
+		{
+			in.fwd( 0 );
+			l[ i ] = in.get().getRealDouble();
+		}
+
+		for ( int x = 0; x < length; ++x )
+		{
+			double sum = center * l[ x + kernelSizeHalf ];
+			for ( int j = 0; j < kernelSizeHalf; ++j )
+				sum += k[ j ] * ( l[ x + j ] + l[ x + kernelSizeMinus1 - j ] );
+			dst[ dstOffset + x ] = sum;
+		}
+	}
+
+	@Override
+	protected void convolveBlock( final int src, final int dim, final int srcOffset, final int dstOffset, final int stride, final int blockLength, final int length )
+	{
+		final double[] s = buffers[ src ];
+		final double[] t = buffers[ 1 - src ];
+		final double[] k = kernelDouble[ dim ];
+		final int kernelSizeMinus1 = k.length - 1;
+		final int kernelSizeHalf = k.length / 2;
+		final double center = k[ kernelSizeHalf ];
+
+		for ( int i = 0; i < length; ++i )
+		{
+			final int o = dstOffset + i * stride;
+			final int c = srcOffset + ( i + kernelSizeHalf ) * stride;
+			for ( int x = 0; x < blockLength; ++x )
+				t[ o + x ] = center * s[ c + x ];
+			for ( int j = 0; j < kernelSizeHalf; ++j )
+			{
+				final double w = k[ j ];
+				final int a = srcOffset + ( i + j ) * stride;
+				final int b = srcOffset + ( i + kernelSizeMinus1 - j ) * stride;
+				for ( int x = 0; x < blockLength; ++x )
+					t[ o + x ] += w * ( s[ a + x ] + s[ b + x ] );
+			}
+		}
+	}
+
+	@Override
+	protected void writeOutputLine( final int src, final int srcOffset, final RandomAccess< ? extends RealType< ? > > out, final int length )
+	{
+		final double[] s = buffers[ src ];
+		out.get().setReal( s[ srcOffset ] );
+		for ( int x = 1; x < length; ++x )
+		{
+			out.fwd( 0 );
+			out.get().setReal( s[ srcOffset + x ] );
+		}
+	}
+
+	/**
+	 * Computes a Gaussian convolution with double precision on an entire
+	 * {@link Img} using the {@link OutOfBoundsMirrorFactory} with single
+	 * boundary
+	 *
+	 * @param sigma
+	 *            - the sigma for the convolution
+	 * @param input
+	 *            - the input {@link Img}
+	 * @return the convolved image, created by the factory of the input
+	 */
+	public static < T extends RealType< T > > Img< DoubleType > gauss( final double[] sigma, final Img< T > input )
+	{
+		return gauss( sigma, input, new OutOfBoundsMirrorFactory< T, Img< T > >( Boundary.SINGLE ) );
+	}
+
+	/**
+	 * Computes a Gaussian convolution with double precision on an entire
+	 * {@link Img}
+	 *
+	 * @param sigma
+	 *            - the sigma for the convolution
+	 * @param input
+	 *            - the input {@link Img}
+	 * @param outOfBounds
+	 *            - the {@link OutOfBoundsFactory} to use
+	 * @return the convolved image, created by the factory of the input
+	 */
+	public static < T extends RealType< T > > Img< DoubleType > gauss( final double[] sigma, final Img< T > input, final OutOfBoundsFactory< T, Img< T > > outOfBounds )
+	{
+		final Img< DoubleType > output;
+		try
+		{
+			output = input.factory().imgFactory( new DoubleType() ).create( input, new DoubleType() );
+		}
+		catch ( final IncompatibleTypeException e )
+		{
+			throw new RuntimeException( e );
+		}
+		processShared( sigma, Views.extend( input, outOfBounds ), input, output, new Point( input.numDimensions() ) );
+		return output;
+	}
+
+	/**
+	 * Computes a Gaussian convolution with double precision on a
+	 * {@link RandomAccessible} in a certain {@link Interval} and writes it
+	 * into a given {@link RandomAccessible} at a specific location
+	 *
+	 * @param sigma
+	 *            - the sigma for the convolution
+	 * @param input
+	 *            - the {@link RandomAccessible} to work on
+	 * @param interval
+	 *            - the area that is convolved
+	 * @param output
+	 *            - the {@link RandomAccessible} where the output will be
+	 *            written to
+	 * @param outputOffset
+	 *            - the offset that corresponds to the first pixel in output
+	 *            {@link RandomAccessible}
+	 */
+	public static void gauss( final double[] sigma, final RandomAccessible< ? extends RealType< ? > > input, final Interval interval, final RandomAccessible< ? extends RealType< ? > > output, final Localizable outputOffset )
+	{
+		processShared( sigma, input, interval, output, outputOffset );
+	}
+
+	/**
+	 * Instances whose temporary buffers are reused by the static gauss
+	 * methods, as long as the memory is not needed otherwise.
+	 */
+	private static final BufferPool< SoftReference< BlockedGaussDouble > > shared = new BufferPool< SoftReference< BlockedGaussDouble > >();
+
+	/**
+	 * Process with a new instance that takes over the temporary buffers of a
+	 * previous call, if they have not been garbage collected.
+	 */
+	private static void processShared( final double[] sigma, final RandomAccessible< ? extends RealType< ? > > input, final Interval interval, final RandomAccessible< ? extends RealType< ? > > output, final Localizable outputOffset )
+	{
+		final BlockedGaussDouble gauss = new BlockedGaussDouble( sigma );
+		for ( SoftReference< BlockedGaussDouble > ref = shared.take(); ref != null; ref = shared.take() )
+		{
+			final BlockedGaussDouble previous = ref.get();
+			if ( previous != null )
+			{
+				gauss.takeBuffers( previous );
+				break;
+			}
+		}
+		gauss.process( input, interval, output, outputOffset );
+		shared.release( new SoftReference< BlockedGaussDouble >( gauss ) );
+	}
+
+	/**
+	 * Take over the temporary buffers of another instance.
+	 */
+	private void takeBuffers( final BlockedGaussDouble other )
+	{
+		buffers[ 0 ] = other.buffers[ 0 ];
+		buffers[ 1 ] = other.buffers[ 1 ];
+		for ( double[] line = other.lines.take(); line != null; line = other.lines.take() )
+			lines.release( line );
+	}
+}
@@ -0,0 +1,493 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+package net.imglib2.algorithm.gauss;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.multithreading.Chunk;
+import net.imglib2.multithreading.ChunkTask;
+import net.imglib2.multithreading.TaskExecutor;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory.Boundary;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Util;
+import net.imglib2.view.Views;
+
+/**
+ * Recursive Gaussian convolution after Young and van Vliet (Signal Processing
+ * 44, 1995). A causal and an anti-causal third-order IIR filter are applied
+ * along each dimension, so the cost per pixel is independent of sigma. This
+ * makes it the method of choice for large sigmas, where the kernel-based
+ * {@link GaussFloat}/{@link GaussDouble} become expensive. The filter is an
+ * approximation, {@link #relativeError(double)} reports how well it matches
+ * the sampled Gaussian kernel used by the kernel-based implementations.
+ *
+ * <p>
+ * Dimensions are filtered one after the other, each time reading from the
+ * result of the previous dimension extended by the {@link OutOfBoundsFactory}.
+ * Lines are padded by {@link #padding(double)} pixels on both ends. For
+ * dimensions &gt; 0, blocks of adjacent lines are filtered together. The
+ * intermediate results are stored in the output, so it should be of a float
+ * or double type to preserve precision. Output and input may be the same.
+ * </p>
+ *
+ * <p>
+ * The recursion is only defined for sigma &ge; 0.5; dimensions with sigma
+ * &le; 0 are not filtered.
+ * </p>
+ *
+ * @param <T>
+ *            the {@link RealType} of input and output
+ */
+public class RecursiveGauss< T extends RealType< T > >
+{
+	final int numDimensions;
+
+	final double[] sigma;
+
+	final RandomAccessible< T > input;
+
+	final RandomAccessibleInterval< T > interval;
+
+	final RandomAccessibleInterval< T > output;
+
+	final OutOfBoundsFactory< T, RandomAccessibleInterval< T > > outOfBounds;
+
+	int numThreads;
+
+	int blockSize;
+
+	/**
+	 * Computes a recursive Gaussian convolution of an input
+	 * {@link RandomAccessibleInterval} and writes it into an output
+	 * {@link RandomAccessibleInterval} of the same size.
+	 *
+	 * @param sigma
+	 *            - the sigma for the convolution
+	 * @param input
+	 *            - the input
+	 * @param output
+	 *            - where the result is written to, may be the input
+	 * @param outOfBounds
+	 *            - the {@link OutOfBoundsFactory} to use
+	 */
+	public RecursiveGauss( final double[] sigma, final RandomAccessibleInterval< T > input, final RandomAccessibleInterval< T > output, final OutOfBoundsFactory< T, RandomAccessibleInterval< T > > outOfBounds )
+	{
+		this.numDimensions = sigma.length;
+		this.sigma = sigma.clone();
+		this.input = Views.extend( input, outOfBounds );
+		this.interval = input;
+		this.output = output;
+		this.outOfBounds = outOfBounds;
+		this.numThreads = TaskExecutor.getDefault().getNumThreads();
+		this.blockSize = 256;
+
+		for ( int d = 0; d < numDimensions; ++d )
+		{
+			if ( input.dimension( d ) != output.dimension( d ) )
+				throw new RuntimeException( "Input and output must have the same dimensions." );
+			if ( sigma[ d ] > 0 && sigma[ d ] < 0.5 )
+				throw new RuntimeException( "Recursive Gaussian requires sigma >= 0.5, use " + GaussFloat.class.getSimpleName() + " for smaller sigmas." );
+		}
+	}
+
+	/**
+	 * Computes a recursive Gaussian convolution of an entire {@link Img} into
+	 * a new {@link Img} created by the factory of the input.
+	 *
+	 * @param sigma
+	 *            - the sigma for the convolution
+	 * @param input
+	 *            - the input {@link Img}
+	 * @param outOfBounds
+	 *            - the {@link OutOfBoundsFactory} to use
+	 */
+	public RecursiveGauss( final double[] sigma, final Img< T > input, final OutOfBoundsFactory< T, RandomAccessibleInterval< T > > outOfBounds )
+	{
+		this( sigma, input, input.factory().create( input, input.firstElement().createVariable() ), outOfBounds );
+	}
+
+	/**
+	 * Computes a recursive Gaussian convolution of an entire {@link Img}
+	 * using the {@link OutOfBoundsMirrorFactory} with single boundary.
+	 *
+	 * @param sigma
+	 *            - the sigma for the convolution
+	 * @param input
+	 *            - the input {@link Img}
+	 */
+	public RecursiveGauss( final double[] sigma, final Img< T > input )
+	{
+		this( sigma, input, new OutOfBoundsMirrorFactory< T, RandomAccessibleInterval< T > >( Boundary.SINGLE ) );
+	}
+
+	/**
+	 * @return the result of the convolution
+	 */
+	public RandomAccessibleInterval< T > getResult()
+	{
+		return output;
+	}
+
+	public int getNumThreads() { return numThreads; }
+	public void setNumThreads( final int numThreads ) { this.numThreads = Math.max( 1, numThreads ); }
+
+	/**
+	 * @return the number of adjacent lines that are filtered together along
+	 *         dimensions &gt; 0.
+	 */
+	public int getBlockSize() { return blockSize; }
+	public void setBlockSize( final int blockSize ) { this.blockSize = Math.max( 1, blockSize ); }
+
+	/**
+	 * @return for every dimension the maximal deviation of the recursive
+	 *         filter from the sampled Gaussian kernel, see
+	 *         {@link #relativeError(double)}.
+	 */
+	public double[] getRelativeError()
+	{
+		final double[] error = new double[ numDimensions ];
+		for ( int d = 0; d < numDimensions; ++d )
+			error[ d ] = relativeError( sigma[ d ] );
+		return error;
+	}
+
+	public void call()
+	{
+		boolean first = true;
+		for ( int d = 0; d < numDimensions; ++d )
+		{
+			if ( sigma[ d ] <= 0 )
+				continue;
+			if ( first )
+				filter( d, input, interval );
+			else
+				filter( d, Views.extend( output, outOfBounds ), output );
+			first = false;
+		}
+
+		// no dimension was filtered, the result is a copy of the input
+		if ( first )
+			copy();
+	}
+
+	/**
+	 * Filter all lines along dimension <em>dim</em> of the source
+	 * (positioned at the min of <em>sourceInterval</em>) and write them to
+	 * the output.
+	 */
+	protected void filter( final int dim, final RandomAccessible< T > source, final RandomAccessibleInterval< T > sourceInterval )
+	{
+		final double[] c = coefficients( sigma[ dim ] );
+		final int pad = padding( sigma[ dim ] );
+		final int length = ( int ) output.dimension( dim );
+		final int paddedLength = length + 2 * pad;
+
+		// lines along dim are grouped into blocks of adjacent lines along dimension 0
+		final int block = dim == 0 ? 1 : ( int ) Math.min( blockSize, output.dimension( 0 ) );
+		final long[] sizes = new long[ numDimensions ];
+		output.dimensions( sizes );
+		sizes[ dim ] = 1;
+		sizes[ 0 ] = ( sizes[ 0 ] + block - 1 ) / block;
+		long numItems = 1;
+		for ( int d = 0; d < numDimensions; ++d )
+			numItems *= sizes[ d ];
+
+		TaskExecutor.getDefault().run( numItems, numThreads, new ChunkTask()
+		{
+			@Override
+			public void run( final Chunk chunk )
+			{
+				final RandomAccess< T > in = source.randomAccess();
+				final RandomAccess< T > out = output.randomAccess();
+				final double[] buffer = new double[ paddedLength * block ];
+				final long[] position = new long[ numDimensions ];
+
+				long index = chunk.getStartPosition();
+				for ( long i = 0; i < chunk.getLoopSize(); ++i, ++index )
+				{
+					long rest = index;
+					for ( int d = 0; d < numDimensions; ++d )
+					{
+						position[ d ] = rest % sizes[ d ];
+						rest /= sizes[ d ];
+					}
+					position[ 0 ] *= block;
+					position[ dim ] = 0;
+					final int numLines = ( int ) Math.min( block, output.dimension( 0 ) - position[ 0 ] );
+
+					// read the padded block
+					for ( int d = 0; d < numDimensions; ++d )
+						in.setPosition( sourceInterval.min( d ) + position[ d ], d );
+					in.move( -pad, dim );
+					for ( int p = 0; p < paddedLength; ++p )
+					{
+						final int offset = p * block;
+						for ( int x = 0; x < numLines; ++x )
+						{
+							buffer[ offset + x ] = in.get().getRealDouble();
+							in.fwd( 0 );
+						}
+						in.move( -numLines, 0 );
+						in.fwd( dim );
+					}
+
+					filterBlock( buffer, block, numLines, paddedLength, c );
+
+					// write the unpadded part
+					for ( int d = 0; d < numDimensions; ++d )
+						out.setPosition( output.min( d ) + position[ d ], d );
+					for ( int p = pad; p < pad + length; ++p )
+					{
+						final int offset = p * block;
+						for ( int x = 0; x < numLines; ++x )
+						{
+							out.get().setReal( buffer[ offset + x ] );
+							out.fwd( 0 );
+						}
+						out.move( -numLines, 0 );
+						out.fwd( dim );
+					}
+				}
+			}
+		} );
+	}
+
+	protected void copy()
+	{
+		final long[] sizes = new long[ numDimensions ];
+		output.dimensions( sizes );
+		final int lineLength = ( int ) sizes[ 0 ];
+		sizes[ 0 ] = 1;
+		long numLines = 1;
+		for ( int d = 1; d < numDimensions; ++d )
+			numLines *= sizes[ d ];
+
+		TaskExecutor.getDefault().run( numLines, numThreads, new ChunkTask()
+		{
+			@Override
+			public void run( final Chunk chunk )
+			{
+				final RandomAccess< T > in = input.randomAccess();
+				final RandomAccess< T > out = output.randomAccess();
+				long index = chunk.getStartPosition();
+				for ( long i = 0; i < chunk.getLoopSize(); ++i, ++index )
+				{
+					long rest = index;
+					for ( int d = 0; d < numDimensions; ++d )
+					{
+						final long p = rest % sizes[ d ];
+						rest /= sizes[ d ];
+						in.setPosition( interval.min( d ) + p, d );
+						out.setPosition( output.min( d ) + p, d );
+					}
+					for ( int x = 0; x < lineLength; ++x )
+					{
+						out.get().set( in.get() );
+						in.fwd( 0 );
+						out.fwd( 0 );
+					}
+				}
+			}
+		} );
+	}
+
+	/**
+	 * Apply the causal and the anti-causal filter in place to a block of
+	 * lines stored interleaved, i.e. element <em>p</em> of line <em>x</em> is
+	 * at <em>p * stride + x</em>. The recursions are initialized assuming a
+	 * constant continuation of the first and last values. For this steady
+	 * state the first (last) output equals the first (last) input, so the
+	 * already filtered first (last) value can stand in for the continuation.
+	 */
+	static void filterBlock( final double[] buffer, final int stride, final int numLines, final int length, final double[] c )
+	{
+		final double b = c[ 0 ], a1 = c[ 1 ], a2 = c[ 2 ], a3 = c[ 3 ];
+
+		// causal: w[n] = B x[n] + a1 w[n-1] + a2 w[n-2] + a3 w[n-3]
+		for ( int p = 0; p < length; ++p )
+		{
+			final int o = p * stride;
+			final int o1 = p < 1 ? 0 : o - stride;
+			final int o2 = p < 2 ? 0 : o - 2 * stride;
+			final int o3 = p < 3 ? 0 : o - 3 * stride;
+			if ( p < 3 )
+			{
+				// initialize with the steady state for constant input, w = x[0]
+				for ( int x = 0; x < numLines; ++x )
+				{
+					final double w0 = buffer[ x ];
+					final double w1 = p < 1 ? w0 : buffer[ o1 + x ];
+					final double w2 = p < 2 ? w0 : buffer[ o2 + x ];
+					final double w3 = w0;
+					buffer[ o + x ] = b * buffer[ o + x ] + a1 * w1 + a2 * w2 + a3 * w3;
+				}
+			}
+			else
+			{
+				for ( int x = 0; x < numLines; ++x )
+					buffer[ o + x ] = b * buffer[ o + x ] + a1 * buffer[ o1 + x ] + a2 * buffer[ o2 + x ] + a3 * buffer[ o3 + x ];
+			}
+		}
+
+		// anti-causal: y[n] = B w[n] + a1 y[n+1] + a2 y[n+2] + a3 y[n+3]
+		final int last = ( length - 1 ) * stride;
+		for ( int p = length - 1; p >= 0; --p )
+		{
+			final int o = p * stride;
+			if ( p > length - 4 )
+			{
+				// initialize with the steady state for constant input, y = w[length-1]
+				for ( int x = 0; x < numLines; ++x )
+				{
+					final double yEnd = buffer[ last + x ];
+					final double y1 = p + 1 < length ? buffer[ o + stride + x ] : yEnd;
+					final double y2 = p + 2 < length ? buffer[ o + 2 * stride + x ] : yEnd;
+					buffer[ o + x ] = b * buffer[ o + x ] + a1 * y1 + a2 * y2 + a3 * yEnd;
+				}
+			}
+			else
+			{
+				final int o1 = o + stride;
+				final int o2 = o + 2 * stride;
+				final int o3 = o + 3 * stride;
+				for ( int x = 0; x < numLines; ++x )
+					buffer[ o + x ] = b * buffer[ o + x ] + a1 * buffer[ o1 + x ] + a2 * buffer[ o2 + x ] + a3 * buffer[ o3 + x ];
+			}
+		}
+	}
+
+	/**
+	 * Compute the filter coefficients for a given sigma after Young and van
+	 * Vliet.
+	 *
+	 * @return { B, b1/b0, b2/b0, b3/b0 }
+	 */
+	public static double[] coefficients( final double sigma )
+	{
+		final double q;
+		if ( sigma >= 2.5 )
+			q = 0.98711 * sigma - 0.96330;
+		else
+			q = 3.97156 - 4.14554 * Math.sqrt( 1 - 0.26891 * sigma );
+
+		final double q2 = q * q;
+		final double q3 = q2 * q;
+		final double b0 = 1.57825 + 2.44413 * q + 1.4281 * q2 + 0.422205 * q3;
+		final double b1 = 2.44413 * q + 2.85619 * q2 + 1.26661 * q3;
+		final double b2 = -( 1.4281 * q2 + 1.26661 * q3 );
+		final double b3 = 0.422205 * q3;
+		final double a1 = b1 / b0;
+		final double a2 = b2 / b0;
+		final double a3 = b3 / b0;
+		return new double[] { 1 - ( a1 + a2 + a3 ), a1, a2, a3 };
+	}
+
+	/**
+	 * @return the number of pixels by which lines are extended on both ends
+	 *         before filtering.
+	 */
+	public static int padding( final double sigma )
+	{
+		return ( int ) Math.ceil( 4 * sigma );
+	}
+
+	/**
+	 * Compare the impulse response of the recursive filter to the sampled
+	 * Gaussian kernel used by the kernel-based implementations.
+	 *
+	 * @return the maximal absolute difference, relative to the maximum of the
+	 *         kernel.
+	 */
+	public static double relativeError( final double sigma )
+	{
+		if ( sigma <= 0 )
+			return 0;
+
+		final double[] kernel = Util.createGaussianKernel1DDouble( sigma, true );
+		final int kernelSizeHalf = kernel.length / 2;
+		final int pad = padding( sigma );
+		final int center = pad + kernelSizeHalf;
+		final double[] line = new double[ 2 * center + 1 ];
+		line[ center ] = 1;
+		filterBlock( line, 1, 1, line.length, coefficients( sigma ) );
+
+		double max = 0;
+		for ( int i = 0; i < line.length; ++i )
+		{
+			final int k = i - center + kernelSizeHalf;
+			final double expected = k >= 0 && k < kernel.length ? kernel[ k ] : 0;
+			max = Math.max( max, Math.abs( line[ i ] - expected ) );
+		}
+		return max / kernel[ kernelSizeHalf ];
+	}
+
+	/**
+	 * Computes a recursive Gaussian convolution of an entire {@link Img}
+	 * using the {@link OutOfBoundsMirrorFactory} with single boundary.
+	 *
+	 * @return a new {@link Img} created by the factory of the input
+	 */
+	public static < T extends RealType< T > > Img< T > gauss( final double[] sigma, final Img< T > input )
+	{
+		final RecursiveGauss< T > gauss = new RecursiveGauss< T >( sigma, input );
+		gauss.call();
+		return ( Img< T > ) gauss.getResult();
+	}
+
+	/**
+	 * Computes a recursive Gaussian convolution of an entire {@link Img}.
+	 *
+	 * @return a new {@link Img} created by the factory of the input
+	 */
+	public static < T extends RealType< T > > Img< T > gauss( final double[] sigma, final Img< T > input, final OutOfBoundsFactory< T, RandomAccessibleInterval< T > > outOfBounds )
+	{
+		final RecursiveGauss< T > gauss = new RecursiveGauss< T >( sigma, input, outOfBounds );
+		gauss.call();
+		return ( Img< T > ) gauss.getResult();
+	}
+
+	/**
+	 * Computes a recursive Gaussian convolution of input into output.
+	 */
+	public static < T extends RealType< T > > void gauss( final double[] sigma, final RandomAccessibleInterval< T > input, final RandomAccessibleInterval< T > output, final OutOfBoundsFactory< T, RandomAccessibleInterval< T > > outOfBounds )
+	{
+		new RecursiveGauss< T >( sigma, input, output, outOfBounds ).call();
+	}
+}
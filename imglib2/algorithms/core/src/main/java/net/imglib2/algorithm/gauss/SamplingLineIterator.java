@@ -37,6 +37,8 @@
 package net.imglib2.algorithm.gauss;
 
 import net.imglib2.Cursor;
+import net.imglib2.Interval;
+import net.imglib2.Localizable;
 import net.imglib2.RandomAccess;
 import net.imglib2.Sampler;
 import net.imglib2.img.Img;
@@ -49,7 +51,14 @@ import net.imglib2.img.Img;
 public class SamplingLineIterator<T> extends AbstractLineIterator implements Sampler<T>
 {
 	final Img<T> processLine;
-	final RandomAccess<T> randomAccess;
+	RandomAccess<T> randomAccess;
+
+	/**
+	 * If not null, lines starting in {@link #interior} are sampled with
+	 * {@link #interiorAccess} instead of {@link #outOfBoundsAccess}.
+	 */
+	final RandomAccess<T> interiorAccess, outOfBoundsAccess;
+	final Interval interior;
 	
 	final Cursor< T > resultCursor;
 	final RandomAccess< T > randomAccessLeft, randomAccessRight;
@@ -68,11 +77,35 @@ public class SamplingLineIterator<T> extends AbstractLineIterator implements Sam
 	 * gaussian convolution 
 	 */
 	public SamplingLineIterator( final int dim, final long size, final RandomAccess<T> randomAccess, final Img<T> processLine, final T copy, final T tmp )
+	{
+		this( dim, size, randomAccess, null, null, processLine, copy, tmp );
+	}
+
+	/**
+	 * Make a new AbstractSamplingLineIterator which iterates a 1d line of a certain length
+	 * and is used as the input for the convolution operation. Lines that start within
+	 * <code>interior</code> are sampled with <code>interiorAccess</code>, which does not need
+	 * to handle out-of-bounds positions, all other lines with <code>randomAccess</code>.
+	 * 
+	 * @param dim - which dimension to iterate (dimension id)
+	 * @param size - number of pixels to iterate
+	 * @param randomAccess - the {@link RandomAccess} which is moved along the line and is 
+	 * placed at the right location (one pixel left of the starting pixel)
+	 * @param interiorAccess - the {@link RandomAccess} for lines starting in <code>interior</code>, may be null
+	 * @param interior - the start positions of lines that do not leave the domain of <code>interiorAccess</code>
+	 * @param processLine - the line that will be used for processing and is associated with this {@link AbstractSamplingLineIterator},
+	 * this is important for multithreading so that each AbstractSamplingLineIterator has its own temporary space for computing the
+	 * gaussian convolution 
+	 */
+	public SamplingLineIterator( final int dim, final long size, final RandomAccess<T> randomAccess, final RandomAccess<T> interiorAccess, final Interval interior, final Img<T> processLine, final T copy, final T tmp )
 	{
 		super( dim, size, randomAccess, randomAccess );
 
 		this.processLine = processLine;
 		this.randomAccess = randomAccess;
+		this.outOfBoundsAccess = randomAccess;
+		this.interiorAccess = interiorAccess;
+		this.interior = interiorAccess == null ? null : interior;
 		
 		this.randomAccessLeft = processLine.randomAccess();
 		this.randomAccessRight = processLine.randomAccess();
@@ -80,6 +113,39 @@ public class SamplingLineIterator<T> extends AbstractLineIterator implements Sam
 		this.tmp = tmp;
 		
 		this.resultCursor = processLine.cursor(); 
+
+		if ( this.interior != null )
+			setLinePosition( getOffset(), new long[ randomAccess.numDimensions() ] );
+	}
+
+	/**
+	 * Place the line at <code>origin + offset</code>, choosing the {@link RandomAccess}
+	 * that is used for sampling the line.
+	 * 
+	 * @param origin - the start position of the line, without offset
+	 * @param offset - added to the origin
+	 */
+	public void setLinePosition( final Localizable origin, final long[] offset )
+	{
+		final int n = offset.length;
+
+		if ( interior != null )
+		{
+			randomAccess = interiorAccess;
+			for ( int d = 0; d < n; ++d )
+			{
+				final long p = origin.getLongPosition( d ) + offset[ d ];
+				if ( p < interior.min( d ) || p > interior.max( d ) )
+				{
+					randomAccess = outOfBoundsAccess;
+					break;
+				}
+			}
+			positionable = randomAccess;
+		}
+
+		for ( int d = 0; d < n; ++d )
+			positionable.setPosition( origin.getLongPosition( d ) + offset[ d ], d );
 	}
 	
 	/**
@@ -94,7 +160,9 @@ public class SamplingLineIterator<T> extends AbstractLineIterator implements Sam
 	public SamplingLineIterator<T> copy()
 	{
 		// new instance with same properties
-		SamplingLineIterator<T> c = new SamplingLineIterator<T>( d, size, randomAccess, getProcessLine(), copy, tmp );
+		if ( randomAccess != outOfBoundsAccess )
+			outOfBoundsAccess.setPosition( randomAccess );
+		SamplingLineIterator<T> c = new SamplingLineIterator<T>( d, size, outOfBoundsAccess, interiorAccess, interior, getProcessLine(), copy, tmp );
 		
 		// update current status
 		c.i = i;
@@ -0,0 +1,245 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.algorithm.integral;
+
+import net.imglib2.Localizable;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.converter.Converter;
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.DoubleType;
+
+/**
+ * Constant-time sums, means, and variances of n-dimensional boxes of an image,
+ * looked up in its {@link IntegralImg integral image} and, for variances, the
+ * integral image of its squared values.
+ *
+ * Boxes are given in coordinates of the integrated image, with inclusive
+ * bounds. The sum of a box is computed from the 2<sup>n</sup> corners of the
+ * box in the integral image.
+ *
+ * A {@link BoxSums} has its own {@link RandomAccess}es and must not be used by
+ * several threads concurrently. Use {@link #copy()} to create an instance for
+ * each thread.
+ *
+ * @param <T> The type of the integral image.
+ */
+public class BoxSums< T extends RealType< T > >
+{
+	protected final RandomAccessibleInterval< T > integral;
+
+	protected final RandomAccessibleInterval< T > integralOfSquares;
+
+	protected final RandomAccess< T > access;
+
+	protected final RandomAccess< T > squaresAccess;
+
+	protected final int n;
+
+	/**
+	 * @param integral integral image of an image.
+	 */
+	public BoxSums( final RandomAccessibleInterval< T > integral )
+	{
+		this( integral, null );
+	}
+
+	/**
+	 * @param integral integral image of an image.
+	 * @param integralOfSquares integral image of the squared values of the image, or null.
+	 */
+	public BoxSums( final RandomAccessibleInterval< T > integral, final RandomAccessibleInterval< T > integralOfSquares )
+	{
+		this.integral = integral;
+		this.integralOfSquares = integralOfSquares;
+		n = integral.numDimensions();
+		access = integral.randomAccess();
+		squaresAccess = integralOfSquares == null ? null : integralOfSquares.randomAccess();
+	}
+
+	/**
+	 * Compute the integral image, and optionally the integral image of squared
+	 * values, of an image with double precision.
+	 *
+	 * @param img the image.
+	 * @param withSquares whether to compute the integral of squared values, which is required for variances.
+	 * @param numThreads number of threads for computing the integral images.
+	 */
+	public static < R extends RealType< R > > BoxSums< DoubleType > create( final Img< R > img, final boolean withSquares, final int numThreads )
+	{
+		final IntegralImgDouble< R > integral = new IntegralImgDouble< R >( img, new DoubleType(), new Converter< R, DoubleType >()
+		{
+			@Override
+			public void convert( final R input, final DoubleType output )
+			{
+				output.set( input.getRealDouble() );
+			}
+		} );
+		integral.setNumThreads( numThreads );
+		integral.process();
+
+		if ( !withSquares )
+			return new BoxSums< DoubleType >( integral.getResult() );
+
+		final IntegralImgDouble< R > squares = new IntegralImgDouble< R >( img, new DoubleType(), new Converter< R, DoubleType >()
+		{
+			@Override
+			public void convert( final R input, final DoubleType output )
+			{
+				final double v = input.getRealDouble();
+				output.set( v * v );
+			}
+		} );
+		squares.setNumThreads( numThreads );
+		squares.process();
+
+		return new BoxSums< DoubleType >( integral.getResult(), squares.getResult() );
+	}
+
+	/**
+	 * @return a {@link BoxSums} on the same integral images for use by another thread.
+	 */
+	public BoxSums< T > copy()
+	{
+		return new BoxSums< T >( integral, integralOfSquares );
+	}
+
+	public boolean hasSquares()
+	{
+		return integralOfSquares != null;
+	}
+
+	/**
+	 * @return the number of pixels in the box [min, max].
+	 */
+	public long getVolume( final long[] min, final long[] max )
+	{
+		long volume = 1;
+		for ( int d = 0; d < n; ++d )
+			volume *= Math.max( 0, max[ d ] - min[ d ] + 1 );
+		return volume;
+	}
+
+	/**
+	 * @return the sum of the pixels in the box [min, max].
+	 */
+	public double getSum( final long[] min, final long[] max )
+	{
+		return sum( access, min, max );
+	}
+
+	/**
+	 * @return the sum of the squared pixels in the box [min, max].
+	 */
+	public double getSumOfSquares( final long[] min, final long[] max )
+	{
+		if ( squaresAccess == null )
+			throw new RuntimeException( "BoxSums: no integral image of squared values was given." );
+		return sum( squaresAccess, min, max );
+	}
+
+	/**
+	 * @return the mean of the pixels in the box [min, max], or NaN if the box is empty.
+	 */
+	public double getMean( final long[] min, final long[] max )
+	{
+		return getSum( min, max ) / getVolume( min, max );
+	}
+
+	/**
+	 * @return the (population) variance of the pixels in the box [min, max], or NaN if the box is empty.
+	 */
+	public double getVariance( final long[] min, final long[] max )
+	{
+		final long volume = getVolume( min, max );
+		final double mean = getSum( min, max ) / volume;
+		return Math.max( 0, getSumOfSquares( min, max ) / volume - mean * mean );
+	}
+
+	/**
+	 * Compute the box of the given radius around a position, clipped to the
+	 * integrated image. This is the box to use for box filters and local
+	 * thresholds.
+	 *
+	 * @param position center of the box.
+	 * @param radius radius of the box in each dimension.
+	 * @param min is set to the min of the box.
+	 * @param max is set to the max of the box.
+	 */
+	public void getClippedBox( final Localizable position, final long[] radius, final long[] min, final long[] max )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			final long p = position.getLongPosition( d );
+			min[ d ] = Math.max( 0, p - radius[ d ] );
+			max[ d ] = Math.min( integral.dimension( d ) - 2, p + radius[ d ] );
+		}
+	}
+
+	protected double sum( final RandomAccess< T > a, final long[] min, final long[] max )
+	{
+		for ( int d = 0; d < n; ++d )
+			if ( max[ d ] < min[ d ] )
+				return 0;
+
+		// corner with bit d set is at max + 1 in dimension d, else at min.
+		// corners with an odd number of dimensions at min are subtracted.
+		double sum = 0;
+		final int numCorners = 1 << n;
+		for ( int corner = 0; corner < numCorners; ++corner )
+		{
+			int numMin = 0;
+			for ( int d = 0; d < n; ++d )
+			{
+				if ( ( corner & ( 1 << d ) ) != 0 )
+					a.setPosition( max[ d ] + 1, d );
+				else
+				{
+					a.setPosition( min[ d ], d );
+					++numMin;
+				}
+			}
+			final double v = a.get().getRealDouble();
+			if ( ( numMin & 1 ) == 0 )
+				sum += v;
+			else
+				sum -= v;
+		}
+		return sum;
+	}
+}
@@ -36,14 +36,21 @@
 
 package net.imglib2.algorithm.integral;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imglib2.Interval;
 import net.imglib2.RandomAccess;
+import net.imglib2.algorithm.MultiThreaded;
 import net.imglib2.algorithm.OutputAlgorithm;
 import net.imglib2.converter.Converter;
 import net.imglib2.img.Img;
 import net.imglib2.img.array.ArrayImgFactory;
-import net.imglib2.iterator.LocalizingZeroMinIntervalIterator;
+import net.imglib2.multithreading.Chunk;
+import net.imglib2.multithreading.TaskExecutor;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.NumericType;
+import net.imglib2.util.IntervalIndexer;
 
 /** n-dimensional integral image that stores sums using type {@param <T>}.
  * Care must be taken that sums do not overflow the capacity of type {@param <T>}.
@@ -56,26 +63,48 @@ import net.imglib2.type.numeric.NumericType;
  * Sums are done with the precision of {@param <T>} and then set to the integral image type,
  * which may crop the values according to the type's capabilities.
  *
+ * The integral is computed one dimension after the other. By default, this is done by a
+ * single thread. After {@link #setNumThreads(int)} with more than one thread, the lines of
+ * each dimension are integrated in parallel using the {@link TaskExecutor}. Then the
+ * converter is called from several threads concurrently, so it must be thread-safe.
+ * After a region of the input image was modified, the integral image can be brought up to
+ * date with {@link #update(Interval)}.
+ * Use {@link BoxSums} to query sums, means, and variances of boxes.
+ *
  * @param <R> The type of the input image.
  * @param <T> The type of the integral image.
  *
  * @author Stephan Preibisch
  * @author Albert Cardona
  */
-public class IntegralImg< R extends NumericType< R >, T extends NumericType< T > & NativeType< T > > implements OutputAlgorithm< Img< T > >
+public class IntegralImg< R extends NumericType< R >, T extends NumericType< T > & NativeType< T > > implements OutputAlgorithm< Img< T > >, MultiThreaded
 {
 	protected final Img< R > img;
 	protected final T type;
 	protected Img< T > integral;
 	protected final Converter< R, T > converter;
+	protected int numThreads;
 
 	public IntegralImg( final Img< R > img, final T type, final Converter< R, T > converter )
 	{
+		this.numThreads = 1;
 		this.img = img;
 		this.type = type;
 		this.converter = converter;
 	}
 
+	/**
+	 * Operation applied to each line of a box by {@link IntegralImg#forEachLine(int, long[], long[], LineOperation)}.
+	 * Each thread has its own accesses and temporary variables.
+	 */
+	protected abstract class LineOperation
+	{
+		/**
+		 * @param start position of the first pixel of the line in the integral image.
+		 */
+		public abstract void apply( final long[] start, final RandomAccess< R > cursorIn, final RandomAccess< T > cursorOut, final T sum, final T tmpVar );
+	}
+
 	@Override
 	public boolean process()
 	{
@@ -94,166 +123,217 @@ public class IntegralImg< R extends NumericType< R >, T extends NumericType< T >
 		else
 			this.integral = integral;
 
-		if ( numDimensions > 1 )
+		// all entries with a position 0 are 0, so only lines starting at 1 in all dimensions are integrated
+		final long[] min = new long[ numDimensions ];
+		final long[] max = new long[ numDimensions ];
+		for ( int d = 0; d < numDimensions; ++d )
 		{
-			/**
-			 * Here we "misuse" a ArrayLocalizableCursor to iterate through all dimensions except the one we are computing the integral image in
-			 */
-			final long[] fakeSize = new long[ numDimensions - 1 ];
-
-			// location for the input location
-			final long[] tmpIn = new long[ numDimensions ];
-
-			// location for the integral location
-			final long[] tmpOut = new long[ numDimensions ];
+			min[ d ] = 1;
+			max[ d ] = integralSize[ d ] - 1;
+		}
 
-			// the size of dimension 0
-			final long size = integralSize[ 0 ];
+		// integrate over the lines in dimension 0, reading from the input image
+		final long size0 = integralSize[ 0 ];
+		forEachLine( 0, min, max, new LineOperation()
+		{
+			@Override
+			public void apply( final long[] start, final RandomAccess< R > cursorIn, final RandomAccess< T > cursorOut, final T sum, final T tmpVar )
+			{
+				// set the cursor in the integral image to the beginning of the line
+				cursorOut.setPosition( start );
 
-			for ( int d = 1; d < numDimensions; ++d )
-				fakeSize[ d - 1 ] = integralSize[ d ];
+				// set the cursor to the beginning of the correct line
+				for ( int d = 0; d < numDimensions; ++d )
+					cursorIn.setPosition( start[ d ] - 1, d );
 
-			final LocalizingZeroMinIntervalIterator cursorDim = new LocalizingZeroMinIntervalIterator( fakeSize );
+				integrateLineDim0( converter, cursorIn, cursorOut, sum, tmpVar, size0 );
+			}
+		} );
 
-			final RandomAccess< R > cursorIn = img.randomAccess();
-			final RandomAccess< T > cursorOut = integral.randomAccess();
+		// integrate over the lines in all other dimensions
+		for ( int d = 1; d < numDimensions; ++d )
+		{
+			final int dim = d;
+			final long size = integralSize[ d ];
+			forEachLine( d, min, max, new LineOperation()
+			{
+				@Override
+				public void apply( final long[] start, final RandomAccess< R > cursorIn, final RandomAccess< T > cursorOut, final T sum, final T tmpVar )
+				{
+					cursorOut.setPosition( start );
+					integrateLine( dim, cursorOut, sum, size );
+				}
+			} );
+		}
 
-			final T tmpVar = type.createVariable();
-			final T sum = type.createVariable();
+		return true;
+	}
 
-			// iterate over all dimensions except the one we are computing the integral in, which is dim=0 here
-main:		while( cursorDim.hasNext() )
-			{
-				cursorDim.fwd();
+	/**
+	 * Recompute the integral image after the pixels of the input image in the
+	 * given interval were modified. Only the part of the integral image that
+	 * depends on the modified pixels is recomputed, that is, all positions
+	 * larger than the min of the interval. If the integral image was not
+	 * computed yet, it is computed completely.
+	 *
+	 * @param changed interval of the input image that was modified.
+	 * @return true if successful.
+	 */
+	public boolean update( final Interval changed )
+	{
+		if ( integral == null )
+			return process();
 
-				// get all dimensions except the one we are currently doing the integral on
-				cursorDim.localize( fakeSize );
+		final int numDimensions = img.numDimensions();
 
-				tmpIn[ 0 ] = 0;
-				tmpOut[ 0 ] = 1;
+		// The box K from the min of the changed interval to the end of the
+		// integral image contains all positions that need to be recomputed,
+		// plus a layer of unchanged positions at its lower faces.
+		final long[] min = new long[ numDimensions ];
+		final long[] max = new long[ numDimensions ];
+		final long[] innerMin = new long[ numDimensions ];
+		for ( int d = 0; d < numDimensions; ++d )
+		{
+			min[ d ] = Math.max( 0, changed.min( d ) - img.min( d ) );
+			max[ d ] = integral.dimension( d ) - 1;
+			if ( min[ d ] > max[ d ] - 1 )
+				return true;
+			innerMin[ d ] = min[ d ] + 1;
+		}
 
-				for ( int d = 1; d < numDimensions; ++d )
+		// Replace the face values by their differences to the preceding
+		// values in K. Then integrating K yields the faces again.
+		for ( int d = 0; d < numDimensions; ++d )
+		{
+			final int dim = d;
+			forEachLine( d, min, max, new LineOperation()
+			{
+				@Override
+				public void apply( final long[] start, final RandomAccess< R > cursorIn, final RandomAccess< T > cursorOut, final T sum, final T tmpVar )
 				{
-					tmpIn[ d ] = fakeSize[ d - 1 ] - 1;
-					tmpOut[ d ] = fakeSize[ d - 1 ];
-
-					// all entries of position 0 are 0
-					if ( tmpOut[ d ] == 0 )
-						continue main;
+					boolean onFace = false;
+					for ( int e = 0; e < numDimensions; ++e )
+						if ( e != dim && start[ e ] == min[ e ] )
+							onFace = true;
+					if ( !onFace )
+						return;
+
+					cursorOut.setPosition( start );
+					cursorOut.setPosition( max[ dim ], dim );
+					for ( long i = max[ dim ]; i > min[ dim ]; --i )
+					{
+						sum.set( cursorOut.get() );
+						cursorOut.bck( dim );
+						sum.sub( cursorOut.get() );
+						cursorOut.fwd( dim );
+						cursorOut.get().set( sum );
+						cursorOut.bck( dim );
+					}
 				}
+			} );
+		}
 
-				// set the cursor to the beginning of the correct line
-				cursorIn.setPosition( tmpIn );
-
-				// set the cursor in the integral image to the right position
-				cursorOut.setPosition( tmpOut );
-				
-				// integrate over the line
-				integrateLineDim0( converter, cursorIn, cursorOut, sum, tmpVar, size );
-				/*
-				// compute the first pixel
-				converter.convert( cursorIn.getType(), sum );
-				cursorOut.getType().set( sum );
-
-				for ( int i = 2; i < size; ++i )
+		// copy the input pixels into the inside of K
+		final long size0 = max[ 0 ] - min[ 0 ];
+		forEachLine( 0, innerMin, max, new LineOperation()
+		{
+			@Override
+			public void apply( final long[] start, final RandomAccess< R > cursorIn, final RandomAccess< T > cursorOut, final T sum, final T tmpVar )
+			{
+				cursorOut.setPosition( start );
+				for ( int d = 0; d < numDimensions; ++d )
+					cursorIn.setPosition( start[ d ] - 1, d );
+				for ( long i = 0; i < size0; ++i )
 				{
+					converter.convert( cursorIn.get(), tmpVar );
+					cursorOut.get().set( tmpVar );
 					cursorIn.fwd( 0 );
 					cursorOut.fwd( 0 );
-
-					converter.convert( cursorIn.getType(), tmpVar );
-					sum.add( tmpVar );
-					cursorOut.getType().set( sum );
 				}
-				*/
 			}
-		}
-		else
-		{
-			final T tmpVar = type.createVariable();
-			final T sum = type.createVariable();
-
-			// the size of dimension 0
-			final long size = integralSize[ 0 ];
+		} );
 
-			final RandomAccess< R > cursorIn = img.randomAccess();
-			final RandomAccess< T > cursorOut = integral.randomAccess();
-
-			cursorIn.setPosition( 0, 0 );
-			cursorOut.setPosition( 1, 0 );
+		// integrate K
+		for ( int d = 0; d < numDimensions; ++d )
+		{
+			final int dim = d;
+			final long size = max[ d ] - min[ d ] + 2;
+			forEachLine( d, min, max, new LineOperation()
+			{
+				@Override
+				public void apply( final long[] start, final RandomAccess< R > cursorIn, final RandomAccess< T > cursorOut, final T sum, final T tmpVar )
+				{
+					cursorOut.setPosition( start );
+					integrateLine( dim, cursorOut, sum, size );
+				}
+			} );
+		}
 
-			// compute the first pixel
-			converter.convert( cursorIn.get(), sum );
-			cursorOut.get().set( sum );
+		return true;
+	}
 
-			for ( int i = 2; i < size; ++i )
+	/**
+	 * Apply an operation to all lines along dimension <em>d</em> that start in
+	 * the box [min, max] of the integral image. The lines are distributed over
+	 * {@link #getNumThreads()} threads.
+	 */
+	protected void forEachLine( final int d, final long[] min, final long[] max, final LineOperation op )
+	{
+		final int numDimensions = min.length;
+
+		// the box of line starts, without dimension d
+		final long[] fakeSize = new long[ Math.max( 1, numDimensions - 1 ) ];
+		fakeSize[ 0 ] = 1;
+		long numLines = 1;
+		int countDim = 0;
+		for ( int e = 0; e < numDimensions; ++e )
+		{
+			if ( max[ e ] < min[ e ] )
+				return;
+			if ( e != d )
 			{
-				cursorIn.fwd( 0 );
-				cursorOut.fwd( 0 );
-
-				converter.convert( cursorIn.get(), tmpVar );
-				sum.add( tmpVar );
-				cursorOut.get().set( sum );
+				fakeSize[ countDim++ ] = max[ e ] - min[ e ] + 1;
+				numLines *= max[ e ] - min[ e ] + 1;
 			}
-
-			return true;
 		}
 
-		for ( int d = 1; d < numDimensions; ++d )
+		final List< Chunk > chunks = TaskExecutor.divideIntoChunks( numLines, numThreads == 1 ? 1 : numThreads * TaskExecutor.chunksPerThread );
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >();
+		for ( final Chunk chunk : chunks )
 		{
-			/**
-			 * Here we "misuse" a ArrayLocalizableCursor to iterate through all dimensions except the one we are computing the fft in
-			 */
-			final long[] fakeSize = new long[ numDimensions - 1 ];
-			final long[] tmp = new long[ numDimensions ];
-
-			// the size of dimension d
-			final long size = integralSize[ d ];
-
-			// get all dimensions except the one we are currently doing the integral on
-			int countDim = 0;
-			for ( int e = 0; e < numDimensions; ++e )
-				if ( e != d )
-					fakeSize[ countDim++ ] = integralSize[ e ];
-
-			final LocalizingZeroMinIntervalIterator cursorDim = new LocalizingZeroMinIntervalIterator( fakeSize );
-
-			final RandomAccess< T > cursor = integral.randomAccess();
-			final T sum = type.createVariable();
-
-			while( cursorDim.hasNext() )
+			tasks.add( new Runnable()
 			{
-				cursorDim.fwd();
-
-				// get all dimensions except the one we are currently doing the integral on
-				cursorDim.localize( fakeSize );
-
-				tmp[ d ] = 1;
-				countDim = 0;
-				for ( int e = 0; e < numDimensions; ++e )
-					if ( e != d )
-						tmp[ e ] = fakeSize[ countDim++ ];
-
-				// update the cursor in the input image to the current dimension position
-				cursor.setPosition( tmp );
-
-				// sum up line
-				integrateLine( d, cursor, sum, size );
-				/*
-				// init sum on first pixel that is not zero
-				sum.set( cursor.getType() );
-
-				for ( int i = 2; i < size; ++i )
+				@Override
+				public void run()
 				{
-					cursor.fwd( d );
-
-					sum.add( cursor.getType() );
-					cursor.getType().set( sum );
+					final RandomAccess< R > cursorIn = img.randomAccess();
+					final RandomAccess< T > cursorOut = integral.randomAccess();
+					final T sum = type.createVariable();
+					final T tmpVar = type.createVariable();
+
+					final long[] fakePosition = new long[ fakeSize.length ];
+					final long[] start = new long[ numDimensions ];
+					IntervalIndexer.indexToPosition( chunk.getStartPosition(), fakeSize, fakePosition );
+					for ( long l = 0; l < chunk.getLoopSize(); ++l )
+					{
+						int countDim = 0;
+						for ( int e = 0; e < numDimensions; ++e )
+							start[ e ] = ( e == d ) ? min[ e ] : min[ e ] + fakePosition[ countDim++ ];
+
+						op.apply( start, cursorIn, cursorOut, sum, tmpVar );
+
+						// next line start
+						for ( int e = 0; e < fakePosition.length; ++e )
+						{
+							if ( ++fakePosition[ e ] < fakeSize[ e ] )
+								break;
+							fakePosition[ e ] = 0;
+						}
+					}
 				}
-				*/
-			}
+			} );
 		}
-
-		return true;
+		TaskExecutor.getDefault().run( tasks, numThreads );
 	}
 	
 	protected void integrateLineDim0( final Converter< R, T > converter, final RandomAccess< R > cursorIn, final RandomAccess< T > cursorOut, final T sum, final T tmpVar, final long size )
@@ -301,5 +381,14 @@ main:		while( cursorDim.hasNext() )
 	public Img<T> getResult() {
 		return integral;
 	}
+
+	@Override
+	public void setNumThreads() { this.numThreads = Runtime.getRuntime().availableProcessors(); }
+
+	@Override
+	public void setNumThreads( final int numThreads ) { this.numThreads = numThreads; }
+
+	@Override
+	public int getNumThreads() { return numThreads; }
 }
 
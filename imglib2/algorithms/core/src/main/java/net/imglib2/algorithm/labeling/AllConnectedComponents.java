@@ -36,23 +36,30 @@
 
 package net.imglib2.algorithm.labeling;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 
 import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
 import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.img.Img;
 import net.imglib2.labeling.Labeling;
 import net.imglib2.labeling.LabelingOutOfBoundsRandomAccessFactory;
 import net.imglib2.labeling.LabelingType;
+import net.imglib2.multithreading.TaskExecutor;
 import net.imglib2.outofbounds.OutOfBounds;
 import net.imglib2.outofbounds.OutOfBoundsFactory;
 import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
 
 /**
- * Label all 8-connected components of a binary image
+ * Label all 8-connected components of a binary image. Components are found
+ * with a multithreaded union-find over the flat pixel indices.
  * 
  * @author Lee Kamentsky
  */
@@ -140,25 +147,373 @@ public class AllConnectedComponents
 	 */
 	public static < T extends Comparable< T >> void labelAllConnectedComponents( Labeling< T > labeling, Img< BitType > img, Iterator< T > names, long[][] structuringElement ) throws NoSuchElementException
 	{
-		Cursor< BitType > c = img.localizingCursor();
-		RandomAccess< BitType > raSrc = img.randomAccess();
+		labelAllConnectedComponents( labeling, img, names, structuringElement, TaskExecutor.getDefault().getNumThreads() );
+	}
+
+	/**
+	 * Label all connected components in the given image using an arbitrary
+	 * structuring element and the given number of threads.
+	 * 
+	 * @param <T>
+	 *            the type of the labels to apply
+	 * @param labeling
+	 *            Assign labels to this labeling space
+	 * @param img
+	 *            a binary image where true indicates parts of components
+	 * @param names
+	 *            supplies names for the different components as needed
+	 * @param structuringElement
+	 *            an array of offsets to a pixel of the pixels which are
+	 *            considered connected.
+	 * @param numThreads
+	 *            how many slabs of the image are labeled concurrently.
+	 * @throws NoSuchElementException
+	 *             if there are not enough names
+	 */
+	public static < T extends Comparable< T >> void labelAllConnectedComponents( Labeling< T > labeling, Img< BitType > img, Iterator< T > names, long[][] structuringElement, int numThreads ) throws NoSuchElementException
+	{
+		labelAllConnectedComponents( labeling, img, 0, names, structuringElement, numThreads );
+	}
+
+	/**
+	 * Label all connected components of the pixels in the given image whose
+	 * value is greater than a threshold using an 8-connected structuring
+	 * element or it's N-dimensional analog.
+	 * 
+	 * @param <T>
+	 *            the type of the labels to apply
+	 * @param <R>
+	 *            the pixel type of the image
+	 * @param labeling
+	 *            Assign labels to this labeling space
+	 * @param img
+	 *            an image where values greater than threshold indicate parts
+	 *            of components
+	 * @param threshold
+	 *            the threshold
+	 * @param names
+	 *            supplies names for the different components as needed
+	 * @throws NoSuchElementException
+	 *             if there are not enough names
+	 */
+	public static < T extends Comparable< T >, R extends RealType< R >> void labelAllConnectedComponents( Labeling< T > labeling, RandomAccessibleInterval< R > img, double threshold, Iterator< T > names ) throws NoSuchElementException
+	{
+		labelAllConnectedComponents( labeling, img, threshold, names, getStructuringElement( img.numDimensions() ), TaskExecutor.getDefault().getNumThreads() );
+	}
+
+	/**
+	 * Label all connected components of the pixels in the given image whose
+	 * value is greater than a threshold.
+	 * 
+	 * The image is labeled in two passes over a flat union-find forest. In the
+	 * first pass, every thread merges the foreground pixels of one slab along
+	 * the last dimension with their preceding neighbors, and the equivalences
+	 * across slab borders are merged afterwards. The second pass numbers the
+	 * components in raster order and writes them into the labeling. Pixels
+	 * that are already labeled in the labeling are left alone and do not
+	 * connect components. Images with more than {@link Integer#MAX_VALUE}
+	 * pixels are flooded one component at a time.
+	 * 
+	 * The image and the labeling share their coordinates, so only the
+	 * intersection of both intervals is labeled. The image need not start at
+	 * the origin.
+	 * 
+	 * @param <T>
+	 *            the type of the labels to apply
+	 * @param <R>
+	 *            the pixel type of the image
+	 * @param labeling
+	 *            Assign labels to this labeling space
+	 * @param img
+	 *            an image where values greater than threshold indicate parts
+	 *            of components
+	 * @param threshold
+	 *            the threshold
+	 * @param names
+	 *            supplies names for the different components as needed
+	 * @param structuringElement
+	 *            an array of offsets to a pixel of the pixels which are
+	 *            considered connected.
+	 * @param numThreads
+	 *            how many slabs of the image are labeled concurrently.
+	 * @throws NoSuchElementException
+	 *             if there are not enough names
+	 */
+	public static < T extends Comparable< T >, R extends RealType< R >> void labelAllConnectedComponents( Labeling< T > labeling, RandomAccessibleInterval< R > img, double threshold, Iterator< T > names, long[][] structuringElement, int numThreads ) throws NoSuchElementException
+	{
+		final int n = labeling.numDimensions();
+		final long[] min = new long[ n ];
+		final long[] max = new long[ n ];
+		long numPixels = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = Math.max( img.min( d ), labeling.min( d ) );
+			max[ d ] = Math.min( img.max( d ), labeling.max( d ) );
+			numPixels *= Math.max( 0, max[ d ] - min[ d ] + 1 );
+		}
+		if ( numPixels == 0 )
+			return;
+		if ( numPixels >= Integer.MAX_VALUE )
+		{
+			floodAllConnectedComponents( labeling, img, threshold, names, structuringElement );
+			return;
+		}
+
+		final int[] dims = new int[ n ];
+		for ( int d = 0; d < n; ++d )
+			dims[ d ] = ( int ) ( max[ d ] - min[ d ] + 1 );
+		final IterableInterval< LabelingType< T >> flatLabeling = flatIterable( labeling, min, max );
+
+		/*
+		 * Every foreground pixel starts as its own root, background pixels
+		 * are -1.
+		 */
+		final int[] parent = new int[ ( int ) numPixels ];
+		final Cursor< R > c = flatIterable( img, min, max ).cursor();
+		final Cursor< LabelingType< T >> lc = flatLabeling.cursor();
+		for ( int i = 0; i < parent.length; ++i )
+		{
+			final boolean foreground = c.next().getRealDouble() > threshold;
+			final boolean unlabeled = lc.next().getLabeling().isEmpty();
+			parent[ i ] = foreground && unlabeled ? i : -1;
+		}
+
+		/*
+		 * Each edge of the neighborhood graph is visited from the pixel that
+		 * comes later in raster order.
+		 */
+		final ArrayList< long[] > backward = new ArrayList< long[] >();
+		A: for ( final long[] offset : structuringElement )
+		{
+			long delta = 0;
+			long step = 1;
+			for ( int d = 0; d < n; ++d )
+			{
+				delta += offset[ d ] * step;
+				step *= dims[ d ];
+			}
+			if ( delta == 0 )
+				continue;
+			final long[] o = offset.clone();
+			if ( delta > 0 )
+				for ( int d = 0; d < n; ++d )
+					o[ d ] = -o[ d ];
+			for ( final long[] b : backward )
+				if ( Arrays.equals( b, o ) )
+					continue A;
+			backward.add( o );
+		}
+		final int[][] offsets = new int[ backward.size() ][ n ];
+		final int[] deltas = new int[ backward.size() ];
+		int reach = 0;
+		for ( int k = 0; k < offsets.length; ++k )
+		{
+			int step = 1;
+			for ( int d = 0; d < n; ++d )
+			{
+				offsets[ k ][ d ] = ( int ) backward.get( k )[ d ];
+				deltas[ k ] += offsets[ k ][ d ] * step;
+				step *= dims[ d ];
+			}
+			reach = Math.max( reach, -offsets[ k ][ n - 1 ] );
+		}
+
+		final int numSlices = dims[ n - 1 ];
+		final int numSlabs = Math.max( 1, Math.min( numThreads, numSlices ) );
+		if ( numSlabs == 1 )
+			unionNeighbors( parent, dims, offsets, deltas, 0, numSlices, 0 );
+		else
+		{
+			final ArrayList< Runnable > tasks = new ArrayList< Runnable >();
+			for ( int s = 0; s < numSlabs; ++s )
+			{
+				final int lo = ( int ) ( ( long ) numSlices * s / numSlabs );
+				final int hi = ( int ) ( ( long ) numSlices * ( s + 1 ) / numSlabs );
+				tasks.add( new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						unionNeighbors( parent, dims, offsets, deltas, lo, hi, lo );
+					}
+				} );
+			}
+			TaskExecutor.getDefault().run( tasks, numSlabs );
+
+			/*
+			 * Merge the equivalences of pixels near the slab borders with
+			 * their neighbors in preceding slabs.
+			 */
+			for ( int s = 1; s < numSlabs; ++s )
+			{
+				final int lo = ( int ) ( ( long ) numSlices * s / numSlabs );
+				final int hi = ( int ) ( ( long ) numSlices * ( s + 1 ) / numSlabs );
+				unionNeighborsBefore( parent, dims, offsets, deltas, lo, Math.min( hi, lo + reach ), lo );
+			}
+		}
+
+		/*
+		 * Number the components in raster order. Every pixel points to a pixel
+		 * of the same component that precedes it (or to itself if it is the
+		 * first pixel of the component), and so the id of the pixel it points
+		 * to is known already.
+		 */
+		final LabelingType< T > type = labeling.firstElement();
+		final ArrayList< List< T >> labelings = new ArrayList< List< T >>();
+		for ( int i = 0; i < parent.length; ++i )
+		{
+			final int p = parent[ i ];
+			if ( p < 0 )
+				continue;
+			if ( p == i )
+			{
+				parent[ i ] = labelings.size();
+				labelings.add( type.intern( names.next() ) );
+			}
+			else
+				parent[ i ] = parent[ p ];
+		}
+
+		final Cursor< LabelingType< T >> wc = flatLabeling.cursor();
+		for ( int i = 0; i < parent.length; ++i )
+		{
+			final LabelingType< T > t = wc.next();
+			if ( parent[ i ] >= 0 )
+				t.setLabeling( labelings.get( parent[ i ] ) );
+		}
+	}
+
+	/**
+	 * Iterate the interval from min to max in flat order.
+	 */
+	private static < T > IterableInterval< T > flatIterable( final RandomAccessibleInterval< T > source, final long[] min, final long[] max )
+	{
+		final int n = source.numDimensions();
+		boolean full = true;
+		for ( int d = 0; d < n; ++d )
+			full &= source.min( d ) == min[ d ] && source.max( d ) == max[ d ];
+		return Views.flatIterable( full ? source : Views.interval( source, min, max ) );
+	}
+
+	/**
+	 * Find the root of a pixel, halving the path on the way.
+	 */
+	private static int find( final int[] parent, int i )
+	{
+		while ( parent[ i ] != i )
+		{
+			final int p = parent[ parent[ i ] ];
+			parent[ i ] = p;
+			i = p;
+		}
+		return i;
+	}
+
+	/**
+	 * Merge the components of two pixels. The root of a component is always
+	 * its first pixel in raster order.
+	 */
+	private static void union( final int[] parent, final int i, final int j )
+	{
+		final int ri = find( parent, i );
+		final int rj = find( parent, j );
+		if ( ri < rj )
+			parent[ rj ] = ri;
+		else if ( rj < ri )
+			parent[ ri ] = rj;
+	}
+
+	/**
+	 * Merge all foreground pixels whose coordinate in the last dimension is in
+	 * {@code [lo, hi)} with their preceding foreground neighbors whose
+	 * coordinate in the last dimension is at least {@code neighborLo}.
+	 */
+	private static void unionNeighbors( final int[] parent, final int[] dims, final int[][] offsets, final int[] deltas, final int lo, final int hi, final int neighborLo )
+	{
+		scan( parent, dims, offsets, deltas, lo, hi, neighborLo, Integer.MAX_VALUE );
+	}
+
+	/**
+	 * Merge all foreground pixels whose coordinate in the last dimension is in
+	 * {@code [lo, hi)} with their foreground neighbors whose coordinate in the
+	 * last dimension is smaller than {@code neighborHi}.
+	 */
+	private static void unionNeighborsBefore( final int[] parent, final int[] dims, final int[][] offsets, final int[] deltas, final int lo, final int hi, final int neighborHi )
+	{
+		scan( parent, dims, offsets, deltas, lo, hi, 0, neighborHi );
+	}
+
+	private static void scan( final int[] parent, final int[] dims, final int[][] offsets, final int[] deltas, final int lo, final int hi, final int neighborLo, final int neighborHi )
+	{
+		final int n = dims.length;
+		if ( lo >= hi )
+			return;
+		final int[] position = new int[ n ];
+		position[ n - 1 ] = lo;
+		int sliceSize = 1;
+		for ( int d = 0; d < n - 1; ++d )
+			sliceSize *= dims[ d ];
+		final int end = hi * sliceSize;
+		for ( int index = lo * sliceSize; index < end; ++index )
+		{
+			if ( parent[ index ] >= 0 )
+			{
+				A: for ( int k = 0; k < offsets.length; ++k )
+				{
+					final int[] offset = offsets[ k ];
+					for ( int d = 0; d < n - 1; ++d )
+					{
+						final int p = position[ d ] + offset[ d ];
+						if ( p < 0 || p >= dims[ d ] )
+							continue A;
+					}
+					final int p = position[ n - 1 ] + offset[ n - 1 ];
+					if ( p < neighborLo || p >= neighborHi || p < 0 )
+						continue;
+					final int neighbor = index + deltas[ k ];
+					if ( parent[ neighbor ] >= 0 )
+						union( parent, index, neighbor );
+				}
+			}
+			for ( int d = 0; d < n; ++d )
+			{
+				if ( ++position[ d ] < dims[ d ] || d == n - 1 )
+					break;
+				position[ d ] = 0;
+			}
+		}
+	}
+
+	/**
+	 * Label all connected components by flooding them one at a time. This
+	 * handles labelings that are too large to be indexed by an int.
+	 */
+	protected static < T extends Comparable< T >, R extends RealType< R >> void floodAllConnectedComponents( Labeling< T > labeling, RandomAccessibleInterval< R > img, double threshold, Iterator< T > names, long[][] structuringElement ) throws NoSuchElementException
+	{
+		Cursor< R > c = Views.iterable( img ).localizingCursor();
+		RandomAccess< R > raSrc = img.randomAccess();
 		OutOfBoundsFactory< LabelingType< T >, Labeling< T >> factory = new LabelingOutOfBoundsRandomAccessFactory< T, Labeling< T >>();
 		OutOfBounds< LabelingType< T >> raDest = factory.create( labeling );
 		long[] srcPosition = new long[ img.numDimensions() ];
 		long[] destPosition = new long[ labeling.numDimensions() ];
-		long[] dimensions = new long[ labeling.numDimensions() ];
-		labeling.dimensions( dimensions );
+		long[] min = new long[ labeling.numDimensions() ];
+		long[] max = new long[ labeling.numDimensions() ];
+		for ( int d = 0; d < min.length; d++ )
+		{
+			min[ d ] = Math.max( img.min( d ), labeling.min( d ) );
+			max[ d ] = Math.min( img.max( d ), labeling.max( d ) );
+		}
 		PositionStack toDoList = new PositionStack( img.numDimensions() );
 		while ( c.hasNext() )
 		{
-			BitType t = c.next();
-			if ( t.get() )
+			R t = c.next();
+			if ( t.getRealDouble() > threshold )
 			{
 				c.localize( srcPosition );
 				boolean outOfBounds = false;
-				for ( int i = 0; i < dimensions.length; i++ )
+				for ( int i = 0; i < min.length; i++ )
 				{
-					if ( srcPosition[ i ] >= dimensions[ i ] )
+					if ( ( srcPosition[ i ] < min[ i ] ) || ( srcPosition[ i ] > max[ i ] ) )
 					{
 						outOfBounds = true;
 						break;
@@ -189,7 +544,7 @@ public class AllConnectedComponents
 							for ( int i = 0; i < offset.length; i++ )
 							{
 								destPosition[ i ] = srcPosition[ i ] + offset[ i ];
-								if ( ( destPosition[ i ] < 0 ) || ( destPosition[ i ] >= dimensions[ i ] ) )
+								if ( ( destPosition[ i ] < min[ i ] ) || ( destPosition[ i ] > max[ i ] ) )
 								{
 									outOfBounds = true;
 									break;
@@ -198,7 +553,7 @@ public class AllConnectedComponents
 							if ( outOfBounds )
 								continue;
 							raSrc.setPosition( destPosition );
-							if ( raSrc.get().get() )
+							if ( raSrc.get().getRealDouble() > threshold )
 							{
 								raDest.setPosition( destPosition );
 								label = raDest.get();
@@ -36,6 +36,8 @@
 
 package net.imglib2.algorithm.labeling;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.PriorityQueue;
 
@@ -47,11 +49,14 @@ import net.imglib2.labeling.Labeling;
 import net.imglib2.labeling.LabelingOutOfBoundsRandomAccessFactory;
 import net.imglib2.labeling.LabelingType;
 import net.imglib2.labeling.NativeImgLabeling;
+import net.imglib2.multithreading.TaskExecutor;
 import net.imglib2.outofbounds.OutOfBounds;
 import net.imglib2.outofbounds.OutOfBoundsConstantValueFactory;
 import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.type.numeric.IntegerType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.util.IntervalIndexer;
 
 /**
  * Watershed algorithms. The watershed algorithm segments and labels an image
@@ -69,6 +74,13 @@ import net.imglib2.type.numeric.integer.IntType;
  * image has a depressed object interior and a ridge which constrains the
  * watershed boundary.
  * 
+ * If the intensity image and output labeling have the same dimensions and
+ * fewer than 2^31 pixels, the flooding runs on flat arrays indexed by
+ * {@link IntervalIndexer} with integer label ids. Integer images with at most
+ * 2^16 distinct values (and real images, if
+ * {@link #setIntensityLevels(int) quantization} is enabled) use a bucket
+ * queue, other images use a binary heap over primitive arrays.
+ * 
  * @author Lee Kamentsky
  */
 public class Watershed< T extends RealType< T >, L extends Comparable< L >> implements OutputAlgorithm< Labeling< L >>
@@ -135,6 +147,16 @@ public class Watershed< T extends RealType< T >, L extends Comparable< L >> impl
 
 	String errorMessage;
 
+	/**
+	 * Integer images with at most this many distinct values are flooded using
+	 * a bucket queue.
+	 */
+	protected static final long maxBucketLevels = 1 << 16;
+
+	protected int numThreads = 1;
+
+	protected int intensityLevels = 0;
+
 	/**
 	 * Provide the intensity image to be watershedded.
 	 * 
@@ -186,6 +208,37 @@ public class Watershed< T extends RealType< T >, L extends Comparable< L >> impl
 		output = outputLabeling;
 	}
 
+	/**
+	 * Set the number of threads used for flooding. With more than one thread,
+	 * the image is split into slabs along the last dimension that are flooded
+	 * independently from the seeds they contain. Afterwards, pixels that were
+	 * not reached in their own slab are flooded from the labeled pixels at
+	 * the slab borders. This is much faster for large volumes, but near slab
+	 * borders a pixel may be assigned to a different (equally plausible)
+	 * watershed than by the sequential flood.
+	 * 
+	 * @param numThreads
+	 */
+	public void setNumThreads( final int numThreads )
+	{
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * Quantize the intensities of non-integer images into the given number of
+	 * levels between the image minimum and maximum, so that they can be
+	 * flooded with a bucket queue. Pixels that fall into the same level are
+	 * flooded in the order they were reached. Set to 0 (the default) to flood
+	 * in exact intensity order.
+	 * 
+	 * @param levels
+	 *            the number of quantization levels, or 0 for no quantization.
+	 */
+	public void setIntensityLevels( final int levels )
+	{
+		this.intensityLevels = levels;
+	}
+
 	/**
 	 * The seeded watershed uses a pre-existing labeling of the space where the
 	 * labels act as seeds for the output watershed. The analogy would be to use
@@ -211,6 +264,26 @@ public class Watershed< T extends RealType< T >, L extends Comparable< L >> impl
 			NativeImgLabeling< L, IntType > o = new NativeImgLabeling< L, IntType >( new ArrayImgFactory< IntType >().create( dimensions, new IntType() ) );
 			output = o;
 		}
+		final long[] dimensions = new long[ image.numDimensions() ];
+		image.dimensions( dimensions );
+		boolean flat = image.numDimensions() > 0;
+		long numPixels = 1;
+		for ( int d = 0; d < dimensions.length; ++d )
+		{
+			flat &= dimensions[ d ] == output.dimension( d ) && output.min( d ) == 0;
+			numPixels *= dimensions[ d ];
+		}
+		if ( flat && numPixels < Integer.MAX_VALUE )
+			return processFlat();
+		return processWithPriorityQueue();
+	}
+
+	/**
+	 * Flood using a {@link PriorityQueue} of {@link PixelIntensity} objects.
+	 * This works for arbitrary image, seed and output intervals.
+	 */
+	protected boolean processWithPriorityQueue()
+	{
 		/*
 		 * Make an OutOfBounds for the labels that returns empty labels if out
 		 * of bounds. Make an OutOfBounds for the intensities that returns the
@@ -306,6 +379,469 @@ public class Watershed< T extends RealType< T >, L extends Comparable< L >> impl
 		return true;
 	}
 
+	/**
+	 * Flood on flat arrays. Pixels are identified by their
+	 * {@link IntervalIndexer flat index}, labelings by integer ids: 0 is
+	 * unlabeled, -1 is a pixel that was already labeled in the output, and
+	 * positive ids index the seed labelings.
+	 */
+	protected boolean processFlat()
+	{
+		final int n = image.numDimensions();
+		final int[] dims = new int[ n ];
+		for ( int d = 0; d < n; ++d )
+			dims[ d ] = ( int ) image.dimension( d );
+		final int numPixels = ( int ) image.size();
+		final int[] labels = new int[ numPixels ];
+		final int[] position = new int[ n ];
+
+		/*
+		 * Pixels that are labeled in the output already are never flooded.
+		 */
+		final Cursor< LabelingType< L >> oc = output.localizingCursor();
+		while ( oc.hasNext() )
+		{
+			if ( !oc.next().getLabeling().isEmpty() )
+			{
+				oc.localize( position );
+				labels[ IntervalIndexer.positionToIndex( position, dims ) ] = -1;
+			}
+		}
+
+		/*
+		 * Assign ids to the seed labelings and collect the seeds in cursor
+		 * order.
+		 */
+		final IdentityHashMap< List< L >, Integer > ids = new IdentityHashMap< List< L >, Integer >();
+		final ArrayList< List< L >> labelings = new ArrayList< List< L >>();
+		labelings.add( null );
+		final LabelingType< L > outputType = output.firstElement();
+		int[] seeds = new int[ 16 ];
+		int numSeeds = 0;
+		final Cursor< LabelingType< L >> c = this.seeds.localizingCursor();
+		A: while ( c.hasNext() )
+		{
+			final List< L > l = c.next().getLabeling();
+			if ( l.isEmpty() )
+				continue;
+			c.localize( position );
+			for ( int d = 0; d < n; ++d )
+				if ( position[ d ] < 0 || position[ d ] >= dims[ d ] )
+					continue A;
+			Integer id = ids.get( l );
+			if ( id == null )
+			{
+				id = labelings.size();
+				labelings.add( outputType.intern( l ) );
+				ids.put( l, id );
+			}
+			final int index = IntervalIndexer.positionToIndex( position, dims );
+			labels[ index ] = id;
+			if ( numSeeds == seeds.length )
+			{
+				final int[] tmp = new int[ 2 * numSeeds ];
+				System.arraycopy( seeds, 0, tmp, 0, numSeeds );
+				seeds = tmp;
+			}
+			seeds[ numSeeds++ ] = index;
+		}
+
+		/*
+		 * Convert the structuring element into index offsets.
+		 */
+		final int[][] offsets = new int[ structuringElement.length ][ n ];
+		final int[] deltas = new int[ structuringElement.length ];
+		for ( int i = 0; i < structuringElement.length; ++i )
+		{
+			int step = 1;
+			for ( int d = 0; d < n; ++d )
+			{
+				offsets[ i ][ d ] = ( int ) structuringElement[ i ][ d ];
+				deltas[ i ] += offsets[ i ][ d ] * step;
+				step *= dims[ d ];
+			}
+		}
+
+		final QueueFactory queues = createQueueFactory( numPixels );
+
+		final int numSlices = dims[ n - 1 ];
+		final int sliceSize = numPixels / Math.max( 1, numSlices );
+		final int numSlabs = Math.max( 1, Math.min( numThreads, numSlices / 2 ) );
+		if ( numSlabs == 1 )
+		{
+			final FloodQueue queue = queues.create();
+			for ( int i = 0; i < numSeeds; ++i )
+				queue.push( seeds[ i ] );
+			flood( queue, labels, dims, offsets, deltas, 0, numSlices );
+		}
+		else
+		{
+			final int[] slabSeeds = seeds;
+			final int slabNumSeeds = numSeeds;
+			final ArrayList< Runnable > tasks = new ArrayList< Runnable >();
+			for ( int s = 0; s < numSlabs; ++s )
+			{
+				final int lo = ( int ) ( ( long ) numSlices * s / numSlabs );
+				final int hi = ( int ) ( ( long ) numSlices * ( s + 1 ) / numSlabs );
+				tasks.add( new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						final FloodQueue queue = queues.create();
+						final int minIndex = lo * sliceSize;
+						final int maxIndex = hi * sliceSize;
+						for ( int i = 0; i < slabNumSeeds; ++i )
+							if ( slabSeeds[ i ] >= minIndex && slabSeeds[ i ] < maxIndex )
+								queue.push( slabSeeds[ i ] );
+						flood( queue, labels, dims, offsets, deltas, lo, hi );
+					}
+				} );
+			}
+			TaskExecutor.getDefault().run( tasks, numSlabs );
+
+			/*
+			 * Labeled and unlabeled pixels can only be adjacent across slab
+			 * borders, at most as many slices apart as the structuring
+			 * element reaches. Flood the unlabeled pixels from there.
+			 */
+			int reach = 0;
+			for ( int k = 0; k < offsets.length; ++k )
+				reach = Math.max( reach, Math.abs( offsets[ k ][ n - 1 ] ) );
+			final FloodQueue queue = queues.create();
+			for ( int s = 1; s < numSlabs; ++s )
+			{
+				final int border = ( int ) ( ( long ) numSlices * s / numSlabs );
+				final int lo = Math.max( 0, border - reach );
+				final int hi = Math.min( numSlices, border + reach );
+				for ( int index = lo * sliceSize; index < hi * sliceSize; ++index )
+					if ( labels[ index ] > 0 && hasUnlabeledNeighbor( index, labels, dims, offsets, deltas, position ) )
+						queue.push( index );
+			}
+			flood( queue, labels, dims, offsets, deltas, 0, numSlices );
+		}
+
+		/*
+		 * Write the result.
+		 */
+		final Cursor< LabelingType< L >> wc = output.localizingCursor();
+		while ( wc.hasNext() )
+		{
+			final LabelingType< L > t = wc.next();
+			wc.localize( position );
+			final int id = labels[ IntervalIndexer.positionToIndex( position, dims ) ];
+			if ( id > 0 )
+				t.setLabeling( labelings.get( id ) );
+		}
+		return true;
+	}
+
+	/**
+	 * Pop pixels from the queue and label and push all unlabeled connected
+	 * pixels whose coordinate in the last dimension is in {@code [lo, hi)}.
+	 */
+	private static void flood( final FloodQueue queue, final int[] labels, final int[] dims, final int[][] offsets, final int[] deltas, final int lo, final int hi )
+	{
+		final int n = dims.length;
+		final int[] position = new int[ n ];
+		while ( !queue.isEmpty() )
+		{
+			final int index = queue.pop();
+			final int label = labels[ index ];
+			IntervalIndexer.indexToPosition( index, dims, position );
+			A: for ( int k = 0; k < offsets.length; ++k )
+			{
+				final int[] offset = offsets[ k ];
+				for ( int d = 0; d < n - 1; ++d )
+				{
+					final int p = position[ d ] + offset[ d ];
+					if ( p < 0 || p >= dims[ d ] )
+						continue A;
+				}
+				final int p = position[ n - 1 ] + offset[ n - 1 ];
+				if ( p < lo || p >= hi )
+					continue;
+				final int neighbor = index + deltas[ k ];
+				if ( labels[ neighbor ] != 0 )
+					continue;
+				labels[ neighbor ] = label;
+				queue.push( neighbor );
+			}
+		}
+	}
+
+	private static boolean hasUnlabeledNeighbor( final int index, final int[] labels, final int[] dims, final int[][] offsets, final int[] deltas, final int[] position )
+	{
+		final int n = dims.length;
+		IntervalIndexer.indexToPosition( index, dims, position );
+		A: for ( int k = 0; k < offsets.length; ++k )
+		{
+			for ( int d = 0; d < n; ++d )
+			{
+				final int p = position[ d ] + offsets[ k ][ d ];
+				if ( p < 0 || p >= dims[ d ] )
+					continue A;
+			}
+			if ( labels[ index + deltas[ k ] ] == 0 )
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Read the intensities into a flat array and choose the queue type.
+	 */
+	private QueueFactory createQueueFactory( final int numPixels )
+	{
+		final int n = image.numDimensions();
+		final int[] dims = new int[ n ];
+		for ( int d = 0; d < n; ++d )
+			dims[ d ] = ( int ) image.dimension( d );
+		final int[] position = new int[ n ];
+		final T type = image.firstElement();
+
+		if ( type instanceof IntegerType && type.getMaxValue() - type.getMinValue() < maxBucketLevels )
+		{
+			final long min = ( long ) type.getMinValue();
+			final int numLevels = ( int ) ( ( long ) type.getMaxValue() - min + 1 );
+			final int[] levels = new int[ numPixels ];
+			final Cursor< T > c = image.localizingCursor();
+			while ( c.hasNext() )
+			{
+				final long v = ( long ) c.next().getRealDouble();
+				c.localize( position );
+				levels[ IntervalIndexer.positionToIndex( position, dims ) ] = ( int ) ( v - min );
+			}
+			return new QueueFactory()
+			{
+				@Override
+				public FloodQueue create()
+				{
+					return new BucketQueue( levels, numLevels );
+				}
+			};
+		}
+
+		final double[] intensities = new double[ numPixels ];
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		final Cursor< T > c = image.localizingCursor();
+		while ( c.hasNext() )
+		{
+			final double v = c.next().getRealDouble();
+			c.localize( position );
+			intensities[ IntervalIndexer.positionToIndex( position, dims ) ] = v;
+			if ( v < min )
+				min = v;
+			if ( v > max )
+				max = v;
+		}
+
+		if ( intensityLevels > 0 )
+		{
+			final int numLevels = intensityLevels;
+			final int[] levels = new int[ numPixels ];
+			final double scale = max > min ? ( numLevels - 1 ) / ( max - min ) : 0;
+			for ( int i = 0; i < numPixels; ++i )
+				levels[ i ] = ( int ) ( ( intensities[ i ] - min ) * scale + 0.5 );
+			return new QueueFactory()
+			{
+				@Override
+				public FloodQueue create()
+				{
+					return new BucketQueue( levels, numLevels );
+				}
+			};
+		}
+
+		return new QueueFactory()
+		{
+			@Override
+			public FloodQueue create()
+			{
+				return new HeapQueue( intensities );
+			}
+		};
+	}
+
+	private static interface QueueFactory
+	{
+		public FloodQueue create();
+	}
+
+	/**
+	 * Priority queue of flat pixel indices. Pixels of equal priority are
+	 * popped in the order they were pushed.
+	 */
+	private static interface FloodQueue
+	{
+		public void push( int index );
+
+		public int pop();
+
+		public boolean isEmpty();
+	}
+
+	/**
+	 * Hierarchical queue with one FIFO per integer intensity level.
+	 */
+	private static final class BucketQueue implements FloodQueue
+	{
+		private final int[] levels;
+
+		private final int[][] buckets;
+
+		private final int[] heads;
+
+		private final int[] tails;
+
+		private int current;
+
+		private int size;
+
+		BucketQueue( final int[] levels, final int numLevels )
+		{
+			this.levels = levels;
+			buckets = new int[ numLevels ][];
+			heads = new int[ numLevels ];
+			tails = new int[ numLevels ];
+			current = numLevels;
+			size = 0;
+		}
+
+		@Override
+		public void push( final int index )
+		{
+			final int level = levels[ index ];
+			int[] bucket = buckets[ level ];
+			if ( bucket == null )
+				bucket = buckets[ level ] = new int[ 16 ];
+			else if ( tails[ level ] == bucket.length )
+			{
+				// compact or grow
+				final int head = heads[ level ];
+				final int count = tails[ level ] - head;
+				final int[] tmp = ( count < bucket.length / 2 ) ? bucket : new int[ 2 * bucket.length ];
+				System.arraycopy( bucket, head, tmp, 0, count );
+				bucket = buckets[ level ] = tmp;
+				heads[ level ] = 0;
+				tails[ level ] = count;
+			}
+			bucket[ tails[ level ]++ ] = index;
+			if ( level < current )
+				current = level;
+			++size;
+		}
+
+		@Override
+		public int pop()
+		{
+			while ( heads[ current ] == tails[ current ] )
+				++current;
+			final int index = buckets[ current ][ heads[ current ]++ ];
+			if ( heads[ current ] == tails[ current ] )
+				heads[ current ] = tails[ current ] = 0;
+			--size;
+			return index;
+		}
+
+		@Override
+		public boolean isEmpty()
+		{
+			return size == 0;
+		}
+	}
+
+	/**
+	 * Binary min-heap ordered by intensity and then by age.
+	 */
+	private static final class HeapQueue implements FloodQueue
+	{
+		private final double[] intensities;
+
+		private int[] indices;
+
+		private long[] ages;
+
+		private int size;
+
+		private long age;
+
+		HeapQueue( final double[] intensities )
+		{
+			this.intensities = intensities;
+			indices = new int[ 64 ];
+			ages = new long[ 64 ];
+			size = 0;
+			age = 0;
+		}
+
+		private boolean less( final int i, final long ai, final int j, final long aj )
+		{
+			final int cmp = Double.compare( intensities[ i ], intensities[ j ] );
+			return cmp < 0 || ( cmp == 0 && ai < aj );
+		}
+
+		@Override
+		public void push( final int index )
+		{
+			if ( size == indices.length )
+			{
+				final int[] ti = new int[ 2 * size ];
+				final long[] ta = new long[ 2 * size ];
+				System.arraycopy( indices, 0, ti, 0, size );
+				System.arraycopy( ages, 0, ta, 0, size );
+				indices = ti;
+				ages = ta;
+			}
+			final long a = age++;
+			int k = size++;
+			while ( k > 0 )
+			{
+				final int parent = ( k - 1 ) >> 1;
+				if ( !less( index, a, indices[ parent ], ages[ parent ] ) )
+					break;
+				indices[ k ] = indices[ parent ];
+				ages[ k ] = ages[ parent ];
+				k = parent;
+			}
+			indices[ k ] = index;
+			ages[ k ] = a;
+		}
+
+		@Override
+		public int pop()
+		{
+			final int result = indices[ 0 ];
+			--size;
+			final int index = indices[ size ];
+			final long a = ages[ size ];
+			int k = 0;
+			while ( true )
+			{
+				int child = 2 * k + 1;
+				if ( child >= size )
+					break;
+				if ( child + 1 < size && less( indices[ child + 1 ], ages[ child + 1 ], indices[ child ], ages[ child ] ) )
+					++child;
+				if ( !less( indices[ child ], ages[ child ], index, a ) )
+					break;
+				indices[ k ] = indices[ child ];
+				ages[ k ] = ages[ child ];
+				k = child;
+			}
+			indices[ k ] = index;
+			ages[ k ] = a;
+			return result;
+		}
+
+		@Override
+		public boolean isEmpty()
+		{
+			return size == 0;
+		}
+	}
+
 	@Override
 	public boolean checkInput()
 	{
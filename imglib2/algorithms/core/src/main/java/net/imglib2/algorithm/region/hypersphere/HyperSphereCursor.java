@@ -37,12 +37,18 @@
 package net.imglib2.algorithm.region.hypersphere;
 
 import net.imglib2.Cursor;
+import net.imglib2.ExtendedRandomAccessibleInterval;
+import net.imglib2.FinalInterval;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
 
 /**
  * Iterate over all pixels in an n-dimensional sphere.
  *  
+ * If the source is an {@link ExtendedRandomAccessibleInterval}, spheres that
+ * lie completely inside the extended interval are accessed without
+ * out-of-bounds checks.
+ *  
  * @param <T>
  *
  * @author Stephan Preibisch
@@ -55,7 +61,19 @@ public class HyperSphereCursor< T > implements Cursor< T >
 {
 	final RandomAccessible< T > source;
 	final protected long[] center;
-	final protected RandomAccess< T > randomAccess;
+	protected RandomAccess< T > randomAccess;
+
+	/**
+	 * RandomAccess on the source of an {@link ExtendedRandomAccessibleInterval}
+	 * and on the extended source, respectively. null, if the source is not
+	 * extended.
+	 */
+	final RandomAccess< T > interiorAccess, outOfBoundsAccess;
+
+	/**
+	 * the centers for which {@link #interiorAccess} can be used.
+	 */
+	final FinalInterval interior;
 	
 	final protected long radius;
 	final int numDimensions, maxDim;
@@ -75,7 +93,30 @@ public class HyperSphereCursor< T > implements Cursor< T >
 		this.maxDim = numDimensions - 1;
 		this.r = new long[ numDimensions ];
 		this.s = new long[ numDimensions ];
-		this.randomAccess = source.randomAccess();
+
+		if ( source instanceof ExtendedRandomAccessibleInterval )
+		{
+			final ExtendedRandomAccessibleInterval< T, ? > extended = ( ExtendedRandomAccessibleInterval< T, ? > ) source;
+			final long[] reachMin = new long[ numDimensions ];
+			final long[] reachMax = new long[ numDimensions ];
+			for ( int d = 0; d < numDimensions; ++d )
+			{
+				reachMin[ d ] = -radius;
+				reachMax[ d ] = radius;
+			}
+			// reset() places the last dimension one step before the sphere
+			reachMin[ maxDim ] = -radius - 1;
+			this.interior = extended.interior( extended.getSource(), reachMin, reachMax );
+			this.interiorAccess = extended.getSource().randomAccess();
+			this.outOfBoundsAccess = source.randomAccess();
+		}
+		else
+		{
+			this.interior = null;
+			this.interiorAccess = null;
+			this.outOfBoundsAccess = null;
+			this.randomAccess = source.randomAccess();
+		}
 		
 		reset();
 	}
@@ -90,8 +131,20 @@ public class HyperSphereCursor< T > implements Cursor< T >
 
 		this.r = cursor.r.clone();
 		this.s = cursor.s.clone();
-		
-		this.randomAccess = source.randomAccess();
+
+		this.interior = cursor.interior;
+		if ( interior == null )
+		{
+			this.interiorAccess = null;
+			this.outOfBoundsAccess = null;
+			this.randomAccess = source.randomAccess();
+		}
+		else
+		{
+			this.interiorAccess = cursor.interiorAccess.copyRandomAccess();
+			this.outOfBoundsAccess = cursor.outOfBoundsAccess.copyRandomAccess();
+			this.randomAccess = cursor.randomAccess == cursor.interiorAccess ? interiorAccess : outOfBoundsAccess;
+		}
 		this.randomAccess.setPosition( cursor.randomAccess );
 	}
 
@@ -136,6 +189,8 @@ public class HyperSphereCursor< T > implements Cursor< T >
 	@Override
 	public void reset()
 	{		
+		selectRandomAccess();
+
 		final int maxDim = numDimensions - 1;
 		
 		for ( int d = 0; d < maxDim; ++d )
@@ -150,6 +205,26 @@ public class HyperSphereCursor< T > implements Cursor< T >
 		s[ maxDim ] = 1 + 2 * radius;			
 	}
 
+	/**
+	 * Use {@link #interiorAccess} if the sphere around the current center lies
+	 * inside the extended interval, and {@link #outOfBoundsAccess} otherwise.
+	 */
+	final protected void selectRandomAccess()
+	{
+		if ( interior == null )
+			return;
+
+		randomAccess = interiorAccess;
+		for ( int d = 0; d < numDimensions; ++d )
+		{
+			if ( center[ d ] < interior.min( d ) || center[ d ] > interior.max( d ) )
+			{
+				randomAccess = outOfBoundsAccess;
+				return;
+			}
+		}
+	}
+
 	@Override
 	public void jumpFwd( final long steps )
 	{
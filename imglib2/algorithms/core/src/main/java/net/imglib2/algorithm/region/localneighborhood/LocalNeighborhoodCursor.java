@@ -37,6 +37,8 @@
 package net.imglib2.algorithm.region.localneighborhood;
 
 import net.imglib2.Cursor;
+import net.imglib2.ExtendedRandomAccessibleInterval;
+import net.imglib2.FinalInterval;
 import net.imglib2.Localizable;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
@@ -46,6 +48,10 @@ import net.imglib2.util.IntervalIndexer;
 /**
  * Iterates all pixels in a 3 by 3 by .... by 3 neighborhood of a certain location but skipping the central pixel
  * 
+ * If the source is an {@link ExtendedRandomAccessibleInterval}, neighborhoods
+ * that lie completely inside the extended interval are accessed without
+ * out-of-bounds checks.
+ * 
  * @param <T>
  *
  * @author Stephan Preibisch
@@ -54,7 +60,19 @@ import net.imglib2.util.IntervalIndexer;
 public class LocalNeighborhoodCursor< T > implements Cursor< T >
 {	
 	final RandomAccessible< T > source;
-	final protected RandomAccess< T > randomAccess;
+	protected RandomAccess< T > randomAccess;
+
+	/**
+	 * RandomAccess on the source of an {@link ExtendedRandomAccessibleInterval}
+	 * and on the extended source, respectively. null, if the source is not
+	 * extended.
+	 */
+	final RandomAccess< T > interiorAccess, outOfBoundsAccess;
+
+	/**
+	 * the centers for which {@link #interiorAccess} can be used.
+	 */
+	final FinalInterval interior;
 	
 	final LocalizingZeroMinIntervalIterator driver;
 
@@ -72,7 +90,6 @@ public class LocalNeighborhoodCursor< T > implements Cursor< T >
 	public LocalNeighborhoodCursor( final RandomAccessible< T > source, final long[] center )
 	{
 		this.source = source;
-		this.randomAccess = source.randomAccess();
 		
 		this.numDimensions = source.numDimensions();
 		this.tmp = new long[ numDimensions ];
@@ -90,18 +107,54 @@ public class LocalNeighborhoodCursor< T > implements Cursor< T >
 		
 		this.driver = new LocalizingZeroMinIntervalIterator( dim );
 		this.centralPositionIndex = IntervalIndexer.positionToIndex( dim2, dim );
+
+		if ( source instanceof ExtendedRandomAccessibleInterval )
+		{
+			final ExtendedRandomAccessibleInterval< T, ? > extended = ( ExtendedRandomAccessibleInterval< T, ? > ) source;
+			final long[] reachMin = new long[ numDimensions ];
+			final long[] reachMax = new long[ numDimensions ];
+			for ( int d = 0; d < numDimensions; ++d )
+			{
+				reachMin[ d ] = -1;
+				reachMax[ d ] = 1;
+			}
+			this.interior = extended.interior( extended.getSource(), reachMin, reachMax );
+			this.interiorAccess = extended.getSource().randomAccess();
+			this.outOfBoundsAccess = source.randomAccess();
+			selectRandomAccess();
+		}
+		else
+		{
+			this.interior = null;
+			this.interiorAccess = null;
+			this.outOfBoundsAccess = null;
+			this.randomAccess = source.randomAccess();
+		}
 	}
 	
 	public LocalNeighborhoodCursor( final LocalNeighborhoodCursor< T > cursor )
 	{
 		this.source = cursor.source;
-		this.randomAccess = source.randomAccess();
-		this.randomAccess.setPosition( cursor.randomAccess );
 		
 		this.numDimensions = cursor.numDimensions();
 		this.tmp = cursor.tmp.clone();
 		this.positionMinus1 = cursor.positionMinus1.clone();
 
+		this.interior = cursor.interior;
+		if ( interior == null )
+		{
+			this.interiorAccess = null;
+			this.outOfBoundsAccess = null;
+			this.randomAccess = source.randomAccess();
+		}
+		else
+		{
+			this.interiorAccess = cursor.interiorAccess.copyRandomAccess();
+			this.outOfBoundsAccess = cursor.outOfBoundsAccess.copyRandomAccess();
+			selectRandomAccess();
+		}
+		this.randomAccess.setPosition( cursor.randomAccess );
+
 		final int[] dim = new int[ numDimensions ];
 		for ( int d = 0; d < numDimensions; ++d )
 			dim[ d ] = 3;
@@ -117,6 +170,7 @@ public class LocalNeighborhoodCursor< T > implements Cursor< T >
 		for ( int d = 0; d < numDimensions; ++d )
 			positionMinus1[ d ] = center[ d ] - 1;
 		
+		selectRandomAccess();
 		reset();
 	}
 
@@ -125,9 +179,32 @@ public class LocalNeighborhoodCursor< T > implements Cursor< T >
 		for ( int d = 0; d < numDimensions; ++d )
 			positionMinus1[ d ] = center.getLongPosition( d ) - 1;
 		
+		selectRandomAccess();
 		reset();
 	}
 
+	/**
+	 * Use {@link #interiorAccess} if the neighborhood of the current center
+	 * lies inside the extended interval, and {@link #outOfBoundsAccess}
+	 * otherwise.
+	 */
+	final protected void selectRandomAccess()
+	{
+		if ( interior == null )
+			return;
+
+		randomAccess = interiorAccess;
+		for ( int d = 0; d < numDimensions; ++d )
+		{
+			final long c = positionMinus1[ d ] + 1;
+			if ( c < interior.min( d ) || c > interior.max( d ) )
+			{
+				randomAccess = outOfBoundsAccess;
+				return;
+			}
+		}
+	}
+
 	@Override
 	public boolean hasNext() { return driver.hasNext(); }	
 
@@ -36,8 +36,8 @@
 
 package net.imglib2.algorithm.stats;
 
-import java.util.Vector;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.ArrayList;
+import java.util.List;
 
 import net.imglib2.Cursor;
 import net.imglib2.algorithm.Algorithm;
@@ -45,7 +45,7 @@ import net.imglib2.algorithm.Benchmark;
 import net.imglib2.algorithm.MultiThreaded;
 import net.imglib2.img.Img;
 import net.imglib2.multithreading.Chunk;
-import net.imglib2.multithreading.SimpleMultiThreading;
+import net.imglib2.multithreading.TaskExecutor;
 import net.imglib2.type.Type;
 import net.imglib2.util.Util;
 
@@ -83,52 +83,47 @@ public class ComputeMinMax<T extends Type<T> & Comparable<T>> implements Algorit
 
 		final long imageSize = image.size();
 
-		final AtomicInteger ai = new AtomicInteger(0);					
-        final Thread[] threads = SimpleMultiThreading.newThreads( getNumThreads() );
+		final List< Chunk > chunks = TaskExecutor.divideIntoChunks( imageSize, numThreads == 1 ? 1 : numThreads * TaskExecutor.chunksPerThread );
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >();
+		final ArrayList< T > minValues = new ArrayList< T >();
+		final ArrayList< T > maxValues = new ArrayList< T >();
 
-        final Vector<Chunk> threadChunks = SimpleMultiThreading.divideIntoChunks( imageSize, numThreads );
-        final Vector<T> minValues = new Vector<T>();
-        final Vector<T> maxValues = new Vector<T>();
-	
-        for (int ithread = 0; ithread < threads.length; ++ithread)
-        {
-        	minValues.add( image.firstElement().createVariable() );
-        	maxValues.add( image.firstElement().createVariable() );
-        	
-            threads[ithread] = new Thread(new Runnable()
-            {
-                public void run()
-                {
-                	// Thread ID
-                	final int myNumber = ai.getAndIncrement();
-        
-                	// get chunk of pixels to process
-                	final Chunk myChunk = threadChunks.get( myNumber );
-                	
-                	// compute min and max
-					compute( myChunk.getStartPosition(), myChunk.getLoopSize(), minValues.get( myNumber ), maxValues.get( myNumber ) );
-
-                }
-            });
-        }
-        
-        SimpleMultiThreading.startAndJoin( threads );
-        
-        // compute overall min and max
-        min.set( minValues.get( 0 ) );
-        max.set( maxValues.get( 0 ) );
-        
-        for ( int i = 0; i < threads.length; ++i )
-        {
-        	T value = minValues.get( i );
+		for ( int i = 0; i < chunks.size(); ++i )
+		{
+			final Chunk chunk = chunks.get( i );
+			final T chunkMin = image.firstElement().createVariable();
+			final T chunkMax = image.firstElement().createVariable();
+			minValues.add( chunkMin );
+			maxValues.add( chunkMax );
+
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					// compute min and max
+					compute( chunk.getStartPosition(), chunk.getLoopSize(), chunkMin, chunkMax );
+				}
+			});
+		}
+
+		TaskExecutor.getDefault().run( tasks, numThreads );
+
+		// compute overall min and max
+		min.set( minValues.get( 0 ) );
+		max.set( maxValues.get( 0 ) );
+
+		for ( int i = 0; i < chunks.size(); ++i )
+		{
+			T value = minValues.get( i );
 			if ( Util.min( min, value ) == value )
 				min.set( value );
-			
+
 			value = maxValues.get( i );
 			if ( Util.max( max, value ) == value )
-				max.set( value );        	
-        }
-        
+				max.set( value );
+		}
+
 		processingTime = System.currentTimeMillis() - startTime;
         
 		return true;
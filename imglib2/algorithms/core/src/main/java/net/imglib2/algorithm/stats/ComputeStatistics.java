@@ -0,0 +1,189 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.algorithm.stats;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.IterableIntervalSplits;
+import net.imglib2.algorithm.Algorithm;
+import net.imglib2.algorithm.Benchmark;
+import net.imglib2.algorithm.MultiThreaded;
+import net.imglib2.multithreading.TaskExecutor;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Compute min, max, sum, mean, variance, skewness, kurtosis and approximate
+ * quantiles of an {@link IterableInterval} in a single parallel pass. The
+ * interval is {@link IterableIntervalSplits split} into parts, each part is
+ * accumulated into its own {@link RealStatistics}, and the partial results
+ * are merged.
+ *
+ * <p>
+ * To compute statistics of a region of interest, use
+ * {@link net.imglib2.roi.IterableRegionOfInterest#getIterableIntervalOverROI(net.imglib2.RandomAccessible)}
+ * as input. To compute statistics of each label of a
+ * {@link net.imglib2.labeling.Labeling}, use {@link LabelStatistics}.
+ * </p>
+ */
+public class ComputeStatistics< T extends RealType< T > > implements Algorithm, MultiThreaded, Benchmark
+{
+	final IterableInterval< T > interval;
+
+	final int compression;
+
+	RealStatistics statistics;
+
+	String errorMessage = "";
+
+	int numThreads;
+
+	long processingTime;
+
+	/**
+	 * @param interval
+	 *            the values to compute statistics of.
+	 */
+	public ComputeStatistics( final IterableInterval< T > interval )
+	{
+		this( interval, RealStatistics.DEFAULT_COMPRESSION );
+	}
+
+	/**
+	 * @param interval
+	 *            the values to compute statistics of.
+	 * @param compression
+	 *            compression of the quantile sketch, see
+	 *            {@link RealStatistics#RealStatistics(int)}.
+	 */
+	public ComputeStatistics( final IterableInterval< T > interval, final int compression )
+	{
+		setNumThreads();
+		this.interval = interval;
+		this.compression = compression;
+	}
+
+	/**
+	 * @return the statistics computed by {@link #process()}.
+	 */
+	public RealStatistics getStatistics()
+	{
+		return statistics;
+	}
+
+	@Override
+	public boolean process()
+	{
+		final long startTime = System.currentTimeMillis();
+
+		final List< IterableInterval< T > > parts = IterableIntervalSplits.split( interval, numThreads );
+		final ArrayList< RealStatistics > partials = new ArrayList< RealStatistics >();
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >();
+		for ( final IterableInterval< T > part : parts )
+		{
+			final RealStatistics s = new RealStatistics( compression );
+			partials.add( s );
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					final Cursor< T > c = part.cursor();
+					while ( c.hasNext() )
+						s.add( c.next().getRealDouble() );
+				}
+			} );
+		}
+		TaskExecutor.getDefault().run( tasks, numThreads );
+
+		statistics = new RealStatistics( compression );
+		for ( final RealStatistics s : partials )
+			statistics.add( s );
+
+		processingTime = System.currentTimeMillis() - startTime;
+
+		return true;
+	}
+
+	@Override
+	public boolean checkInput()
+	{
+		if ( errorMessage.length() > 0 )
+		{
+			return false;
+		}
+		else if ( interval == null )
+		{
+			errorMessage = "ComputeStatistics: [IterableInterval<T> interval] is null.";
+			return false;
+		}
+		else
+			return true;
+	}
+
+	@Override
+	public long getProcessingTime()
+	{
+		return processingTime;
+	}
+
+	@Override
+	public void setNumThreads()
+	{
+		this.numThreads = Runtime.getRuntime().availableProcessors();
+	}
+
+	@Override
+	public void setNumThreads( final int numThreads )
+	{
+		this.numThreads = numThreads;
+	}
+
+	@Override
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
+
+	@Override
+	public String getErrorMessage()
+	{
+		return errorMessage;
+	}
+}
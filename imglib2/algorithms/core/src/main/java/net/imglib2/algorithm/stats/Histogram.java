@@ -38,21 +38,49 @@ package net.imglib2.algorithm.stats;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
-
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.IterableIntervalSplits;
 import net.imglib2.RealCursor;
 import net.imglib2.algorithm.Algorithm;
 import net.imglib2.algorithm.Benchmark;
+import net.imglib2.algorithm.MultiThreaded;
 import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.multithreading.Chunk;
+import net.imglib2.multithreading.TaskExecutor;
 import net.imglib2.type.Type;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
 
 /**
  * Implements a Histogram over an Image.
+ * 
+ * Bin counts are <code>long</code>. Histograms with the same number of bins
+ * can be merged, and pixels or regions can be added and removed
+ * incrementally.
+ * 
+ * By default, histograms are computed by a single thread. After
+ * {@link #setNumThreads(int)} with more than one thread, histograms of an
+ * {@link IterableInterval} are computed in parallel over
+ * {@link IterableIntervalSplits splits} of the interval, each of which is
+ * counted into its own bins. Then {@link HistogramBinMapper#map(Object)} is
+ * called from several threads concurrently, so the mapper must be
+ * thread-safe. {@link RealBinMapper} and {@link IntBinMapper} are.
+ * 
+ * {@link UnsignedByteType} and {@link UnsignedShortType} images that are
+ * {@link ArrayImg}s or {@link PlanarImg}s are counted by raw value directly
+ * from their storage arrays, and the raw counts are mapped to bins once.
  *
  * @author 2011 Larry Lindsey
  * @author Larry Lindsey
  */
-public class Histogram <T> implements Algorithm, Benchmark
+public class Histogram <T> implements Algorithm, MultiThreaded, Benchmark
 {
 	/**
 	 * Processing time, milliseconds.
@@ -62,19 +90,28 @@ public class Histogram <T> implements Algorithm, Benchmark
 	/**
 	 * Hold the histogram itself.
 	 */
-	private final int[] histogram;
+	private final long[] histogram;
 	
 	/**
-	 * The Cursor from which the histogram is to be calculated.
+	 * The Cursor from which the histogram is to be calculated, or null if it
+	 * is calculated from {@link #interval}.
 	 */
 	private final RealCursor<T> cursor;
 	
+	/**
+	 * The IterableInterval from which the histogram is to be calculated, or
+	 * null if it is calculated from {@link #cursor}.
+	 */
+	private final IterableInterval<T> interval;
+	
 	/**
 	 * The HistogramBinMapper, used to map Type values to histogram bin
 	 * indices.
 	 */
 	private final HistogramBinMapper<T> binMapper;	
 
+	private int numThreads;
+
 	/**
 	 * Create a Histogram using the given mapper, calculating from the given
 	 * Cursor.
@@ -88,8 +125,10 @@ public class Histogram <T> implements Algorithm, Benchmark
 			final RealCursor<T> c)
 	{		
 		cursor = c;
+		interval = null;
 		binMapper = mapper;
-		histogram = new int[binMapper.getNumBins()];
+		histogram = new long[binMapper.getNumBins()];
+		numThreads = 1;
 	}
 	
 	/**
@@ -103,7 +142,37 @@ public class Histogram <T> implements Algorithm, Benchmark
 	public Histogram(final HistogramBinMapper<T> mapper,
 			final Img<T> image)
 	{
-		this(mapper, image.cursor());
+		this(mapper, (IterableInterval<T>) image);
+	}
+	
+	/**
+	 * Create a Histogram using the given mapper, calculating from the given
+	 * IterableInterval in parallel.
+	 * @param mapper the HistogramBinMapper used to map Type values to 
+	 * histogram bin indices. 
+	 * @param interval the IterableInterval from which the Histogram will be
+	 * calculated
+	 */
+	public Histogram(final HistogramBinMapper<T> mapper,
+			final IterableInterval<T> interval)
+	{
+		cursor = null;
+		this.interval = interval;
+		binMapper = mapper;
+		histogram = new long[binMapper.getNumBins()];
+		numThreads = 1;
+	}
+	
+	/**
+	 * Create an empty Histogram using the given mapper. Use
+	 * {@link #add(IterableInterval)}, {@link #add(Object)}, and
+	 * {@link #add(Histogram)} to fill it.
+	 * @param mapper the HistogramBinMapper used to map Type values to 
+	 * histogram bin indices. 
+	 */
+	public Histogram(final HistogramBinMapper<T> mapper)
+	{
+		this(mapper, (IterableInterval<T>) null);
 	}
 	
 	/**
@@ -112,29 +181,54 @@ public class Histogram <T> implements Algorithm, Benchmark
 	public void reset()
 	{
 		Arrays.fill(histogram, 0);
-		cursor.reset();
+		if (cursor != null)
+		{
+			cursor.reset();
+		}
 	}
 	
 	/**
 	 * Returns the bin count corresponding to a given {@link Type}.
+	 * Counts larger than {@link Integer#MAX_VALUE} are clamped.
 	 * @param t the Type corresponding to the requested 
 	 * @return The requested bin count.
 	 */
 	public int getBin(final T t)
 	{
-		return getHistogram()[binMapper.map(t)];
+		return getBin(binMapper.map(t));
 	}
 
 	/**
 	 * Returns the bin count given by the indicated bin index.
+	 * Counts larger than {@link Integer#MAX_VALUE} are clamped.
 	 * @param i the index of the requested bin
 	 * @return the bin count at the given index
 	 */
 	public int getBin(int i)
     {
-        return getHistogram()[i];
+        return clamp(histogram[i]);
     }
 	
+	/**
+	 * Returns the bin count corresponding to a given {@link Type}.
+	 * @param t the Type corresponding to the requested 
+	 * @return The requested bin count.
+	 */
+	public long getLongBin(final T t)
+	{
+		return histogram[binMapper.map(t)];
+	}
+
+	/**
+	 * Returns the bin count given by the indicated bin index.
+	 * @param i the index of the requested bin
+	 * @return the bin count at the given index
+	 */
+	public long getLongBin(int i)
+	{
+		return histogram[i];
+	}
+	
 	/**
 	 * Returns this Histogram's HistogramBinMapper.
 	 * @return the HistogramBinMapper associated with this Histogram.
@@ -145,12 +239,41 @@ public class Histogram <T> implements Algorithm, Benchmark
 	}
 	
 	/**
-	 * Returns the histogram array.
+	 * Returns a copy of the histogram array. Counts larger than
+	 * {@link Integer#MAX_VALUE} are clamped.
 	 * @return the histogram array.
 	 */
 	public int[] getHistogram()
 	{
-		return histogram; 
+		final int[] h = new int[histogram.length];
+		for (int i = 0; i < h.length; ++i)
+		{
+			h[i] = clamp(histogram[i]);
+		}
+		return h; 
+	}
+	
+	/**
+	 * Returns the histogram array.
+	 * @return the histogram array.
+	 */
+	public long[] getLongHistogram()
+	{
+		return histogram;
+	}
+	
+	/**
+	 * Returns the sum of all bin counts.
+	 * @return the sum of all bin counts.
+	 */
+	public long getTotalCount()
+	{
+		long sum = 0;
+		for (final long count : histogram)
+		{
+			sum += count;
+		}
+		return sum;
 	}
 	
 	/**
@@ -191,6 +314,71 @@ public class Histogram <T> implements Algorithm, Benchmark
 	    return getBinMapper().getNumBins();
 	}
 	
+	/**
+	 * Count a value.
+	 * @param t the value to add.
+	 */
+	public void add(final T t)
+	{
+		final int index = binMapper.map(t);
+		if (index >= 0 && index < histogram.length)
+		{
+			++histogram[index];
+		}
+	}
+	
+	/**
+	 * Un-count a value that was counted before.
+	 * @param t the value to remove.
+	 */
+	public void remove(final T t)
+	{
+		final int index = binMapper.map(t);
+		if (index >= 0 && index < histogram.length)
+		{
+			--histogram[index];
+		}
+	}
+	
+	/**
+	 * Count all values of a region, e.g., pixels that enter a sliding
+	 * window.
+	 * @param region the values to add.
+	 */
+	public void add(final IterableInterval<T> region)
+	{
+		accumulate(region, histogram, 1);
+	}
+	
+	/**
+	 * Un-count all values of a region that were counted before, e.g., pixels
+	 * that leave a sliding window.
+	 * @param region the values to remove.
+	 */
+	public void remove(final IterableInterval<T> region)
+	{
+		accumulate(region, histogram, -1);
+	}
+	
+	/**
+	 * Add the counts of another histogram, e.g., a partial histogram of
+	 * another part of the image.
+	 * @param h a histogram with the same number of bins.
+	 */
+	public void add(final Histogram<T> h)
+	{
+		if (h.histogram.length != histogram.length)
+		{
+			throw new RuntimeException("Cannot merge histograms with " +
+					histogram.length + " and " + h.histogram.length +
+					" bins.");
+		}
+		for (int i = 0; i < histogram.length; ++i)
+		{
+			histogram[i] += h.histogram[i];
+		}
+	}
+	
 	@Override
 	public boolean checkInput() {		
 		return true;
@@ -204,22 +392,22 @@ public class Histogram <T> implements Algorithm, Benchmark
 	@Override
 	public boolean process() {
 		long startTime = System.currentTimeMillis();
-		int index;
 		
-		while (cursor.hasNext())
-		{			
-			cursor.fwd();
-			index = binMapper.map(cursor.get());
-			/*
-		    The following check makes this run for IntegerTypes at 3 to 4
-		    longer than the manual case on my machine.  This is a necessary
-		    check, but if this takes too long, it might be worthwhile to
-		    separate out an UncheckedHistogram, which would instead throw an
-		    ArrayOutOfBoundsException.
-			*/
-			if (index >=0 && index < histogram.length)
-			{
-			    ++histogram[index];
+		if (interval != null)
+		{
+			Arrays.fill(histogram, 0);
+			accumulate(interval, histogram, 1);
+		}
+		else if (cursor != null)
+		{
+			while (cursor.hasNext())
+			{			
+				cursor.fwd();
+				final int index = binMapper.map(cursor.get());
+				if (index >=0 && index < histogram.length)
+				{
+					++histogram[index];
+				}
 			}
 		}
 		
@@ -232,4 +420,252 @@ public class Histogram <T> implements Algorithm, Benchmark
 		return pTime;
 	}
 	
+	@Override
+	public void setNumThreads() {
+		numThreads = Runtime.getRuntime().availableProcessors();
+	}
+
+	@Override
+	public void setNumThreads(final int numThreads) {
+		this.numThreads = numThreads;
+	}
+
+	@Override
+	public int getNumThreads() {
+		return numThreads;
+	}
+	
+	private static int clamp(final long count)
+	{
+		return (int) Math.min(count, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Add sign times the histogram of the region to h.
+	 */
+	private void accumulate(final IterableInterval<T> region, final long[] h,
+			final int sign)
+	{
+		if (region.size() == 0)
+		{
+			return;
+		}
+		final List<?> raw = rawStorage(region);
+		final List<long[]> partials;
+		if (raw != null)
+		{
+			partials = countRaw(raw, region.size(),
+					raw.get(0) instanceof byte[] ? 1 << 8 : 1 << 16);
+			final long[] counts = partials.get(0);
+			for (int i = 1; i < partials.size(); ++i)
+			{
+				final long[] p = partials.get(i);
+				for (int v = 0; v < counts.length; ++v)
+				{
+					counts[v] += p[v];
+				}
+			}
+			final int[] lut = createLookupTable(region.firstElement(),
+					counts.length);
+			for (int v = 0; v < counts.length; ++v)
+			{
+				if (lut[v] >= 0)
+				{
+					h[lut[v]] += sign * counts[v];
+				}
+			}
+		}
+		else
+		{
+			partials = count(region);
+			for (final long[] p : partials)
+			{
+				for (int i = 0; i < h.length; ++i)
+				{
+					h[i] += sign * p[i];
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Count each split of the region into its own bins.
+	 */
+	private List<long[]> count(final IterableInterval<T> region)
+	{
+		final List<IterableInterval<T>> parts =
+			IterableIntervalSplits.split(region, numThreads);
+		final ArrayList<long[]> partials = new ArrayList<long[]>();
+		final ArrayList<Runnable> tasks = new ArrayList<Runnable>();
+		for (final IterableInterval<T> part : parts)
+		{
+			final long[] p = new long[histogram.length];
+			partials.add(p);
+			tasks.add(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					final Cursor<T> c = part.cursor();
+					while (c.hasNext())
+					{
+						final int index = binMapper.map(c.next());
+						if (index >= 0 && index < p.length)
+						{
+							++p[index];
+						}
+					}
+				}
+			});
+		}
+		TaskExecutor.getDefault().run(tasks, numThreads);
+		return partials;
+	}
+	
+	/**
+	 * Get the storage arrays of {@link UnsignedByteType} and
+	 * {@link UnsignedShortType} {@link ArrayImg}s and {@link PlanarImg}s.
+	 * @return list of byte[] or short[], or null if the region is something
+	 * else.
+	 */
+	private static List<?> rawStorage(final IterableInterval<?> region)
+	{
+		final Object type = region.firstElement();
+		final Class<?> accessClass;
+		if (type instanceof UnsignedByteType)
+		{
+			accessClass = ByteArray.class;
+		}
+		else if (type instanceof UnsignedShortType)
+		{
+			accessClass = ShortArray.class;
+		}
+		else
+		{
+			return null;
+		}
+		
+		final ArrayList<Object> accesses = new ArrayList<Object>();
+		if (region instanceof ArrayImg)
+		{
+			accesses.add(((ArrayImg<?, ?>) region).update(null));
+		}
+		else if (region instanceof PlanarImg)
+		{
+			final PlanarImg<?, ?> img = (PlanarImg<?, ?>) region;
+			for (int i = 0; i < img.numSlices(); ++i)
+			{
+				accesses.add(img.getPlane(i));
+			}
+		}
+		else
+		{
+			return null;
+		}
+		
+		final ArrayList<Object> arrays = new ArrayList<Object>();
+		for (final Object access : accesses)
+		{
+			if (!accessClass.isInstance(access))
+			{
+				return null;
+			}
+			if (access instanceof ByteArray)
+			{
+				arrays.add(((ByteArray) access).getCurrentStorageArray());
+			}
+			else
+			{
+				arrays.add(((ShortArray) access).getCurrentStorageArray());
+			}
+		}
+		return arrays;
+	}
+	
+	/**
+	 * Count the first size raw values of the concatenated arrays, split into
+	 * chunks that are counted in parallel.
+	 */
+	private List<long[]> countRaw(final List<?> arrays, final long size,
+			final int numValues)
+	{
+		final List<Chunk> chunks =
+			TaskExecutor.divideIntoChunks(size, numThreads);
+		final ArrayList<long[]> partials = new ArrayList<long[]>();
+		final ArrayList<Runnable> tasks = new ArrayList<Runnable>();
+		for (final Chunk chunk : chunks)
+		{
+			final long[] p = new long[numValues];
+			partials.add(p);
+			tasks.add(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					long start = chunk.getStartPosition();
+					long remaining = chunk.getLoopSize();
+					for (final Object array : arrays)
+					{
+						final int length = array instanceof byte[] ?
+							((byte[]) array).length : ((short[]) array).length;
+						if (start >= length)
+						{
+							start -= length;
+							continue;
+						}
+						final int from = (int) start;
+						final int to = (int) Math.min(length, start + remaining);
+						if (array instanceof byte[])
+						{
+							final byte[] a = (byte[]) array;
+							for (int i = from; i < to; ++i)
+							{
+								++p[a[i] & 0xff];
+							}
+						}
+						else
+						{
+							final short[] a = (short[]) array;
+							for (int i = from; i < to; ++i)
+							{
+								++p[a[i] & 0xffff];
+							}
+						}
+						remaining -= to - from;
+						start = 0;
+						if (remaining == 0)
+						{
+							break;
+						}
+					}
+				}
+			});
+		}
+		TaskExecutor.getDefault().run(tasks, numThreads);
+		return partials;
+	}
+	
+	/**
+	 * Map every raw value to its bin, or -1 if it is out of range.
+	 */
+	@SuppressWarnings("unchecked")
+	private int[] createLookupTable(final T type, final int numValues)
+	{
+		final int[] lut = new int[numValues];
+		final T t = (T) ((Type<?>) type).createVariable();
+		for (int v = 0; v < numValues; ++v)
+		{
+			if (t instanceof UnsignedByteType)
+			{
+				((UnsignedByteType) t).set(v);
+			}
+			else
+			{
+				((UnsignedShortType) t).set(v);
+			}
+			final int index = binMapper.map(t);
+			lut[v] = index >= 0 && index < histogram.length ? index : -1;
+		}
+		return lut;
+	}
 }
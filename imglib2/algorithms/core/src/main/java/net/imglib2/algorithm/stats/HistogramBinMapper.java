@@ -68,7 +68,8 @@ public interface HistogramBinMapper <T>{
 	public int getNumBins();
 
 	/**
-	 * Maps a given Type to its histogram bin.
+	 * Maps a given Type to its histogram bin. If a {@link Histogram} is
+	 * computed by more than one thread, this is called concurrently.
 	 * @param type the Type to map.
 	 * @return the histogram bin index.
 	 */
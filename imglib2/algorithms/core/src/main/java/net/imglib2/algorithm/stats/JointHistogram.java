@@ -0,0 +1,387 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.algorithm.stats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.Algorithm;
+import net.imglib2.algorithm.Benchmark;
+import net.imglib2.algorithm.MultiThreaded;
+import net.imglib2.multithreading.Chunk;
+import net.imglib2.multithreading.TaskExecutor;
+
+/**
+ * Implements a joint histogram of two images of the same size, e.g., two
+ * channels for colocalization analysis. Bin (i, j) counts the pixels whose
+ * value in the first image maps to bin i and whose value in the second image
+ * maps to bin j.
+ * 
+ * By default, the histogram is computed by a single thread. After
+ * {@link #setNumThreads(int)} with more than one thread, the first image is
+ * split into chunks of its iteration order which are counted in parallel
+ * into their own bins. Then the {@link HistogramBinMapper}s are called from
+ * several threads concurrently, so they must be thread-safe.
+ * 
+ * If the second image is an {@link IterableInterval} with the same iteration
+ * order, both are iterated together, otherwise the second image is accessed
+ * at the positions of the first one.
+ *
+ * @param <S> value type of the first image.
+ * @param <T> value type of the second image.
+ */
+public class JointHistogram <S, T> implements Algorithm, MultiThreaded,
+		Benchmark
+{
+	/**
+	 * Processing time, milliseconds.
+	 */
+	private long pTime = 0;
+	
+	/**
+	 * The joint histogram, bin (i, j) is at index i + numBins1 * j.
+	 */
+	private final long[] histogram;
+	
+	private final IterableInterval<S> image1;
+
+	private final RandomAccessibleInterval<T> image2;
+
+	private final HistogramBinMapper<S> binMapper1;
+
+	private final HistogramBinMapper<T> binMapper2;
+
+	private final int numBins1, numBins2;
+
+	private int numThreads;
+
+	private String errorMessage = "";
+
+	/**
+	 * Create a JointHistogram of two images using the given mappers.
+	 * @param mapper1 the HistogramBinMapper used to map values of the first
+	 * image to histogram bin indices.
+	 * @param mapper2 the HistogramBinMapper used to map values of the second
+	 * image to histogram bin indices.
+	 * @param image1 the first image.
+	 * @param image2 the second image.
+	 */
+	public JointHistogram(final HistogramBinMapper<S> mapper1,
+			final HistogramBinMapper<T> mapper2,
+			final IterableInterval<S> image1,
+			final RandomAccessibleInterval<T> image2)
+	{
+		binMapper1 = mapper1;
+		binMapper2 = mapper2;
+		this.image1 = image1;
+		this.image2 = image2;
+		numBins1 = mapper1.getNumBins();
+		numBins2 = mapper2.getNumBins();
+		final long numBins = (long) numBins1 * numBins2;
+		if (numBins > Integer.MAX_VALUE)
+		{
+			throw new RuntimeException("JointHistogram: " + numBins1 + " x " +
+					numBins2 + " bins do not fit into an array.");
+		}
+		histogram = new long[(int) numBins];
+		numThreads = 1;
+	}
+	
+	/**
+	 * Returns the count of bin (i, j).
+	 * @param i bin index for the first image.
+	 * @param j bin index for the second image.
+	 * @return the bin count.
+	 */
+	public long getBin(final int i, final int j)
+	{
+		return histogram[i + numBins1 * j];
+	}
+
+	/**
+	 * Returns the count of the bin corresponding to a pair of values.
+	 * @param s value of the first image.
+	 * @param t value of the second image.
+	 * @return the bin count.
+	 */
+	public long getBin(final S s, final T t)
+	{
+		return getBin(binMapper1.map(s), binMapper2.map(t));
+	}
+
+	/**
+	 * Returns the histogram array. Bin (i, j) is at index
+	 * <code>i + getNumBins1() * j</code>.
+	 * @return the histogram array.
+	 */
+	public long[] getHistogram()
+	{
+		return histogram;
+	}
+
+	/**
+	 * Returns the histogram of the first image, i.e., the sums over all bins
+	 * of the second image. Pixels whose second value is out of range are not
+	 * counted.
+	 * @return the marginal histogram of the first image.
+	 */
+	public long[] getMarginal1()
+	{
+		final long[] marginal = new long[numBins1];
+		for (int j = 0; j < numBins2; ++j)
+		{
+			for (int i = 0; i < numBins1; ++i)
+			{
+				marginal[i] += histogram[i + numBins1 * j];
+			}
+		}
+		return marginal;
+	}
+
+	/**
+	 * Returns the histogram of the second image, i.e., the sums over all bins
+	 * of the first image. Pixels whose first value is out of range are not
+	 * counted.
+	 * @return the marginal histogram of the second image.
+	 */
+	public long[] getMarginal2()
+	{
+		final long[] marginal = new long[numBins2];
+		for (int j = 0; j < numBins2; ++j)
+		{
+			for (int i = 0; i < numBins1; ++i)
+			{
+				marginal[j] += histogram[i + numBins1 * j];
+			}
+		}
+		return marginal;
+	}
+
+	public HistogramBinMapper<S> getBinMapper1()
+	{
+		return binMapper1;
+	}
+
+	public HistogramBinMapper<T> getBinMapper2()
+	{
+		return binMapper2;
+	}
+
+	public int getNumBins1()
+	{
+		return numBins1;
+	}
+
+	public int getNumBins2()
+	{
+		return numBins2;
+	}
+
+	/**
+	 * Resets the histogram array.
+	 */
+	public void reset()
+	{
+		Arrays.fill(histogram, 0);
+	}
+
+	/**
+	 * Count a pair of values.
+	 * @param s value of the first image.
+	 * @param t value of the second image.
+	 */
+	public void add(final S s, final T t)
+	{
+		final int i = binMapper1.map(s);
+		final int j = binMapper2.map(t);
+		if (i >= 0 && i < numBins1 && j >= 0 && j < numBins2)
+		{
+			++histogram[i + numBins1 * j];
+		}
+	}
+
+	/**
+	 * Add the counts of another joint histogram, e.g., of another part of the
+	 * images.
+	 * @param h a joint histogram with the same numbers of bins.
+	 */
+	public void add(final JointHistogram<S, T> h)
+	{
+		if (h.numBins1 != numBins1 || h.numBins2 != numBins2)
+		{
+			throw new RuntimeException("Cannot merge joint histograms with " +
+					numBins1 + "x" + numBins2 + " and " + h.numBins1 + "x" +
+					h.numBins2 + " bins.");
+		}
+		for (int i = 0; i < histogram.length; ++i)
+		{
+			histogram[i] += h.histogram[i];
+		}
+	}
+
+	@Override
+	public boolean checkInput()
+	{
+		for (int d = 0; d < image1.numDimensions(); ++d)
+		{
+			if (image1.min(d) != image2.min(d) ||
+					image1.max(d) != image2.max(d))
+			{
+				errorMessage = "JointHistogram: images have different bounds.";
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String getErrorMessage()
+	{
+		return errorMessage;
+	}
+
+	@Override
+	public boolean process()
+	{
+		final long startTime = System.currentTimeMillis();
+
+		final boolean lockstep = image2 instanceof IterableInterval &&
+			image1.equalIterationOrder((IterableInterval<?>) image2);
+		final List<Chunk> chunks =
+			TaskExecutor.divideIntoChunks(image1.size(), numThreads);
+		final ArrayList<long[]> partials = new ArrayList<long[]>();
+		final ArrayList<Runnable> tasks = new ArrayList<Runnable>();
+		for (final Chunk chunk : chunks)
+		{
+			final long[] p = new long[histogram.length];
+			partials.add(p);
+			tasks.add(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					if (lockstep)
+					{
+						countLockstep(chunk, p);
+					}
+					else
+					{
+						countRandomAccess(chunk, p);
+					}
+				}
+			});
+		}
+		TaskExecutor.getDefault().run(tasks, numThreads);
+
+		Arrays.fill(histogram, 0);
+		for (final long[] p : partials)
+		{
+			for (int i = 0; i < histogram.length; ++i)
+			{
+				histogram[i] += p[i];
+			}
+		}
+
+		pTime = System.currentTimeMillis() - startTime;
+		return true;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void countLockstep(final Chunk chunk, final long[] p)
+	{
+		final Cursor<S> c1 = image1.cursor();
+		final Cursor<T> c2 = ((IterableInterval<T>) image2).cursor();
+		c1.jumpFwd(chunk.getStartPosition());
+		c2.jumpFwd(chunk.getStartPosition());
+		for (long k = 0; k < chunk.getLoopSize(); ++k)
+		{
+			count(c1.next(), c2.next(), p);
+		}
+	}
+
+	private void countRandomAccess(final Chunk chunk, final long[] p)
+	{
+		final Cursor<S> c1 = image1.localizingCursor();
+		final RandomAccess<T> a2 = image2.randomAccess();
+		c1.jumpFwd(chunk.getStartPosition());
+		for (long k = 0; k < chunk.getLoopSize(); ++k)
+		{
+			final S s = c1.next();
+			a2.setPosition(c1);
+			count(s, a2.get(), p);
+		}
+	}
+
+	private void count(final S s, final T t, final long[] p)
+	{
+		final int i = binMapper1.map(s);
+		final int j = binMapper2.map(t);
+		if (i >= 0 && i < numBins1 && j >= 0 && j < numBins2)
+		{
+			++p[i + numBins1 * j];
+		}
+	}
+
+	@Override
+	public long getProcessingTime()
+	{
+		return pTime;
+	}
+
+	@Override
+	public void setNumThreads()
+	{
+		numThreads = Runtime.getRuntime().availableProcessors();
+	}
+
+	@Override
+	public void setNumThreads(final int numThreads)
+	{
+		this.numThreads = numThreads;
+	}
+
+	@Override
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
+}
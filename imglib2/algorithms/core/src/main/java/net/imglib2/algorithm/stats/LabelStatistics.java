@@ -0,0 +1,266 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.algorithm.stats;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.IterableIntervalSplits;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.algorithm.Algorithm;
+import net.imglib2.algorithm.Benchmark;
+import net.imglib2.algorithm.MultiThreaded;
+import net.imglib2.labeling.Labeling;
+import net.imglib2.labeling.LabelingType;
+import net.imglib2.multithreading.TaskExecutor;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Compute {@link RealStatistics} of the pixel values under each label of a
+ * {@link Labeling} in a single parallel pass over the labeling. Pixels with
+ * several labels contribute to the statistics of each of their labels.
+ *
+ * <p>
+ * The labeling is {@link IterableIntervalSplits split} into parts, each part
+ * collects statistics per label, and the partial results are merged.
+ * </p>
+ *
+ * @param <L>
+ *            label type
+ * @param <T>
+ *            pixel type
+ */
+public class LabelStatistics< L extends Comparable< L >, T extends RealType< T > > implements Algorithm, MultiThreaded, Benchmark
+{
+	final Labeling< L > labeling;
+
+	final RandomAccessible< T > image;
+
+	final int compression;
+
+	TreeMap< L, RealStatistics > statistics;
+
+	String errorMessage = "";
+
+	int numThreads;
+
+	long processingTime;
+
+	/**
+	 * @param labeling
+	 *            the labels.
+	 * @param image
+	 *            the pixel values, must be defined on the interval of the
+	 *            labeling.
+	 */
+	public LabelStatistics( final Labeling< L > labeling, final RandomAccessible< T > image )
+	{
+		this( labeling, image, RealStatistics.DEFAULT_COMPRESSION );
+	}
+
+	/**
+	 * @param labeling
+	 *            the labels.
+	 * @param image
+	 *            the pixel values, must be defined on the interval of the
+	 *            labeling.
+	 * @param compression
+	 *            compression of the quantile sketches, see
+	 *            {@link RealStatistics#RealStatistics(int)}. Use 0 to save
+	 *            memory if there are many labels and no quantiles are needed.
+	 */
+	public LabelStatistics( final Labeling< L > labeling, final RandomAccessible< T > image, final int compression )
+	{
+		setNumThreads();
+		this.labeling = labeling;
+		this.image = image;
+		this.compression = compression;
+	}
+
+	/**
+	 * @return the statistics of each label computed by {@link #process()},
+	 *         sorted by label.
+	 */
+	public Map< L, RealStatistics > getStatistics()
+	{
+		return statistics;
+	}
+
+	/**
+	 * @return the statistics of one label computed by {@link #process()}, or
+	 *         null if the label does not occur.
+	 */
+	public RealStatistics getStatistics( final L label )
+	{
+		return statistics.get( label );
+	}
+
+	@Override
+	public boolean process()
+	{
+		final long startTime = System.currentTimeMillis();
+
+		final List< IterableInterval< LabelingType< L > > > parts = IterableIntervalSplits.split( labeling, numThreads );
+		final ArrayList< HashMap< L, RealStatistics > > partials = new ArrayList< HashMap< L, RealStatistics > >();
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >();
+		for ( final IterableInterval< LabelingType< L > > part : parts )
+		{
+			final HashMap< L, RealStatistics > map = new HashMap< L, RealStatistics >();
+			partials.add( map );
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					accumulate( part, map );
+				}
+			} );
+		}
+		TaskExecutor.getDefault().run( tasks, numThreads );
+
+		statistics = new TreeMap< L, RealStatistics >();
+		for ( final HashMap< L, RealStatistics > map : partials )
+		{
+			for ( final Map.Entry< L, RealStatistics > entry : map.entrySet() )
+			{
+				final RealStatistics s = statistics.get( entry.getKey() );
+				if ( s == null )
+					statistics.put( entry.getKey(), entry.getValue() );
+				else
+					s.add( entry.getValue() );
+			}
+		}
+
+		processingTime = System.currentTimeMillis() - startTime;
+
+		return true;
+	}
+
+	protected void accumulate( final IterableInterval< LabelingType< L > > part, final Map< L, RealStatistics > map )
+	{
+		final Cursor< LabelingType< L > > c = part.localizingCursor();
+		final RandomAccess< T > a = image.randomAccess( part );
+
+		// the labelings of neighbouring pixels are mostly the same list
+		// instance, so remember the accumulators of the last labeling
+		List< L > lastLabeling = null;
+		RealStatistics[] lastStatistics = new RealStatistics[ 0 ];
+		while ( c.hasNext() )
+		{
+			final List< L > labels = c.next().getLabeling();
+			if ( labels.isEmpty() )
+				continue;
+			if ( labels != lastLabeling )
+			{
+				lastLabeling = labels;
+				lastStatistics = new RealStatistics[ labels.size() ];
+				for ( int i = 0; i < lastStatistics.length; ++i )
+				{
+					final L label = labels.get( i );
+					RealStatistics s = map.get( label );
+					if ( s == null )
+					{
+						s = new RealStatistics( compression );
+						map.put( label, s );
+					}
+					lastStatistics[ i ] = s;
+				}
+			}
+			a.setPosition( c );
+			final double value = a.get().getRealDouble();
+			for ( final RealStatistics s : lastStatistics )
+				s.add( value );
+		}
+	}
+
+	@Override
+	public boolean checkInput()
+	{
+		if ( errorMessage.length() > 0 )
+		{
+			return false;
+		}
+		else if ( labeling == null )
+		{
+			errorMessage = "LabelStatistics: [Labeling<L> labeling] is null.";
+			return false;
+		}
+		else if ( image == null )
+		{
+			errorMessage = "LabelStatistics: [RandomAccessible<T> image] is null.";
+			return false;
+		}
+		else
+			return true;
+	}
+
+	@Override
+	public long getProcessingTime()
+	{
+		return processingTime;
+	}
+
+	@Override
+	public void setNumThreads()
+	{
+		this.numThreads = Runtime.getRuntime().availableProcessors();
+	}
+
+	@Override
+	public void setNumThreads( final int numThreads )
+	{
+		this.numThreads = numThreads;
+	}
+
+	@Override
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
+
+	@Override
+	public String getErrorMessage()
+	{
+		return errorMessage;
+	}
+}
@@ -0,0 +1,543 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.algorithm.stats;
+
+import java.util.Arrays;
+
+/**
+ * One-pass accumulator for descriptive statistics of a stream of real values:
+ * count, min, max, sum, mean, variance, skewness, kurtosis and approximate
+ * quantiles.
+ *
+ * <p>
+ * Central moments are updated incrementally, such that all statistics are
+ * available after a single pass over the data. Accumulators can be
+ * {@link #add(RealStatistics) merged}, e.g., to combine partial results
+ * computed by several threads, or statistics of several images or regions.
+ * </p>
+ *
+ * <p>
+ * Quantiles are estimated from a compact sketch of weighted centroids whose
+ * size is bounded by the <em>compression</em> parameter. Centroids near the
+ * tails are kept small, such that extreme quantiles are more accurate than
+ * the median. As long as fewer values than the compression were added, the
+ * quantiles are exact. A compression of 0 disables the sketch.
+ * </p>
+ *
+ * <p>
+ * {@link RealStatistics} is not thread-safe. Use one instance per thread and
+ * merge them.
+ * </p>
+ */
+public class RealStatistics
+{
+	/**
+	 * Default compression of the quantile sketch.
+	 */
+	public static final int DEFAULT_COMPRESSION = 100;
+
+	protected long count;
+
+	protected double min;
+
+	protected double max;
+
+	protected double sum;
+
+	/**
+	 * compensation for lost low-order bits of {@link #sum} (Kahan summation).
+	 */
+	protected double sumCompensation;
+
+	protected double mean;
+
+	/**
+	 * sums of 2nd, 3rd, and 4th powers of differences from the mean.
+	 */
+	protected double m2, m3, m4;
+
+	protected final int compression;
+
+	/**
+	 * means and weights of the centroids of the quantile sketch, sorted by
+	 * mean.
+	 */
+	protected double[] centroidMeans;
+
+	protected double[] centroidWeights;
+
+	protected int numCentroids;
+
+	/**
+	 * values added since the centroids were last updated.
+	 */
+	protected double[] buffer;
+
+	protected int bufferSize;
+
+	/**
+	 * Create an empty accumulator with a quantile sketch of
+	 * {@link #DEFAULT_COMPRESSION default compression}.
+	 */
+	public RealStatistics()
+	{
+		this( DEFAULT_COMPRESSION );
+	}
+
+	/**
+	 * Create an empty accumulator.
+	 *
+	 * @param compression
+	 *            bound for the size of the quantile sketch. Larger values give
+	 *            more accurate quantiles. 0 disables quantiles.
+	 */
+	public RealStatistics( final int compression )
+	{
+		this.compression = Math.max( 0, compression );
+		centroidMeans = new double[ 0 ];
+		centroidWeights = new double[ 0 ];
+		buffer = new double[ 0 ];
+		reset();
+	}
+
+	/**
+	 * Create a copy of another accumulator.
+	 */
+	public RealStatistics( final RealStatistics s )
+	{
+		compression = s.compression;
+		count = s.count;
+		min = s.min;
+		max = s.max;
+		sum = s.sum;
+		sumCompensation = s.sumCompensation;
+		mean = s.mean;
+		m2 = s.m2;
+		m3 = s.m3;
+		m4 = s.m4;
+		centroidMeans = s.centroidMeans.clone();
+		centroidWeights = s.centroidWeights.clone();
+		numCentroids = s.numCentroids;
+		buffer = s.buffer.clone();
+		bufferSize = s.bufferSize;
+	}
+
+	public RealStatistics copy()
+	{
+		return new RealStatistics( this );
+	}
+
+	/**
+	 * Remove all values.
+	 */
+	public void reset()
+	{
+		count = 0;
+		min = Double.POSITIVE_INFINITY;
+		max = Double.NEGATIVE_INFINITY;
+		sum = 0;
+		sumCompensation = 0;
+		mean = 0;
+		m2 = 0;
+		m3 = 0;
+		m4 = 0;
+		numCentroids = 0;
+		bufferSize = 0;
+	}
+
+	/**
+	 * Add a value.
+	 */
+	public void add( final double value )
+	{
+		final long n1 = count;
+		final double n = ++count;
+		final double delta = value - mean;
+		final double deltaN = delta / n;
+		final double deltaN2 = deltaN * deltaN;
+		final double term1 = delta * deltaN * n1;
+		mean += deltaN;
+		m4 += term1 * deltaN2 * ( n * n - 3 * n + 3 ) + 6 * deltaN2 * m2 - 4 * deltaN * m3;
+		m3 += term1 * deltaN * ( n - 2 ) - 3 * deltaN * m2;
+		m2 += term1;
+
+		if ( value < min )
+			min = value;
+		if ( value > max )
+			max = value;
+
+		final double y = value - sumCompensation;
+		final double t = sum + y;
+		sumCompensation = ( t - sum ) - y;
+		sum = t;
+
+		if ( compression > 0 )
+		{
+			if ( bufferSize == buffer.length )
+			{
+				if ( bufferSize >= 5 * compression )
+					compress( null, null, 0 );
+				else
+					buffer = grow( buffer, Math.min( 5 * compression, Math.max( 16, 2 * bufferSize ) ) );
+			}
+			buffer[ bufferSize++ ] = value;
+		}
+	}
+
+	/**
+	 * Add all values of another accumulator. The compression of this
+	 * accumulator is retained.
+	 */
+	public void add( final RealStatistics s )
+	{
+		if ( s.count == 0 )
+			return;
+		if ( count == 0 )
+		{
+			count = s.count;
+			min = s.min;
+			max = s.max;
+			sum = s.sum;
+			sumCompensation = s.sumCompensation;
+			mean = s.mean;
+			m2 = s.m2;
+			m3 = s.m3;
+			m4 = s.m4;
+		}
+		else
+		{
+			final double na = count;
+			final double nb = s.count;
+			final double n = na + nb;
+			final double delta = s.mean - mean;
+			final double delta2 = delta * delta;
+			final double delta3 = delta2 * delta;
+			final double delta4 = delta2 * delta2;
+
+			final double m4n = m4 + s.m4
+					+ delta4 * na * nb * ( na * na - na * nb + nb * nb ) / ( n * n * n )
+					+ 6 * delta2 * ( na * na * s.m2 + nb * nb * m2 ) / ( n * n )
+					+ 4 * delta * ( na * s.m3 - nb * m3 ) / n;
+			final double m3n = m3 + s.m3
+					+ delta3 * na * nb * ( na - nb ) / ( n * n )
+					+ 3 * delta * ( na * s.m2 - nb * m2 ) / n;
+			final double m2n = m2 + s.m2 + delta2 * na * nb / n;
+
+			count += s.count;
+			mean += delta * nb / n;
+			m2 = m2n;
+			m3 = m3n;
+			m4 = m4n;
+			min = Math.min( min, s.min );
+			max = Math.max( max, s.max );
+
+			final double y = s.sum - ( sumCompensation + s.sumCompensation );
+			final double t = sum + y;
+			sumCompensation = ( t - sum ) - y;
+			sum = t;
+		}
+
+		if ( compression > 0 )
+		{
+			// collect centroids and pending values of s as weighted centroids
+			final int m = s.numCentroids + s.bufferSize;
+			final double[] means = new double[ m ];
+			final double[] weights = new double[ m ];
+			final double[] values = new double[ s.bufferSize ];
+			System.arraycopy( s.buffer, 0, values, 0, s.bufferSize );
+			Arrays.sort( values );
+			final double[] ones = new double[ s.bufferSize ];
+			Arrays.fill( ones, 1 );
+			final int k = mergeSorted( s.centroidMeans, s.centroidWeights, s.numCentroids, values, ones, s.bufferSize, means, weights );
+			compress( means, weights, k );
+		}
+	}
+
+	/**
+	 * @return number of values.
+	 */
+	public long getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * @return smallest value, or {@link Double#NaN} if empty.
+	 */
+	public double getMin()
+	{
+		return count == 0 ? Double.NaN : min;
+	}
+
+	/**
+	 * @return largest value, or {@link Double#NaN} if empty.
+	 */
+	public double getMax()
+	{
+		return count == 0 ? Double.NaN : max;
+	}
+
+	/**
+	 * @return sum of values.
+	 */
+	public double getSum()
+	{
+		return sum;
+	}
+
+	/**
+	 * @return mean, or {@link Double#NaN} if empty.
+	 */
+	public double getMean()
+	{
+		return count == 0 ? Double.NaN : mean;
+	}
+
+	/**
+	 * @return the (unbiased) sample variance, or {@link Double#NaN} if there
+	 *         are less than 2 values.
+	 */
+	public double getVariance()
+	{
+		return count < 2 ? Double.NaN : m2 / ( count - 1 );
+	}
+
+	/**
+	 * @return the population variance, or {@link Double#NaN} if empty.
+	 */
+	public double getPopulationVariance()
+	{
+		return count == 0 ? Double.NaN : m2 / count;
+	}
+
+	/**
+	 * @return square root of the {@link #getVariance() sample variance}.
+	 */
+	public double getStdDev()
+	{
+		return Math.sqrt( getVariance() );
+	}
+
+	/**
+	 * @return the skewness <em>g<sub>1</sub> = m<sub>3</sub> /
+	 *         m<sub>2</sub><sup>3/2</sup></em>, or {@link Double#NaN} if empty
+	 *         or all values are equal.
+	 */
+	public double getSkewness()
+	{
+		return ( count == 0 || m2 == 0 ) ? Double.NaN : Math.sqrt( count ) * m3 / Math.pow( m2, 1.5 );
+	}
+
+	/**
+	 * @return the excess kurtosis <em>g<sub>2</sub> = m<sub>4</sub> /
+	 *         m<sub>2</sub><sup>2</sup> - 3</em>, or {@link Double#NaN} if
+	 *         empty or all values are equal.
+	 */
+	public double getKurtosis()
+	{
+		return ( count == 0 || m2 == 0 ) ? Double.NaN : count * m4 / ( m2 * m2 ) - 3;
+	}
+
+	/**
+	 * @return estimated median.
+	 */
+	public double getMedian()
+	{
+		return getQuantile( 0.5 );
+	}
+
+	/**
+	 * Estimate the value below which a fraction <em>q</em> of the values
+	 * lies. The <em>i</em>th smallest of <em>n</em> values is taken to be
+	 * the <em>(i+1/2)/n</em>-quantile, and quantiles in between are
+	 * interpolated linearly.
+	 *
+	 * @param q
+	 *            quantile in [0,1].
+	 * @return estimated quantile, or {@link Double#NaN} if empty or the
+	 *         quantile sketch is disabled.
+	 */
+	public double getQuantile( final double q )
+	{
+		if ( count == 0 || compression == 0 )
+			return Double.NaN;
+		if ( bufferSize > 0 )
+			compress( null, null, 0 );
+		if ( q <= 0 )
+			return min;
+		if ( q >= 1 )
+			return max;
+
+		final double target = q * count;
+		double cumulative = 0;
+		double previousCenter = 0;
+		double previousMean = min;
+		for ( int i = 0; i < numCentroids; ++i )
+		{
+			final double center = cumulative + centroidWeights[ i ] / 2;
+			if ( target < center )
+				return interpolate( previousCenter, previousMean, center, centroidMeans[ i ], target );
+			cumulative += centroidWeights[ i ];
+			previousCenter = center;
+			previousMean = centroidMeans[ i ];
+		}
+		return interpolate( previousCenter, previousMean, count, max, target );
+	}
+
+	@Override
+	public String toString()
+	{
+		return "count = " + getCount() + ", min = " + getMin() + ", max = " + getMax() + ", mean = " + getMean() + ", stddev = " + getStdDev();
+	}
+
+	private static double interpolate( final double x0, final double y0, final double x1, final double y1, final double x )
+	{
+		return x1 <= x0 ? y1 : y0 + ( y1 - y0 ) * ( x - x0 ) / ( x1 - x0 );
+	}
+
+	private static double[] grow( final double[] array, final int length )
+	{
+		final double[] a = new double[ length ];
+		System.arraycopy( array, 0, a, 0, array.length );
+		return a;
+	}
+
+	/**
+	 * Merge two sequences of centroids sorted by mean into (means, weights).
+	 *
+	 * @return number of centroids in output.
+	 */
+	private static int mergeSorted( final double[] means1, final double[] weights1, final int n1, final double[] means2, final double[] weights2, final int n2, final double[] means, final double[] weights )
+	{
+		int i = 0;
+		int j = 0;
+		int k = 0;
+		while ( i < n1 && j < n2 )
+		{
+			if ( means1[ i ] <= means2[ j ] )
+			{
+				means[ k ] = means1[ i ];
+				weights[ k++ ] = weights1[ i++ ];
+			}
+			else
+			{
+				means[ k ] = means2[ j ];
+				weights[ k++ ] = weights2[ j++ ];
+			}
+		}
+		while ( i < n1 )
+		{
+			means[ k ] = means1[ i ];
+			weights[ k++ ] = weights1[ i++ ];
+		}
+		while ( j < n2 )
+		{
+			means[ k ] = means2[ j ];
+			weights[ k++ ] = weights2[ j++ ];
+		}
+		return k;
+	}
+
+	/**
+	 * Merge the centroids, the pending values, and additional sorted
+	 * centroids into a new set of centroids.
+	 */
+	private void compress( final double[] moreMeans, final double[] moreWeights, final int numMore )
+	{
+		// sorted pending values as centroids of weight 1
+		final double[] values = new double[ bufferSize ];
+		System.arraycopy( buffer, 0, values, 0, bufferSize );
+		Arrays.sort( values );
+		final double[] ones = new double[ bufferSize ];
+		Arrays.fill( ones, 1 );
+		bufferSize = 0;
+
+		final int n = numCentroids + values.length + numMore;
+		final double[] means = new double[ n ];
+		final double[] weights = new double[ n ];
+		int m = mergeSorted( centroidMeans, centroidWeights, numCentroids, values, ones, values.length, means, weights );
+		if ( numMore > 0 )
+		{
+			final double[] means2 = new double[ n ];
+			final double[] weights2 = new double[ n ];
+			m = mergeSorted( means, weights, m, moreMeans, moreWeights, numMore, means2, weights2 );
+			System.arraycopy( means2, 0, means, 0, m );
+			System.arraycopy( weights2, 0, weights, 0, m );
+		}
+
+		if ( m == 0 )
+			return;
+
+		double total = 0;
+		for ( int i = 0; i < m; ++i )
+			total += weights[ i ];
+
+		// greedily merge neighbouring centroids as long as the merged
+		// centroid is small enough for its position in the distribution
+		int k = 0;
+		double cumulative = 0;
+		double currentMean = means[ 0 ];
+		double currentWeight = weights[ 0 ];
+		for ( int i = 1; i < m; ++i )
+		{
+			final double w = currentWeight + weights[ i ];
+			final double q = ( cumulative + w / 2 ) / total;
+			final double limit = Math.max( 1, 4 * total * q * ( 1 - q ) / compression );
+			if ( w <= limit )
+			{
+				currentMean += ( means[ i ] - currentMean ) * weights[ i ] / w;
+				currentWeight = w;
+			}
+			else
+			{
+				means[ k ] = currentMean;
+				weights[ k ] = currentWeight;
+				++k;
+				cumulative += currentWeight;
+				currentMean = means[ i ];
+				currentWeight = weights[ i ];
+			}
+		}
+		means[ k ] = currentMean;
+		weights[ k ] = currentWeight;
+		++k;
+
+		centroidMeans = means;
+		centroidWeights = weights;
+		numCentroids = k;
+	}
+}
@@ -0,0 +1,282 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.algorithm.componenttree;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.Localizable;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.componenttree.mser.Mser;
+import net.imglib2.algorithm.componenttree.mser.MserTree;
+import net.imglib2.algorithm.componenttree.pixellist.PixelListComponent;
+import net.imglib2.algorithm.componenttree.pixellist.PixelListComponentTree;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Compare {@link UnionFindComponentTree} to {@link ComponentTree}.
+ */
+public class UnionFindComponentTreeTest
+{
+	private static < T extends RealType< T > & NativeType< T > > ArrayImg< T, ? > createImage( final T type, final long[] dimensions, final int numValues, final long seed )
+	{
+		final ArrayImg< T, ? > img = new ArrayImgFactory< T >().create( dimensions, type );
+		final Random random = new Random( seed );
+		for ( final T t : img )
+			t.setReal( random.nextInt( numValues ) );
+		return img;
+	}
+
+	/**
+	 * Describe a component by its value and sorted pixel indices.
+	 */
+	private static String describe( final double value, final Iterable< Localizable > pixels, final long[] dimensions )
+	{
+		final ArrayList< Long > indices = new ArrayList< Long >();
+		final long[] position = new long[ dimensions.length ];
+		for ( final Localizable l : pixels )
+		{
+			l.localize( position );
+			indices.add( IntervalIndexer.positionToIndex( position, dimensions ) );
+		}
+		Collections.sort( indices );
+		return value + " " + indices;
+	}
+
+	/**
+	 * Describe every node of the tree together with its children.
+	 */
+	private static < T extends RealType< T > > ArrayList< String > describe( final PixelListComponentTree< T > tree, final long[] dimensions )
+	{
+		final ArrayList< String > nodes = new ArrayList< String >();
+		for ( final PixelListComponent< T > c : tree )
+		{
+			final ArrayList< String > children = new ArrayList< String >();
+			for ( final PixelListComponent< T > child : c.getChildren() )
+				children.add( describe( child.value().getRealDouble(), child, dimensions ) );
+			Collections.sort( children );
+			nodes.add( describe( c.value().getRealDouble(), c, dimensions ) + " -> " + children );
+		}
+		Collections.sort( nodes );
+		return nodes;
+	}
+
+	private static < T extends RealType< T > > ArrayList< String > describe( final MserTree< T > tree, final long[] dimensions )
+	{
+		final ArrayList< String > nodes = new ArrayList< String >();
+		for ( final Mser< T > m : tree )
+			nodes.add( describe( m.value().getRealDouble(), m, dimensions ) + " " + m.score() + " " + Arrays.toString( m.mean() ) );
+		Collections.sort( nodes );
+		return nodes;
+	}
+
+	private static < T extends RealType< T > & NativeType< T > > void testPixelListComponentTree( final ArrayImg< T, ? > img )
+	{
+		final long[] dimensions = new long[ img.numDimensions() ];
+		img.dimensions( dimensions );
+		final T type = img.firstElement().createVariable();
+		for ( final boolean darkToBright : new boolean[] { true, false } )
+		{
+			final PixelListComponentTree< T > expected = PixelListComponentTree.buildComponentTree( img, type, darkToBright );
+			final PixelListComponentTree< T > actual = PixelListComponentTree.buildUnionFindComponentTree( img, type, darkToBright );
+			assertEquals( describe( expected, dimensions ), describe( actual, dimensions ) );
+			assertEquals( describe( expected.root().value().getRealDouble(), expected.root(), dimensions ), describe( actual.root().value().getRealDouble(), actual.root(), dimensions ) );
+		}
+	}
+
+	@Test
+	public void testUnsignedByte2D()
+	{
+		testPixelListComponentTree( createImage( new UnsignedByteType(), new long[] { 31, 27 }, 8, 1 ) );
+	}
+
+	@Test
+	public void testUnsignedShort3D()
+	{
+		testPixelListComponentTree( createImage( new UnsignedShortType(), new long[] { 13, 11, 9 }, 1000, 2 ) );
+	}
+
+	@Test
+	public void testFloat2D()
+	{
+		testPixelListComponentTree( createImage( new FloatType(), new long[] { 20, 23 }, 50, 3 ) );
+	}
+
+	@Test
+	public void testConstant()
+	{
+		testPixelListComponentTree( createImage( new UnsignedByteType(), new long[] { 7, 5 }, 1, 4 ) );
+	}
+
+	@Test
+	public void testMser()
+	{
+		final ArrayImg< UnsignedByteType, ? > img = new ArrayImgFactory< UnsignedByteType >().create( new long[] { 64, 48 }, new UnsignedByteType() );
+		final Random random = new Random( 5 );
+		for ( int i = 0; i < 6; ++i )
+		{
+			final long cx = random.nextInt( 64 );
+			final long cy = random.nextInt( 48 );
+			final double r = 4 + random.nextInt( 8 );
+			final int v = 30 * i + 20;
+			final long[] position = new long[ 2 ];
+			for ( final Cursor< UnsignedByteType > c = img.localizingCursor(); c.hasNext(); )
+			{
+				final UnsignedByteType t = c.next();
+				c.localize( position );
+				final double dx = position[ 0 ] - cx;
+				final double dy = position[ 1 ] - cy;
+				if ( dx * dx + dy * dy < r * r && t.get() < v )
+					t.set( v + random.nextInt( 3 ) );
+			}
+		}
+		final long[] dimensions = new long[] { 64, 48 };
+		for ( final boolean darkToBright : new boolean[] { true, false } )
+		{
+			final MserTree< UnsignedByteType > expected = MserTree.buildMserTree( img, 5, 10, 3000, 0.5, 0, darkToBright );
+			final MserTree< UnsignedByteType > actual = MserTree.buildUnionFindMserTree( img, 5, 10, 3000, 0.5, 0, darkToBright );
+			assertEquals( describe( expected, dimensions ), describe( actual, dimensions ) );
+		}
+	}
+
+	/**
+	 * A component that records pixel indices relative to a given min.
+	 */
+	private static class IndexListComponent implements Component< UnsignedByteType >
+	{
+		final UnsignedByteType value;
+
+		final long[] min;
+
+		final long[] dimensions;
+
+		final ArrayList< Long > indices = new ArrayList< Long >();
+
+		IndexListComponent( final UnsignedByteType value, final long[] min, final long[] dimensions )
+		{
+			this.value = value.copy();
+			this.min = min;
+			this.dimensions = dimensions;
+		}
+
+		@Override
+		public void setValue( final UnsignedByteType value )
+		{
+			this.value.set( value );
+		}
+
+		@Override
+		public UnsignedByteType getValue()
+		{
+			return value;
+		}
+
+		@Override
+		public void addPosition( final Localizable position )
+		{
+			final long[] p = new long[ min.length ];
+			for ( int d = 0; d < p.length; ++d )
+				p[ d ] = position.getLongPosition( d ) - min[ d ];
+			indices.add( IntervalIndexer.positionToIndex( p, dimensions ) );
+		}
+
+		@Override
+		public void merge( final Component< UnsignedByteType > component )
+		{
+			indices.addAll( ( ( IndexListComponent ) component ).indices );
+		}
+	}
+
+	private static ArrayList< String > emitted( final RandomAccessibleInterval< UnsignedByteType > input )
+	{
+		final long[] min = new long[ input.numDimensions() ];
+		final long[] dimensions = new long[ input.numDimensions() ];
+		input.min( min );
+		input.dimensions( dimensions );
+		final ArrayList< String > emitted = new ArrayList< String >();
+		final Component.Generator< UnsignedByteType, IndexListComponent > generator = new Component.Generator< UnsignedByteType, IndexListComponent >()
+		{
+			@Override
+			public IndexListComponent createComponent( final UnsignedByteType value )
+			{
+				return new IndexListComponent( value, min, dimensions );
+			}
+
+			@Override
+			public IndexListComponent createMaxComponent()
+			{
+				return new IndexListComponent( new UnsignedByteType( 255 ), min, dimensions );
+			}
+		};
+		final Component.Handler< IndexListComponent > handler = new Component.Handler< IndexListComponent >()
+		{
+			@Override
+			public void emit( final IndexListComponent component )
+			{
+				final ArrayList< Long > indices = new ArrayList< Long >( component.indices );
+				Collections.sort( indices );
+				emitted.add( component.value.get() + " " + indices );
+			}
+		};
+		UnionFindComponentTree.buildComponentTree( input, generator, handler, true );
+		return emitted;
+	}
+
+	@Test
+	public void testNonZeroMin()
+	{
+		final ArrayImg< UnsignedByteType, ? > img = createImage( new UnsignedByteType(), new long[] { 17, 13 }, 6, 6 );
+		final ArrayList< String > expected = emitted( img );
+		final ArrayList< String > actual = emitted( Views.translate( img, new long[] { -5, 8 } ) );
+		assertEquals( expected, actual );
+	}
+}
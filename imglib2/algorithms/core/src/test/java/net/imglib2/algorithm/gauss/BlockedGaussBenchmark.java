@@ -0,0 +1,112 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.algorithm.gauss;
+
+import java.util.Random;
+
+import net.imglib2.Point;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.BenchmarkHelper;
+import net.imglib2.view.Views;
+
+/**
+ * Compare {@link BlockedGaussFloat} to {@link GaussFloat} on a float stack.
+ */
+public class BlockedGaussBenchmark
+{
+	final long[] dimensions = new long[] { 256, 256, 128 };
+
+	final double[] sigma = new double[] { 2, 2, 2 };
+
+	Img< FloatType > input;
+
+	Img< FloatType > output;
+
+	BlockedGaussFloat blockedGauss;
+
+	public void setUp()
+	{
+		input = new ArrayImgFactory< FloatType >().create( dimensions, new FloatType() );
+		output = new ArrayImgFactory< FloatType >().create( dimensions, new FloatType() );
+		blockedGauss = new BlockedGaussFloat( sigma );
+		blockedGauss.setNumThreads( 1 );
+		final Random random = new Random( 0 );
+		for ( final FloatType t : input )
+			t.set( random.nextFloat() );
+	}
+
+	void benchmark( final boolean blocked )
+	{
+		System.out.println( blocked ? "BlockedGaussFloat" : "GaussFloat" );
+		BenchmarkHelper.benchmarkAndPrint( 10, false, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				if ( blocked )
+				{
+					blockedGauss.process( Views.extendMirrorSingle( input ), input, output, new Point( input.numDimensions() ) );
+				}
+				else
+				{
+					final GaussFloat gauss = new GaussFloat( sigma, input );
+					gauss.setNumThreads( 1 );
+					gauss.call();
+				}
+			}
+		} );
+	}
+
+	/**
+	 * Both variants run on a single thread. Each variant should be run in a
+	 * separate JVM.
+	 *
+	 * @param args
+	 *            "blocked" or "gauss". Without arguments, both are run.
+	 */
+	public static void main( final String[] args )
+	{
+		final BlockedGaussBenchmark b = new BlockedGaussBenchmark();
+		b.setUp();
+		if ( args.length == 0 || args[ 0 ].equals( "gauss" ) )
+			b.benchmark( false );
+		if ( args.length == 0 || args[ 0 ].equals( "blocked" ) )
+			b.benchmark( true );
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+package net.imglib2.algorithm.gauss;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory.Boundary;
+import net.imglib2.type.numeric.real.DoubleType;
+
+import org.junit.Test;
+
+/**
+ * Compare {@link RecursiveGauss} to {@link GaussDouble}.
+ */
+public class RecursiveGaussTest
+{
+	final long[] dimensions = new long[] { 40, 30, 20 };
+
+	final double[] sigma = new double[] { 3, 4, 2.5 };
+
+	static Img< DoubleType > createRandom( final long... dim )
+	{
+		int size = 1;
+		for ( final long d : dim )
+			size *= d;
+		final double[] data = new double[ size ];
+		final Random random = new Random( 1 );
+		for ( int i = 0; i < size; ++i )
+			data[ i ] = random.nextDouble() * 100;
+		return ArrayImgs.doubles( data, dim );
+	}
+
+	static double maxDifference( final Img< DoubleType > a, final Img< DoubleType > b )
+	{
+		final Cursor< DoubleType > ca = a.cursor();
+		final Cursor< DoubleType > cb = b.cursor();
+		double max = 0;
+		while ( ca.hasNext() )
+			max = Math.max( max, Math.abs( ca.next().get() - cb.next().get() ) );
+		return max;
+	}
+
+	@Test
+	public void testRelativeError()
+	{
+		for ( final double s : new double[] { 3, 5, 10, 20, 50 } )
+			assertTrue( RecursiveGauss.relativeError( s ) < 0.05 );
+		assertEquals( 0, RecursiveGauss.relativeError( 0 ), 0 );
+	}
+
+	@Test
+	public void testConstant()
+	{
+		final double[] data = new double[ 40 * 30 ];
+		Arrays.fill( data, 7 );
+		final Img< DoubleType > result = RecursiveGauss.gauss( new double[] { 20, 30 }, ArrayImgs.doubles( data, 40, 30 ) );
+		for ( final DoubleType t : result )
+			assertEquals( 7, t.get(), 1e-9 );
+	}
+
+	@Test
+	public void testCompareToFIR()
+	{
+		final Img< DoubleType > input = createRandom( dimensions );
+		final Img< DoubleType > expected = GaussDouble.gauss( sigma, input );
+		final RecursiveGauss< DoubleType > gauss = new RecursiveGauss< DoubleType >( sigma, input );
+		gauss.setNumThreads( 3 );
+		gauss.setBlockSize( 7 );
+		gauss.call();
+		assertTrue( maxDifference( expected, ( Img< DoubleType > ) gauss.getResult() ) < 1 );
+	}
+
+	@Test
+	public void testInPlace()
+	{
+		final Img< DoubleType > input = createRandom( dimensions );
+		final Img< DoubleType > expected = RecursiveGauss.gauss( sigma, input );
+		RecursiveGauss.gauss( sigma, input, input, new OutOfBoundsMirrorFactory< DoubleType, RandomAccessibleInterval< DoubleType > >( Boundary.SINGLE ) );
+		assertEquals( 0, maxDifference( expected, input ), 0 );
+	}
+}
@@ -0,0 +1,203 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.algorithm.integral;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.converter.Converter;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.real.DoubleType;
+
+import org.junit.Test;
+
+/**
+ * Compare {@link IntegralImg} and {@link BoxSums} to sums computed by
+ * iterating over boxes.
+ */
+public class IntegralImgTest
+{
+	private static final long[] dimensions = new long[] { 23, 17, 9 };
+
+	private static final Converter< IntType, LongType > converter = new Converter< IntType, LongType >()
+	{
+		@Override
+		public void convert( final IntType input, final LongType output )
+		{
+			output.set( input.get() );
+		}
+	};
+
+	private static Img< IntType > createImage( final long seed )
+	{
+		final Img< IntType > img = new ArrayImgFactory< IntType >().create( dimensions, new IntType() );
+		final Random random = new Random( seed );
+		for ( final IntType t : img )
+			t.set( random.nextInt( 1000 ) - 300 );
+		return img;
+	}
+
+	private static long sum( final Img< IntType > img, final long[] min, final long[] max, final boolean squares )
+	{
+		long sum = 0;
+		final Cursor< IntType > c = img.localizingCursor();
+		A: while ( c.hasNext() )
+		{
+			final long v = c.next().get();
+			for ( int d = 0; d < min.length; ++d )
+				if ( c.getLongPosition( d ) < min[ d ] || c.getLongPosition( d ) > max[ d ] )
+					continue A;
+			sum += squares ? v * v : v;
+		}
+		return sum;
+	}
+
+	private static void assertIntegral( final Img< IntType > img, final Img< LongType > integral )
+	{
+		final long[] min = new long[ dimensions.length ];
+		final long[] max = new long[ dimensions.length ];
+		final Cursor< LongType > c = integral.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			for ( int d = 0; d < min.length; ++d )
+				max[ d ] = c.getLongPosition( d ) - 1;
+			assertEquals( sum( img, min, max, false ), c.get().get() );
+		}
+	}
+
+	@Test
+	public void testSingleThreadedByDefault()
+	{
+		final IntegralImgLong< IntType > integral = new IntegralImgLong< IntType >( createImage( 1 ), new LongType(), converter );
+		assertEquals( 1, integral.getNumThreads() );
+	}
+
+	@Test
+	public void testParallel()
+	{
+		final Img< IntType > img = createImage( 1 );
+		for ( final int numThreads : new int[] { 1, 5 } )
+		{
+			final IntegralImgLong< IntType > integral = new IntegralImgLong< IntType >( img, new LongType(), converter );
+			integral.setNumThreads( numThreads );
+			assertTrue( integral.process() );
+			assertIntegral( img, integral.getResult() );
+		}
+
+		// generic implementation
+		final IntegralImg< IntType, LongType > integral = new IntegralImg< IntType, LongType >( img, new LongType(), converter );
+		integral.setNumThreads( 3 );
+		assertTrue( integral.process() );
+		assertIntegral( img, integral.getResult() );
+	}
+
+	@Test
+	public void testUpdate()
+	{
+		final Img< IntType > img = createImage( 2 );
+		final IntegralImgLong< IntType > integral = new IntegralImgLong< IntType >( img, new LongType(), converter );
+		integral.setNumThreads( 4 );
+		assertTrue( integral.process() );
+
+		final Random random = new Random( 3 );
+		final RandomAccess< IntType > a = img.randomAccess();
+		for ( final long[][] box : new long[][][] {
+				{ { 5, 3, 2 }, { 9, 8, 4 } },
+				{ { 0, 0, 0 }, { 2, 1, 0 } },
+				{ { 22, 16, 8 }, { 22, 16, 8 } },
+				{ { 12, 0, 7 }, { 22, 16, 8 } } } )
+		{
+			final FinalInterval changed = new FinalInterval( box[ 0 ], box[ 1 ] );
+			final long[] pos = new long[ 3 ];
+			for ( pos[ 2 ] = box[ 0 ][ 2 ]; pos[ 2 ] <= box[ 1 ][ 2 ]; ++pos[ 2 ] )
+				for ( pos[ 1 ] = box[ 0 ][ 1 ]; pos[ 1 ] <= box[ 1 ][ 1 ]; ++pos[ 1 ] )
+					for ( pos[ 0 ] = box[ 0 ][ 0 ]; pos[ 0 ] <= box[ 1 ][ 0 ]; ++pos[ 0 ] )
+					{
+						a.setPosition( pos );
+						a.get().set( random.nextInt( 1000 ) );
+					}
+			assertTrue( integral.update( changed ) );
+			assertIntegral( img, integral.getResult() );
+		}
+	}
+
+	@Test
+	public void testBoxSums()
+	{
+		final Img< IntType > img = createImage( 4 );
+		final BoxSums< DoubleType > boxSums = BoxSums.create( img, true, 3 );
+		final Random random = new Random( 5 );
+		final long[] min = new long[ 3 ];
+		final long[] max = new long[ 3 ];
+		for ( int i = 0; i < 100; ++i )
+		{
+			for ( int d = 0; d < 3; ++d )
+			{
+				min[ d ] = random.nextInt( ( int ) dimensions[ d ] );
+				max[ d ] = min[ d ] + random.nextInt( ( int ) ( dimensions[ d ] - min[ d ] ) );
+			}
+			final long volume = boxSums.getVolume( min, max );
+			final double sum = sum( img, min, max, false );
+			final double sumOfSquares = sum( img, min, max, true );
+			assertEquals( sum, boxSums.getSum( min, max ), 1e-6 );
+			assertEquals( sumOfSquares, boxSums.getSumOfSquares( min, max ), 1e-3 );
+			assertEquals( sum / volume, boxSums.getMean( min, max ), 1e-9 );
+			final double mean = sum / volume;
+			assertEquals( sumOfSquares / volume - mean * mean, boxSums.getVariance( min, max ), 1e-6 );
+		}
+
+		// box clipped at the image border
+		final RandomAccess< IntType > a = img.randomAccess();
+		a.setPosition( new long[] { 1, 15, 4 } );
+		boxSums.getClippedBox( a, new long[] { 2, 2, 2 }, min, max );
+		assertEquals( 0, min[ 0 ] );
+		assertEquals( 16, max[ 1 ] );
+		assertEquals( sum( img, new long[] { 0, 13, 2 }, new long[] { 3, 16, 6 }, false ), boxSums.getSum( min, max ), 1e-6 );
+
+		// empty box
+		assertEquals( 0, boxSums.getSum( new long[] { 3, 3, 3 }, new long[] { 2, 5, 5 } ), 0 );
+	}
+}
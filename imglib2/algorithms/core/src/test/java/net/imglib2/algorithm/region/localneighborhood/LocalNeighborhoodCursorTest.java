@@ -0,0 +1,128 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.algorithm.region.localneighborhood;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.Point;
+import net.imglib2.RandomAccessible;
+import net.imglib2.algorithm.region.hypersphere.HyperSphere;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.iterator.LocalizingIntervalIterator;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Check that neighborhoods on an extended image give the same values whether
+ * they use the unchecked source access in the interior or not.
+ */
+public class LocalNeighborhoodCursorTest
+{
+	final long[] dimensions = new long[] { 9, 7, 5 };
+
+	Img< IntType > createInts()
+	{
+		final Img< IntType > img = ArrayImgs.ints( dimensions );
+		final Random random = new Random( 7 );
+		for ( final IntType t : img )
+			t.set( random.nextInt( 1000 ) );
+		return img;
+	}
+
+	static void assertSameValues( final Cursor< IntType > expected, final Cursor< IntType > actual )
+	{
+		final long[] e = new long[ expected.numDimensions() ];
+		final long[] a = new long[ actual.numDimensions() ];
+		while ( expected.hasNext() )
+		{
+			assertEquals( expected.next().get(), actual.next().get() );
+			expected.localize( e );
+			actual.localize( a );
+			for ( int d = 0; d < e.length; ++d )
+				assertEquals( e[ d ], a[ d ] );
+		}
+		assertFalse( actual.hasNext() );
+	}
+
+	@Test
+	public void testLocalNeighborhood()
+	{
+		final Img< IntType > img = createInts();
+		final RandomAccessible< IntType > extended = Views.extendPeriodic( img );
+		final RandomAccessible< IntType > hidden = Views.translate( extended, new long[ 3 ] );
+
+		final LocalNeighborhood< IntType > expected = new LocalNeighborhood< IntType >( hidden, new Point( 3 ) );
+		final LocalNeighborhood< IntType > actual = new LocalNeighborhood< IntType >( extended, new Point( 3 ) );
+
+		final LocalizingIntervalIterator i = new LocalizingIntervalIterator( Intervals.expand( img, 1 ) );
+		while ( i.hasNext() )
+		{
+			i.fwd();
+			expected.updateCenter( i );
+			actual.updateCenter( i );
+			assertSameValues( expected.cursor(), actual.cursor() );
+		}
+	}
+
+	@Test
+	public void testHyperSphere()
+	{
+		final Img< IntType > img = createInts();
+		final RandomAccessible< IntType > extended = Views.extendPeriodic( img );
+		final RandomAccessible< IntType > hidden = Views.translate( extended, new long[ 3 ] );
+
+		final HyperSphere< IntType > expected = new HyperSphere< IntType >( hidden, new Point( 3 ), 2 );
+		final HyperSphere< IntType > actual = new HyperSphere< IntType >( extended, new Point( 3 ), 2 );
+
+		final LocalizingIntervalIterator i = new LocalizingIntervalIterator( Intervals.expand( img, 1 ) );
+		while ( i.hasNext() )
+		{
+			i.fwd();
+			expected.updateCenter( i );
+			actual.updateCenter( i );
+			assertSameValues( expected.cursor(), actual.cursor() );
+		}
+	}
+}
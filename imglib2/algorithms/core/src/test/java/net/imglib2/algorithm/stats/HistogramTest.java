@@ -0,0 +1,251 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.algorithm.stats;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Compare parallel {@link Histogram}s to a histogram computed with a single
+ * cursor, and {@link JointHistogram} to counting pixel pairs.
+ */
+public class HistogramTest
+{
+	private static final long[] dimensions = new long[] { 37, 23, 11 };
+
+	private static < T extends RealType< T > & NativeType< T > > Img< T > createImage( final ImgFactory< T > factory, final T type, final int maxValue, final long seed )
+	{
+		final Img< T > img = factory.create( dimensions, type );
+		final Random random = new Random( seed );
+		for ( final T t : img )
+			t.setReal( random.nextInt( maxValue + 1 ) );
+		return img;
+	}
+
+	private static < T > long[] reference( final HistogramBinMapper< T > mapper, final IterableInterval< T > img )
+	{
+		final long[] h = new long[ mapper.getNumBins() ];
+		for ( final T t : img )
+		{
+			final int i = mapper.map( t );
+			if ( i >= 0 && i < h.length )
+				++h[ i ];
+		}
+		return h;
+	}
+
+	private static < T > void assertHistogram( final HistogramBinMapper< T > mapper, final IterableInterval< T > img )
+	{
+		for ( int numThreads = 1; numThreads <= 4; ++numThreads )
+		{
+			final Histogram< T > histogram = new Histogram< T >( mapper, img );
+			histogram.setNumThreads( numThreads );
+			assertTrue( histogram.process() );
+			assertArrayEquals( reference( mapper, img ), histogram.getLongHistogram() );
+		}
+	}
+
+	@Test
+	public void testUnsignedByteArrayImg()
+	{
+		final Img< UnsignedByteType > img = createImage( new ArrayImgFactory< UnsignedByteType >(), new UnsignedByteType(), 255, 1 );
+		assertHistogram( new IntBinMapper< UnsignedByteType >( new UnsignedByteType() ), img );
+		assertHistogram( new IntBinMapper< UnsignedByteType >( new UnsignedByteType( 10 ), new UnsignedByteType( 100 ) ), img );
+		assertHistogram( new RealBinMapper< UnsignedByteType >( new UnsignedByteType( 0 ), new UnsignedByteType( 255 ), 16 ), img );
+	}
+
+	@Test
+	public void testUnsignedShortPlanarImg()
+	{
+		final Img< UnsignedShortType > img = createImage( new PlanarImgFactory< UnsignedShortType >(), new UnsignedShortType(), 4000, 2 );
+		assertHistogram( new IntBinMapper< UnsignedShortType >( new UnsignedShortType( 0 ), new UnsignedShortType( 4095 ) ), img );
+		assertHistogram( new RealBinMapper< UnsignedShortType >( new UnsignedShortType( 100 ), new UnsignedShortType( 3000 ), 100 ), img );
+	}
+
+	@Test
+	public void testCellImgAndView()
+	{
+		final Img< UnsignedShortType > img = createImage( new CellImgFactory< UnsignedShortType >( 5 ), new UnsignedShortType(), 1000, 3 );
+		final IntBinMapper< UnsignedShortType > mapper = new IntBinMapper< UnsignedShortType >( new UnsignedShortType( 0 ), new UnsignedShortType( 1000 ) );
+		assertHistogram( mapper, img );
+		assertHistogram( mapper, Views.iterable( Views.interval( img, new long[] { 3, 4, 5 }, new long[] { 20, 10, 9 } ) ) );
+	}
+
+	@Test
+	public void testFloat()
+	{
+		final Img< FloatType > img = createImage( new ArrayImgFactory< FloatType >(), new FloatType(), 1000, 4 );
+		assertHistogram( new RealBinMapper< FloatType >( new FloatType( 0 ), new FloatType( 1000 ), 77 ), img );
+	}
+
+	@Test
+	public void testCursorHistogram()
+	{
+		final Img< UnsignedByteType > img = createImage( new ArrayImgFactory< UnsignedByteType >(), new UnsignedByteType(), 255, 5 );
+		final IntBinMapper< UnsignedByteType > mapper = new IntBinMapper< UnsignedByteType >( new UnsignedByteType() );
+		final Histogram< UnsignedByteType > histogram = new Histogram< UnsignedByteType >( mapper, img.localizingCursor() );
+		histogram.process();
+		final long[] expected = reference( mapper, img );
+		assertArrayEquals( expected, histogram.getLongHistogram() );
+		for ( int i = 0; i < expected.length; ++i )
+			assertEquals( expected[ i ], histogram.getBin( i ) );
+	}
+
+	@Test
+	public void testIncremental()
+	{
+		final Img< UnsignedShortType > img = createImage( new PlanarImgFactory< UnsignedShortType >(), new UnsignedShortType(), 300, 6 );
+		final IntBinMapper< UnsignedShortType > mapper = new IntBinMapper< UnsignedShortType >( new UnsignedShortType( 0 ), new UnsignedShortType( 300 ) );
+
+		// slide a window of 3 planes through the image
+		final Histogram< UnsignedShortType > window = new Histogram< UnsignedShortType >( mapper );
+		for ( int z = 0; z < dimensions[ 2 ]; ++z )
+		{
+			window.add( Views.iterable( Views.hyperSlice( img, 2, z ) ) );
+			if ( z >= 3 )
+				window.remove( Views.iterable( Views.hyperSlice( img, 2, z - 3 ) ) );
+			final IterableInterval< UnsignedShortType > expected = Views.iterable( Views.interval( img, new long[] { 0, 0, Math.max( 0, z - 2 ) }, new long[] { dimensions[ 0 ] - 1, dimensions[ 1 ] - 1, z } ) );
+			assertArrayEquals( reference( mapper, expected ), window.getLongHistogram() );
+		}
+
+		// single pixels
+		final UnsignedShortType t = new UnsignedShortType( 17 );
+		final long before = window.getLongBin( t );
+		window.add( t );
+		window.add( t );
+		window.remove( t );
+		assertEquals( before + 1, window.getLongBin( t ) );
+
+		// merging partial histograms
+		final Histogram< UnsignedShortType > merged = new Histogram< UnsignedShortType >( mapper );
+		for ( int z = 0; z < dimensions[ 2 ]; ++z )
+		{
+			final Histogram< UnsignedShortType > plane = new Histogram< UnsignedShortType >( mapper, Views.iterable( Views.hyperSlice( img, 2, z ) ) );
+			plane.process();
+			merged.add( plane );
+		}
+		assertArrayEquals( reference( mapper, img ), merged.getLongHistogram() );
+		assertEquals( img.size(), merged.getTotalCount() );
+	}
+
+	@Test
+	public void testJointHistogram()
+	{
+		final Img< UnsignedByteType > img1 = createImage( new ArrayImgFactory< UnsignedByteType >(), new UnsignedByteType(), 255, 7 );
+		final Img< FloatType > img2 = createImage( new ArrayImgFactory< FloatType >(), new FloatType(), 100, 8 );
+		final Img< FloatType > cellImg2 = new CellImgFactory< FloatType >( 7 ).create( dimensions, new FloatType() );
+		final Cursor< FloatType > c = img2.localizingCursor();
+		final RandomAccess< FloatType > a = cellImg2.randomAccess();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			a.setPosition( c );
+			a.get().set( c.get() );
+		}
+
+		final RealBinMapper< UnsignedByteType > mapper1 = new RealBinMapper< UnsignedByteType >( new UnsignedByteType( 0 ), new UnsignedByteType( 255 ), 8 );
+		final RealBinMapper< FloatType > mapper2 = new RealBinMapper< FloatType >( new FloatType( 0 ), new FloatType( 100 ), 5 );
+
+		final long[] expected = new long[ 8 * 5 ];
+		final Cursor< UnsignedByteType > c1 = img1.cursor();
+		final Cursor< FloatType > c2 = img2.cursor();
+		while ( c1.hasNext() )
+		{
+			final int i = mapper1.map( c1.next() );
+			final int j = mapper2.map( c2.next() );
+			if ( i >= 0 && i < 8 && j >= 0 && j < 5 )
+				++expected[ i + 8 * j ];
+		}
+
+		for ( final Img< FloatType > second : new Img[] { img2, cellImg2 } )
+		{
+			for ( int numThreads = 1; numThreads <= 3; ++numThreads )
+			{
+				final JointHistogram< UnsignedByteType, FloatType > joint = new JointHistogram< UnsignedByteType, FloatType >( mapper1, mapper2, img1, second );
+				joint.setNumThreads( numThreads );
+				assertTrue( joint.checkInput() );
+				assertTrue( joint.process() );
+				assertArrayEquals( expected, joint.getHistogram() );
+			}
+		}
+
+		final JointHistogram< UnsignedByteType, FloatType > joint = new JointHistogram< UnsignedByteType, FloatType >( mapper1, mapper2, img1, img2 );
+		joint.process();
+		final long[] marginal1 = new long[ 8 ];
+		for ( int j = 0; j < 5; ++j )
+			for ( int i = 0; i < 8; ++i )
+				marginal1[ i ] += joint.getBin( i, j );
+		assertArrayEquals( marginal1, joint.getMarginal1() );
+	}
+
+	@Test
+	public void testSingleThreadedByDefault()
+	{
+		final Img< FloatType > img = createImage( new ArrayImgFactory< FloatType >(), new FloatType(), 100, 9 );
+		final RealBinMapper< FloatType > mapper = new RealBinMapper< FloatType >( new FloatType( 0 ), new FloatType( 100 ), 5 );
+		assertEquals( 1, new Histogram< FloatType >( mapper, img ).getNumThreads() );
+		assertEquals( 1, new JointHistogram< FloatType, FloatType >( mapper, mapper, img, img ).getNumThreads() );
+	}
+
+	@Test( expected = RuntimeException.class )
+	public void testJointHistogramTooManyBins()
+	{
+		final Img< FloatType > img = createImage( new ArrayImgFactory< FloatType >(), new FloatType(), 100, 10 );
+		final RealBinMapper< FloatType > mapper = new RealBinMapper< FloatType >( new FloatType( 0 ), new FloatType( 100 ), 1 << 16 );
+		new JointHistogram< FloatType, FloatType >( mapper, mapper, img, img );
+	}
+}
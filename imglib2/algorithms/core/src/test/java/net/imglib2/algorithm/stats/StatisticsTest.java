@@ -0,0 +1,252 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.algorithm.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.labeling.LabelingType;
+import net.imglib2.labeling.NativeImgLabeling;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+/**
+ * Compare {@link RealStatistics}, {@link ComputeStatistics} and
+ * {@link LabelStatistics} to statistics computed in several passes.
+ */
+public class StatisticsTest
+{
+	/**
+	 * Statistics computed from all values, with two passes.
+	 */
+	private static void assertStatistics( final double[] values, final RealStatistics s, final double quantileTolerance )
+	{
+		final int n = values.length;
+		assertEquals( n, s.getCount() );
+
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		double sum = 0;
+		for ( final double v : values )
+		{
+			min = Math.min( min, v );
+			max = Math.max( max, v );
+			sum += v;
+		}
+		final double mean = sum / n;
+		double m2 = 0, m3 = 0, m4 = 0;
+		for ( final double v : values )
+		{
+			final double d = v - mean;
+			m2 += d * d;
+			m3 += d * d * d;
+			m4 += d * d * d * d;
+		}
+		final double eps = 1e-9 * Math.max( 1, Math.abs( max - min ) );
+		assertEquals( min, s.getMin(), 0 );
+		assertEquals( max, s.getMax(), 0 );
+		assertEquals( sum, s.getSum(), 1e-9 * Math.abs( sum ) + eps );
+		assertEquals( mean, s.getMean(), eps );
+		assertEquals( m2 / ( n - 1 ), s.getVariance(), 1e-9 * m2 / ( n - 1 ) );
+		assertEquals( Math.sqrt( n ) * m3 / Math.pow( m2, 1.5 ), s.getSkewness(), 1e-7 );
+		assertEquals( n * m4 / ( m2 * m2 ) - 3, s.getKurtosis(), 1e-7 );
+
+		final double[] sorted = values.clone();
+		Arrays.sort( sorted );
+		for ( final double q : new double[] { 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99 } )
+		{
+			final double expected = sorted[ Math.min( n - 1, ( int ) ( q * n ) ) ];
+			assertEquals( "quantile " + q, expected, s.getQuantile( q ), quantileTolerance * ( max - min ) );
+		}
+	}
+
+	private static double[] randomValues( final int n, final long seed )
+	{
+		final Random random = new Random( seed );
+		final double[] values = new double[ n ];
+		for ( int i = 0; i < n; ++i )
+			values[ i ] = Math.exp( random.nextGaussian() ) * 100 + 17;
+		return values;
+	}
+
+	@Test
+	public void testSmallIsExact()
+	{
+		final RealStatistics s = new RealStatistics();
+		for ( final double v : new double[] { 4, 1, 3, 2, 5 } )
+			s.add( v );
+		assertEquals( 3, s.getMedian(), 0 );
+		assertEquals( 1, s.getQuantile( 0 ), 0 );
+		assertEquals( 5, s.getQuantile( 1 ), 0 );
+		assertEquals( 2.5, s.getVariance(), 1e-12 );
+		assertEquals( 0, s.getSkewness(), 1e-12 );
+	}
+
+	@Test
+	public void testEmpty()
+	{
+		final RealStatistics s = new RealStatistics();
+		assertEquals( 0, s.getCount() );
+		assertTrue( Double.isNaN( s.getMean() ) );
+		assertTrue( Double.isNaN( s.getMin() ) );
+		assertTrue( Double.isNaN( s.getQuantile( 0.5 ) ) );
+		s.add( new RealStatistics() );
+		assertEquals( 0, s.getCount() );
+	}
+
+	@Test
+	public void testStream()
+	{
+		final double[] values = randomValues( 100000, 1 );
+		final RealStatistics s = new RealStatistics();
+		for ( final double v : values )
+			s.add( v );
+		assertStatistics( values, s, 0.002 );
+	}
+
+	@Test
+	public void testMerge()
+	{
+		final double[] values = randomValues( 50000, 2 );
+		final RealStatistics s = new RealStatistics();
+		final Random random = new Random( 3 );
+		int i = 0;
+		while ( i < values.length )
+		{
+			final RealStatistics part = new RealStatistics();
+			final int end = Math.min( values.length, i + random.nextInt( 5000 ) );
+			for ( ; i < end; ++i )
+				part.add( values[ i ] );
+			s.add( part );
+		}
+		assertStatistics( values, s, 0.002 );
+
+		final RealStatistics copy = s.copy();
+		copy.add( s );
+		final double[] twice = new double[ 2 * values.length ];
+		System.arraycopy( values, 0, twice, 0, values.length );
+		System.arraycopy( values, 0, twice, values.length, values.length );
+		assertStatistics( twice, copy, 0.002 );
+	}
+
+	@Test
+	public void testComputeStatistics()
+	{
+		final Img< FloatType > img = new CellImgFactory< FloatType >( 13 ).create( new long[] { 70, 50, 20 }, new FloatType() );
+		final Random random = new Random( 4 );
+		final double[] values = new double[ ( int ) img.size() ];
+		int i = 0;
+		for ( final FloatType t : img )
+		{
+			t.set( ( float ) random.nextGaussian() );
+			values[ i++ ] = t.get();
+		}
+
+		final ComputeStatistics< FloatType > compute = new ComputeStatistics< FloatType >( img );
+		compute.setNumThreads( 4 );
+		assertTrue( compute.checkInput() );
+		assertTrue( compute.process() );
+		assertStatistics( values, compute.getStatistics(), 0.002 );
+	}
+
+	@Test
+	public void testLabelStatistics()
+	{
+		final long[] dimensions = new long[] { 64, 48, 5 };
+		final Img< FloatType > img = new ArrayImgFactory< FloatType >().create( dimensions, new FloatType() );
+		final NativeImgLabeling< Integer, IntType > labeling = new NativeImgLabeling< Integer, IntType >( new ArrayImgFactory< IntType >().create( dimensions, new IntType() ) );
+
+		// label 0..3 by quadrant, label 4 additionally on the first plane
+		final int numLabels = 5;
+		final ArrayList< ArrayList< Double > > expected = new ArrayList< ArrayList< Double > >();
+		for ( int l = 0; l < numLabels; ++l )
+			expected.add( new ArrayList< Double >() );
+		final Random random = new Random( 5 );
+		final Cursor< LabelingType< Integer > > c = labeling.localizingCursor();
+		final RandomAccess< FloatType > a = img.randomAccess();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			a.setPosition( c );
+			final float value = random.nextFloat() * 1000;
+			a.get().set( value );
+			final long x = c.getLongPosition( 0 );
+			final long y = c.getLongPosition( 1 );
+			final long z = c.getLongPosition( 2 );
+			if ( x == 0 )
+				continue;
+			final int quadrant = ( x < 32 ? 0 : 1 ) + ( y < 24 ? 0 : 2 );
+			expected.get( quadrant ).add( ( double ) value );
+			if ( z == 0 )
+			{
+				c.get().setLabeling( new Integer[] { quadrant, 4 } );
+				expected.get( 4 ).add( ( double ) value );
+			}
+			else
+				c.get().setLabeling( new Integer[] { quadrant } );
+		}
+
+		final LabelStatistics< Integer, FloatType > compute = new LabelStatistics< Integer, FloatType >( labeling, img );
+		compute.setNumThreads( 3 );
+		assertTrue( compute.checkInput() );
+		assertTrue( compute.process() );
+		final Map< Integer, RealStatistics > statistics = compute.getStatistics();
+		assertEquals( numLabels, statistics.size() );
+		for ( int l = 0; l < numLabels; ++l )
+		{
+			final ArrayList< Double > list = expected.get( l );
+			final double[] values = new double[ list.size() ];
+			for ( int i = 0; i < values.length; ++i )
+				values[ i ] = list.get( i );
+			assertStatistics( values, compute.getStatistics( l ), 0.002 );
+		}
+		assertNull( compute.getStatistics( 5 ) );
+	}
+}
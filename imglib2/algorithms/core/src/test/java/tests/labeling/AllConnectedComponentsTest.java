@@ -42,15 +42,21 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 
 import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.algorithm.labeling.AllConnectedComponents;
 import net.imglib2.img.array.ArrayImg;
 import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.labeling.Labeling;
 import net.imglib2.labeling.LabelingType;
 import net.imglib2.labeling.NativeImgLabeling;
 import net.imglib2.type.logic.BitType;
 import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
 
 import org.junit.Test;
 
@@ -206,4 +212,159 @@ public class AllConnectedComponentsTest
 		test2D( input, expected, strel, 1, 0 );
 
 	}
+
+	/**
+	 * Exposes the flood fill as a reference for the union-find labeling.
+	 */
+	private static class Reference extends AllConnectedComponents
+	{
+		static void label( final Labeling< Integer > labeling, final RandomAccessibleInterval< FloatType > img, final double threshold, final long[][] structuringElement )
+		{
+			floodAllConnectedComponents( labeling, img, threshold, getIntegerNames( 1 ), structuringElement );
+		}
+	}
+
+	private static NativeImgLabeling< Integer, IntType > createLabeling( final long[] dimensions )
+	{
+		return new NativeImgLabeling< Integer, IntType >( new ArrayImgFactory< IntType >().create( dimensions, new IntType() ) );
+	}
+
+	/**
+	 * Check that both labelings partition the pixels into the same components.
+	 */
+	private static void assertSameComponents( final Labeling< Integer > expected, final Labeling< Integer > actual )
+	{
+		final HashMap< Integer, Integer > map = new HashMap< Integer, Integer >();
+		final HashMap< Integer, Integer > inverse = new HashMap< Integer, Integer >();
+		final Cursor< LabelingType< Integer >> c = expected.localizingCursor();
+		final RandomAccess< LabelingType< Integer >> ra = actual.randomAccess();
+		while ( c.hasNext() )
+		{
+			final List< Integer > e = c.next().getLabeling();
+			ra.setPosition( c );
+			final List< Integer > a = ra.get().getLabeling();
+			assertEquals( e.size(), a.size() );
+			if ( e.isEmpty() )
+				continue;
+			final Integer ev = e.get( 0 );
+			final Integer av = a.get( 0 );
+			if ( map.containsKey( ev ) )
+				assertEquals( map.get( ev ), av );
+			else
+				map.put( ev, av );
+			if ( inverse.containsKey( av ) )
+				assertEquals( inverse.get( av ), ev );
+			else
+				inverse.put( av, ev );
+		}
+	}
+
+	@Test
+	public void testRandom3D()
+	{
+		final long[] dimensions = new long[] { 23, 17, 19 };
+		final ArrayImg< FloatType, ? > image = new ArrayImgFactory< FloatType >().create( dimensions, new FloatType() );
+		final Random random = new Random( 42 );
+		for ( final FloatType t : image )
+			t.set( random.nextFloat() );
+		final long[][] strel6 = { { -1, 0, 0 }, { 1, 0, 0 }, { 0, -1, 0 }, { 0, 1, 0 }, { 0, 0, -1 }, { 0, 0, 1 } };
+		for ( final long[][] strel : new long[][][] { AllConnectedComponents.getStructuringElement( 3 ), strel6 } )
+		{
+			for ( final double threshold : new double[] { 0.5, 0.75 } )
+			{
+				final NativeImgLabeling< Integer, IntType > expected = createLabeling( dimensions );
+				Reference.label( expected, image, threshold, strel );
+				for ( int numThreads = 1; numThreads <= 4; ++numThreads )
+				{
+					final NativeImgLabeling< Integer, IntType > actual = createLabeling( dimensions );
+					AllConnectedComponents.labelAllConnectedComponents( actual, image, threshold, AllConnectedComponents.getIntegerNames( 1 ), strel, numThreads );
+					assertSameComponents( expected, actual );
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testTranslatedView()
+	{
+		/*
+		 * The image and the labeling share coordinates, so only the part of a
+		 * translated image that overlaps the labeling is labeled.
+		 */
+		final long[] dimensions = new long[] { 20, 15 };
+		final ArrayImg< FloatType, ? > image = new ArrayImgFactory< FloatType >().create( dimensions, new FloatType() );
+		final Random random = new Random( 17 );
+		for ( final FloatType t : image )
+			t.set( random.nextFloat() );
+		final long[][] strel = AllConnectedComponents.getStructuringElement( 2 );
+		for ( final long[] translation : new long[][] { { 3, 2 }, { -4, 5 } } )
+		{
+			final RandomAccessibleInterval< FloatType > translated = Views.translate( image, translation );
+
+			/*
+			 * Copy the overlap into a zero-min image, the rest is background.
+			 */
+			final ArrayImg< FloatType, ? > overlap = new ArrayImgFactory< FloatType >().create( dimensions, new FloatType() );
+			final Cursor< FloatType > c = overlap.localizingCursor();
+			final RandomAccess< FloatType > ra = translated.randomAccess();
+			A: while ( c.hasNext() )
+			{
+				c.fwd();
+				for ( int d = 0; d < dimensions.length; ++d )
+					if ( c.getLongPosition( d ) < translated.min( d ) || c.getLongPosition( d ) > translated.max( d ) )
+						continue A;
+				ra.setPosition( c );
+				c.get().set( ra.get() );
+			}
+			final NativeImgLabeling< Integer, IntType > expected = createLabeling( dimensions );
+			Reference.label( expected, overlap, 0.5, strel );
+
+			for ( int numThreads = 1; numThreads <= 3; ++numThreads )
+			{
+				final NativeImgLabeling< Integer, IntType > actual = createLabeling( dimensions );
+				AllConnectedComponents.labelAllConnectedComponents( actual, translated, 0.5, AllConnectedComponents.getIntegerNames( 1 ), strel, numThreads );
+				assertSameComponents( expected, actual );
+			}
+			final NativeImgLabeling< Integer, IntType > flooded = createLabeling( dimensions );
+			Reference.label( flooded, translated, 0.5, strel );
+			assertSameComponents( expected, flooded );
+		}
+	}
+
+	@Test
+	public void testThinSlabs()
+	{
+		/*
+		 * More threads than slices, and a component that winds back and forth
+		 * across all slab borders.
+		 */
+		final long[] dimensions = new long[] { 5, 6 };
+		final ArrayImg< BitType, ? > image = new ArrayImgFactory< BitType >().create( dimensions, new BitType() );
+		final RandomAccess< BitType > ra = image.randomAccess();
+		for ( int y = 0; y < 6; ++y )
+		{
+			ra.setPosition( y, 1 );
+			for ( int x = 0; x < 5; ++x )
+			{
+				ra.setPosition( x, 0 );
+				ra.get().set( y % 2 == 0 || x == ( y % 4 == 1 ? 4 : 0 ) );
+			}
+		}
+		final long[][] strel4 = { { -1, 0 }, { 1, 0 }, { 0, -1 }, { 0, 1 } };
+		final NativeImgLabeling< Integer, IntType > labeling = createLabeling( dimensions );
+		AllConnectedComponents.labelAllConnectedComponents( labeling, image, AllConnectedComponents.getIntegerNames( 1 ), strel4, 8 );
+		final HashMap< Integer, Integer > sizes = new HashMap< Integer, Integer >();
+		for ( final LabelingType< Integer > t : labeling )
+			if ( !t.getLabeling().isEmpty() )
+			{
+				final Integer l = t.getLabeling().get( 0 );
+				sizes.put( l, sizes.containsKey( l ) ? sizes.get( l ) + 1 : 1 );
+			}
+		int total = 0;
+		for ( final BitType t : image )
+			if ( t.get() )
+				++total;
+		assertEquals( 1, sizes.size() );
+		assertEquals( total, sizes.values().iterator().next().intValue() );
+	}
 }
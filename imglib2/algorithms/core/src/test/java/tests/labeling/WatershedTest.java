@@ -40,17 +40,23 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.util.List;
+import java.util.Random;
 import java.util.logging.Logger;
 
 import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
 import net.imglib2.algorithm.labeling.AllConnectedComponents;
 import net.imglib2.algorithm.labeling.Watershed;
+import net.imglib2.img.Img;
 import net.imglib2.img.NativeImg;
 import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.img.basictypeaccess.IntAccess;
 import net.imglib2.labeling.LabelingType;
 import net.imglib2.labeling.NativeImgLabeling;
+import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.FloatType;
 
 import org.junit.Test;
 
@@ -167,4 +173,123 @@ public class WatershedTest
 		}
 		testSeededCase2D( image, seeds, expected, null, 0 );
 	}
+
+	/**
+	 * Exposes the {@link java.util.PriorityQueue} based flooding as reference.
+	 */
+	private static class ReferenceWatershed< T extends RealType< T >> extends Watershed< T, Integer >
+	{
+		@Override
+		public boolean process()
+		{
+			return checkInput() && processWithPriorityQueue();
+		}
+	}
+
+	private < T extends RealType< T >> NativeImgLabeling< Integer, IntType > runRandom( final Img< T > image, final Watershed< T, Integer > watershed, final long seed )
+	{
+		final long[] dimensions = new long[ image.numDimensions() ];
+		image.dimensions( dimensions );
+		final Random rnd = new Random( seed );
+		final Cursor< T > ic = image.cursor();
+		while ( ic.hasNext() )
+			ic.next().setReal( rnd.nextInt( 200 ) + rnd.nextFloat() );
+		final NativeImgLabeling< Integer, IntType > seeds = new NativeImgLabeling< Integer, IntType >( new ArrayImgFactory< IntType >().create( dimensions, new IntType() ) );
+		final RandomAccess< LabelingType< Integer >> sa = seeds.randomAccess();
+		for ( int i = 1; i <= 20; ++i )
+		{
+			for ( int d = 0; d < dimensions.length; ++d )
+				sa.setPosition( rnd.nextInt( ( int ) dimensions[ d ] ), d );
+			sa.get().setLabel( i );
+		}
+		final NativeImgLabeling< Integer, IntType > output = new NativeImgLabeling< Integer, IntType >( new ArrayImgFactory< IntType >().create( dimensions, new IntType() ) );
+		watershed.setSeeds( seeds );
+		watershed.setIntensityImage( image );
+		watershed.setStructuringElement( AllConnectedComponents.getStructuringElement( dimensions.length ) );
+		watershed.setOutputLabeling( output );
+		assertTrue( watershed.process() );
+		return output;
+	}
+
+	private void assertLabelingEquals( final NativeImgLabeling< Integer, IntType > expected, final NativeImgLabeling< Integer, IntType > actual )
+	{
+		final Cursor< LabelingType< Integer >> ec = expected.localizingCursor();
+		final RandomAccess< LabelingType< Integer >> aa = actual.randomAccess();
+		while ( ec.hasNext() )
+		{
+			ec.fwd();
+			aa.setPosition( ec );
+			assertEquals( ec.get().getLabeling(), aa.get().getLabeling() );
+		}
+	}
+
+	@Test
+	public final void testBucketQueueMatchesReference()
+	{
+		final long[] dimensions = new long[] { 31, 27, 11 };
+		final Img< UnsignedByteType > image = new ArrayImgFactory< UnsignedByteType >().create( dimensions, new UnsignedByteType() );
+		final NativeImgLabeling< Integer, IntType > reference = runRandom( image, new ReferenceWatershed< UnsignedByteType >(), 1 );
+		final NativeImgLabeling< Integer, IntType > flat = runRandom( image, new Watershed< UnsignedByteType, Integer >(), 1 );
+		assertLabelingEquals( reference, flat );
+	}
+
+	@Test
+	public final void testHeapQueueMatchesReference()
+	{
+		final long[] dimensions = new long[] { 31, 27, 11 };
+		final Img< FloatType > image = new ArrayImgFactory< FloatType >().create( dimensions, new FloatType() );
+		final NativeImgLabeling< Integer, IntType > reference = runRandom( image, new ReferenceWatershed< FloatType >(), 2 );
+		final NativeImgLabeling< Integer, IntType > flat = runRandom( image, new Watershed< FloatType, Integer >(), 2 );
+		assertLabelingEquals( reference, flat );
+	}
+
+	@Test
+	public final void testParallelLabelsEverything()
+	{
+		final long[] dimensions = new long[] { 31, 27, 40 };
+		final Img< FloatType > image = new ArrayImgFactory< FloatType >().create( dimensions, new FloatType() );
+		final Watershed< FloatType, Integer > watershed = new Watershed< FloatType, Integer >();
+		watershed.setNumThreads( 4 );
+		watershed.setIntensityLevels( 256 );
+		final NativeImgLabeling< Integer, IntType > output = runRandom( image, watershed, 3 );
+		for ( final LabelingType< Integer > t : output )
+			assertEquals( 1, t.getLabeling().size() );
+	}
+
+	@Test
+	public final void testParallelLongStructuringElement()
+	{
+		/*
+		 * The structuring element skips every other row, so the even and odd
+		 * rows are flooded from separate seeds and each slab border is only
+		 * crossed two rows apart.
+		 */
+		final long[] dimensions = new long[] { 5, 8 };
+		final long[][] strel = { { -1, 0 }, { 1, 0 }, { 0, -2 }, { 0, 2 } };
+		final Img< UnsignedByteType > image = new ArrayImgFactory< UnsignedByteType >().create( dimensions, new UnsignedByteType() );
+		final NativeImgLabeling< Integer, IntType > seeds = new NativeImgLabeling< Integer, IntType >( new ArrayImgFactory< IntType >().create( dimensions, new IntType() ) );
+		final RandomAccess< LabelingType< Integer >> sa = seeds.randomAccess();
+		sa.setPosition( new long[] { 0, 0 } );
+		sa.get().setLabel( 1 );
+		sa.setPosition( new long[] { 0, 1 } );
+		sa.get().setLabel( 2 );
+		for ( int numThreads = 1; numThreads <= 4; ++numThreads )
+		{
+			final NativeImgLabeling< Integer, IntType > output = new NativeImgLabeling< Integer, IntType >( new ArrayImgFactory< IntType >().create( dimensions, new IntType() ) );
+			final Watershed< UnsignedByteType, Integer > watershed = new Watershed< UnsignedByteType, Integer >();
+			watershed.setSeeds( seeds );
+			watershed.setIntensityImage( image );
+			watershed.setStructuringElement( strel );
+			watershed.setOutputLabeling( output );
+			watershed.setNumThreads( numThreads );
+			assertTrue( watershed.process() );
+			final Cursor< LabelingType< Integer >> c = output.localizingCursor();
+			while ( c.hasNext() )
+			{
+				final List< Integer > labels = c.next().getLabeling();
+				assertEquals( 1, labels.size() );
+				assertEquals( c.getIntPosition( 1 ) % 2 + 1, labels.get( 0 ).intValue() );
+			}
+		}
+	}
 }
@@ -0,0 +1,74 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imglib2.algorithm.fft;
+
+/**
+ * One-dimensional FFTs on float arrays as used by {@link FFTFunctions} and
+ * {@link InPlaceFFT}. Complex data is stored interleaved (real, imaginary).
+ * Implementations are expected to cache their plans, so that repeated
+ * transforms of the same size do not re-plan. All methods may be called
+ * concurrently from several threads.
+ *
+ * The default engine is {@link MinesJtkFFTEngine}, another one can be set
+ * using {@link FFTFunctions#setEngine(FFTEngine)}.
+ */
+public interface FFTEngine
+{
+	/**
+	 * @return a supported, even size &ge; n for real-to-complex transforms.
+	 *         If <em>fast</em> is true the size with the fastest transform is
+	 *         chosen, otherwise the smallest.
+	 */
+	public int nfftReal( int n, boolean fast );
+
+	/**
+	 * @return a supported size &ge; n for complex-to-complex transforms. If
+	 *         <em>fast</em> is true the size with the fastest transform is
+	 *         chosen, otherwise the smallest.
+	 */
+	public int nfftComplex( int n, boolean fast );
+
+	/**
+	 * Transform <em>nfft</em> real values in <em>rx</em> to
+	 * <em>nfft/2+1</em> complex values in <em>cy</em>. The transform is not
+	 * scaled. <em>rx</em> and <em>cy</em> may be the same array.
+	 */
+	public void realToComplex( int nfft, int sign, float[] rx, float[] cy );
+
+	/**
+	 * Transform <em>nfft/2+1</em> complex values in <em>cx</em> to
+	 * <em>nfft</em> real values in <em>ry</em>. The transform is not scaled.
+	 * <em>cx</em> and <em>ry</em> may be the same array.
+	 */
+	public void complexToReal( int nfft, int sign, float[] cx, float[] ry );
+
+	/**
+	 * Transform <em>nfft</em> complex values in <em>cx</em> to <em>nfft</em>
+	 * complex values in <em>cy</em>. The transform is not scaled. <em>cx</em>
+	 * and <em>cy</em> may be the same array.
+	 */
+	public void complexToComplex( int nfft, int sign, float[] cx, float[] cy );
+}
@@ -40,8 +40,6 @@ import net.imglib2.type.numeric.ComplexType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.util.Util;
 import net.imglib2.view.Views;
-import edu.mines.jtk.dsp.FftComplex;
-import edu.mines.jtk.dsp.FftReal;
 
 /**
  * Provides all Fourier-based methods required by {@link FourierTransform}, {@link InverseFourierTransform}, {@link FourierConvolution} and {@link PhaseCorrelation}
@@ -52,6 +50,18 @@ import edu.mines.jtk.dsp.FftReal;
  */
 final public class FFTFunctions 
 {
+	private static FFTEngine engine = new MinesJtkFFTEngine();
+
+	/**
+	 * @return the {@link FFTEngine} used for all one-dimensional transforms.
+	 */
+	public static synchronized FFTEngine getEngine() { return engine; }
+
+	/**
+	 * Set the {@link FFTEngine} used for all one-dimensional transforms.
+	 */
+	public static synchronized void setEngine( final FFTEngine engine ) { FFTFunctions.engine = engine; }
+
 	final public static <T extends RealType<T>, S extends ComplexType<S>> Img<T> 
 						computeInverseFFT( final RandomAccessibleInterval<S> complex, 
 						                   final ImgFactory<T> imgFactory, 
@@ -65,6 +75,8 @@ final public class FFTFunctions
 		if ( complex == null )
 			return null;
 
+		final FFTEngine engine = getEngine();
+
 		// get the number of dimensions		
 		final int numDimensions = complex.numDimensions();
 			
@@ -112,7 +124,6 @@ final public class FFTFunctions
 						final int size = (int)complex.dimension( dim );
 						
 						final float[] tempIn = new float[ size * 2 ];						
-						final FftComplex fftc = new FftComplex( size );
 						
 						final RandomAccess<S> cursor = complex.randomAccess(); 
 
@@ -162,7 +173,7 @@ final public class FFTFunctions
 								tempIn[ (size-1) * 2 + 1 ] = cursor.get().getImaginaryFloat();
 								
 								// compute the inverse fft
-								fftc.complexToComplex( 1, tempIn, tempOut );
+								engine.complexToComplex( size, 1, tempIn, tempOut );
 								
 								// update the cursor in the input image to the current dimension position
 								cursor.setPosition( tmp );
@@ -210,7 +221,6 @@ final public class FFTFunctions
 					final int realSize = dimensionsReal[ 0 ];
 					final int complexSize = (int)complex.dimension( 0 );
 					final float[] tempIn = new float[ complexSize * 2 ];				
-					final FftReal fft = new FftReal( realSize );
 
 					final int cropX1, cropX2;					
 					if ( cropBack )
@@ -285,7 +295,7 @@ A:						while( cursorDim.hasNext() )
 								tempIn[ (complexSize-1) * 2 + 1 ] = cursor.get().getImaginaryFloat();
 																								
 								// compute the fft in dimension 0 ( complex -> real )
-								fft.complexToReal( 1, tempIn, tempOut );
+								engine.complexToReal( realSize, 1, tempIn, tempOut );
 										
 								// set the cursor in the fft output image to the right line
 								tmp[ 0 ] -= (int)complex.min( 0 );
@@ -338,7 +348,7 @@ A:						while( cursorDim.hasNext() )
 							
 							// compute the fft in dimension 0 ( real -> complex )
 							final float[] tempOut = new float[ realSize ];
-							fft.complexToReal( 1, tempIn, tempOut );
+							engine.complexToReal( realSize, 1, tempIn, tempOut );
 							
 							// set the cursor in the fft output image to 0 in the first (and only) dimension
 							cursorOut.setPosition( 0, 0 );
@@ -381,6 +391,7 @@ A:						while( cursorDim.hasNext() )
 						            final int numThreads, final boolean scale )
 	{
 		final int numDimensions = input.numDimensions();
+		final FFTEngine engine = getEngine();
 		
 		// create ExtendedRandomAccess for input using the OutOfBoundsStrategy
 		final RandomAccessible< T > extendedInput = Views.extend( input, outOfBoundsFactory );
@@ -413,7 +424,6 @@ A:						while( cursorDim.hasNext() )
 					final int complexSize = (int)fftImage.dimension( 0 );
 							
 					final float[] tempIn = new float[ realSize ];				
-					final FftReal fft = new FftReal( realSize );
 					
 					final RandomAccess<T> cursor = extendedInput.randomAccess();
 					final RandomAccess<S> cursorOut = fftImage.randomAccess(); 
@@ -465,7 +475,7 @@ A:						while( cursorDim.hasNext() )
 								tempIn[ (realSize-1) ] = cursor.get().getRealFloat();
 
 								// compute the fft in dimension 0 ( real -> complex )
-								fft.realToComplex( -1, tempIn, tempOut );
+								engine.realToComplex( realSize, -1, tempIn, tempOut );
 									
 								// set the cursor in the fft output image to the right line
 								cursorOut.setPosition( tmp );
@@ -510,7 +520,7 @@ A:						while( cursorDim.hasNext() )
 							
 							// compute the fft in dimension 0 ( real -> complex )
 							final float[] tempOut = new float[ complexSize * 2 ];
-							fft.realToComplex( -1, tempIn, tempOut );
+							engine.realToComplex( realSize, -1, tempIn, tempOut );
 							
 							// set the cursor in the fft output image to 0 in the first (and only) dimension
 							cursorOut.setPosition( 0, 0 );
@@ -561,7 +571,6 @@ A:						while( cursorDim.hasNext() )
 						final int size = (int)fftImage.dimension( dim );
 						
 						final float[] tempIn = new float[ size * 2 ];						
-						final FftComplex fftc = new FftComplex( size );
 						
 						final RandomAccess<S> cursor = fftImage.randomAccess(); 
 
@@ -611,7 +620,7 @@ A:						while( cursorDim.hasNext() )
 								tempIn[ (size-1) * 2 + 1 ] = cursor.get().getImaginaryFloat();
 								
 								// compute the fft in dimension dim (complex -> complex) 
-								fftc.complexToComplex( -1, tempIn, tempOut);
+								engine.complexToComplex( size, -1, tempIn, tempOut );
 	
 								// set the cursor to the right line
 								cursor.setPosition( tmp );
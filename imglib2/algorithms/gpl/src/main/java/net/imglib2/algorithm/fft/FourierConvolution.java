@@ -25,23 +25,22 @@
 
 package net.imglib2.algorithm.fft;
 
+import java.util.Arrays;
+
 import net.imglib2.Cursor;
-import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.algorithm.Benchmark;
 import net.imglib2.algorithm.MultiThreaded;
 import net.imglib2.algorithm.OutputAlgorithm;
-import net.imglib2.algorithm.fft.FourierTransform.PreProcessing;
-import net.imglib2.algorithm.fft.FourierTransform.Rearrangement;
 import net.imglib2.exception.IncompatibleTypeException;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
-import net.imglib2.iterator.LocalizingZeroMinIntervalIterator;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.complex.ComplexFloatType;
 import net.imglib2.type.numeric.real.FloatType;
 import net.imglib2.util.Util;
+import net.imglib2.view.Views;
 
 /**
  * Computes a convolution of an {@link Img} or {@link RandomAccessibleInterval} with an kernel. The computation is based on the Fourier
@@ -51,7 +50,8 @@ import net.imglib2.util.Util;
  * It is possible to exchange the kernel or the image if a series of images is convolved with the same kernel - or if an image has to be convolved
  * with multiple kernels.
  * 
- * The precision of the computation is {@link ComplexFloatType}.
+ * The precision of the computation is {@link ComplexFloatType}. The transforms are computed by
+ * {@link InPlaceFFT}, their buffers are reused when a series of images of the same size is convolved.
  * 
  * @param <T> - {@link RealType} of the image
  * @param <S> - {@link RealType} of the kernel
@@ -79,8 +79,10 @@ public class FourierConvolution<T extends RealType<T>, S extends RealType<S>> im
 	RandomAccessibleInterval<T> image;
 	RandomAccessibleInterval<S> kernel;
 	
-	Img<ComplexFloatType> kernelFFT, imgFFT; 
-	FourierTransform<T, ComplexFloatType> fftImage;
+	InPlaceFFT kernelFFT, imgFFT;
+
+	// buffer of the previous call that is reused for the product
+	InPlaceFFT spare;
 	final ImgFactory<ComplexFloatType> fftImgFactory;
 	final ImgFactory<T> imgFactory;
 	final ImgFactory<S> kernelImgFactory;
@@ -97,9 +99,9 @@ public class FourierConvolution<T extends RealType<T>, S extends RealType<S>> im
 	 * 
 	 * @param image - the input to be convolved
 	 * @param kernel - the kernel for the convolution operation
-	 * @param fftImgFactory - the {@link ImgFactory} that is used to create the FFT's
+	 * @param fftImgFactory - not used, the FFT's are computed in place by {@link InPlaceFFT}
 	 * @param imgFactory - the {@link ImgFactory} that is used to compute the convolved image
-	 * @param kernelImgFactory - the {@link ImgFactory} that is used to extend the kernel to the right size
+	 * @param kernelImgFactory - not used, the kernel is extended directly into its {@link InPlaceFFT}
 	 */
 	public FourierConvolution( final RandomAccessibleInterval<T> image, final RandomAccessibleInterval<S> kernel,
 							   final ImgFactory<T> imgFactory, final ImgFactory<S> kernelImgFactory,
@@ -128,7 +130,7 @@ public class FourierConvolution<T extends RealType<T>, S extends RealType<S>> im
 	 * 
 	 * @param image - the input {@link Img} to be convolved
 	 * @param kernel - the kernel {@link Img} for the convolution operation
-	 * @param fftImgFactory - the {@link ImgFactory} that is used to create the FFT's
+	 * @param fftImgFactory - not used, the FFT's are computed in place by {@link InPlaceFFT}
 	 */
 	public FourierConvolution( final Img<T> image, final Img<S> kernel, final ImgFactory<ComplexFloatType> fftImgFactory )
 	{
@@ -148,7 +150,7 @@ public class FourierConvolution<T extends RealType<T>, S extends RealType<S>> im
 	}
 	
 	/**
-	 * @return - the {@link ImgFactory} that is used to create the FFT's
+	 * @return - the {@link ImgFactory} that was passed to the constructor
 	 */
 	public ImgFactory<ComplexFloatType> fftImgFactory() { return fftImgFactory; }
 
@@ -230,154 +232,115 @@ public class FourierConvolution<T extends RealType<T>, S extends RealType<S>> im
 	{		
 		final long startTime = System.currentTimeMillis();
 
+		// the image has to be extended by the size of the kernel-1
+		// as the kernel is always odd, e.g. if kernel size is 3, we need to add
+		// one pixel out of bounds in each dimension (3-1=2 pixel all together) so that the
+		// convolution works
+		final int[] extendedSize = new int[ numDimensions ];
+		for ( int d = 0; d < numDimensions; ++d )
+			extendedSize[ d ] = (int)( image.dimension( d ) + kernel.dimension( d ) ) - 1;
+		final int[] fftSize = InPlaceFFT.getFFTSize( extendedSize, true );
+
+		// the image is centered in the FFT
+		final long[] imageOffset = new long[ numDimensions ];
+		final long[] min = new long[ numDimensions ];
+		for ( int d = 0; d < numDimensions; ++d )
+		{
+			imageOffset[ d ] = ( fftSize[ d ] - image.dimension( d ) ) / 2;
+			min[ d ] = image.min( d ) - imageOffset[ d ];
+		}
+
 		//
 		// compute fft of the input image
 		//
-		if ( imgFFT == null ) //not computed in a previous step
+		if ( imgFFT == null || !Arrays.equals( imgFFT.getSize(), fftSize ) ) //not computed in a previous step, or for another kernel size
 		{
-			fftImage = new FourierTransform< T, ComplexFloatType >( image, fftImgFactory, new ComplexFloatType() );
-			fftImage.setNumThreads( this.getNumThreads() );
-			
 			// how to extend the input image out of its boundaries for computing the FFT,
 			// we simply mirror the content at the borders
-			fftImage.setPreProcessing( PreProcessing.EXTEND_MIRROR );		
-			// we do not rearrange the fft quadrants
-			fftImage.setRearrangement( Rearrangement.UNCHANGED );
-			
-			// the image has to be extended by the size of the kernel-1
-			// as the kernel is always odd, e.g. if kernel size is 3, we need to add
-			// one pixel out of bounds in each dimension (3-1=2 pixel all together) so that the
-			// convolution works
-			final int[] imageExtension = kernelDim.clone();		
-			for ( int d = 0; d < numDimensions; ++d )
-				--imageExtension[ d ];		
-			fftImage.setImageExtension( imageExtension );
-			
-			if ( !fftImage.checkInput() || !fftImage.process() )
-			{
-				errorMessage = "FFT of image failed: " + fftImage.getErrorMessage();
-				return false;			
-			}
-			
-			imgFFT = fftImage.getResult();
+			imgFFT = takeBuffer( fftSize );
+			imgFFT.load( Views.extendMirrorSingle( image ), min );
+			imgFFT.forward();
 		}
 		
 		//
-		// create the kernel for fourier transform
+		// compute FFT of kernel, the center pixel of the kernel (e.g. 13,13,13)
+		// is located at (0,0,0)
 		//
-		if ( kernelFFT == null )
+		if ( kernelFFT == null || !Arrays.equals( kernelFFT.getSize(), fftSize ) )
 		{
-			// get the size of the kernel image that will be fourier transformed,
-			// it has the same size as the image
-			final int kernelTemplateDim[] = new int[ numDimensions ];
-			for ( int d = 0; d < numDimensions; ++d )
-				kernelTemplateDim[ d ] = (int)imgFFT.dimension( d );
-
-			kernelTemplateDim[ 0 ] = ( (int)imgFFT.dimension( 0 ) - 1 ) * 2;
-			
-			// instaniate real valued kernel template
-			// which is of the same container type as the image
-			// so that the computation is easy
-
-			// HACK: Explicit assignment is needed for OpenJDK javac.
-			S kernelType = Util.getTypeFromInterval( kernel );
-			final Img<S> kernelTemplate = kernelImgFactory.create( kernelTemplateDim, kernelType.createVariable() );
-			
-			// copy the kernel into the kernelTemplate,
-			// the key here is that the center pixel of the kernel (e.g. 13,13,13)
-			// is located at (0,0,0)
-			final RandomAccess<S> kernelCursor = kernel.randomAccess();
-			final RandomAccess<S> kernelTemplateCursor = kernelTemplate.randomAccess();
-			
-			final LocalizingZeroMinIntervalIterator cursorDim = new LocalizingZeroMinIntervalIterator( kernel );
-			
-			final int[] position = new int[ numDimensions ];
-			final int[] position2 = new int[ numDimensions ];
-			
-			while ( cursorDim.hasNext() )
-			{
-				cursorDim.fwd();
-				cursorDim.localize( position );
-				
-				for ( int d = 0; d < numDimensions; ++d )
-				{
-					// the kernel might not be zero-bounded
-					position2[ d ] = position[ d ] + (int)kernel.min( d );
-					
-					position[ d ] = ( position[ d ] - kernelDim[ d ]/2 + kernelTemplateDim[ d ] ) % kernelTemplateDim[ d ];
-					/*final int tmp = ( position[ d ] - kernelDim[ d ]/2 );
-					
-					if ( tmp < 0 )
-						position[ d ] = kernelTemplateDim[ d ] + tmp;
-					else
-						position[ d ] = tmp;*/
-				}			
-				
-				kernelCursor.setPosition( position2 );				
-				kernelTemplateCursor.setPosition( position );
-				kernelTemplateCursor.get().set( kernelCursor.get() );
-			}
-			
-			// 
-			// compute FFT of kernel
-			//
-			final FourierTransform<S, ComplexFloatType> fftKernel = new FourierTransform<S, ComplexFloatType>( kernelTemplate, fftImgFactory, new ComplexFloatType() );
-			fftKernel.setNumThreads( this.getNumThreads() );
-			
-			fftKernel.setPreProcessing( PreProcessing.NONE );		
-			fftKernel.setRearrangement( fftImage.getRearrangement() );
-			
-			if ( !fftKernel.checkInput() || !fftKernel.process() )
-			{
-				errorMessage = "FFT of kernel failed: " + fftKernel.getErrorMessage();
-				return false;			
-			}		
-			kernelFFT = fftKernel.getResult();
+			kernelFFT = KernelFFTCache.transformKernel( kernel, fftSize );
+			kernelFFT.setNumThreads( getNumThreads() );
 		}
 		
 		//
 		// Multiply in Fourier Space
 		//
-		final Img< ComplexFloatType > copy;
+		final InPlaceFFT product;
 		
 		if ( keepImgFFT )
-			copy = imgFFT.copy();
+		{
+			product = takeBuffer( fftSize );
+			product.set( imgFFT );
+		}
 		else
-			copy = imgFFT;
+		{
+			// the imgFFT is changed during the multiplication
+			// it cannot be re-used
+			product = imgFFT;
+			imgFFT = null;
+		}
 		
-		multiply( copy, kernelFFT );
+		multiply( product, kernelFFT );
 		
 		//
 		// Compute inverse Fourier Transform
 		//		
-		final InverseFourierTransform<T, ComplexFloatType> invFFT = new InverseFourierTransform<T, ComplexFloatType>( copy, imgFactory, fftImage );
-		invFFT.setNumThreads( this.getNumThreads() );
-
-		if ( !invFFT.checkInput() || !invFFT.process() )
-		{
-			errorMessage = "InverseFFT of image failed: " + invFFT.getErrorMessage();
-			return false;			
-		}
-		
-		if ( !keepImgFFT )
-		{
-			// the imgFFT was changed during the multiplication
-			// it cannot be re-used
-			imgFFT = null;			
-		}
+		product.inverse();
 
-		convolved = invFFT.getResult();	
+		// HACK: Explicit assignment is needed for OpenJDK javac.
+		final T type = Util.getTypeFromInterval( image );
+		convolved = imgFactory.create( image, type.createVariable() );
+		product.store( convolved, imageOffset );
+		spare = product;
 		
 		processingTime = System.currentTimeMillis() - startTime;
         return true;
 	}
+
+	/**
+	 * @return the buffer of the previous call if it has the right size, or a
+	 *         new one.
+	 */
+	protected InPlaceFFT takeBuffer( final int[] fftSize )
+	{
+		InPlaceFFT buffer = spare;
+		spare = null;
+		if ( buffer == null || !Arrays.equals( buffer.getSize(), fftSize ) )
+			buffer = new InPlaceFFT( fftSize );
+		buffer.setNumThreads( getNumThreads() );
+		return buffer;
+	}
+
+	/**
+	 * Multiply in Fourier Space
+	 * 
+	 * @param a - is multiplied with b in place
+	 * @param b
+	 */
+	protected void multiply( final InPlaceFFT a, final InPlaceFFT b )
+	{
+		a.multiply( b, false );
+	}
 	
 	/**
 	 * Multiply in Fourier Space
 	 * 
 	 * @param a
 	 * @param b
+	 * @deprecated not called by {@link #process()} anymore, override
+	 *             {@link #multiply(InPlaceFFT, InPlaceFFT)} instead.
 	 */
+	@Deprecated
 	protected void multiply( final Img< ComplexFloatType > a, final Img< ComplexFloatType > b )
 	{
 		final Cursor<ComplexFloatType> cursorA = a.cursor();
@@ -0,0 +1,283 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imglib2.algorithm.fft;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.multithreading.TaskExecutor;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+
+/**
+ * Convolves many images with the same kernels in Fourier space. Kernel
+ * transforms are taken from a {@link KernelFFTCache}, so each kernel is
+ * transformed only once per FFT size. The padded image buffers
+ * ({@link InPlaceFFT}s) are kept in a pool and reused for subsequent images of
+ * the same FFT size. When a list of images is convolved, independent images
+ * are processed concurrently on the shared {@link TaskExecutor}. Images that
+ * are too large to be padded as a whole can be convolved tile by tile using
+ * {@link #convolveTiled(RandomAccessibleInterval, RandomAccessibleInterval, RandomAccessibleInterval, OutOfBoundsFactory, int[])}.
+ *
+ * <p>
+ * Like {@link FourierConvolution}, the images are extended by the kernel size
+ * minus one using an {@link OutOfBoundsFactory}, and kernels must have an odd
+ * size in every dimension. The computation is done in float precision.
+ * </p>
+ */
+public class FourierConvolutionService
+{
+	final KernelFFTCache kernelCache;
+
+	final ArrayList< InPlaceFFT > buffers;
+
+	int numThreads;
+
+	boolean fastFFTSize;
+
+	/**
+	 * @param kernelCache
+	 *            the cache for kernel transforms, may be shared with other
+	 *            services.
+	 */
+	public FourierConvolutionService( final KernelFFTCache kernelCache )
+	{
+		this.kernelCache = kernelCache;
+		this.buffers = new ArrayList< InPlaceFFT >();
+		this.numThreads = TaskExecutor.getDefault().getNumThreads();
+		this.fastFFTSize = true;
+	}
+
+	public FourierConvolutionService()
+	{
+		this( new KernelFFTCache( 16 ) );
+	}
+
+	public KernelFFTCache getKernelCache() { return kernelCache; }
+
+	public int getNumThreads() { return numThreads; }
+	public void setNumThreads( final int numThreads ) { this.numThreads = Math.max( 1, numThreads ); }
+
+	/**
+	 * @param fastFFTSize
+	 *            whether to pad to the fastest (true) or smallest (false) FFT
+	 *            size.
+	 */
+	public void setFastFFTSize( final boolean fastFFTSize ) { this.fastFFTSize = fastFFTSize; }
+	public boolean getFastFFTSize() { return fastFFTSize; }
+
+	/**
+	 * Release all pooled image buffers.
+	 */
+	public synchronized void releaseBuffers()
+	{
+		buffers.clear();
+	}
+
+	/**
+	 * @return the FFT size used to convolve an image of the given size with a
+	 *         kernel of the given size.
+	 */
+	public int[] getFFTSize( final Interval image, final Interval kernel )
+	{
+		final int[] minSize = new int[ image.numDimensions() ];
+		for ( int d = 0; d < minSize.length; ++d )
+			minSize[ d ] = ( int ) ( image.dimension( d ) + kernel.dimension( d ) - 1 );
+		return InPlaceFFT.getFFTSize( minSize, fastFFTSize );
+	}
+
+	/**
+	 * Convolve <em>input</em> with <em>kernel</em> and write the result to
+	 * <em>output</em>, which must have the same size as the input.
+	 */
+	public < T extends RealType< T >, S extends RealType< S >, R extends RealType< R > > void convolve( final RandomAccessibleInterval< T > input, final RandomAccessibleInterval< S > kernel, final RandomAccessibleInterval< R > output, final OutOfBoundsFactory< T, RandomAccessibleInterval< T > > outOfBounds )
+	{
+		final int[] fftSize = getFFTSize( input, kernel );
+		final InPlaceFFT kernelFFT = kernelCache.get( kernel, fftSize );
+		convolve( input, kernelFFT, output, outOfBounds, numThreads );
+	}
+
+	/**
+	 * Convolve all <em>inputs</em> with <em>kernel</em> and write the results
+	 * to the corresponding <em>outputs</em>. Up to {@link #getNumThreads()}
+	 * images are processed concurrently, each of them single-threaded.
+	 */
+	public < T extends RealType< T >, S extends RealType< S >, R extends RealType< R > > void convolve( final List< ? extends RandomAccessibleInterval< T > > inputs, final RandomAccessibleInterval< S > kernel, final List< ? extends RandomAccessibleInterval< R > > outputs, final OutOfBoundsFactory< T, RandomAccessibleInterval< T > > outOfBounds )
+	{
+		if ( inputs.size() != outputs.size() )
+			throw new RuntimeException( "Number of inputs and outputs differ." );
+
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >( inputs.size() );
+		for ( int i = 0; i < inputs.size(); ++i )
+		{
+			final RandomAccessibleInterval< T > input = inputs.get( i );
+			final RandomAccessibleInterval< R > output = outputs.get( i );
+			final int[] fftSize = getFFTSize( input, kernel );
+			final InPlaceFFT kernelFFT = kernelCache.get( kernel, fftSize );
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					convolve( input, kernelFFT, output, outOfBounds, 1 );
+				}
+			} );
+		}
+		TaskExecutor.getDefault().run( tasks, numThreads );
+	}
+
+	/**
+	 * Convolve <em>input</em> with <em>kernel</em> tile by tile (overlap-save)
+	 * and write the result to <em>output</em>, which must have the same size
+	 * as the input. Every output tile is computed from an input block that
+	 * overlaps neighboring blocks by the kernel size minus one. The FFT size
+	 * is determined by the tile size, so the peak memory is bounded by the
+	 * tile size times the number of concurrently processed tiles, independent
+	 * of the image size. This works for any {@link RandomAccessibleInterval},
+	 * e.g., a CellImg that does not fit into a single array.
+	 *
+	 * @param tileSize
+	 *            the size of the output tiles.
+	 */
+	public < T extends RealType< T >, S extends RealType< S >, R extends RealType< R > > void convolveTiled( final RandomAccessibleInterval< T > input, final RandomAccessibleInterval< S > kernel, final RandomAccessibleInterval< R > output, final OutOfBoundsFactory< T, RandomAccessibleInterval< T > > outOfBounds, final int[] tileSize )
+	{
+		final int numDimensions = input.numDimensions();
+		for ( int d = 0; d < numDimensions; ++d )
+			if ( input.dimension( d ) != output.dimension( d ) )
+				throw new RuntimeException( "Input and output must have the same dimensions." );
+
+		// tiles are not larger than the image
+		final long[] tile = new long[ numDimensions ];
+		final long[] numTiles = new long[ numDimensions ];
+		long totalTiles = 1;
+		for ( int d = 0; d < numDimensions; ++d )
+		{
+			tile[ d ] = Math.min( Math.max( 1, tileSize[ d ] ), input.dimension( d ) );
+			numTiles[ d ] = ( input.dimension( d ) + tile[ d ] - 1 ) / tile[ d ];
+			totalTiles *= numTiles[ d ];
+		}
+
+		final int[] fftSize = getFFTSize( new FinalInterval( tile ), kernel );
+		final InPlaceFFT kernelFFT = kernelCache.get( kernel, fftSize );
+		final long[] kernelHalf = new long[ numDimensions ];
+		for ( int d = 0; d < numDimensions; ++d )
+			kernelHalf[ d ] = kernel.dimension( d ) / 2;
+		final RandomAccessible< T > extended = Views.extend( input, outOfBounds );
+
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >();
+		for ( long t = 0; t < totalTiles; ++t )
+		{
+			final long[] outputMin = new long[ numDimensions ];
+			final long[] outputMax = new long[ numDimensions ];
+			final long[] inputMin = new long[ numDimensions ];
+			long rest = t;
+			for ( int d = 0; d < numDimensions; ++d )
+			{
+				final long offset = ( rest % numTiles[ d ] ) * tile[ d ];
+				rest /= numTiles[ d ];
+				outputMin[ d ] = output.min( d ) + offset;
+				outputMax[ d ] = Math.min( outputMin[ d ] + tile[ d ], output.max( d ) + 1 ) - 1;
+				inputMin[ d ] = input.min( d ) + offset - kernelHalf[ d ];
+			}
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					final InPlaceFFT buffer = takeBuffer( fftSize );
+					try
+					{
+						// circular convolution does not wrap for the valid part of the block
+						buffer.setNumThreads( 1 );
+						buffer.load( extended, inputMin );
+						buffer.forward();
+						buffer.multiply( kernelFFT, false );
+						buffer.inverse();
+						buffer.store( Views.interval( output, outputMin, outputMax ), kernelHalf );
+					}
+					finally
+					{
+						releaseBuffer( buffer );
+					}
+				}
+			} );
+		}
+		TaskExecutor.getDefault().run( tasks, numThreads );
+	}
+
+	protected < T extends RealType< T >, R extends RealType< R > > void convolve( final RandomAccessibleInterval< T > input, final InPlaceFFT kernelFFT, final RandomAccessibleInterval< R > output, final OutOfBoundsFactory< T, RandomAccessibleInterval< T > > outOfBounds, final int numThreads )
+	{
+		final int numDimensions = input.numDimensions();
+		final int[] fftSize = kernelFFT.getSize();
+		for ( int d = 0; d < numDimensions; ++d )
+			if ( input.dimension( d ) != output.dimension( d ) )
+				throw new RuntimeException( "Input and output must have the same dimensions." );
+
+		// center the image in the padded buffer
+		final long[] inputMin = new long[ numDimensions ];
+		final long[] bufferOffset = new long[ numDimensions ];
+		for ( int d = 0; d < numDimensions; ++d )
+		{
+			bufferOffset[ d ] = ( fftSize[ d ] - input.dimension( d ) ) / 2;
+			inputMin[ d ] = input.min( d ) - bufferOffset[ d ];
+		}
+
+		final InPlaceFFT buffer = takeBuffer( fftSize );
+		try
+		{
+			buffer.setNumThreads( numThreads );
+			final RandomAccessible< T > extended = Views.extend( input, outOfBounds );
+			buffer.load( extended, inputMin );
+			buffer.forward();
+			buffer.multiply( kernelFFT, false );
+			buffer.inverse();
+			buffer.store( output, bufferOffset );
+		}
+		finally
+		{
+			releaseBuffer( buffer );
+		}
+	}
+
+	protected synchronized InPlaceFFT takeBuffer( final int[] fftSize )
+	{
+		for ( int i = buffers.size() - 1; i >= 0; --i )
+			if ( Arrays.equals( buffers.get( i ).size, fftSize ) )
+				return buffers.remove( i );
+		return new InPlaceFFT( fftSize );
+	}
+
+	protected synchronized void releaseBuffer( final InPlaceFFT buffer )
+	{
+		buffers.add( buffer );
+	}
+}
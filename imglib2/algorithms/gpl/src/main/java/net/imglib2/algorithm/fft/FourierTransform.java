@@ -41,8 +41,6 @@ import net.imglib2.outofbounds.OutOfBoundsMirrorFactory.Boundary;
 import net.imglib2.type.numeric.ComplexType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.util.Util;
-import edu.mines.jtk.dsp.FftComplex;
-import edu.mines.jtk.dsp.FftReal;
 
 /**
  * Computes the Fourier Transform of a given {@link RandomAccessibleInterval} or {@link Img}.
@@ -362,20 +360,15 @@ public class FourierTransform<T extends RealType<T>, S extends ComplexType<S>> i
 	{
 		final int[] fftSize = new int[ imageSize.length ];
 		
+		final FFTEngine engine = FFTFunctions.getEngine();
+		final boolean fast = fftOptimization == FFTOptimization.SPEED;
+
 		// the first dimension is real to complex
-		if ( fftOptimization == FFTOptimization.SPEED )
-			fftSize[ 0 ] = FftReal.nfftFast( imageSize[ 0 ] );
-		else
-			fftSize[ 0 ] = FftReal.nfftSmall( imageSize[ 0 ] );
+		fftSize[ 0 ] = engine.nfftReal( imageSize[ 0 ], fast );
 				
 		// all the other dimensions complex to complex
 		for ( int d = 1; d < fftSize.length; ++d )
-		{
-			if ( fftOptimization == FFTOptimization.SPEED )
-				fftSize[ d ] = FftComplex.nfftFast( imageSize[ d ] );
-			else
-				fftSize[ d ] = FftComplex.nfftSmall( imageSize[ d ] );
-		}
+			fftSize[ d ] = engine.nfftComplex( imageSize[ d ], fast );
 		
 		return fftSize;
 	}
@@ -0,0 +1,531 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imglib2.algorithm.fft;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.multithreading.Chunk;
+import net.imglib2.multithreading.ChunkTask;
+import net.imglib2.multithreading.TaskExecutor;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * A real-to-complex FFT that is computed in place on a single float[] in
+ * half-complex layout. Every row along dimension 0 holds <em>size[0] + 2</em>
+ * floats, i.e., <em>size[0]</em> real values plus two floats of padding, or
+ * <em>size[0]/2 + 1</em> interleaved complex values after the forward
+ * transform. All other dimensions are stored with their full size.
+ *
+ * <p>
+ * In contrast to {@link FourierTransform}, no complex image is allocated for
+ * the result, and an {@link InPlaceFFT} can be reused for any number of inputs
+ * of the same size. The one-dimensional transforms are computed by the
+ * {@link FFTEngine} set in {@link FFTFunctions}, which caches its plans, and
+ * the line buffers are kept per thread. Many same-sized transforms can be
+ * computed concurrently using {@link #forward(List, int)} and
+ * {@link #inverse(List, int)}.
+ * </p>
+ */
+public class InPlaceFFT
+{
+	final int numDimensions;
+
+	final int[] size;
+
+	final int rowLength;
+
+	final long numRows;
+
+	final float[] data;
+
+	boolean isComplex;
+
+	int numThreads;
+
+	/**
+	 * line buffers are reused by all transforms running on the same thread
+	 */
+	static final ThreadLocal< float[][] > lineBuffers = new ThreadLocal< float[][] >();
+
+	/**
+	 * @return at least <em>count</em> line buffers of at least
+	 *         <em>length</em> floats, owned by the current thread.
+	 */
+	static float[][] getLineBuffers( final int count, final int length )
+	{
+		float[][] lines = lineBuffers.get();
+		if ( lines == null || lines.length < count )
+		{
+			final float[][] grown = new float[ count ][];
+			if ( lines != null )
+				System.arraycopy( lines, 0, grown, 0, lines.length );
+			lines = grown;
+			lineBuffers.set( lines );
+		}
+		for ( int i = 0; i < count; ++i )
+			if ( lines[ i ] == null || lines[ i ].length < length )
+				lines[ i ] = new float[ length ];
+		return lines;
+	}
+
+	/**
+	 * Create an {@link InPlaceFFT} of the given size. The size must be
+	 * supported by the {@link FFTEngine}, see {@link #getFFTSize(int[], boolean)}.
+	 *
+	 * @param size
+	 *            the size of the real input in every dimension.
+	 */
+	public InPlaceFFT( final int[] size )
+	{
+		this.numDimensions = size.length;
+		this.size = size.clone();
+		if ( size[ 0 ] % 2 != 0 )
+			throw new RuntimeException( "The FFT size in dimension 0 must be even, but it is " + size[ 0 ] );
+		this.rowLength = size[ 0 ] + 2;
+
+		long rows = 1;
+		for ( int d = 1; d < numDimensions; ++d )
+			rows *= size[ d ];
+		this.numRows = rows;
+		if ( rows * rowLength > Integer.MAX_VALUE )
+			throw new RuntimeException( "InPlaceFFT only supports up to " + Integer.MAX_VALUE + " floats, but " + ( rows * rowLength ) + " are required." );
+
+		this.data = new float[ ( int ) ( rows * rowLength ) ];
+		this.isComplex = false;
+		this.numThreads = TaskExecutor.getDefault().getNumThreads();
+	}
+
+	/**
+	 * @return the smallest (or fastest) size &ge; minSize in every dimension
+	 *         that is supported by the current {@link FFTEngine}.
+	 */
+	public static int[] getFFTSize( final int[] minSize, final boolean fast )
+	{
+		final FFTEngine engine = FFTFunctions.getEngine();
+		final int[] fftSize = new int[ minSize.length ];
+		fftSize[ 0 ] = engine.nfftReal( minSize[ 0 ], fast );
+		for ( int d = 1; d < minSize.length; ++d )
+			fftSize[ d ] = engine.nfftComplex( minSize[ d ], fast );
+		return fftSize;
+	}
+
+	public int numDimensions() { return numDimensions; }
+
+	/**
+	 * @return the size of the real data in every dimension.
+	 */
+	public int[] getSize() { return size.clone(); }
+
+	/**
+	 * @return the number of floats per row along dimension 0.
+	 */
+	public int getRowLength() { return rowLength; }
+
+	/**
+	 * @return the data in half-complex layout.
+	 */
+	public float[] getData() { return data; }
+
+	/**
+	 * @return whether the data currently holds the complex transform.
+	 */
+	public boolean isComplex() { return isComplex; }
+
+	public int getNumThreads() { return numThreads; }
+	public void setNumThreads( final int numThreads ) { this.numThreads = Math.max( 1, numThreads ); }
+
+	/**
+	 * Fill the real data from <em>input</em>, such that data position 0
+	 * corresponds to position <em>min</em> in the input.
+	 */
+	public < T extends RealType< T > > void load( final RandomAccessible< T > input, final long[] min )
+	{
+		runRows( new ChunkTask()
+		{
+			@Override
+			public void run( final Chunk chunk )
+			{
+				final RandomAccess< T > in = input.randomAccess();
+				final int[] position = new int[ numDimensions ];
+				long row = chunk.getStartPosition();
+				for ( long i = 0; i < chunk.getLoopSize(); ++i, ++row )
+				{
+					setRowPosition( row, position );
+					in.setPosition( min[ 0 ], 0 );
+					for ( int d = 1; d < numDimensions; ++d )
+						in.setPosition( min[ d ] + position[ d ], d );
+
+					final int offset = ( int ) ( row * rowLength );
+					data[ offset ] = in.get().getRealFloat();
+					for ( int x = 1; x < size[ 0 ]; ++x )
+					{
+						in.fwd( 0 );
+						data[ offset + x ] = in.get().getRealFloat();
+					}
+					data[ offset + size[ 0 ] ] = 0;
+					data[ offset + size[ 0 ] + 1 ] = 0;
+				}
+			}
+		} );
+		isComplex = false;
+	}
+
+	/**
+	 * Write the real data to <em>output</em>, such that the min of the output
+	 * corresponds to data position <em>min</em>.
+	 */
+	public < T extends RealType< T > > void store( final RandomAccessibleInterval< T > output, final long[] min )
+	{
+		if ( isComplex )
+			throw new RuntimeException( "InPlaceFFT holds complex data, call inverse() first." );
+
+		final long[] outputSize = new long[ numDimensions ];
+		output.dimensions( outputSize );
+		for ( int d = 0; d < numDimensions; ++d )
+			if ( min[ d ] < 0 || min[ d ] + outputSize[ d ] > size[ d ] )
+				throw new RuntimeException( "Output exceeds the FFT size in dimension " + d );
+
+		long rows = 1;
+		for ( int d = 1; d < numDimensions; ++d )
+			rows *= outputSize[ d ];
+		TaskExecutor.getDefault().run( rows, numThreads, new ChunkTask()
+		{
+			@Override
+			public void run( final Chunk chunk )
+			{
+				final RandomAccess< T > out = output.randomAccess();
+				final int length = ( int ) outputSize[ 0 ];
+				long row = chunk.getStartPosition();
+				for ( long i = 0; i < chunk.getLoopSize(); ++i, ++row )
+				{
+					out.setPosition( output.min( 0 ), 0 );
+					long rest = row;
+					long dataRow = 0;
+					long dataStride = 1;
+					for ( int d = 1; d < numDimensions; ++d )
+					{
+						final long p = rest % outputSize[ d ];
+						rest /= outputSize[ d ];
+						out.setPosition( output.min( d ) + p, d );
+						dataRow += ( min[ d ] + p ) * dataStride;
+						dataStride *= size[ d ];
+					}
+
+					final int offset = ( int ) ( dataRow * rowLength + min[ 0 ] );
+					out.get().setReal( data[ offset ] );
+					for ( int x = 1; x < length; ++x )
+					{
+						out.fwd( 0 );
+						out.get().setReal( data[ offset + x ] );
+					}
+				}
+			}
+		} );
+	}
+
+	/**
+	 * Compute the forward transform, real to complex. The transform is not
+	 * scaled.
+	 */
+	public void forward()
+	{
+		if ( isComplex )
+			throw new RuntimeException( "InPlaceFFT already holds complex data." );
+
+		final FFTEngine engine = FFTFunctions.getEngine();
+		final int nfft = size[ 0 ];
+		runRows( new ChunkTask()
+		{
+			@Override
+			public void run( final Chunk chunk )
+			{
+				final float[] line = getLineBuffers( 1, rowLength )[ 0 ];
+				int offset = ( int ) ( chunk.getStartPosition() * rowLength );
+				for ( long i = 0; i < chunk.getLoopSize(); ++i, offset += rowLength )
+				{
+					System.arraycopy( data, offset, line, 0, nfft );
+					engine.realToComplex( nfft, -1, line, line );
+					System.arraycopy( line, 0, data, offset, rowLength );
+				}
+			}
+		} );
+
+		for ( int d = 1; d < numDimensions; ++d )
+			complexToComplex( engine, d, -1 );
+
+		isComplex = true;
+	}
+
+	/**
+	 * Compute the inverse transform, complex to real. The result is scaled
+	 * such that {@link #forward()} followed by {@link #inverse()} reproduces
+	 * the input.
+	 */
+	public void inverse()
+	{
+		if ( !isComplex )
+			throw new RuntimeException( "InPlaceFFT holds real data, call forward() first." );
+
+		final FFTEngine engine = FFTFunctions.getEngine();
+		for ( int d = numDimensions - 1; d > 0; --d )
+			complexToComplex( engine, d, 1 );
+
+		final int nfft = size[ 0 ];
+		final float scale = ( float ) ( 1.0 / ( numRows * nfft ) );
+		runRows( new ChunkTask()
+		{
+			@Override
+			public void run( final Chunk chunk )
+			{
+				final float[] line = getLineBuffers( 1, rowLength )[ 0 ];
+				int offset = ( int ) ( chunk.getStartPosition() * rowLength );
+				for ( long i = 0; i < chunk.getLoopSize(); ++i, offset += rowLength )
+				{
+					System.arraycopy( data, offset, line, 0, rowLength );
+					engine.complexToReal( nfft, 1, line, line );
+					for ( int x = 0; x < nfft; ++x )
+						data[ offset + x ] = line[ x ] * scale;
+					data[ offset + nfft ] = 0;
+					data[ offset + nfft + 1 ] = 0;
+				}
+			}
+		} );
+
+		isComplex = false;
+	}
+
+	/**
+	 * Multiply the complex data element-wise with the complex data of
+	 * <em>other</em>, or with its complex conjugate.
+	 */
+	public void multiply( final InPlaceFFT other, final boolean conjugate )
+	{
+		if ( !isComplex || !other.isComplex )
+			throw new RuntimeException( "Both InPlaceFFTs must hold complex data." );
+		if ( other.data.length != data.length || other.rowLength != rowLength )
+			throw new RuntimeException( "InPlaceFFTs differ in size." );
+
+		final float[] b = other.data;
+		final float sign = conjugate ? -1 : 1;
+		runRows( new ChunkTask()
+		{
+			@Override
+			public void run( final Chunk chunk )
+			{
+				final int start = ( int ) ( chunk.getStartPosition() * rowLength );
+				final int end = start + ( int ) ( chunk.getLoopSize() * rowLength );
+				for ( int i = start; i < end; i += 2 )
+				{
+					final float re1 = data[ i ];
+					final float im1 = data[ i + 1 ];
+					final float re2 = b[ i ];
+					final float im2 = sign * b[ i + 1 ];
+					data[ i ] = re1 * re2 - im1 * im2;
+					data[ i + 1 ] = re1 * im2 + im1 * re2;
+				}
+			}
+		} );
+	}
+
+	/**
+	 * Divide the complex data element-wise by the complex data of
+	 * <em>other</em>.
+	 */
+	public void divide( final InPlaceFFT other )
+	{
+		if ( !isComplex || !other.isComplex )
+			throw new RuntimeException( "Both InPlaceFFTs must hold complex data." );
+		if ( other.data.length != data.length || other.rowLength != rowLength )
+			throw new RuntimeException( "InPlaceFFTs differ in size." );
+
+		final float[] b = other.data;
+		runRows( new ChunkTask()
+		{
+			@Override
+			public void run( final Chunk chunk )
+			{
+				final int start = ( int ) ( chunk.getStartPosition() * rowLength );
+				final int end = start + ( int ) ( chunk.getLoopSize() * rowLength );
+				for ( int i = start; i < end; i += 2 )
+				{
+					final float re1 = data[ i ];
+					final float im1 = data[ i + 1 ];
+					final float re2 = b[ i ];
+					final float im2 = b[ i + 1 ];
+					final float norm = re2 * re2 + im2 * im2;
+					data[ i ] = ( re1 * re2 + im1 * im2 ) / norm;
+					data[ i + 1 ] = ( im1 * re2 - re1 * im2 ) / norm;
+				}
+			}
+		} );
+	}
+
+	/**
+	 * Copy the data of <em>other</em>, which must have the same size.
+	 */
+	public void set( final InPlaceFFT other )
+	{
+		if ( other.data.length != data.length || other.rowLength != rowLength )
+			throw new RuntimeException( "InPlaceFFTs differ in size." );
+		System.arraycopy( other.data, 0, data, 0, data.length );
+		isComplex = other.isComplex;
+	}
+
+	/**
+	 * Compute the forward transforms of many same-sized {@link InPlaceFFT}s.
+	 * Every transform runs single-threaded, up to <em>numThreads</em>
+	 * transforms run concurrently.
+	 */
+	public static void forward( final List< InPlaceFFT > ffts, final int numThreads )
+	{
+		runBatch( ffts, numThreads, true );
+	}
+
+	/**
+	 * Compute the inverse transforms of many same-sized {@link InPlaceFFT}s.
+	 * Every transform runs single-threaded, up to <em>numThreads</em>
+	 * transforms run concurrently.
+	 */
+	public static void inverse( final List< InPlaceFFT > ffts, final int numThreads )
+	{
+		runBatch( ffts, numThreads, false );
+	}
+
+	static void runBatch( final List< InPlaceFFT > ffts, final int numThreads, final boolean forward )
+	{
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >( ffts.size() );
+		for ( final InPlaceFFT fft : ffts )
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					final int n = fft.getNumThreads();
+					fft.setNumThreads( 1 );
+					try
+					{
+						if ( forward )
+							fft.forward();
+						else
+							fft.inverse();
+					}
+					finally
+					{
+						fft.setNumThreads( n );
+					}
+				}
+			} );
+		TaskExecutor.getDefault().run( tasks, numThreads );
+	}
+
+	/**
+	 * Transform all complex lines along dimension <em>dim</em> &gt; 0. Lines
+	 * are gathered in blocks of adjacent columns to read rows contiguously.
+	 */
+	protected void complexToComplex( final FFTEngine engine, final int dim, final int sign )
+	{
+		final int numColumns = rowLength / 2;
+		final int blockSize = Math.min( numColumns, 16 );
+		final int numBlocks = ( numColumns + blockSize - 1 ) / blockSize;
+		final int n = size[ dim ];
+
+		long inner = 1;
+		for ( int d = 1; d < dim; ++d )
+			inner *= size[ d ];
+		long outer = 1;
+		for ( int d = dim + 1; d < numDimensions; ++d )
+			outer *= size[ d ];
+		final long numInner = inner;
+		final int stride = ( int ) ( inner * rowLength );
+
+		TaskExecutor.getDefault().run( outer * numInner * numBlocks, numThreads, new ChunkTask()
+		{
+			@Override
+			public void run( final Chunk chunk )
+			{
+				final float[][] lines = getLineBuffers( blockSize, 2 * n );
+				long index = chunk.getStartPosition();
+				for ( long j = 0; j < chunk.getLoopSize(); ++j, ++index )
+				{
+					final long slice = index / numBlocks;
+					final int block = ( int ) ( index - slice * numBlocks );
+					final long o = slice / numInner;
+					final long m = slice - o * numInner;
+					final int firstColumn = block * blockSize;
+					final int numLines = Math.min( blockSize, numColumns - firstColumn );
+					final int base = ( int ) ( ( o * n * numInner + m ) * rowLength ) + 2 * firstColumn;
+
+					// gather
+					for ( int i = 0; i < n; ++i )
+					{
+						final int offset = base + i * stride;
+						for ( int c = 0; c < numLines; ++c )
+						{
+							lines[ c ][ 2 * i ] = data[ offset + 2 * c ];
+							lines[ c ][ 2 * i + 1 ] = data[ offset + 2 * c + 1 ];
+						}
+					}
+
+					for ( int c = 0; c < numLines; ++c )
+						engine.complexToComplex( n, sign, lines[ c ], lines[ c ] );
+
+					// scatter
+					for ( int i = 0; i < n; ++i )
+					{
+						final int offset = base + i * stride;
+						for ( int c = 0; c < numLines; ++c )
+						{
+							data[ offset + 2 * c ] = lines[ c ][ 2 * i ];
+							data[ offset + 2 * c + 1 ] = lines[ c ][ 2 * i + 1 ];
+						}
+					}
+				}
+			}
+		} );
+	}
+
+	/**
+	 * Set dimensions 1 ... n-1 of <em>position</em> to the row with the given
+	 * index.
+	 */
+	void setRowPosition( long row, final int[] position )
+	{
+		for ( int d = 1; d < numDimensions; ++d )
+		{
+			position[ d ] = ( int ) ( row % size[ d ] );
+			row /= size[ d ];
+		}
+	}
+
+	void runRows( final ChunkTask task )
+	{
+		TaskExecutor.getDefault().run( numRows, numThreads, task );
+	}
+}
@@ -59,12 +59,27 @@ public class InverseFourierConvolution< T extends RealType< T >, S extends RealT
 		super( image, kernel );
 	}
 	
+	/**
+	 * Divide in Fourier Space
+	 * 
+	 * @param a - is divided by b in place
+	 * @param b
+	 */
+	@Override
+	protected void multiply( final InPlaceFFT a, final InPlaceFFT b )
+	{
+		a.divide( b );
+	}
+
 	/**
 	 * Divide in Fourier Space
 	 * 
 	 * @param a
 	 * @param b
+	 * @deprecated not called by {@link #process()} anymore, override
+	 *             {@link #multiply(InPlaceFFT, InPlaceFFT)} instead.
 	 */
+	@Deprecated
 	protected void multiply( final Img< ComplexFloatType > a, final Img< ComplexFloatType > b )
 	{
 		final Cursor<ComplexFloatType> cursorA = a.cursor();
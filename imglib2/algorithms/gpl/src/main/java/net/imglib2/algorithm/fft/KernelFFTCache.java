@@ -0,0 +1,211 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imglib2.algorithm.fft;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.iterator.LocalizingZeroMinIntervalIterator;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Caches the Fourier transforms of convolution kernels, keyed by kernel
+ * identity and FFT size. A kernel is transformed once per FFT size and the
+ * result is shared by all convolutions using that kernel and size. The cache
+ * holds the kernels only weakly and evicts the least recently used transform
+ * when it holds more than {@link #getMaxEntries()} transforms.
+ *
+ * <p>
+ * The cache cannot observe changes to a kernel. If a kernel is modified after
+ * it was transformed, {@link #remove(Object)} it.
+ * </p>
+ */
+public class KernelFFTCache
+{
+	static final class Key
+	{
+		final WeakReference< Object > kernel;
+
+		final int kernelHash;
+
+		final int[] fftSize;
+
+		Key( final Object kernel, final int[] fftSize )
+		{
+			this.kernel = new WeakReference< Object >( kernel );
+			this.kernelHash = System.identityHashCode( kernel );
+			this.fftSize = fftSize;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return 31 * kernelHash + Arrays.hashCode( fftSize );
+		}
+
+		@Override
+		public boolean equals( final Object o )
+		{
+			if ( !( o instanceof Key ) )
+				return false;
+			final Key k = ( Key ) o;
+			final Object kernel = this.kernel.get();
+			return kernel != null && kernel == k.kernel.get() && Arrays.equals( fftSize, k.fftSize );
+		}
+	}
+
+	final int maxEntries;
+
+	final LinkedHashMap< Key, InPlaceFFT > cache;
+
+	/**
+	 * @param maxEntries
+	 *            the maximum number of kernel transforms that are kept.
+	 */
+	public KernelFFTCache( final int maxEntries )
+	{
+		this.maxEntries = Math.max( 1, maxEntries );
+		this.cache = new LinkedHashMap< Key, InPlaceFFT >( 16, 0.75f, true )
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry( final Map.Entry< Key, InPlaceFFT > eldest )
+			{
+				return size() > KernelFFTCache.this.maxEntries;
+			}
+		};
+	}
+
+	public int getMaxEntries() { return maxEntries; }
+
+	/**
+	 * @return the number of kernel transforms currently in the cache.
+	 */
+	public synchronized int size()
+	{
+		removeCollected();
+		return cache.size();
+	}
+
+	/**
+	 * Get the transform of <em>kernel</em> for the given FFT size, computing
+	 * it if necessary. The kernel is placed with its center pixel at the
+	 * origin, wrapping around the borders, so that multiplying with the
+	 * transform of an image computes a convolution. The kernel must have an
+	 * odd size in every dimension.
+	 *
+	 * The returned {@link InPlaceFFT} is shared and must not be modified.
+	 */
+	public synchronized < S extends RealType< S > > InPlaceFFT get( final RandomAccessibleInterval< S > kernel, final int[] fftSize )
+	{
+		final Key key = new Key( kernel, fftSize.clone() );
+		InPlaceFFT kernelFFT = cache.get( key );
+		if ( kernelFFT == null )
+		{
+			removeCollected();
+			kernelFFT = transformKernel( kernel, fftSize );
+			cache.put( key, kernelFFT );
+		}
+		return kernelFFT;
+	}
+
+	/**
+	 * Remove all transforms of <em>kernel</em>.
+	 */
+	public synchronized void remove( final Object kernel )
+	{
+		final Iterator< Key > it = cache.keySet().iterator();
+		while ( it.hasNext() )
+		{
+			final Object k = it.next().kernel.get();
+			if ( k == null || k == kernel )
+				it.remove();
+		}
+	}
+
+	public synchronized void clear()
+	{
+		cache.clear();
+	}
+
+	/**
+	 * Remove entries whose kernels have been garbage collected.
+	 */
+	protected void removeCollected()
+	{
+		final Iterator< Key > it = cache.keySet().iterator();
+		while ( it.hasNext() )
+			if ( it.next().kernel.get() == null )
+				it.remove();
+	}
+
+	/**
+	 * Place the kernel with its center at the origin and compute its forward
+	 * transform.
+	 */
+	public static < S extends RealType< S > > InPlaceFFT transformKernel( final RandomAccessibleInterval< S > kernel, final int[] fftSize )
+	{
+		final int numDimensions = kernel.numDimensions();
+		for ( int d = 0; d < numDimensions; ++d )
+		{
+			if ( kernel.dimension( d ) % 2 != 1 )
+				throw new RuntimeException( "Kernel has no odd size in dimension " + d + " (" + kernel.dimension( d ) + ")" );
+			if ( kernel.dimension( d ) > fftSize[ d ] )
+				throw new RuntimeException( "Kernel is larger than the FFT size in dimension " + d );
+		}
+
+		final InPlaceFFT fft = new InPlaceFFT( fftSize );
+		final float[] data = fft.getData();
+		final int rowLength = fft.getRowLength();
+
+		final RandomAccess< S > kernelAccess = kernel.randomAccess();
+		final LocalizingZeroMinIntervalIterator iterator = new LocalizingZeroMinIntervalIterator( kernel );
+		final int[] position = new int[ numDimensions ];
+		while ( iterator.hasNext() )
+		{
+			iterator.fwd();
+			iterator.localize( position );
+
+			int index = 0;
+			for ( int d = numDimensions - 1; d >= 0; --d )
+			{
+				final int p = ( position[ d ] - ( int ) kernel.dimension( d ) / 2 + fftSize[ d ] ) % fftSize[ d ];
+				index = d == 0 ? index * rowLength + p : index * fftSize[ d ] + p;
+				kernelAccess.setPosition( position[ d ] + kernel.min( d ), d );
+			}
+			data[ index ] = kernelAccess.get().getRealFloat();
+		}
+
+		fft.forward();
+		return fft;
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imglib2.algorithm.fft;
+
+import java.util.HashMap;
+
+import edu.mines.jtk.dsp.FftComplex;
+import edu.mines.jtk.dsp.FftReal;
+
+/**
+ * {@link FFTEngine} based on the Mines Java Toolkit. Every thread keeps its
+ * own {@link FftReal}/{@link FftComplex} plans, keyed by size.
+ */
+public class MinesJtkFFTEngine implements FFTEngine
+{
+	final ThreadLocal< HashMap< Integer, FftReal > > realPlans = new ThreadLocal< HashMap< Integer, FftReal > >()
+	{
+		@Override
+		protected HashMap< Integer, FftReal > initialValue()
+		{
+			return new HashMap< Integer, FftReal >();
+		}
+	};
+
+	final ThreadLocal< HashMap< Integer, FftComplex > > complexPlans = new ThreadLocal< HashMap< Integer, FftComplex > >()
+	{
+		@Override
+		protected HashMap< Integer, FftComplex > initialValue()
+		{
+			return new HashMap< Integer, FftComplex >();
+		}
+	};
+
+	protected FftReal getRealPlan( final int nfft )
+	{
+		final HashMap< Integer, FftReal > plans = realPlans.get();
+		FftReal plan = plans.get( nfft );
+		if ( plan == null )
+		{
+			plan = new FftReal( nfft );
+			plans.put( nfft, plan );
+		}
+		return plan;
+	}
+
+	protected FftComplex getComplexPlan( final int nfft )
+	{
+		final HashMap< Integer, FftComplex > plans = complexPlans.get();
+		FftComplex plan = plans.get( nfft );
+		if ( plan == null )
+		{
+			plan = new FftComplex( nfft );
+			plans.put( nfft, plan );
+		}
+		return plan;
+	}
+
+	@Override
+	public int nfftReal( final int n, final boolean fast )
+	{
+		return fast ? FftReal.nfftFast( n ) : FftReal.nfftSmall( n );
+	}
+
+	@Override
+	public int nfftComplex( final int n, final boolean fast )
+	{
+		return fast ? FftComplex.nfftFast( n ) : FftComplex.nfftSmall( n );
+	}
+
+	@Override
+	public void realToComplex( final int nfft, final int sign, final float[] rx, final float[] cy )
+	{
+		getRealPlan( nfft ).realToComplex( sign, rx, cy );
+	}
+
+	@Override
+	public void complexToReal( final int nfft, final int sign, final float[] cx, final float[] ry )
+	{
+		getRealPlan( nfft ).complexToReal( sign, cx, ry );
+	}
+
+	@Override
+	public void complexToComplex( final int nfft, final int sign, final float[] cx, final float[] cy )
+	{
+		getComplexPlan( nfft ).complexToComplex( sign, cx, cy );
+	}
+}
@@ -34,10 +34,14 @@ import net.imglib2.ExtendedRandomAccessibleInterval;
 import net.imglib2.algorithm.Algorithm;
 import net.imglib2.algorithm.Benchmark;
 import net.imglib2.algorithm.MultiThreaded;
-import net.imglib2.algorithm.fft.FourierTransform.Rearrangement;
 import net.imglib2.exception.IncompatibleTypeException;
 import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.multithreading.Chunk;
+import net.imglib2.multithreading.ChunkTask;
 import net.imglib2.multithreading.SimpleMultiThreading;
+import net.imglib2.multithreading.TaskExecutor;
+import net.imglib2.outofbounds.OutOfBoundsMirrorExpWindowingFactory;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.complex.ComplexFloatType;
 import net.imglib2.type.numeric.real.FloatType;
@@ -125,7 +129,8 @@ public class PhaseCorrelation<T extends RealType<T>, S extends RealType<S>> impl
 			// get the maximal dimensions of both images
 			final int[] maxDim = getMaxDim( image1, image2 );
 
-			// compute fourier transforms
+			// the extension of the images is computed by FourierTransform,
+			// the transforms themselves are computed in place
 			final FourierTransform<T, ComplexFloatType> fft1;
 			final FourierTransform<S, ComplexFloatType> fft2;
 			try {
@@ -137,10 +142,6 @@ public class PhaseCorrelation<T extends RealType<T>, S extends RealType<S>> impl
 			}
 			fft1.setRelativeImageExtension( 0.1f );
 			fft2.setRelativeImageExtension( 0.1f );
-			fft1.setRelativeFadeOutDistance( 0.1f );
-			fft2.setRelativeFadeOutDistance( 0.1f );		
-			fft1.setRearrangement( Rearrangement.UNCHANGED );
-			fft2.setRearrangement( Rearrangement.UNCHANGED );
 
 			boolean sizeFound = false;
 
@@ -177,17 +178,22 @@ public class PhaseCorrelation<T extends RealType<T>, S extends RealType<S>> impl
 				return false;
 			}
 
-			//
-			// compute the fft's
-			//
-			if ( !computeFFT( fft1, fft2 ) )
+			// both images are centered in FFTs of the same size
+			final int[] fftSize = InPlaceFFT.getFFTSize( fft1.getExtendedSize(), true );
+			final int[] offset1 = new int[ numDimensions ];
+			final int[] offset2 = new int[ numDimensions ];
+			for ( int d = 0; d < numDimensions; ++d )
 			{
-				errorMessage = "Fourier Transform of failed: fft1=" + fft1.getErrorMessage() + " fft2=" + fft2.getErrorMessage();
-				return false;
+				offset1[ d ] = ( fftSize[ d ] - (int)image1.dimension( d ) ) / 2;
+				offset2[ d ] = ( fftSize[ d ] - (int)image2.dimension( d ) ) / 2;
 			}
 
-			final Img<ComplexFloatType> fftImage1 = fft1.getResult();
-			final Img<ComplexFloatType> fftImage2 = fft2.getResult();
+			//
+			// compute the fft's
+			//
+			final InPlaceFFT fftImage1 = new InPlaceFFT( fftSize );
+			final InPlaceFFT fftImage2 = new InPlaceFFT( fftSize );
+			computeFFT( fftImage1, image1, offset1, fftImage2, image2, offset2 );
 
 			//
 			// normalize and compute complex conjugate of fftImage2
@@ -197,28 +203,15 @@ public class PhaseCorrelation<T extends RealType<T>, S extends RealType<S>> impl
 			//
 			// multiply fftImage1 and fftImage2 which yields the phase correlation spectrum
 			//
-			multiplyInPlace( fftImage1, fftImage2 );
+			fftImage1.setNumThreads( getNumThreads() );
+			fftImage1.multiply( fftImage2, false );
 			
 			//
 			// invert fftImage1 which contains the phase correlation spectrum
 			//
-			final InverseFourierTransform<FloatType, ComplexFloatType> invFFT;
-			try {
-				invFFT = new InverseFourierTransform<FloatType, ComplexFloatType>( fftImage1, fft1, new FloatType() );
-			} catch (Exception e) {
-				e.printStackTrace();
-				return false;
-			}
-			//invFFT.setInPlaceTransform( true );
-			invFFT.setCropBackToOriginalSize( false );
-
-			if ( !invFFT.checkInput() || !invFFT.process() )
-			{
-				errorMessage = "Inverse Fourier Transform of failed: " + invFFT.getErrorMessage();
-				return false;			
-			}
-
-			invPCM = invFFT.getResult();
+			fftImage1.inverse();
+			invPCM = new ArrayImgFactory< FloatType >().create( fftSize, new FloatType() );
+			fftImage1.store( invPCM, new long[ numDimensions ] );
 
 			/*
 		invPCM.getDisplay().setMinMax();
@@ -229,7 +222,7 @@ public class PhaseCorrelation<T extends RealType<T>, S extends RealType<S>> impl
 			//
 			// extract the peaks
 			//
-			phaseCorrelationPeaks = extractPhaseCorrelationPeaks( invPCM, numPeaks, fft1, fft2 );
+			phaseCorrelationPeaks = extractPhaseCorrelationPeaks( invPCM, numPeaks, offset1, offset2 );
 
 			if ( !verifyWithCrossCorrelation )
 				return true;
@@ -498,8 +491,23 @@ public class PhaseCorrelation<T extends RealType<T>, S extends RealType<S>> impl
 		return correlationCoefficient;
 	}
 	
+	/**
+	 * @deprecated not called by {@link #process()} anymore, which computes the
+	 *             transforms with {@link InPlaceFFT}.
+	 */
+	@Deprecated
 	protected ArrayList<PhaseCorrelationPeak> extractPhaseCorrelationPeaks( final Img<FloatType> invPCM, final int numPeaks,
 	                                                                        final FourierTransform<?,?> fft1, final FourierTransform<?,?> fft2 )
+	{
+		return extractPhaseCorrelationPeaks( invPCM, numPeaks, fft1.getOriginalOffset(), fft2.getOriginalOffset() );
+	}
+
+	/**
+	 * @param originalOffset1 - the position of image1 in its FFT
+	 * @param originalOffset2 - the position of image2 in its FFT
+	 */
+	protected ArrayList<PhaseCorrelationPeak> extractPhaseCorrelationPeaks( final Img<FloatType> invPCM, final int numPeaks,
+	                                                                        final int[] originalOffset1, final int[] originalOffset2 )
 	{
 		final ArrayList<PhaseCorrelationPeak> peakList = new ArrayList<PhaseCorrelationPeak>();
 		
@@ -513,9 +521,6 @@ public class PhaseCorrelation<T extends RealType<T>, S extends RealType<S>> impl
 		final LocalNeighborhoodCursor<FloatType> localCursor =
 			new LocalNeighborhoodCursor<FloatType>( extendedInvPCM.randomAccess(), 1 );
 
-		final int[] originalOffset1 = fft1.getOriginalOffset();
-		final int[] originalOffset2 = fft2.getOriginalOffset();
-
 		final int[] offset = new int[ numDimensions ];
 		
 		for ( int d = 0; d < numDimensions; ++d )
@@ -602,6 +607,11 @@ public class PhaseCorrelation<T extends RealType<T>, S extends RealType<S>> impl
 		return maxDim;
 	}
 	
+	/**
+	 * @deprecated not called by {@link #process()} anymore, which computes the
+	 *             transforms with {@link InPlaceFFT}.
+	 */
+	@Deprecated
 	protected void multiplyInPlace( final Img<ComplexFloatType> fftImage1, final Img<ComplexFloatType> fftImage2 )
 	{
 		final Cursor<ComplexFloatType> cursor1 = fftImage1.cursor();
@@ -616,6 +626,51 @@ public class PhaseCorrelation<T extends RealType<T>, S extends RealType<S>> impl
 		}
 	}
 	
+	/**
+	 * Normalize the length of all complex values of both transforms to one
+	 * and compute the complex conjugate of fftImage2.
+	 */
+	protected void normalizeAndConjugate( final InPlaceFFT fftImage1, final InPlaceFFT fftImage2 )
+	{
+		normalize( fftImage1, normalizationThreshold, false, getNumThreads() );
+		normalize( fftImage2, normalizationThreshold, true, getNumThreads() );
+	}
+
+	private static void normalize( final InPlaceFFT fft, final float threshold, final boolean conjugate, final int numThreads )
+	{
+		final float[] data = fft.getData();
+		final float sign = conjugate ? -1 : 1;
+		TaskExecutor.getDefault().run( data.length / 2, numThreads, new ChunkTask()
+		{
+			@Override
+			public void run( final Chunk chunk )
+			{
+				final int end = 2 * (int)( chunk.getStartPosition() + chunk.getLoopSize() );
+				for ( int i = 2 * (int)chunk.getStartPosition(); i < end; i += 2 )
+				{
+					final float real = data[ i ];
+					final float complex = data[ i + 1 ];
+					final float length = (float)Math.sqrt( real*real + complex*complex );
+					if ( length < threshold )
+					{
+						data[ i ] = 0;
+						data[ i + 1 ] = 0;
+					}
+					else
+					{
+						data[ i ] = real / length;
+						data[ i + 1 ] = sign * complex / length;
+					}
+				}
+			}
+		} );
+	}
+
+	/**
+	 * @deprecated not called by {@link #process()} anymore, which computes the
+	 *             transforms with {@link InPlaceFFT}.
+	 */
+	@Deprecated
 	protected void normalizeAndConjugate( final Img<ComplexFloatType> fftImage1, final Img<ComplexFloatType> fftImage2 )
 	{
 		final AtomicInteger ai = new AtomicInteger(0);
@@ -690,6 +745,53 @@ public class PhaseCorrelation<T extends RealType<T>, S extends RealType<S>> impl
 		}
 	}
 		
+	/**
+	 * Load both images, extended by mirroring with exponential fading, and
+	 * compute their forward transforms. If {@link #getComputeFFTinParalell()},
+	 * both transforms are computed concurrently, using half of the threads each.
+	 */
+	protected void computeFFT( final InPlaceFFT fft1, final Img<T> img1, final int[] offset1, final InPlaceFFT fft2, final Img<S> img2, final int[] offset2 )
+	{
+		final boolean paralell = computeFFTinParalell && getNumThreads() > 1;
+		final int numThreadsPerFFT = paralell ? getNumThreads() / 2 : getNumThreads();
+		fft1.setNumThreads( numThreadsPerFFT );
+		fft2.setNumThreads( numThreadsPerFFT );
+
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >( 2 );
+		tasks.add( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				fft1.load( Views.extend( img1, new OutOfBoundsMirrorExpWindowingFactory< T, Img<T> >( 0.1f ) ), getMin( img1, offset1 ) );
+				fft1.forward();
+			}
+		} );
+		tasks.add( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				fft2.load( Views.extend( img2, new OutOfBoundsMirrorExpWindowingFactory< S, Img<S> >( 0.1f ) ), getMin( img2, offset2 ) );
+				fft2.forward();
+			}
+		} );
+		TaskExecutor.getDefault().run( tasks, paralell ? 2 : 1 );
+	}
+
+	private static long[] getMin( final Img<?> img, final int[] offset )
+	{
+		final long[] min = new long[ offset.length ];
+		for ( int d = 0; d < offset.length; ++d )
+			min[ d ] = img.min( d ) - offset[ d ];
+		return min;
+	}
+
+	/**
+	 * @deprecated not called by {@link #process()} anymore, which computes the
+	 *             transforms with {@link InPlaceFFT}.
+	 */
+	@Deprecated
 	protected boolean computeFFT( final FourierTransform<T, ComplexFloatType> fft1, final FourierTransform<S, ComplexFloatType> fft2 )
 	{
 		// use two threads in paralell if wanted
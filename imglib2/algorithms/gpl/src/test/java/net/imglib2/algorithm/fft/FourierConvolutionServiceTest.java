@@ -0,0 +1,178 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imglib2.algorithm.fft;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory.Boundary;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link FourierConvolutionService} and {@link KernelFFTCache}.
+ */
+public class FourierConvolutionServiceTest
+{
+	final OutOfBoundsFactory< FloatType, RandomAccessibleInterval< FloatType > > outOfBounds = new OutOfBoundsMirrorFactory< FloatType, RandomAccessibleInterval< FloatType > >( Boundary.SINGLE );
+
+	static Img< FloatType > createRandom( final long seed, final long... dim )
+	{
+		int size = 1;
+		for ( final long d : dim )
+			size *= d;
+		final float[] data = new float[ size ];
+		final Random random = new Random( seed );
+		for ( int i = 0; i < size; ++i )
+			data[ i ] = random.nextFloat();
+		return ArrayImgs.floats( data, dim );
+	}
+
+	Img< FloatType > convolveSpatial( final Img< FloatType > img, final Img< FloatType > kernel )
+	{
+		final Img< FloatType > result = createRandom( 0, img.dimension( 0 ), img.dimension( 1 ) );
+		final RandomAccessible< FloatType > extended = Views.extend( img, outOfBounds );
+		final RandomAccess< FloatType > in = extended.randomAccess();
+		final RandomAccess< FloatType > k = kernel.randomAccess();
+		final Cursor< FloatType > c = result.localizingCursor();
+		final int kx = ( int ) kernel.dimension( 0 ) / 2;
+		final int ky = ( int ) kernel.dimension( 1 ) / 2;
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			float sum = 0;
+			for ( int y = 0; y < kernel.dimension( 1 ); ++y )
+				for ( int x = 0; x < kernel.dimension( 0 ); ++x )
+				{
+					k.setPosition( new int[] { x, y } );
+					in.setPosition( new long[] { c.getLongPosition( 0 ) - x + kx, c.getLongPosition( 1 ) - y + ky } );
+					sum += in.get().get() * k.get().get();
+				}
+			c.get().set( sum );
+		}
+		return result;
+	}
+
+	static void assertImgEquals( final Img< FloatType > expected, final Img< FloatType > actual, final float delta )
+	{
+		final Cursor< FloatType > a = actual.localizingCursor();
+		final RandomAccess< FloatType > e = expected.randomAccess();
+		while ( a.hasNext() )
+		{
+			a.fwd();
+			e.setPosition( a );
+			assertEquals( e.get().get(), a.get().get(), delta );
+		}
+	}
+
+	@Test
+	public void testConvolve()
+	{
+		final Img< FloatType > img = createRandom( 1, 13, 10 );
+		final Img< FloatType > kernel = createRandom( 2, 5, 3 );
+		final Img< FloatType > result = createRandom( 3, 13, 10 );
+		final FourierConvolutionService service = new FourierConvolutionService();
+		service.convolve( img, kernel, result, outOfBounds );
+		assertImgEquals( convolveSpatial( img, kernel ), result, 1e-4f );
+	}
+
+	@Test
+	public void testConvolveMany()
+	{
+		final Img< FloatType > kernel = createRandom( 2, 3, 5 );
+		final ArrayList< Img< FloatType > > inputs = new ArrayList< Img< FloatType > >();
+		final ArrayList< Img< FloatType > > outputs = new ArrayList< Img< FloatType > >();
+		for ( int i = 0; i < 6; ++i )
+		{
+			inputs.add( createRandom( i, 12, 9 ) );
+			outputs.add( createRandom( 0, 12, 9 ) );
+		}
+
+		final FourierConvolutionService service = new FourierConvolutionService();
+		service.setNumThreads( 3 );
+		service.convolve( inputs, kernel, outputs, outOfBounds );
+		for ( int i = 0; i < 6; ++i )
+			assertImgEquals( convolveSpatial( inputs.get( i ), kernel ), outputs.get( i ), 1e-4f );
+
+		// the kernel was transformed only once
+		assertEquals( 1, service.getKernelCache().size() );
+	}
+
+	@Test
+	public void testConvolveTiled()
+	{
+		final Img< FloatType > img = createRandom( 1, 13, 10 );
+		final Img< FloatType > kernel = createRandom( 2, 5, 3 );
+		final Img< FloatType > expected = convolveSpatial( img, kernel );
+
+		// copy the input to a CellImg
+		final Img< FloatType > cellImg = new CellImgFactory< FloatType >( 4 ).create( img, new FloatType() );
+		final Cursor< FloatType > out = cellImg.localizingCursor();
+		final RandomAccess< FloatType > in = img.randomAccess();
+		while ( out.hasNext() )
+		{
+			out.fwd();
+			in.setPosition( out );
+			out.get().set( in.get() );
+		}
+		final Img< FloatType > result = new CellImgFactory< FloatType >( 4 ).create( img, new FloatType() );
+
+		final FourierConvolutionService service = new FourierConvolutionService();
+		service.setNumThreads( 2 );
+		service.convolveTiled( cellImg, kernel, result, outOfBounds, new int[] { 5, 4 } );
+		assertImgEquals( expected, result, 1e-4f );
+	}
+
+	@Test
+	public void testCache()
+	{
+		final KernelFFTCache cache = new KernelFFTCache( 2 );
+		final Img< FloatType > kernel1 = createRandom( 1, 3, 3 );
+		final Img< FloatType > kernel2 = createRandom( 2, 3, 3 );
+		final int[] size = new int[] { 8, 8 };
+		final InPlaceFFT fft = cache.get( kernel1, size );
+		assertSame( fft, cache.get( kernel1, size ) );
+		cache.get( kernel1, new int[] { 10, 8 } );
+		cache.get( kernel2, size );
+		assertEquals( 2, cache.size() );
+		cache.remove( kernel2 );
+		assertEquals( 1, cache.size() );
+	}
+}
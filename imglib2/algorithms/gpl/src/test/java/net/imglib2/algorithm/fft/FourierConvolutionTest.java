@@ -0,0 +1,106 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imglib2.algorithm.fft;
+
+import static net.imglib2.algorithm.fft.FourierConvolutionServiceTest.assertImgEquals;
+import static net.imglib2.algorithm.fft.FourierConvolutionServiceTest.createRandom;
+import static org.junit.Assert.assertTrue;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link FourierConvolution} and {@link InverseFourierConvolution}.
+ */
+public class FourierConvolutionTest
+{
+	final FourierConvolutionServiceTest spatial = new FourierConvolutionServiceTest();
+
+	@Test
+	public void testConvolve() throws IncompatibleTypeException
+	{
+		final Img< FloatType > img = createRandom( 1, 13, 10 );
+		final Img< FloatType > kernel = createRandom( 2, 5, 3 );
+		final FourierConvolution< FloatType, FloatType > convolution = new FourierConvolution< FloatType, FloatType >( img, kernel );
+		assertTrue( convolution.checkInput() );
+		assertTrue( convolution.process() );
+		assertImgEquals( spatial.convolveSpatial( img, kernel ), convolution.getResult(), 1e-4f );
+	}
+
+	@Test
+	public void testReplaceInputAndKernel() throws IncompatibleTypeException
+	{
+		final Img< FloatType > kernel1 = createRandom( 2, 5, 3 );
+		final Img< FloatType > kernel2 = createRandom( 3, 3, 3 );
+		final FourierConvolution< FloatType, FloatType > convolution = new FourierConvolution< FloatType, FloatType >( createRandom( 1, 13, 10 ), kernel1 );
+		assertTrue( convolution.process() );
+
+		for ( int i = 0; i < 3; ++i )
+		{
+			final Img< FloatType > img = createRandom( 4 + i, 13, 10 );
+			convolution.setKeepImgFFT( i % 2 == 0 );
+			convolution.replaceInput( img );
+			assertTrue( convolution.process() );
+			assertImgEquals( spatial.convolveSpatial( img, kernel1 ), convolution.getResult(), 1e-4f );
+
+			// the kept transform of the image is reused
+			convolution.replaceKernel( kernel2 );
+			assertTrue( convolution.process() );
+			assertImgEquals( spatial.convolveSpatial( img, kernel2 ), convolution.getResult(), 1e-4f );
+			convolution.replaceKernel( kernel1 );
+		}
+
+		// an image of a different size
+		final Img< FloatType > img = createRandom( 8, 7, 12 );
+		convolution.replaceInput( img );
+		assertTrue( convolution.process() );
+		assertImgEquals( spatial.convolveSpatial( img, kernel1 ), convolution.getResult(), 1e-4f );
+	}
+
+	@Test
+	public void testInverseConvolve() throws IncompatibleTypeException
+	{
+		final Img< FloatType > img = createRandom( 1, 13, 10 );
+		final Img< FloatType > kernel = ArrayImgs.floats( 3, 3 );
+		final RandomAccess< FloatType > k = kernel.randomAccess();
+		k.setPosition( new int[] { 1, 1 } );
+		k.get().set( 2 );
+		final InverseFourierConvolution< FloatType, FloatType > convolution = new InverseFourierConvolution< FloatType, FloatType >( img, kernel );
+		assertTrue( convolution.process() );
+
+		final Img< FloatType > expected = img.copy();
+		final Cursor< FloatType > c = expected.cursor();
+		while ( c.hasNext() )
+			c.next().mul( 0.5f );
+		assertImgEquals( expected, convolution.getResult(), 1e-5f );
+	}
+}
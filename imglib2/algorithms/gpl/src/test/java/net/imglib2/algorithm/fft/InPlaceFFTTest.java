@@ -0,0 +1,141 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imglib2.algorithm.fft;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.outofbounds.OutOfBoundsConstantValueFactory;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link InPlaceFFT}.
+ */
+public class InPlaceFFTTest
+{
+	final int[] size = new int[] { 8, 6, 5 };
+
+	static Img< FloatType > createRandom( final int[] size, final long seed )
+	{
+		final float[] data = new float[ size[ 0 ] * size[ 1 ] * size[ 2 ] ];
+		final Random random = new Random( seed );
+		for ( int i = 0; i < data.length; ++i )
+			data[ i ] = random.nextFloat();
+		return ArrayImgs.floats( data, size[ 0 ], size[ 1 ], size[ 2 ] );
+	}
+
+	static void assertImgEquals( final Img< FloatType > expected, final Img< FloatType > actual, final float delta )
+	{
+		final Cursor< FloatType > e = expected.cursor();
+		final Cursor< FloatType > a = actual.cursor();
+		while ( e.hasNext() )
+			assertEquals( e.next().get(), a.next().get(), delta );
+	}
+
+	@Test
+	public void testForwardInverse()
+	{
+		final Img< FloatType > input = createRandom( size, 1 );
+		final InPlaceFFT fft = new InPlaceFFT( size );
+		fft.setNumThreads( 3 );
+		fft.load( input, new long[ 3 ] );
+		fft.forward();
+		fft.inverse();
+
+		final Img< FloatType > output = createRandom( size, 2 );
+		fft.store( output, new long[ 3 ] );
+		assertImgEquals( input, output, 1e-4f );
+	}
+
+	@Test
+	public void testCompareToFFTFunctions()
+	{
+		final Img< FloatType > input = createRandom( size, 1 );
+		final Img< ComplexFloatType > expected = FFTFunctions.computeFFT( input, new ArrayImgFactory< ComplexFloatType >(), new ComplexFloatType(),
+				new OutOfBoundsConstantValueFactory< FloatType, RandomAccessibleInterval< FloatType > >( new FloatType() ), new int[ 3 ], size, 2, false );
+
+		final InPlaceFFT fft = new InPlaceFFT( size );
+		fft.load( input, new long[ 3 ] );
+		fft.forward();
+
+		final float[] data = fft.getData();
+		final RandomAccess< ComplexFloatType > ra = expected.randomAccess();
+		for ( int z = 0; z < size[ 2 ]; ++z )
+			for ( int y = 0; y < size[ 1 ]; ++y )
+				for ( int x = 0; x < size[ 0 ] / 2 + 1; ++x )
+				{
+					ra.setPosition( new int[] { x, y, z } );
+					final int i = ( z * size[ 1 ] + y ) * fft.getRowLength() + 2 * x;
+					assertEquals( ra.get().getRealFloat(), data[ i ], 1e-3f );
+					assertEquals( ra.get().getImaginaryFloat(), data[ i + 1 ], 1e-3f );
+				}
+	}
+
+	@Test
+	public void testBatchAndMultiply()
+	{
+		// convolution with a delta at the origin is the identity
+		final float[] deltaData = new float[ size[ 0 ] * size[ 1 ] * size[ 2 ] ];
+		deltaData[ 0 ] = 1;
+		final InPlaceFFT delta = new InPlaceFFT( size );
+		delta.load( ArrayImgs.floats( deltaData, size[ 0 ], size[ 1 ], size[ 2 ] ), new long[ 3 ] );
+		delta.forward();
+
+		final ArrayList< Img< FloatType > > inputs = new ArrayList< Img< FloatType > >();
+		final ArrayList< InPlaceFFT > ffts = new ArrayList< InPlaceFFT >();
+		for ( int i = 0; i < 4; ++i )
+		{
+			final Img< FloatType > input = createRandom( size, i );
+			final InPlaceFFT fft = new InPlaceFFT( size );
+			fft.load( input, new long[ 3 ] );
+			inputs.add( input );
+			ffts.add( fft );
+		}
+
+		InPlaceFFT.forward( ffts, 2 );
+		for ( final InPlaceFFT fft : ffts )
+			fft.multiply( delta, true );
+		InPlaceFFT.inverse( ffts, 2 );
+
+		for ( int i = 0; i < 4; ++i )
+		{
+			final Img< FloatType > output = createRandom( size, 10 );
+			ffts.get( i ).store( output, new long[ 3 ] );
+			assertImgEquals( inputs.get( i ), output, 1e-4f );
+		}
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imglib2.algorithm.fft;
+
+import static net.imglib2.algorithm.fft.FourierConvolutionServiceTest.createRandom;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link PhaseCorrelation}.
+ */
+public class PhaseCorrelationTest
+{
+	static Img< FloatType > crop( final Img< FloatType > img, final long[] min, final long... dim )
+	{
+		final Img< FloatType > crop = ArrayImgs.floats( dim );
+		final Cursor< FloatType > c = crop.localizingCursor();
+		final RandomAccess< FloatType > in = img.randomAccess();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			for ( int d = 0; d < dim.length; ++d )
+				in.setPosition( min[ d ] + c.getLongPosition( d ), d );
+			c.get().set( in.get() );
+		}
+		return crop;
+	}
+
+	@Test
+	public void testShift()
+	{
+		final Img< FloatType > img = createRandom( 1, 40, 36 );
+		final Img< FloatType > image1 = crop( img, new long[] { 0, 0 }, 30, 28 );
+		final Img< FloatType > image2 = crop( img, new long[] { 7, 4 }, 27, 30 );
+
+		for ( final boolean paralell : new boolean[] { false, true } )
+		{
+			final PhaseCorrelation< FloatType, FloatType > pc = new PhaseCorrelation< FloatType, FloatType >( image1, image2 );
+			pc.setComputeFFTinParalell( paralell );
+			pc.setNumThreads( 4 );
+			pc.setKeepPCM( true );
+			assertTrue( pc.checkInput() );
+			assertTrue( pc.process() );
+			assertArrayEquals( new long[] { 7, 4 }, pc.getShift().getPosition() );
+			assertEquals( 1.0, pc.getShift().getCrossCorrelationPeak(), 1e-4 );
+			assertEquals( pc.getPCM().dimension( 0 ), pc.getPCM().dimension( 1 ) );
+		}
+	}
+}
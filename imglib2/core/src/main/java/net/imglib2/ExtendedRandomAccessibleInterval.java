@@ -36,8 +36,11 @@
 
 package net.imglib2;
 
+import java.util.List;
+
 import net.imglib2.outofbounds.OutOfBounds;
 import net.imglib2.outofbounds.OutOfBoundsFactory;
+import net.imglib2.util.Intervals;
 import net.imglib2.util.Util;
 
 /**
@@ -45,6 +48,13 @@ import net.imglib2.util.Util;
  * through an {@link OutOfBoundsFactory}.
  * Note that it is not an Interval itself.
  *
+ * Algorithms that access a neighborhood of every position in an interval can
+ * split the interval into its {@link #interior(Interval, long[], long[])
+ * interior}, where the {@link #getSource() source} RandomAccess can be used
+ * without any out-of-bounds checks, and a thin
+ * {@link #border(Interval, long[], long[]) border} shell, where the
+ * {@link OutOfBounds} RandomAccess is needed.
+ *
  * @author ImgLib2 developers
  * @author Stephan Saalfeld <saalfeld@mpi-cbg.de>
  * @author Tobias Pietzsch
@@ -88,4 +98,35 @@ final public class ExtendedRandomAccessibleInterval< T, F extends RandomAccessib
 	{
 		return source;
 	}
+
+	public OutOfBoundsFactory< T, ? super F > getOutOfBoundsFactory()
+	{
+		return factory;
+	}
+
+	/**
+	 * Get the positions <em>x</em> in {@code interval} for which the
+	 * neighborhood <em>x + o</em>, {@code reachMin} &le; <em>o</em> &le;
+	 * {@code reachMax}, lies completely inside the {@link #getSource() source}
+	 * interval. There, the neighborhood can be accessed through a
+	 * RandomAccess on the source.
+	 *
+	 * @return the interior, which may be {@link Intervals#isEmpty(Interval)
+	 *         empty}.
+	 */
+	public FinalInterval interior( final Interval interval, final long[] reachMin, final long[] reachMax )
+	{
+		return Intervals.interior( interval, source, reachMin, reachMax );
+	}
+
+	/**
+	 * Get the positions in {@code interval} that are not in the
+	 * {@link #interior(Interval, long[], long[]) interior}, as at most
+	 * <em>2n</em> disjoint intervals. There, the neighborhood must be accessed
+	 * through the {@link OutOfBounds} RandomAccess.
+	 */
+	public List< FinalInterval > border( final Interval interval, final long[] reachMin, final long[] reachMax )
+	{
+		return Intervals.subtract( interval, interior( interval, reachMin, reachMax ) );
+	}
 }
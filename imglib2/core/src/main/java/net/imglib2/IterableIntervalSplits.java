@@ -0,0 +1,180 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imglib2.img.cell.AbstractCell;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.planar.PlanarImg;
+
+/**
+ * Split an {@link IterableInterval} into consecutive parts of its iteration
+ * order, such that the parts can be processed in parallel, e.g., by the
+ * {@link net.imglib2.multithreading.TaskExecutor}. Each part is an
+ * {@link IterableIntervalSubset}, its cursors iterate only the part.
+ *
+ * The parts are chosen to match the storage of the interval:
+ * {@link PlanarImg}s are split at plane boundaries and {@link CellImg}s at
+ * cell boundaries (if there are enough planes or cells, respectively), all
+ * other intervals are split into index ranges of equal size. A part of an
+ * {@link IterableIntervalSubset} is a subset of the underlying interval.
+ *
+ * <pre>
+ * for ( final IterableInterval&lt; T &gt; part : IterableIntervalSplits.split( img, numTasks ) )
+ * 	tasks.add( new Runnable()
+ * 	{
+ * 		public void run()
+ * 		{
+ * 			for ( final T t : part )
+ * 				...
+ * 		}
+ * 	} );
+ * </pre>
+ */
+final public class IterableIntervalSplits
+{
+	private IterableIntervalSplits() {}
+
+	/**
+	 * Split an {@link IterableInterval} into at most <em>numParts</em>
+	 * non-empty parts that together cover the interval in iteration order.
+	 *
+	 * @param interval
+	 * @param numParts
+	 * @return
+	 */
+	public static < T > List< IterableInterval< T > > split( final IterableInterval< T > interval, final int numParts )
+	{
+		if ( interval instanceof IterableIntervalSubset )
+		{
+			final IterableIntervalSubset< T > subset = ( IterableIntervalSubset< T > ) interval;
+			return subsets( subset.interval, subset.firstIndex, uniformBoundaries( subset.size(), numParts ) );
+		}
+
+		final long[] boundaries;
+		if ( interval instanceof PlanarImg )
+			boundaries = planeBoundaries( ( PlanarImg< ?, ? > ) interval, numParts );
+		else if ( interval instanceof CellImg )
+			boundaries = cellBoundaries( ( CellImg< ?, ?, ? > ) interval, numParts );
+		else
+			boundaries = uniformBoundaries( interval.size(), numParts );
+
+		return subsets( interval, 0, boundaries );
+	}
+
+	/**
+	 * Create a subset of <em>interval</em> for each pair of consecutive
+	 * boundaries.
+	 *
+	 * @param offset
+	 *            index in <em>interval</em> that corresponds to boundary 0.
+	 */
+	private static < T > List< IterableInterval< T > > subsets( final IterableInterval< T > interval, final long offset, final long[] boundaries )
+	{
+		final ArrayList< IterableInterval< T > > parts = new ArrayList< IterableInterval< T > >( boundaries.length - 1 );
+		for ( int i = 0; i < boundaries.length - 1; ++i )
+			parts.add( new IterableIntervalSubset< T >( interval, offset + boundaries[ i ], boundaries[ i + 1 ] - boundaries[ i ] ) );
+		return parts;
+	}
+
+	/**
+	 * Boundaries of (almost) equal sized parts of <em>size</em> elements.
+	 */
+	static long[] uniformBoundaries( final long size, final int numParts )
+	{
+		final int n = ( int ) Math.max( 1, Math.min( size, numParts ) );
+		final long[] boundaries = new long[ n + 1 ];
+		for ( int i = 0; i <= n; ++i )
+			boundaries[ i ] = size * i / n;
+		return boundaries;
+	}
+
+	/**
+	 * Boundaries aligned with the planes of a {@link PlanarImg}.
+	 */
+	static long[] planeBoundaries( final PlanarImg< ?, ? > img, final int numParts )
+	{
+		final int numPlanes = img.numSlices();
+		if ( numPlanes < numParts )
+			return uniformBoundaries( img.size(), numParts );
+
+		final long planeSize = img.size() / numPlanes;
+		final long[] boundaries = uniformBoundaries( numPlanes, numParts );
+		for ( int i = 0; i < boundaries.length; ++i )
+			boundaries[ i ] *= planeSize;
+		return boundaries;
+	}
+
+	/**
+	 * Boundaries aligned with the cells of a {@link CellImg}. Each boundary is
+	 * the first cell start at or after the corresponding uniform boundary.
+	 */
+	static long[] cellBoundaries( final CellImg< ?, ?, ? > img, final int numParts )
+	{
+		final long size = img.size();
+		final Cursor< ? extends AbstractCell< ? > > cells = img.getCells().cursor();
+		final ArrayList< Long > cellStarts = new ArrayList< Long >();
+		long start = 0;
+		while ( cells.hasNext() )
+		{
+			cellStarts.add( start );
+			start += cells.next().size();
+		}
+		if ( cellStarts.size() < numParts )
+			return uniformBoundaries( size, numParts );
+
+		final long[] uniform = uniformBoundaries( size, numParts );
+		final ArrayList< Long > boundaries = new ArrayList< Long >();
+		boundaries.add( 0l );
+		int cell = 0;
+		for ( int i = 1; i < uniform.length - 1; ++i )
+		{
+			while ( cell < cellStarts.size() && cellStarts.get( cell ) < uniform[ i ] )
+				++cell;
+			if ( cell < cellStarts.size() && cellStarts.get( cell ) > boundaries.get( boundaries.size() - 1 ) )
+				boundaries.add( cellStarts.get( cell ) );
+		}
+		boundaries.add( size );
+
+		final long[] b = new long[ boundaries.size() ];
+		for ( int i = 0; i < b.length; ++i )
+			b[ i ] = boundaries.get( i );
+		return b;
+	}
+}
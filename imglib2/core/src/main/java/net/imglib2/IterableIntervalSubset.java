@@ -58,13 +58,8 @@ final public class IterableIntervalSubset< T > implements IterableInterval< T >
 		private IISCursor( final IISCursor cursor )
 		{
 			this.localizing = cursor.localizing;
-			if ( localizing )
-				this.cursor = interval.localizingCursor();
-			else
-				this.cursor = interval.cursor();
-			
+			this.cursor = cursor.cursor.copyCursor();
 			index = cursor.index;
-			cursor.jumpFwd( index + 1 );
 		}
 		
 		IISCursor( final boolean localizing )
@@ -0,0 +1,658 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.collection;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imglib2.EuclideanSpace;
+import net.imglib2.IterableRealInterval;
+import net.imglib2.RealCursor;
+import net.imglib2.RealLocalizable;
+import net.imglib2.RealPositionable;
+import net.imglib2.Sampler;
+import net.imglib2.multithreading.TaskExecutor;
+import net.imglib2.util.KthElement;
+
+/**
+ * A kd-tree that stores the coordinates of all nodes in a single flat
+ * {@code double[]} array instead of a graph of {@link KDTreeNode} objects.
+ *
+ * <p>
+ * Nodes are laid out in implicit tree order: the subtree covering the node
+ * index range {@code [i,j]} has its root at {@code k = i + (j - i) / 2}, its
+ * left subtree at {@code [i,k-1]} and its right subtree at {@code [k+1,j]}.
+ * The split dimension cycles with the depth of the node, starting with
+ * dimension 0 at the root. The coordinates of node {@code k} are stored at
+ * {@code positions[k*n]} through {@code positions[k*n+n-1]}.
+ * </p>
+ *
+ * <p>
+ * The tree is built by in-place median selection ({@link KthElement}) on a
+ * flat key array, the subtrees below the top few levels are built in parallel
+ * on the default {@link TaskExecutor}. Use
+ * {@link net.imglib2.neighborsearch.NearestNeighborSearchOnFlatKDTree},
+ * {@link net.imglib2.neighborsearch.KNearestNeighborSearchOnFlatKDTree}, and
+ * {@link net.imglib2.neighborsearch.RadiusNeighborSearchOnFlatKDTree} to
+ * query it.
+ * </p>
+ */
+public class FlatKDTree< T > implements EuclideanSpace, IterableRealInterval< T >
+{
+	/**
+	 * Subtrees smaller than this are never split into separate tasks.
+	 */
+	protected static final int minParallelSubtreeSize = 1 << 14;
+
+	/**
+	 * the number of dimensions.
+	 */
+	final protected int n;
+
+	/**
+	 * the number of nodes in the tree.
+	 */
+	final protected int size;
+
+	/**
+	 * coordinates of all nodes, in implicit tree order.
+	 */
+	final protected double[] positions;
+
+	/**
+	 * for each node, the index of its value in {@link #values} or
+	 * {@link #samplers}.
+	 */
+	final protected int[] valueIndices;
+
+	/**
+	 * node values, if the tree was constructed from a list of values.
+	 */
+	final protected List< T > values;
+
+	/**
+	 * node samplers, if the tree was constructed from an
+	 * {@link IterableRealInterval}.
+	 */
+	final protected List< ? extends Sampler< T > > samplers;
+
+	/**
+	 * minimum of each dimension.
+	 */
+	final protected double[] min;
+
+	/**
+	 * maximum of each dimension.
+	 */
+	final protected double[] max;
+
+	/**
+	 * Construct a FlatKDTree from a list of values and a flat array of
+	 * corresponding coordinates. The coordinates of {@code values.get(i)} are
+	 * expected at {@code positions[i*n]} through {@code positions[i*n+n-1]}.
+	 * The {@code positions} array is not modified.
+	 *
+	 * @param n
+	 *            number of dimensions
+	 * @param values
+	 *            a list of values
+	 * @param positions
+	 *            interleaved coordinates of the values
+	 * @param numThreads
+	 *            how many threads to use for building the tree
+	 */
+	public FlatKDTree( final int n, final List< T > values, final double[] positions, final int numThreads )
+	{
+		this( n, values, null, positions.clone(), numThreads );
+	}
+
+	/**
+	 * Construct a FlatKDTree from a list of values and a flat array of
+	 * corresponding coordinates, using all threads of the default
+	 * {@link TaskExecutor}.
+	 *
+	 * @param n
+	 *            number of dimensions
+	 * @param values
+	 *            a list of values
+	 * @param positions
+	 *            interleaved coordinates of the values
+	 */
+	public FlatKDTree( final int n, final List< T > values, final double[] positions )
+	{
+		this( n, values, positions, TaskExecutor.getDefault().getNumThreads() );
+	}
+
+	/**
+	 * Construct a FlatKDTree from the elements in the given list.
+	 *
+	 * <p>
+	 * Note that the constructor can be called with the same list for both
+	 * {@code values == positions} if {@code T extends RealLocalizable}.
+	 * </p>
+	 *
+	 * @param values
+	 *            a list of values
+	 * @param positions
+	 *            a list of positions corresponding to the values
+	 */
+	public < L extends RealLocalizable > FlatKDTree( final List< T > values, final List< L > positions )
+	{
+		this( positions.get( 0 ).numDimensions(), values, null, flatten( positions ), TaskExecutor.getDefault().getNumThreads() );
+	}
+
+	/**
+	 * Construct a FlatKDTree from the elements of the given
+	 * {@link IterableRealInterval}.
+	 *
+	 * @param interval
+	 *            elements in the tree are obtained by iterating this
+	 */
+	public FlatKDTree( final IterableRealInterval< T > interval )
+	{
+		this( interval.numDimensions(), null, copyCursors( interval ), flatten( interval ), TaskExecutor.getDefault().getNumThreads() );
+	}
+
+	protected FlatKDTree( final int n, final List< T > values, final List< ? extends Sampler< T > > samplers, final double[] coordinates, final int numThreads )
+	{
+		this.n = n;
+		this.size = coordinates.length / n;
+		this.values = values;
+		this.samplers = samplers;
+
+		assert ( values == null ? samplers.size() : values.size() ) == size;
+
+		this.min = new double[ n ];
+		this.max = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = Double.MAX_VALUE;
+			max[ d ] = -Double.MAX_VALUE;
+		}
+		for ( int o = 0; o < coordinates.length; o += n )
+		{
+			for ( int d = 0; d < n; ++d )
+			{
+				final double x = coordinates[ o + d ];
+				if ( x < min[ d ] )
+					min[ d ] = x;
+				if ( x > max[ d ] )
+					max[ d ] = x;
+			}
+		}
+
+		this.valueIndices = new int[ size ];
+		for ( int k = 0; k < size; ++k )
+			valueIndices[ k ] = k;
+		build( coordinates, numThreads );
+
+		// gather coordinates into tree order
+		this.positions = new double[ size * n ];
+		for ( int k = 0; k < size; ++k )
+			System.arraycopy( coordinates, valueIndices[ k ] * n, positions, k * n, n );
+	}
+
+	private static < L extends RealLocalizable > double[] flatten( final List< L > positions )
+	{
+		final int n = positions.get( 0 ).numDimensions();
+		final double[] coordinates = new double[ positions.size() * n ];
+		int o = 0;
+		for ( final L position : positions )
+		{
+			assert position.numDimensions() == n;
+			for ( int d = 0; d < n; ++d )
+				coordinates[ o++ ] = position.getDoublePosition( d );
+		}
+		return coordinates;
+	}
+
+	private static double[] flatten( final IterableRealInterval< ? > interval )
+	{
+		final int n = interval.numDimensions();
+		final double[] coordinates = new double[ ( int ) interval.size() * n ];
+		final RealCursor< ? > cursor = interval.localizingCursor();
+		int o = 0;
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			for ( int d = 0; d < n; ++d )
+				coordinates[ o++ ] = cursor.getDoublePosition( d );
+		}
+		return coordinates;
+	}
+
+	private static < T > List< RealCursor< T > > copyCursors( final IterableRealInterval< T > interval )
+	{
+		final ArrayList< RealCursor< T > > cursors = new ArrayList< RealCursor< T > >( ( int ) interval.size() );
+		final RealCursor< T > cursor = interval.localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			cursors.add( cursor.copyCursor() );
+		}
+		return cursors;
+	}
+
+	/**
+	 * Reorder {@link #valueIndices} into implicit tree order. The top levels of
+	 * the tree are partitioned sequentially until there are enough independent
+	 * subtrees to keep {@code numThreads} threads busy, then the subtrees are
+	 * built in parallel.
+	 */
+	private void build( final double[] coordinates, final int numThreads )
+	{
+		if ( size == 0 )
+			return;
+
+		final double[] keys = new double[ size ];
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >();
+		final int grain = Math.max( minParallelSubtreeSize, size / Math.max( 1, numThreads * TaskExecutor.chunksPerThread ) );
+
+		// breadth-first over the top levels, collecting subtrees of at most grain nodes
+		final ArrayList< int[] > open = new ArrayList< int[] >();
+		open.add( new int[] { 0, size - 1, 0 } );
+		while ( !open.isEmpty() )
+		{
+			final int[] range = open.remove( open.size() - 1 );
+			final int i = range[ 0 ];
+			final int j = range[ 1 ];
+			final int d = range[ 2 ];
+			if ( j - i + 1 <= grain || numThreads <= 1 )
+			{
+				tasks.add( new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						buildSubtree( i, j, d, coordinates, keys );
+					}
+				} );
+			}
+			else
+			{
+				final int k = partition( i, j, d, coordinates, keys );
+				final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+				if ( i <= k - 1 )
+					open.add( new int[] { i, k - 1, dChild } );
+				if ( k + 1 <= j )
+					open.add( new int[] { k + 1, j, dChild } );
+			}
+		}
+		TaskExecutor.getDefault().run( tasks, numThreads );
+	}
+
+	private void buildSubtree( final int i, final int j, final int d, final double[] coordinates, final double[] keys )
+	{
+		if ( j <= i )
+			return;
+		final int k = partition( i, j, d, coordinates, keys );
+		final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+		buildSubtree( i, k - 1, dChild, coordinates, keys );
+		buildSubtree( k + 1, j, dChild, coordinates, keys );
+	}
+
+	/**
+	 * Move the median (in dimension d) of the nodes {@code [i,j]} to the
+	 * middle, smaller elements before and larger elements after it.
+	 *
+	 * @return index of the median.
+	 */
+	private int partition( final int i, final int j, final int d, final double[] coordinates, final double[] keys )
+	{
+		for ( int x = i; x <= j; ++x )
+			keys[ x ] = coordinates[ valueIndices[ x ] * n + d ];
+		final int k = i + ( j - i ) / 2;
+		KthElement.kthElement( i, j, k, keys, valueIndices );
+		return k;
+	}
+
+	/**
+	 * Get the index of the root node of the subtree spanning nodes
+	 * {@code [i,j]}.
+	 */
+	public static int subtreeRoot( final int i, final int j )
+	{
+		return i + ( j - i ) / 2;
+	}
+
+	/**
+	 * Get the coordinate of a node.
+	 *
+	 * @param node
+	 *            node index
+	 * @param d
+	 *            dimension
+	 */
+	public double getDoublePosition( final int node, final int d )
+	{
+		return positions[ node * n + d ];
+	}
+
+	/**
+	 * Compute the squared Euclidean distance between a node and the point
+	 * {@code p}.
+	 */
+	public double squDistance( final int node, final double[] p )
+	{
+		final int o = node * n;
+		double sum = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			final double diff = positions[ o + d ] - p[ d ];
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	/**
+	 * Get the value of a node.
+	 */
+	public T get( final int node )
+	{
+		final int i = valueIndices[ node ];
+		return values != null ? values.get( i ) : samplers.get( i ).get();
+	}
+
+	/**
+	 * Get a {@link RealLocalizable} {@link Sampler} view of a node.
+	 */
+	public Node getNode( final int node )
+	{
+		return new Node( node );
+	}
+
+	/**
+	 * A reference to one node of the tree, giving access to its position and
+	 * value.
+	 */
+	public final class Node implements RealLocalizable, Sampler< T >
+	{
+		private final int node;
+
+		public Node( final int node )
+		{
+			this.node = node;
+		}
+
+		/**
+		 * @return index of the node in implicit tree order.
+		 */
+		public int getIndex()
+		{
+			return node;
+		}
+
+		@Override
+		public int numDimensions()
+		{
+			return n;
+		}
+
+		@Override
+		public void localize( final float[] position )
+		{
+			for ( int d = 0; d < n; ++d )
+				position[ d ] = ( float ) positions[ node * n + d ];
+		}
+
+		@Override
+		public void localize( final double[] position )
+		{
+			System.arraycopy( positions, node * n, position, 0, n );
+		}
+
+		@Override
+		public float getFloatPosition( final int d )
+		{
+			return ( float ) positions[ node * n + d ];
+		}
+
+		@Override
+		public double getDoublePosition( final int d )
+		{
+			return positions[ node * n + d ];
+		}
+
+		@Override
+		public T get()
+		{
+			return FlatKDTree.this.get( node );
+		}
+
+		@Override
+		public Node copy()
+		{
+			return this;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "node " + node + " | " + get();
+		}
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public double realMin( final int d )
+	{
+		return min[ d ];
+	}
+
+	@Override
+	public void realMin( final double[] m )
+	{
+		for ( int d = 0; d < n; ++d )
+			m[ d ] = min[ d ];
+	}
+
+	@Override
+	public void realMin( final RealPositionable m )
+	{
+		m.setPosition( min );
+	}
+
+	@Override
+	public double realMax( final int d )
+	{
+		return max[ d ];
+	}
+
+	@Override
+	public void realMax( final double[] m )
+	{
+		for ( int d = 0; d < n; ++d )
+			m[ d ] = max[ d ];
+	}
+
+	@Override
+	public void realMax( final RealPositionable m )
+	{
+		m.setPosition( max );
+	}
+
+	@Override
+	public long size()
+	{
+		return size;
+	}
+
+	@Override
+	public Object iterationOrder()
+	{
+		return this; // iteration order is only compatible with ourselves
+	}
+
+	@Override
+	public boolean equalIterationOrder( final IterableRealInterval< ? > f )
+	{
+		return iterationOrder().equals( f.iterationOrder() );
+	}
+
+	/**
+	 * Iterates the nodes in implicit tree order.
+	 */
+	public final class FlatKDTreeCursor implements RealCursor< T >
+	{
+		private int node;
+
+		public FlatKDTreeCursor()
+		{
+			reset();
+		}
+
+		protected FlatKDTreeCursor( final FlatKDTreeCursor c )
+		{
+			this.node = c.node;
+		}
+
+		@Override
+		public void localize( final float[] position )
+		{
+			for ( int d = 0; d < n; ++d )
+				position[ d ] = ( float ) positions[ node * n + d ];
+		}
+
+		@Override
+		public void localize( final double[] position )
+		{
+			System.arraycopy( positions, node * n, position, 0, n );
+		}
+
+		@Override
+		public float getFloatPosition( final int d )
+		{
+			return ( float ) positions[ node * n + d ];
+		}
+
+		@Override
+		public double getDoublePosition( final int d )
+		{
+			return positions[ node * n + d ];
+		}
+
+		@Override
+		public int numDimensions()
+		{
+			return n;
+		}
+
+		@Override
+		public T get()
+		{
+			return FlatKDTree.this.get( node );
+		}
+
+		@Override
+		public FlatKDTreeCursor copy()
+		{
+			return new FlatKDTreeCursor( this );
+		}
+
+		@Override
+		public FlatKDTreeCursor copyCursor()
+		{
+			return copy();
+		}
+
+		@Override
+		public void jumpFwd( final long steps )
+		{
+			node += steps;
+		}
+
+		@Override
+		public void fwd()
+		{
+			++node;
+		}
+
+		@Override
+		public void reset()
+		{
+			node = -1;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return node < size - 1;
+		}
+
+		@Override
+		public T next()
+		{
+			fwd();
+			return get();
+		}
+
+		@Override
+		public void remove()
+		{
+			// NB: no action.
+		}
+	}
+
+	@Override
+	public FlatKDTreeCursor iterator()
+	{
+		return new FlatKDTreeCursor();
+	}
+
+	@Override
+	public FlatKDTreeCursor cursor()
+	{
+		return new FlatKDTreeCursor();
+	}
+
+	@Override
+	public FlatKDTreeCursor localizingCursor()
+	{
+		return new FlatKDTreeCursor();
+	}
+
+	@Override
+	public T firstElement()
+	{
+		return iterator().next();
+	}
+}
@@ -27,6 +27,7 @@
  */
 package net.imglib2.img.array;
 
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.img.basictypeaccess.array.BitArray;
 import net.imglib2.img.basictypeaccess.array.ByteArray;
 import net.imglib2.img.basictypeaccess.array.DoubleArray;
@@ -37,6 +38,7 @@ import net.imglib2.img.basictypeaccess.array.ShortArray;
 import net.imglib2.type.Type;
 import net.imglib2.type.logic.BitType;
 import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.complex.ComplexDoubleType;
 import net.imglib2.type.numeric.complex.ComplexFloatType;
 import net.imglib2.type.numeric.integer.ByteType;
@@ -48,6 +50,7 @@ import net.imglib2.type.numeric.integer.UnsignedIntType;
 import net.imglib2.type.numeric.integer.UnsignedShortType;
 import net.imglib2.type.numeric.real.DoubleType;
 import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.BulkOps;
 
 /**
  * <p>Convenience factory methods for creation of {@link ArrayImg} instances
@@ -314,6 +317,22 @@ final public class ArrayImgs
 		return img;
 	}
 	
+	/**
+	 * Create an {@link ArrayImg}<{@link FloatType}, {@link FloatArray}>
+	 * holding a converted copy of <em>source</em>.
+	 * 
+	 * @param source
+	 * @return
+	 */
+	final public static < T extends RealType< T > > ArrayImg< FloatType, FloatArray > floats( final RandomAccessibleInterval< T > source )
+	{
+		final long[] dim = new long[ source.numDimensions() ];
+		source.dimensions( dim );
+		final ArrayImg< FloatType, FloatArray > img = floats( dim );
+		BulkOps.convert( source, img );
+		return img;
+	}
+	
 	/**
 	 * Create an {@link ArrayImg}<{@link DoubleType}, {@link DoubleArray}>.
 	 * 
@@ -343,6 +362,22 @@ final public class ArrayImgs
 		return img;
 	}
 	
+	/**
+	 * Create an {@link ArrayImg}<{@link DoubleType}, {@link DoubleArray}>
+	 * holding a converted copy of <em>source</em>.
+	 * 
+	 * @param source
+	 * @return
+	 */
+	final public static < T extends RealType< T > > ArrayImg< DoubleType, DoubleArray > doubles( final RandomAccessibleInterval< T > source )
+	{
+		final long[] dim = new long[ source.numDimensions() ];
+		source.dimensions( dim );
+		final ArrayImg< DoubleType, DoubleArray > img = doubles( dim );
+		BulkOps.convert( source, img );
+		return img;
+	}
+	
 	/**
 	 * Create an {@link ArrayImg}<{@link ARGBType}, {@link IntArray}>.
 	 * 
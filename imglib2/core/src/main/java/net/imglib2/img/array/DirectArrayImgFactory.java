@@ -0,0 +1,198 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.array;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.basictypeaccess.nio.BitBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.ByteBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.CharBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.DoubleBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.FloatBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.IntBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.LongBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.ShortBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.ByteBuffers;
+import net.imglib2.type.NativeType;
+
+/**
+ * Factory for {@link ArrayImg}s that store their data outside of the Java
+ * heap, in direct {@link ByteBuffer}s, or in a memory-mapped region of a file.
+ *
+ * If a file is given, every image created by this factory maps the file
+ * starting at the given offset, i.e., the raw data in the file is accessed
+ * without copying. Note, that the number of elements is still limited to
+ * {@link Integer#MAX_VALUE} bytes per image.
+ */
+public class DirectArrayImgFactory< T extends NativeType< T > > extends NativeImgFactory< T >
+{
+	final protected File file;
+
+	final protected long offset;
+
+	final protected boolean readOnly;
+
+	final protected ByteOrder order;
+
+	/**
+	 * Create images backed by direct {@link ByteBuffer}s in native byte
+	 * order.
+	 */
+	public DirectArrayImgFactory()
+	{
+		this( null, 0, false, ByteOrder.nativeOrder() );
+	}
+
+	/**
+	 * Create images backed by a memory-mapped region of a file.
+	 *
+	 * @param file
+	 *            the file to map.
+	 * @param offset
+	 *            position in the file where the pixel data starts.
+	 * @param readOnly
+	 *            whether to map the file read-only.
+	 * @param order
+	 *            byte order of the pixel data in the file.
+	 */
+	public DirectArrayImgFactory( final File file, final long offset, final boolean readOnly, final ByteOrder order )
+	{
+		this.file = file;
+		this.offset = offset;
+		this.readOnly = readOnly;
+		this.order = order;
+	}
+
+	@Override
+	public ArrayImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( ArrayImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	protected ByteBuffer createBuffer( final long numBytes )
+	{
+		if ( file == null )
+			return ByteBuffers.allocateDirect( numBytes, order );
+
+		try
+		{
+			return ByteBuffers.map( file, offset, numBytes, readOnly, order );
+		}
+		catch ( final IOException e )
+		{
+			throw new RuntimeException( "Could not map " + file + ": " + e.getMessage(), e );
+		}
+	}
+
+	@Override
+	public ArrayImg< T, BitBufferAccess > createBitInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final int numEntities = ArrayImgFactory.numEntitiesRangeCheck( dimensions, entitiesPerPixel );
+
+		return new ArrayImg< T, BitBufferAccess >( new BitBufferAccess( createBuffer( 4 * ( ( ( long ) numEntities + 31 ) / 32 ) ) ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, ByteBufferAccess > createByteInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final int numEntities = ArrayImgFactory.numEntitiesRangeCheck( dimensions, entitiesPerPixel );
+
+		return new ArrayImg< T, ByteBufferAccess >( new ByteBufferAccess( createBuffer( numEntities ) ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, CharBufferAccess > createCharInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final int numEntities = ArrayImgFactory.numEntitiesRangeCheck( dimensions, entitiesPerPixel );
+
+		return new ArrayImg< T, CharBufferAccess >( new CharBufferAccess( createBuffer( 2 * ( long ) numEntities ) ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, DoubleBufferAccess > createDoubleInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final int numEntities = ArrayImgFactory.numEntitiesRangeCheck( dimensions, entitiesPerPixel );
+
+		return new ArrayImg< T, DoubleBufferAccess >( new DoubleBufferAccess( createBuffer( 8 * ( long ) numEntities ) ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, FloatBufferAccess > createFloatInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final int numEntities = ArrayImgFactory.numEntitiesRangeCheck( dimensions, entitiesPerPixel );
+
+		return new ArrayImg< T, FloatBufferAccess >( new FloatBufferAccess( createBuffer( 4 * ( long ) numEntities ) ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, IntBufferAccess > createIntInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final int numEntities = ArrayImgFactory.numEntitiesRangeCheck( dimensions, entitiesPerPixel );
+
+		return new ArrayImg< T, IntBufferAccess >( new IntBufferAccess( createBuffer( 4 * ( long ) numEntities ) ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, LongBufferAccess > createLongInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final int numEntities = ArrayImgFactory.numEntitiesRangeCheck( dimensions, entitiesPerPixel );
+
+		return new ArrayImg< T, LongBufferAccess >( new LongBufferAccess( createBuffer( 8 * ( long ) numEntities ) ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, ShortBufferAccess > createShortInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final int numEntities = ArrayImgFactory.numEntitiesRangeCheck( dimensions, entitiesPerPixel );
+
+		return new ArrayImg< T, ShortBufferAccess >( new ShortBufferAccess( createBuffer( 2 * ( long ) numEntities ) ), dimensions, entitiesPerPixel );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) ) return new DirectArrayImgFactory();
+		else throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.basictypeaccess.nio;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+import net.imglib2.img.basictypeaccess.BitAccess;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+
+/**
+ * {@link BitAccess} backed by a {@link ByteBuffer}, which may be a direct or a
+ * memory-mapped buffer. Bits are packed into ints like in
+ * {@link net.imglib2.img.basictypeaccess.array.BitArray}.
+ */
+public class BitBufferAccess extends AbstractBufferAccess implements BitAccess, ArrayDataAccess< BitBufferAccess >
+{
+	final static protected int bitsPerEntity = Integer.SIZE;
+
+	final protected IntBuffer data;
+
+	public BitBufferAccess( final int numEntities )
+	{
+		this( ByteBuffers.allocateDirect( 4 * ( long ) numElements( numEntities ) ) );
+	}
+
+	/**
+	 * Create a {@link BitBufferAccess} on an existing buffer. The byte order
+	 * of the buffer determines the byte order of the packed ints.
+	 *
+	 * @param buffer
+	 */
+	public BitBufferAccess( final ByteBuffer buffer )
+	{
+		super( buffer );
+		this.data = buffer.asIntBuffer();
+	}
+
+	protected static int numElements( final int numEntities )
+	{
+		if ( numEntities % bitsPerEntity == 0 )
+			return numEntities / bitsPerEntity;
+		else
+			return numEntities / bitsPerEntity + 1;
+	}
+
+	@Override
+	public boolean getValue( final int index )
+	{
+		final int arrayIndex = index / bitsPerEntity;
+		final int arrayOffset = index % bitsPerEntity;
+
+		final int entry = data.get( arrayIndex );
+		final int value = ( entry & ( 1 << arrayOffset ) );
+
+		return value != 0;
+	}
+
+	@Override
+	public void setValue( final int index, final boolean value )
+	{
+		final int arrayIndex = index / bitsPerEntity;
+		final int arrayOffset = index % bitsPerEntity;
+
+		if ( value )
+			data.put( arrayIndex, data.get( arrayIndex ) | ( 1 << arrayOffset ) );
+		else
+			data.put( arrayIndex, data.get( arrayIndex ) & ~( 1 << arrayOffset ) );
+	}
+
+	@Override
+	public BitBufferAccess createArray( final int numEntities )
+	{
+		return new BitBufferAccess( ByteBuffers.allocateDirect( 4 * ( long ) numElements( numEntities ), buffer.order() ) );
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.basictypeaccess.nio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Helper methods to create the {@link ByteBuffer}s for the
+ * {@link AbstractBufferAccess} implementations.
+ */
+final public class ByteBuffers
+{
+	private ByteBuffers() {}
+
+	/**
+	 * Allocate a direct {@link ByteBuffer} in native byte order.
+	 *
+	 * @param numBytes
+	 * @return
+	 */
+	public static ByteBuffer allocateDirect( final long numBytes )
+	{
+		return allocateDirect( numBytes, ByteOrder.nativeOrder() );
+	}
+
+	/**
+	 * Allocate a direct {@link ByteBuffer}.
+	 *
+	 * @param numBytes
+	 * @param order
+	 *            byte order of the buffer.
+	 * @return
+	 */
+	public static ByteBuffer allocateDirect( final long numBytes, final ByteOrder order )
+	{
+		return ByteBuffer.allocateDirect( numBytesRangeCheck( numBytes ) ).order( order );
+	}
+
+	/**
+	 * Map a region of a file into memory. If the file is mapped read-write, it
+	 * is extended as necessary. Values written to a read-write mapping end up
+	 * in the file, writing to a read-only mapping throws a
+	 * {@link java.nio.ReadOnlyBufferException}.
+	 *
+	 * @param file
+	 * @param offset
+	 *            position in the file where the region starts.
+	 * @param numBytes
+	 *            size of the region.
+	 * @param readOnly
+	 *            whether to map the file read-only.
+	 * @param order
+	 *            byte order of the values in the file.
+	 * @return
+	 * @throws IOException
+	 */
+	public static MappedByteBuffer map( final File file, final long offset, final long numBytes, final boolean readOnly, final ByteOrder order ) throws IOException
+	{
+		final RandomAccessFile raf = new RandomAccessFile( file, readOnly ? "r" : "rw" );
+		try
+		{
+			final MappedByteBuffer buffer = raf.getChannel().map( readOnly ? MapMode.READ_ONLY : MapMode.READ_WRITE, offset, numBytesRangeCheck( numBytes ) );
+			buffer.order( order );
+			return buffer;
+		}
+		finally
+		{
+			// the mapping stays valid after the channel is closed
+			raf.close();
+		}
+	}
+
+	static int numBytesRangeCheck( final long numBytes )
+	{
+		if ( numBytes > ( long ) Integer.MAX_VALUE )
+			throw new RuntimeException( "Number of bytes in buffer too big, use for example CellContainer instead: " + numBytes + " > " + Integer.MAX_VALUE );
+
+		return ( int ) numBytes;
+	}
+}
@@ -96,6 +96,14 @@ final public class CellImg< T extends NativeType< T >, A extends ArrayDataAccess
 		public C getCell();
 	}
 
+	/**
+	 * @return the {@link Cells} that store the data of this {@link CellImg}.
+	 */
+	public Cells< A, C > getCells()
+	{
+		return cells;
+	}
+
 	@Override
 	@SuppressWarnings( "unchecked" )
 	public A update( final Object cursor )
@@ -0,0 +1,86 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.io.IOException;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+
+/**
+ * Loads and stores the pixel data of the cells of a {@link LazyCells}.
+ *
+ * The {@link LazyCells} creates the basic type array of a cell when it is
+ * first accessed and asks the {@link CellLoader} to fill it. When the cell is
+ * evicted from memory, it is handed to {@link #save} before it is dropped.
+ *
+ * The storage array is the object returned by
+ * {@link ArrayDataAccess#getCurrentStorageArray()}, e.g., a
+ * <code>float[]</code> for a {@link CellImg} of
+ * {@link net.imglib2.type.numeric.real.FloatType}.
+ */
+public interface CellLoader
+{
+	/**
+	 * Fill the storage array of a newly created cell. If there is nothing
+	 * stored for this cell yet, the array should be left untouched.
+	 *
+	 * @param storageArray
+	 *            basic type array of the cell.
+	 * @param index
+	 *            flat index of the cell in the cell grid.
+	 * @param min
+	 *            minimum of the cell in image coordinates.
+	 * @param dimensions
+	 *            dimensions of the cell.
+	 */
+	public void load( Object storageArray, long index, long[] min, int[] dimensions ) throws IOException;
+
+	/**
+	 * Store the storage array of a cell that is evicted from memory.
+	 * Read-only loaders may simply ignore this.
+	 *
+	 * @param storageArray
+	 *            basic type array of the cell.
+	 * @param index
+	 *            flat index of the cell in the cell grid.
+	 * @param min
+	 *            minimum of the cell in image coordinates.
+	 * @param dimensions
+	 *            dimensions of the cell.
+	 */
+	public void save( Object storageArray, long index, long[] min, int[] dimensions ) throws IOException;
+}
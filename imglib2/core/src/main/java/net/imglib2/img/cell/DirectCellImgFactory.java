@@ -0,0 +1,181 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.nio.ByteBuffer;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.basictypeaccess.nio.BitBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.ByteBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.CharBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.DoubleBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.FloatBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.IntBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.LongBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.ShortBufferAccess;
+import net.imglib2.type.NativeType;
+
+/**
+ * Factory for {@link CellImg}s that store the data of each cell in a direct
+ * {@link ByteBuffer}, outside of the Java heap.
+ */
+public class DirectCellImgFactory< T extends NativeType< T > > extends CellImgFactory< T >
+{
+	public DirectCellImgFactory()
+	{
+	}
+
+	public DirectCellImgFactory( final int cellSize )
+	{
+		super( cellSize );
+	}
+
+	public DirectCellImgFactory( final int[] cellDimensions )
+	{
+		super( cellDimensions );
+	}
+
+	/**
+	 * Create a {@link CellImg} whose cells store their data in direct
+	 * {@link ByteBuffer}s. Note, that the create*Instance methods inherited
+	 * from {@link CellImgFactory} create ordinary {@link CellImg}s on the
+	 * Java heap.
+	 */
+	@Override
+	public CellImg< T, ?, ? > create( final long[] dim, final T type )
+	{
+		return ( CellImg< T, ?, ? > ) type.createSuitableNativeImg( new DirectCellInstances(), dim );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public <S> ImgFactory<S> imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new DirectCellImgFactory( defaultCellDimensions );
+		else
+			throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+
+	/**
+	 * Creates the {@link CellImg}s. Only the basic type containers differ
+	 * from {@link CellImgFactory}, but the return types of its
+	 * create*Instance methods fix the access type to the array accesses.
+	 * Therefore the images are created through this factory, and
+	 * {@link DirectCellImgFactory} is the factory of the created images.
+	 */
+	private class DirectCellInstances extends NativeImgFactory< T >
+	{
+		@Override
+		public CellImg< T, ?, ? > create( final long[] dim, final T type )
+		{
+			return DirectCellImgFactory.this.create( dim, type );
+		}
+
+		@Override
+		public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+		{
+			return DirectCellImgFactory.this.imgFactory( type );
+		}
+
+		@Override
+		public CellImg< T, BitBufferAccess, DefaultCell< BitBufferAccess > > createBitInstance( long[] dimensions, int entitiesPerPixel )
+		{
+			dimensions = checkDimensions( dimensions );
+			int[] cellSize = checkCellSize( defaultCellDimensions, dimensions );
+			return new CellImg< T, BitBufferAccess, DefaultCell< BitBufferAccess > >( DirectCellImgFactory.this, new ListImgCells< BitBufferAccess >( new BitBufferAccess( 1 ), entitiesPerPixel, dimensions, cellSize ) );
+		}
+
+		@Override
+		public CellImg< T, ByteBufferAccess, DefaultCell< ByteBufferAccess > > createByteInstance( long[] dimensions, int entitiesPerPixel )
+		{
+			dimensions = checkDimensions( dimensions );
+			int[] cellSize = checkCellSize( defaultCellDimensions, dimensions );
+			return new CellImg< T, ByteBufferAccess, DefaultCell< ByteBufferAccess > >( DirectCellImgFactory.this, new ListImgCells< ByteBufferAccess >( new ByteBufferAccess( 1 ), entitiesPerPixel, dimensions, cellSize ) );
+		}
+
+		@Override
+		public CellImg< T, CharBufferAccess, DefaultCell< CharBufferAccess > > createCharInstance( long[] dimensions, int entitiesPerPixel )
+		{
+			dimensions = checkDimensions( dimensions );
+			int[] cellSize = checkCellSize( defaultCellDimensions, dimensions );
+			return new CellImg< T, CharBufferAccess, DefaultCell< CharBufferAccess > >( DirectCellImgFactory.this, new ListImgCells< CharBufferAccess >( new CharBufferAccess( 1 ), entitiesPerPixel, dimensions, cellSize ) );
+		}
+
+		@Override
+		public CellImg< T, ShortBufferAccess, DefaultCell< ShortBufferAccess > > createShortInstance( long[] dimensions, int entitiesPerPixel )
+		{
+			dimensions = checkDimensions( dimensions );
+			int[] cellSize = checkCellSize( defaultCellDimensions, dimensions );
+			return new CellImg< T, ShortBufferAccess, DefaultCell< ShortBufferAccess > >( DirectCellImgFactory.this, new ListImgCells< ShortBufferAccess >( new ShortBufferAccess( 1 ), entitiesPerPixel, dimensions, cellSize ) );
+		}
+
+		@Override
+		public CellImg< T, IntBufferAccess, DefaultCell< IntBufferAccess > > createIntInstance( long[] dimensions, int entitiesPerPixel )
+		{
+			dimensions = checkDimensions( dimensions );
+			int[] cellSize = checkCellSize( defaultCellDimensions, dimensions );
+			return new CellImg< T, IntBufferAccess, DefaultCell< IntBufferAccess > >( DirectCellImgFactory.this, new ListImgCells< IntBufferAccess >( new IntBufferAccess( 1 ), entitiesPerPixel, dimensions, cellSize ) );
+		}
+
+		@Override
+		public CellImg< T, LongBufferAccess, DefaultCell< LongBufferAccess > > createLongInstance( long[] dimensions, int entitiesPerPixel )
+		{
+			dimensions = checkDimensions( dimensions );
+			int[] cellSize = checkCellSize( defaultCellDimensions, dimensions );
+			return new CellImg< T, LongBufferAccess, DefaultCell< LongBufferAccess > >( DirectCellImgFactory.this, new ListImgCells< LongBufferAccess >( new LongBufferAccess( 1 ), entitiesPerPixel, dimensions, cellSize ) );
+		}
+
+		@Override
+		public CellImg< T, FloatBufferAccess, DefaultCell< FloatBufferAccess > > createFloatInstance( long[] dimensions, int entitiesPerPixel )
+		{
+			dimensions = checkDimensions( dimensions );
+			int[] cellSize = checkCellSize( defaultCellDimensions, dimensions );
+			return new CellImg< T, FloatBufferAccess, DefaultCell< FloatBufferAccess > >( DirectCellImgFactory.this, new ListImgCells< FloatBufferAccess >( new FloatBufferAccess( 1 ), entitiesPerPixel, dimensions, cellSize ) );
+		}
+
+		@Override
+		public CellImg< T, DoubleBufferAccess, DefaultCell< DoubleBufferAccess > > createDoubleInstance( long[] dimensions, int entitiesPerPixel )
+		{
+			dimensions = checkDimensions( dimensions );
+			int[] cellSize = checkCellSize( defaultCellDimensions, dimensions );
+			return new CellImg< T, DoubleBufferAccess, DefaultCell< DoubleBufferAccess > >( DirectCellImgFactory.this, new ListImgCells< DoubleBufferAccess >( new DoubleBufferAccess( 1 ), entitiesPerPixel, dimensions, cellSize ) );
+		}
+	}
+}
@@ -0,0 +1,258 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link CellLoader} that stores each cell as a raw file in a directory. The
+ * file of a cell is named by the cell's flat index in the cell grid and
+ * contains the storage array in native byte order (or in the byte order of the
+ * buffer for cells backed by {@link ByteBuffer}s). Cells that have no file yet
+ * are left empty (zero).
+ *
+ * The cell files belong to the caller that chose the directory, unless the
+ * loader is created to delete them: then {@link #close()} deletes the cell
+ * files and the directory, and they are deleted on exit of the virtual
+ * machine if the loader is never closed. {@link DiskCellLoaderFactory}
+ * creates such loaders.
+ */
+public class DiskCellLoader implements CellLoader, Closeable
+{
+	final protected File directory;
+
+	final protected boolean readOnly;
+
+	final protected boolean deleteOnClose;
+
+	/**
+	 * @param directory
+	 *            the directory containing the cell files. It is created if it
+	 *            does not exist.
+	 * @param readOnly
+	 *            if true, evicted cells are not written back.
+	 * @param deleteOnClose
+	 *            if true, the cell files and the directory are deleted by
+	 *            {@link #close()} or on exit of the virtual machine.
+	 */
+	public DiskCellLoader( final File directory, final boolean readOnly, final boolean deleteOnClose )
+	{
+		this.directory = directory;
+		this.readOnly = readOnly;
+		this.deleteOnClose = deleteOnClose;
+		if ( !readOnly )
+			directory.mkdirs();
+		if ( deleteOnClose )
+			directory.deleteOnExit();
+	}
+
+	/**
+	 * @param directory
+	 *            the directory containing the cell files. It is created if it
+	 *            does not exist.
+	 * @param readOnly
+	 *            if true, evicted cells are not written back.
+	 */
+	public DiskCellLoader( final File directory, final boolean readOnly )
+	{
+		this( directory, readOnly, false );
+	}
+
+	public DiskCellLoader( final File directory )
+	{
+		this( directory, false );
+	}
+
+	/**
+	 * @return the file that stores the cell with the given flat index.
+	 */
+	public File getCellFile( final long index )
+	{
+		return new File( directory, index + ".raw" );
+	}
+
+	@Override
+	public void load( final Object storageArray, final long index, final long[] min, final int[] dimensions ) throws IOException
+	{
+		final File file = getCellFile( index );
+		if ( !file.exists() )
+			return;
+
+		final RandomAccessFile raf = new RandomAccessFile( file, "r" );
+		try
+		{
+			final FileChannel channel = raf.getChannel();
+			final ByteBuffer buffer = ByteBuffer.allocate( ( int ) channel.size() ).order( ByteOrder.nativeOrder() );
+			while ( buffer.hasRemaining() && channel.read( buffer ) >= 0 );
+			buffer.flip();
+			read( buffer, storageArray );
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+
+	@Override
+	public void save( final Object storageArray, final long index, final long[] min, final int[] dimensions ) throws IOException
+	{
+		if ( readOnly )
+			return;
+
+		final ByteBuffer buffer = write( storageArray );
+		final File file = getCellFile( index );
+		// registered after the directory, so deleted before it
+		if ( deleteOnClose && !file.exists() )
+			file.deleteOnExit();
+		final RandomAccessFile raf = new RandomAccessFile( file, "rw" );
+		try
+		{
+			raf.setLength( buffer.remaining() );
+			final FileChannel channel = raf.getChannel();
+			while ( buffer.hasRemaining() )
+				channel.write( buffer );
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+
+	/**
+	 * Delete the cell files and the directory, if this loader was created to
+	 * delete them. Otherwise, do nothing.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if ( !deleteOnClose )
+			return;
+		final File[] files = directory.listFiles();
+		if ( files != null )
+			for ( final File f : files )
+				if ( !f.delete() )
+					throw new IOException( "DiskCellLoader: could not delete " + f );
+		if ( directory.exists() && !directory.delete() )
+			throw new IOException( "DiskCellLoader: could not delete " + directory );
+	}
+
+	protected static void read( final ByteBuffer buffer, final Object array ) throws IOException
+	{
+		if ( array instanceof ByteBuffer )
+			( ( ByteBuffer ) array ).duplicate().put( buffer.order( ( ( ByteBuffer ) array ).order() ) );
+		else if ( array instanceof byte[] )
+			buffer.get( ( byte[] ) array );
+		else if ( array instanceof short[] )
+			buffer.asShortBuffer().get( ( short[] ) array );
+		else if ( array instanceof char[] )
+			buffer.asCharBuffer().get( ( char[] ) array );
+		else if ( array instanceof int[] )
+			buffer.asIntBuffer().get( ( int[] ) array );
+		else if ( array instanceof long[] )
+			buffer.asLongBuffer().get( ( long[] ) array );
+		else if ( array instanceof float[] )
+			buffer.asFloatBuffer().get( ( float[] ) array );
+		else if ( array instanceof double[] )
+			buffer.asDoubleBuffer().get( ( double[] ) array );
+		else
+			throw new IOException( "DiskCellLoader: unsupported storage array " + array.getClass().getCanonicalName() );
+	}
+
+	protected static ByteBuffer write( final Object array ) throws IOException
+	{
+		final ByteBuffer buffer;
+		if ( array instanceof ByteBuffer )
+		{
+			buffer = ( ( ByteBuffer ) array ).duplicate();
+			buffer.clear();
+			return buffer;
+		}
+		else if ( array instanceof byte[] )
+		{
+			final byte[] a = ( byte[] ) array;
+			buffer = ByteBuffer.allocate( a.length ).order( ByteOrder.nativeOrder() );
+			buffer.put( a );
+		}
+		else if ( array instanceof short[] )
+		{
+			final short[] a = ( short[] ) array;
+			buffer = ByteBuffer.allocate( 2 * a.length ).order( ByteOrder.nativeOrder() );
+			buffer.asShortBuffer().put( a );
+		}
+		else if ( array instanceof char[] )
+		{
+			final char[] a = ( char[] ) array;
+			buffer = ByteBuffer.allocate( 2 * a.length ).order( ByteOrder.nativeOrder() );
+			buffer.asCharBuffer().put( a );
+		}
+		else if ( array instanceof int[] )
+		{
+			final int[] a = ( int[] ) array;
+			buffer = ByteBuffer.allocate( 4 * a.length ).order( ByteOrder.nativeOrder() );
+			buffer.asIntBuffer().put( a );
+		}
+		else if ( array instanceof long[] )
+		{
+			final long[] a = ( long[] ) array;
+			buffer = ByteBuffer.allocate( 8 * a.length ).order( ByteOrder.nativeOrder() );
+			buffer.asLongBuffer().put( a );
+		}
+		else if ( array instanceof float[] )
+		{
+			final float[] a = ( float[] ) array;
+			buffer = ByteBuffer.allocate( 4 * a.length ).order( ByteOrder.nativeOrder() );
+			buffer.asFloatBuffer().put( a );
+		}
+		else if ( array instanceof double[] )
+		{
+			final double[] a = ( double[] ) array;
+			buffer = ByteBuffer.allocate( 8 * a.length ).order( ByteOrder.nativeOrder() );
+			buffer.asDoubleBuffer().put( a );
+		}
+		else
+			throw new IOException( "DiskCellLoader: unsupported storage array " + array.getClass().getCanonicalName() );
+
+		buffer.rewind();
+		return buffer;
+	}
+}
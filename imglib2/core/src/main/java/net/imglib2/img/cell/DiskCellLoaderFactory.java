@@ -0,0 +1,90 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * {@link CellLoaderFactory} that creates a {@link DiskCellLoader} on a new,
+ * empty directory for each image.
+ *
+ * The directory belongs to the image: it is deleted with its cell files when
+ * the image's {@link LazyCells} are {@link LazyCells#close() closed}, or on
+ * exit of the virtual machine otherwise.
+ */
+public class DiskCellLoaderFactory implements CellLoaderFactory
+{
+	final protected File parent;
+
+	/**
+	 * @param parent
+	 *            the directory in which the cell directories of the images
+	 *            are created, or null for the default temporary-file
+	 *            directory.
+	 */
+	public DiskCellLoaderFactory( final File parent )
+	{
+		this.parent = parent;
+		if ( parent != null )
+			parent.mkdirs();
+	}
+
+	/**
+	 * Create the cell directories in the default temporary-file directory.
+	 */
+	public DiskCellLoaderFactory()
+	{
+		this( null );
+	}
+
+	@Override
+	public DiskCellLoader createCellLoader()
+	{
+		try
+		{
+			final File directory = File.createTempFile( "cells", "", parent );
+			if ( !directory.delete() || !directory.mkdir() )
+				throw new IOException( "could not create directory " + directory );
+			return new DiskCellLoader( directory, false, true );
+		}
+		catch ( final IOException e )
+		{
+			throw new RuntimeException( "DiskCellLoaderFactory: " + e.getMessage(), e );
+		}
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.lang.ref.WeakReference;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+
+/**
+ * A cell of a {@link CellImg} backed by {@link LazyCells}. The cell itself
+ * only knows its position and size. Its basic type array is created and loaded
+ * by the {@link LazyCells} on the first call to {@link #getData()} and may be
+ * evicted again when the cache runs out of space.
+ */
+public final class LazyCell< A extends ArrayDataAccess< A > > extends AbstractCell< A >
+{
+	final LazyCells< A > cells;
+
+	/**
+	 * flat index of this cell in the cell grid.
+	 */
+	final long index;
+
+	/**
+	 * The data of this cell after it has been saved and evicted from the
+	 * cache. It is reused if the cell is requested again while samplers still
+	 * work on it. null, if the cell is cached or has never been loaded.
+	 */
+	WeakReference< A > evicted;
+
+	public LazyCell( final LazyCells< A > cells, final long index, final int[] dimensions, final long[] min )
+	{
+		super( dimensions, min );
+		this.cells = cells;
+		this.index = index;
+		this.evicted = null;
+	}
+
+	@Override
+	public A getData()
+	{
+		return cells.getData( this );
+	}
+
+	/**
+	 * @return flat index of this cell in the cell grid.
+	 */
+	public long getIndex()
+	{
+		return index;
+	}
+}
@@ -0,0 +1,264 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.basictypeaccess.array.BitArray;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.CharArray;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.type.NativeType;
+
+/**
+ * Factory for {@link CellImg}s that are backed by {@link LazyCells}. The data
+ * of each cell is created on first access, filled by a {@link CellLoader}, and
+ * evicted (and saved) once the memory budget is exceeded.
+ *
+ * Every image gets its own {@link CellLoader} from a {@link CellLoaderFactory},
+ * so images created by {@link #create(long[], NativeType)}, including copies
+ * made by {@link CellImg#copy()}, never share their storage.
+ *
+ * Note, that only {@link #create(long[], NativeType)} creates lazily loaded
+ * images. The create*Instance methods inherited from {@link CellImgFactory}
+ * create ordinary {@link CellImg}s.
+ */
+public class LazyCellImgFactory< T extends NativeType< T > > extends CellImgFactory< T >
+{
+	final protected CellLoaderFactory loaderFactory;
+
+	final protected long maxCacheBytes;
+
+	/**
+	 * loader for the next image, or null if it should be obtained from
+	 * {@link #loaderFactory}.
+	 */
+	private CellLoader firstLoader;
+
+	/**
+	 * @param loaderFactory
+	 *            creates a {@link CellLoader} for each image.
+	 * @param maxCacheBytes
+	 *            maximum total size in bytes of the cell data of one image
+	 *            kept in memory.
+	 */
+	public LazyCellImgFactory( final CellLoaderFactory loaderFactory, final long maxCacheBytes )
+	{
+		super();
+		this.loaderFactory = loaderFactory;
+		this.maxCacheBytes = maxCacheBytes;
+		this.firstLoader = null;
+	}
+
+	public LazyCellImgFactory( final CellLoaderFactory loaderFactory, final long maxCacheBytes, final int cellSize )
+	{
+		super( cellSize );
+		this.loaderFactory = loaderFactory;
+		this.maxCacheBytes = maxCacheBytes;
+		this.firstLoader = null;
+	}
+
+	public LazyCellImgFactory( final CellLoaderFactory loaderFactory, final long maxCacheBytes, final int[] cellDimensions )
+	{
+		super( cellDimensions );
+		this.loaderFactory = loaderFactory;
+		this.maxCacheBytes = maxCacheBytes;
+		this.firstLoader = null;
+	}
+
+	/**
+	 * Create a factory whose first image uses the given {@link CellLoader},
+	 * e.g., to open cells that are already stored on disk. All further images
+	 * store their cells in new temporary directories, see
+	 * {@link DiskCellLoaderFactory}.
+	 *
+	 * @param loader
+	 *            loads and saves the data of the cells of the first image.
+	 * @param maxCacheBytes
+	 *            maximum total size in bytes of the cell data of one image
+	 *            kept in memory.
+	 */
+	public LazyCellImgFactory( final CellLoader loader, final long maxCacheBytes )
+	{
+		this( new DiskCellLoaderFactory(), maxCacheBytes );
+		this.firstLoader = loader;
+	}
+
+	public LazyCellImgFactory( final CellLoader loader, final long maxCacheBytes, final int cellSize )
+	{
+		this( new DiskCellLoaderFactory(), maxCacheBytes, cellSize );
+		this.firstLoader = loader;
+	}
+
+	public LazyCellImgFactory( final CellLoader loader, final long maxCacheBytes, final int[] cellDimensions )
+	{
+		this( new DiskCellLoaderFactory(), maxCacheBytes, cellDimensions );
+		this.firstLoader = loader;
+	}
+
+	/**
+	 * @return the {@link CellLoader} for the next image.
+	 */
+	protected synchronized CellLoader nextLoader()
+	{
+		if ( firstLoader != null )
+		{
+			final CellLoader loader = firstLoader;
+			firstLoader = null;
+			return loader;
+		}
+		return loaderFactory.createCellLoader();
+	}
+
+	/**
+	 * Create a {@link CellImg} backed by {@link LazyCells} with a new
+	 * {@link CellLoader}.
+	 */
+	@Override
+	public CellImg< T, ?, ? > create( final long[] dim, final T type )
+	{
+		return ( CellImg< T, ?, ? > ) type.createSuitableNativeImg( new LazyCellInstances( nextLoader() ), dim );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new LazyCellImgFactory( loaderFactory, maxCacheBytes, defaultCellDimensions );
+		else
+			throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+
+	/**
+	 * Creates the {@link CellImg}s of one image with the given
+	 * {@link CellLoader}. The return types of the create*Instance methods of
+	 * {@link CellImgFactory} fix the cell type to {@link DefaultCell},
+	 * therefore the images are created through this factory, and
+	 * {@link LazyCellImgFactory} is the factory of the created images.
+	 */
+	private class LazyCellInstances extends NativeImgFactory< T >
+	{
+		final CellLoader loader;
+
+		LazyCellInstances( final CellLoader loader )
+		{
+			this.loader = loader;
+		}
+
+		@Override
+		public CellImg< T, ?, ? > create( final long[] dim, final T type )
+		{
+			return LazyCellImgFactory.this.create( dim, type );
+		}
+
+		@Override
+		public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+		{
+			return LazyCellImgFactory.this.imgFactory( type );
+		}
+
+		@Override
+		public CellImg< T, BitArray, LazyCell< BitArray > > createBitInstance( long[] dimensions, int entitiesPerPixel )
+		{
+			dimensions = checkDimensions( dimensions );
+			int[] cellSize = checkCellSize( defaultCellDimensions, dimensions );
+			return new CellImg< T, BitArray, LazyCell< BitArray > >( LazyCellImgFactory.this, new LazyCells< BitArray >( new BitArray( 1 ), loader, maxCacheBytes, entitiesPerPixel, dimensions, cellSize ) );
+		}
+
+		@Override
+		public CellImg< T, ByteArray, LazyCell< ByteArray > > createByteInstance( long[] dimensions, int entitiesPerPixel )
+		{
+			dimensions = checkDimensions( dimensions );
+			int[] cellSize = checkCellSize( defaultCellDimensions, dimensions );
+			return new CellImg< T, ByteArray, LazyCell< ByteArray > >( LazyCellImgFactory.this, new LazyCells< ByteArray >( new ByteArray( 1 ), loader, maxCacheBytes, entitiesPerPixel, dimensions, cellSize ) );
+		}
+
+		@Override
+		public CellImg< T, CharArray, LazyCell< CharArray > > createCharInstance( long[] dimensions, int entitiesPerPixel )
+		{
+			dimensions = checkDimensions( dimensions );
+			int[] cellSize = checkCellSize( defaultCellDimensions, dimensions );
+			return new CellImg< T, CharArray, LazyCell< CharArray > >( LazyCellImgFactory.this, new LazyCells< CharArray >( new CharArray( 1 ), loader, maxCacheBytes, entitiesPerPixel, dimensions, cellSize ) );
+		}
+
+		@Override
+		public CellImg< T, ShortArray, LazyCell< ShortArray > > createShortInstance( long[] dimensions, int entitiesPerPixel )
+		{
+			dimensions = checkDimensions( dimensions );
+			int[] cellSize = checkCellSize( defaultCellDimensions, dimensions );
+			return new CellImg< T, ShortArray, LazyCell< ShortArray > >( LazyCellImgFactory.this, new LazyCells< ShortArray >( new ShortArray( 1 ), loader, maxCacheBytes, entitiesPerPixel, dimensions, cellSize ) );
+		}
+
+		@Override
+		public CellImg< T, IntArray, LazyCell< IntArray > > createIntInstance( long[] dimensions, int entitiesPerPixel )
+		{
+			dimensions = checkDimensions( dimensions );
+			int[] cellSize = checkCellSize( defaultCellDimensions, dimensions );
+			return new CellImg< T, IntArray, LazyCell< IntArray > >( LazyCellImgFactory.this, new LazyCells< IntArray >( new IntArray( 1 ), loader, maxCacheBytes, entitiesPerPixel, dimensions, cellSize ) );
+		}
+
+		@Override
+		public CellImg< T, LongArray, LazyCell< LongArray > > createLongInstance( long[] dimensions, int entitiesPerPixel )
+		{
+			dimensions = checkDimensions( dimensions );
+			int[] cellSize = checkCellSize( defaultCellDimensions, dimensions );
+			return new CellImg< T, LongArray, LazyCell< LongArray > >( LazyCellImgFactory.this, new LazyCells< LongArray >( new LongArray( 1 ), loader, maxCacheBytes, entitiesPerPixel, dimensions, cellSize ) );
+		}
+
+		@Override
+		public CellImg< T, FloatArray, LazyCell< FloatArray > > createFloatInstance( long[] dimensions, int entitiesPerPixel )
+		{
+			dimensions = checkDimensions( dimensions );
+			int[] cellSize = checkCellSize( defaultCellDimensions, dimensions );
+			return new CellImg< T, FloatArray, LazyCell< FloatArray > >( LazyCellImgFactory.this, new LazyCells< FloatArray >( new FloatArray( 1 ), loader, maxCacheBytes, entitiesPerPixel, dimensions, cellSize ) );
+		}
+
+		@Override
+		public CellImg< T, DoubleArray, LazyCell< DoubleArray > > createDoubleInstance( long[] dimensions, int entitiesPerPixel )
+		{
+			dimensions = checkDimensions( dimensions );
+			int[] cellSize = checkCellSize( defaultCellDimensions, dimensions );
+			return new CellImg< T, DoubleArray, LazyCell< DoubleArray > >( LazyCellImgFactory.this, new LazyCells< DoubleArray >( new DoubleArray( 1 ), loader, maxCacheBytes, entitiesPerPixel, dimensions, cellSize ) );
+		}
+	}
+}
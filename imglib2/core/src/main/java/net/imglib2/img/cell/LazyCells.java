@@ -0,0 +1,353 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.nio.Buffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.list.ListCursor;
+import net.imglib2.img.list.ListImg;
+import net.imglib2.img.list.ListImgFactory;
+import net.imglib2.img.list.ListLocalizingCursor;
+import net.imglib2.img.list.ListRandomAccess;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * Implementation of {@link Cells} that creates the data of its
+ * {@link LazyCell}s on first access and keeps only a bounded number of them in
+ * memory.
+ *
+ * The basic type array of a cell is created when the cell's data is first
+ * requested and filled by a {@link CellLoader}. Loaded cells are kept in a
+ * least-recently-used cache. When the total size of the cached arrays exceeds
+ * the memory budget, the least recently used cells are handed to
+ * {@link CellLoader#save} and dropped. The cache cannot observe writes to the
+ * basic type arrays, therefore every cell in the cache is considered dirty and
+ * saved when it is evicted or {@link #flush() flushed}.
+ *
+ * Samplers keep a reference to the basic type array of the cell they are
+ * currently in. If the cell is requested again while such a sampler is still
+ * alive, its array is reused instead of loaded, so all samplers see the same
+ * data. Writes through a sampler that stays in a cell after the cell has been
+ * evicted are only kept if the cell is requested again before the array is
+ * garbage collected. The memory budget should therefore be large enough for
+ * the cells that are in use at the same time.
+ *
+ * {@link #close()} releases the cells and the storage of the loader.
+ */
+public class LazyCells< A extends ArrayDataAccess< A > > implements Cells< A, LazyCell< A > >
+{
+	private final A creator;
+	private final CellLoader loader;
+	private final int entitiesPerPixel;
+	private final int n;
+	private final long[] dimensions;
+	private final int[] cellDimensions;
+	private final ListImg< LazyCell< A > > cells;
+
+	/**
+	 * maximum total size in bytes of the basic type arrays kept in memory.
+	 */
+	private final long maxCacheBytes;
+
+	/**
+	 * current total size in bytes of the basic type arrays kept in memory.
+	 */
+	private long cacheBytes;
+
+	/**
+	 * loaded cells in access order, the least recently used cell comes first.
+	 * These are the cells that have to be saved.
+	 */
+	private final LinkedHashMap< LazyCell< A >, A > cache;
+
+	private boolean closed;
+
+	/**
+	 * @param creator
+	 *            used to create the basic type arrays of the cells.
+	 * @param loader
+	 *            loads and saves the data of the cells.
+	 * @param maxCacheBytes
+	 *            maximum total size in bytes of the cell data kept in memory.
+	 *            At least one cell is always kept, regardless of its size.
+	 * @param entitiesPerPixel
+	 * @param dimensions
+	 * @param cellDimensions
+	 */
+	public LazyCells( final A creator, final CellLoader loader, final long maxCacheBytes, final int entitiesPerPixel, final long[] dimensions, final int[] cellDimensions )
+	{
+		this.creator = creator;
+		this.loader = loader;
+		this.maxCacheBytes = maxCacheBytes;
+		this.entitiesPerPixel = entitiesPerPixel;
+		this.n = dimensions.length;
+		this.dimensions = dimensions.clone();
+		this.cellDimensions = cellDimensions.clone();
+		this.cacheBytes = 0;
+		this.cache = new LinkedHashMap< LazyCell< A >, A >( 16, 0.75f, true );
+		this.closed = false;
+
+		final long[] numCells = new long[ n ];
+		final int[] borderSize = new int[ n ];
+		final long[] currentCellOffset = new long[ n ];
+		final int[] currentCellDims = new int[ n ];
+
+		for ( int d = 0; d < n; ++d ) {
+			numCells[ d ] = ( dimensions[ d ] - 1 ) / cellDimensions[ d ] + 1;
+			borderSize[ d ] = ( int )( dimensions[ d ] - (numCells[ d ] - 1) * cellDimensions[ d ] );
+		}
+
+		cells = new ListImgFactory< LazyCell< A > >().create( numCells, null );
+
+		final ListLocalizingCursor< LazyCell< A > > cellCursor = cells.localizingCursor();
+		while ( cellCursor.hasNext() ) {
+			cellCursor.fwd();
+			cellCursor.localize( currentCellOffset );
+			final long index = IntervalIndexer.positionToIndex( currentCellOffset, numCells );
+			for ( int d = 0; d < n; ++d )
+			{
+				currentCellDims[ d ] = ( (currentCellOffset[d] + 1 == numCells[d])  ?  borderSize[ d ]  :  cellDimensions[ d ] );
+				currentCellOffset[ d ] *= cellDimensions[ d ];
+			}
+			cellCursor.set( new LazyCell< A >( this, index, currentCellDims, currentCellOffset ) );
+		}
+	}
+
+	/**
+	 * Get the data of a cell, loading it if necessary. The cell becomes the
+	 * most recently used one, other cells may be evicted.
+	 */
+	synchronized A getData( final LazyCell< A > cell )
+	{
+		A data = cache.get( cell );
+		if ( data == null )
+		{
+			if ( closed )
+				throw new RuntimeException( "LazyCells: the cells have been closed." );
+			if ( cell.evicted != null )
+			{
+				// still in use by samplers, reuse it
+				data = cell.evicted.get();
+				cell.evicted = null;
+			}
+			if ( data == null )
+			{
+				data = creator.createArray( cell.numPixels * entitiesPerPixel );
+				try
+				{
+					loader.load( data.getCurrentStorageArray(), cell.index, cell.min, cell.dimensions );
+				}
+				catch ( final IOException ex )
+				{
+					throw new RuntimeException( "LazyCells: could not load cell " + cell.index, ex );
+				}
+			}
+			cache.put( cell, data );
+			cacheBytes += sizeInBytes( data );
+			evict();
+		}
+		return data;
+	}
+
+	/**
+	 * Save and drop least recently used cells until the cache fits into the
+	 * memory budget.
+	 */
+	private void evict()
+	{
+		final Iterator< Entry< LazyCell< A >, A > > it = cache.entrySet().iterator();
+		while ( cacheBytes > maxCacheBytes && cache.size() > 1 )
+		{
+			final Entry< LazyCell< A >, A > entry = it.next();
+			final LazyCell< A > cell = entry.getKey();
+			final A data = entry.getValue();
+			save( cell, data.getCurrentStorageArray() );
+			it.remove();
+			cacheBytes -= sizeInBytes( data );
+			cell.evicted = new WeakReference< A >( data );
+		}
+	}
+
+	private void save( final LazyCell< A > cell, final Object storageArray )
+	{
+		try
+		{
+			loader.save( storageArray, cell.index, cell.min, cell.dimensions );
+		}
+		catch ( final IOException e )
+		{
+			throw new RuntimeException( "LazyCells: could not save cell " + cell.index, e );
+		}
+	}
+
+	/**
+	 * Save all cells that are currently in the cache.
+	 */
+	public synchronized void flush()
+	{
+		for ( final Entry< LazyCell< A >, A > entry : cache.entrySet() )
+			save( entry.getKey(), entry.getValue().getCurrentStorageArray() );
+	}
+
+	/**
+	 * Drop all cells without saving them and close the loader if it is
+	 * {@link Closeable}, e.g., a {@link DiskCellLoader} created by a
+	 * {@link DiskCellLoaderFactory} deletes its directory. The cells cannot be
+	 * accessed anymore afterwards. Call {@link #flush()} first to keep the
+	 * data of a loader that is not deleted.
+	 */
+	public synchronized void close()
+	{
+		closed = true;
+		cache.clear();
+		cacheBytes = 0;
+		if ( loader instanceof Closeable )
+		{
+			try
+			{
+				( ( Closeable ) loader ).close();
+			}
+			catch ( final IOException e )
+			{
+				throw new RuntimeException( "LazyCells: could not close the cell loader.", e );
+			}
+		}
+	}
+
+	/**
+	 * @return the current total size in bytes of the cell data kept in memory.
+	 */
+	public synchronized long getCacheBytes()
+	{
+		return cacheBytes;
+	}
+
+	/**
+	 * @return the maximum total size in bytes of the cell data kept in memory.
+	 */
+	public long getMaxCacheBytes()
+	{
+		return maxCacheBytes;
+	}
+
+	/**
+	 * Estimate the size of the storage array of a basic type array. Storage
+	 * arrays that are {@link Buffer}s are assumed to be {@link java.nio.ByteBuffer}s.
+	 */
+	private static long sizeInBytes( final ArrayDataAccess< ? > data )
+	{
+		final Object array = data.getCurrentStorageArray();
+		if ( array instanceof Buffer )
+			return ( ( Buffer ) array ).capacity();
+		final Class< ? > c = array.getClass().getComponentType();
+		final long length = Array.getLength( array );
+		if ( c == byte.class || c == boolean.class )
+			return length;
+		else if ( c == short.class || c == char.class )
+			return 2 * length;
+		else if ( c == int.class || c == float.class )
+			return 4 * length;
+		else
+			return 8 * length;
+	}
+
+	@Override
+	public ListRandomAccess< LazyCell< A > > randomAccess()
+	{
+		return cells.randomAccess();
+	}
+
+	@Override
+	public ListCursor< LazyCell< A > > cursor()
+	{
+		return cells.cursor();
+	}
+
+	@Override
+	public ListLocalizingCursor< LazyCell< A > > localizingCursor()
+	{
+		return cells.localizingCursor();
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public void dimensions( final long[] s )
+	{
+		for ( int i = 0; i < n; ++i )
+			s[ i ] = dimensions[ i ];
+	}
+
+	@Override
+	public long dimension( final int d )
+	{
+		try { return this.dimensions[ d ]; }
+		catch ( final ArrayIndexOutOfBoundsException e ) { return 1; }
+	}
+
+	@Override
+	public void cellDimensions( final int[] s )
+	{
+		for ( int i = 0; i < n; ++i )
+			s[ i ] = cellDimensions[ i ];
+	}
+
+	@Override
+	public int cellDimension( final int d )
+	{
+		try { return this.cellDimensions[ d ]; }
+		catch ( final ArrayIndexOutOfBoundsException e ) { return 1; }
+	}
+
+	@Override
+	public int getEntitiesPerPixel()
+	{
+		return entitiesPerPixel;
+	}
+}
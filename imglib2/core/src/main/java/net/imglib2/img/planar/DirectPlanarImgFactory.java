@@ -0,0 +1,240 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.planar;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.basictypeaccess.nio.BitBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.ByteBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.CharBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.DoubleBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.FloatBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.IntBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.LongBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.ShortBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.ByteBuffers;
+import net.imglib2.type.NativeType;
+
+/**
+ * Factory for {@link PlanarImg}s that store their planes outside of the Java
+ * heap, in direct {@link ByteBuffer}s, or in memory-mapped regions of a file.
+ *
+ * If a file is given, the planes of every image created by this factory are
+ * mapped consecutively from the file, starting at the given offset.
+ */
+public class DirectPlanarImgFactory< T extends NativeType< T > > extends NativeImgFactory< T >
+{
+	final protected File file;
+
+	final protected long offset;
+
+	final protected boolean readOnly;
+
+	final protected ByteOrder order;
+
+	/**
+	 * Create images backed by direct {@link ByteBuffer}s in native byte
+	 * order.
+	 */
+	public DirectPlanarImgFactory()
+	{
+		this( null, 0, false, ByteOrder.nativeOrder() );
+	}
+
+	/**
+	 * Create images backed by memory-mapped regions of a file.
+	 *
+	 * @param file
+	 *            the file to map.
+	 * @param offset
+	 *            position in the file where the first plane starts.
+	 * @param readOnly
+	 *            whether to map the file read-only.
+	 * @param order
+	 *            byte order of the pixel data in the file.
+	 */
+	public DirectPlanarImgFactory( final File file, final long offset, final boolean readOnly, final ByteOrder order )
+	{
+		this.file = file;
+		this.offset = offset;
+		this.readOnly = readOnly;
+		this.order = order;
+	}
+
+	@Override
+	public PlanarImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( PlanarImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	protected static int entitiesPerPlane( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return ( int ) ( ( ( dimensions.length > 1 ) ? dimensions[ 1 ] : 1 ) * dimensions[ 0 ] * entitiesPerPixel );
+	}
+
+	protected ByteBuffer mapPlane( final int plane, final long bytesPerPlane )
+	{
+		try
+		{
+			return ByteBuffers.map( file, offset + plane * bytesPerPlane, bytesPerPlane, readOnly, order );
+		}
+		catch ( final IOException e )
+		{
+			throw new RuntimeException( "Could not map " + file + ": " + e.getMessage(), e );
+		}
+	}
+
+	@Override
+	public PlanarImg< T, BitBufferAccess > createBitInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		if ( file == null )
+			return new PlanarImg< T, BitBufferAccess >( new BitBufferAccess( 1 ), dimensions, entitiesPerPixel );
+
+		final PlanarImg< T, BitBufferAccess > img = new PlanarImg< T, BitBufferAccess >( dimensions, entitiesPerPixel );
+		final long bytesPerPlane = 4 * ( ( ( long ) entitiesPerPlane( dimensions, entitiesPerPixel ) + 31 ) / 32 );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new BitBufferAccess( mapPlane( i, bytesPerPlane ) ) );
+		return img;
+	}
+
+	@Override
+	public PlanarImg< T, ByteBufferAccess > createByteInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		if ( file == null )
+			return new PlanarImg< T, ByteBufferAccess >( new ByteBufferAccess( 1 ), dimensions, entitiesPerPixel );
+
+		final PlanarImg< T, ByteBufferAccess > img = new PlanarImg< T, ByteBufferAccess >( dimensions, entitiesPerPixel );
+		final long bytesPerPlane = entitiesPerPlane( dimensions, entitiesPerPixel );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new ByteBufferAccess( mapPlane( i, bytesPerPlane ) ) );
+		return img;
+	}
+
+	@Override
+	public PlanarImg< T, CharBufferAccess > createCharInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		if ( file == null )
+			return new PlanarImg< T, CharBufferAccess >( new CharBufferAccess( 1 ), dimensions, entitiesPerPixel );
+
+		final PlanarImg< T, CharBufferAccess > img = new PlanarImg< T, CharBufferAccess >( dimensions, entitiesPerPixel );
+		final long bytesPerPlane = 2 * ( long ) entitiesPerPlane( dimensions, entitiesPerPixel );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new CharBufferAccess( mapPlane( i, bytesPerPlane ) ) );
+		return img;
+	}
+
+	@Override
+	public PlanarImg< T, DoubleBufferAccess > createDoubleInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		if ( file == null )
+			return new PlanarImg< T, DoubleBufferAccess >( new DoubleBufferAccess( 1 ), dimensions, entitiesPerPixel );
+
+		final PlanarImg< T, DoubleBufferAccess > img = new PlanarImg< T, DoubleBufferAccess >( dimensions, entitiesPerPixel );
+		final long bytesPerPlane = 8 * ( long ) entitiesPerPlane( dimensions, entitiesPerPixel );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new DoubleBufferAccess( mapPlane( i, bytesPerPlane ) ) );
+		return img;
+	}
+
+	@Override
+	public PlanarImg< T, FloatBufferAccess > createFloatInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		if ( file == null )
+			return new PlanarImg< T, FloatBufferAccess >( new FloatBufferAccess( 1 ), dimensions, entitiesPerPixel );
+
+		final PlanarImg< T, FloatBufferAccess > img = new PlanarImg< T, FloatBufferAccess >( dimensions, entitiesPerPixel );
+		final long bytesPerPlane = 4 * ( long ) entitiesPerPlane( dimensions, entitiesPerPixel );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new FloatBufferAccess( mapPlane( i, bytesPerPlane ) ) );
+		return img;
+	}
+
+	@Override
+	public PlanarImg< T, IntBufferAccess > createIntInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		if ( file == null )
+			return new PlanarImg< T, IntBufferAccess >( new IntBufferAccess( 1 ), dimensions, entitiesPerPixel );
+
+		final PlanarImg< T, IntBufferAccess > img = new PlanarImg< T, IntBufferAccess >( dimensions, entitiesPerPixel );
+		final long bytesPerPlane = 4 * ( long ) entitiesPerPlane( dimensions, entitiesPerPixel );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new IntBufferAccess( mapPlane( i, bytesPerPlane ) ) );
+		return img;
+	}
+
+	@Override
+	public PlanarImg< T, LongBufferAccess > createLongInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		if ( file == null )
+			return new PlanarImg< T, LongBufferAccess >( new LongBufferAccess( 1 ), dimensions, entitiesPerPixel );
+
+		final PlanarImg< T, LongBufferAccess > img = new PlanarImg< T, LongBufferAccess >( dimensions, entitiesPerPixel );
+		final long bytesPerPlane = 8 * ( long ) entitiesPerPlane( dimensions, entitiesPerPixel );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new LongBufferAccess( mapPlane( i, bytesPerPlane ) ) );
+		return img;
+	}
+
+	@Override
+	public PlanarImg< T, ShortBufferAccess > createShortInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		if ( file == null )
+			return new PlanarImg< T, ShortBufferAccess >( new ShortBufferAccess( 1 ), dimensions, entitiesPerPixel );
+
+		final PlanarImg< T, ShortBufferAccess > img = new PlanarImg< T, ShortBufferAccess >( dimensions, entitiesPerPixel );
+		final long bytesPerPlane = 2 * ( long ) entitiesPerPlane( dimensions, entitiesPerPixel );
+		for ( int i = 0; i < img.numSlices(); ++i )
+			img.setPlane( i, new ShortBufferAccess( mapPlane( i, bytesPerPlane ) ) );
+		return img;
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public <S> ImgFactory<S> imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new DirectPlanarImgFactory();
+		else
+			throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+}
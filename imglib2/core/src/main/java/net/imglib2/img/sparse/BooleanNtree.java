@@ -39,24 +39,39 @@ package net.imglib2.img.sparse;
 import net.imglib2.img.basictypeaccess.BitAccess;
 
 /**
- * BitAccess based on a {@link Ntree}<Boolean>.
+ * BitAccess based on a {@link PrimitiveNtree}.
  *
  * @author Tobias Pietzsch
  */
-public final class BooleanNtree implements BitAccess, NtreeAccess< Boolean, BooleanNtree >
+public final class BooleanNtree implements BitAccess, NtreeAccess< Boolean, BooleanNtree >, PrimitiveNtreeAccess
 {
 	private final long[] position;
 
-	private final Ntree< Boolean > data;
+	private final PrimitiveNtree data;
+
+	private static final PrimitiveNtree.ValueConverter< Boolean > converter = new PrimitiveNtree.ValueConverter< Boolean >()
+	{
+		@Override
+		public long toBits( final Boolean value )
+		{
+			return value ? 1 : 0;
+		}
+
+		@Override
+		public Boolean fromBits( final long bits )
+		{
+			return bits != 0;
+		}
+	};
 
 	public BooleanNtree( final long[] dimenions, final long[] position, final boolean value )
 	{
-		this.data = new Ntree< Boolean >( dimenions, value );
+		this.data = new PrimitiveNtree( dimenions, value ? 1 : 0 );
 		this.position = position;
 	}
 
 	/* Copy constructor */
-	private BooleanNtree( final Ntree< Boolean > data, final long[] position )
+	private BooleanNtree( final PrimitiveNtree data, final long[] position )
 	{
 		this.data = data;
 		this.position = position;
@@ -66,18 +81,29 @@ public final class BooleanNtree implements BitAccess, NtreeAccess< Boolean, Bool
 	public boolean getValue( final int index )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		return data.getNode( position ).getValue();
+		return data.getValue( position ) != 0;
 	}
 
 	@Override
 	public void setValue( final int index, final boolean value )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		data.createNodeWithValue( position, value );
+		data.setValue( position, value ? 1 : 0 );
 	}
 
+	/**
+	 * @deprecated returns a copy of the pixel values, changes to it are not
+	 *             written back. See {@link NtreeAccess#getCurrentStorageNtree()}.
+	 */
+	@Deprecated
 	@Override
 	public Ntree< Boolean > getCurrentStorageNtree()
+	{
+		return data.toNtree( converter );
+	}
+
+	@Override
+	public PrimitiveNtree getCurrentStoragePrimitiveNtree()
 	{
 		return data;
 	}
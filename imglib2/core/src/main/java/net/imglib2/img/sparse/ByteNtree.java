@@ -39,24 +39,39 @@ package net.imglib2.img.sparse;
 import net.imglib2.img.basictypeaccess.ByteAccess;
 
 /**
- * ByteAccess based on a {@link Ntree}<Byte>.
+ * ByteAccess based on a {@link PrimitiveNtree}.
  *
  * @author Tobias Pietzsch
  */
-public final class ByteNtree implements ByteAccess, NtreeAccess< Byte, ByteNtree >
+public final class ByteNtree implements ByteAccess, NtreeAccess< Byte, ByteNtree >, PrimitiveNtreeAccess
 {
 	private final long[] position;
 
-	private final Ntree< Byte > data;
+	private final PrimitiveNtree data;
+
+	private static final PrimitiveNtree.ValueConverter< Byte > converter = new PrimitiveNtree.ValueConverter< Byte >()
+	{
+		@Override
+		public long toBits( final Byte value )
+		{
+			return value;
+		}
+
+		@Override
+		public Byte fromBits( final long bits )
+		{
+			return ( byte ) bits;
+		}
+	};
 
 	public ByteNtree( final long[] dimenions, final long[] position, final Byte value )
 	{
-		this.data = new Ntree< Byte >( dimenions, value );
+		this.data = new PrimitiveNtree( dimenions, value );
 		this.position = position;
 	}
 
 	/* Copy constructor */
-	private ByteNtree( final Ntree< Byte > data, final long[] position )
+	private ByteNtree( final PrimitiveNtree data, final long[] position )
 	{
 		this.data = data;
 		this.position = position;
@@ -66,18 +81,29 @@ public final class ByteNtree implements ByteAccess, NtreeAccess< Byte, ByteNtree
 	public byte getValue( final int index )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		return data.getNode( position ).getValue();
+		return ( byte ) data.getValue( position );
 	}
 
 	@Override
 	public void setValue( final int index, final byte value )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		data.createNodeWithValue( position, value );
+		data.setValue( position, value );
 	}
 
+	/**
+	 * @deprecated returns a copy of the pixel values, changes to it are not
+	 *             written back. See {@link NtreeAccess#getCurrentStorageNtree()}.
+	 */
+	@Deprecated
 	@Override
 	public Ntree< Byte > getCurrentStorageNtree()
+	{
+		return data.toNtree( converter );
+	}
+
+	@Override
+	public PrimitiveNtree getCurrentStoragePrimitiveNtree()
 	{
 		return data;
 	}
@@ -43,20 +43,35 @@ import net.imglib2.img.basictypeaccess.CharAccess;
  *
  * @author Tobias Pietzsch
  */
-public final class CharNtree implements CharAccess, NtreeAccess< Character, CharNtree >
+public final class CharNtree implements CharAccess, NtreeAccess< Character, CharNtree >, PrimitiveNtreeAccess
 {
 	private final long[] position;
 
-	private final Ntree< Character > data;
+	private final PrimitiveNtree data;
+
+	private static final PrimitiveNtree.ValueConverter< Character > converter = new PrimitiveNtree.ValueConverter< Character >()
+	{
+		@Override
+		public long toBits( final Character value )
+		{
+			return value;
+		}
+
+		@Override
+		public Character fromBits( final long bits )
+		{
+			return ( char ) bits;
+		}
+	};
 
 	public CharNtree( final long[] dimenions, final long[] position, final Character value )
 	{
-		this.data = new Ntree< Character >( dimenions, value );
+		this.data = new PrimitiveNtree( dimenions, value );
 		this.position = position;
 	}
 
 	/* Copy constructor */
-	private CharNtree( final Ntree< Character > data, final long[] position )
+	private CharNtree( final PrimitiveNtree data, final long[] position )
 	{
 		this.data = data;
 		this.position = position;
@@ -66,18 +81,29 @@ public final class CharNtree implements CharAccess, NtreeAccess< Character, Char
 	public char getValue( final int index )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		return data.getNode( position ).getValue();
+		return ( char ) data.getValue( position );
 	}
 
 	@Override
 	public void setValue( final int index, final char value )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		data.createNodeWithValue( position, value );
+		data.setValue( position, value );
 	}
 
+	/**
+	 * @deprecated returns a copy of the pixel values, changes to it are not
+	 *             written back. See {@link NtreeAccess#getCurrentStorageNtree()}.
+	 */
+	@Deprecated
 	@Override
 	public Ntree< Character > getCurrentStorageNtree()
+	{
+		return data.toNtree( converter );
+	}
+
+	@Override
+	public PrimitiveNtree getCurrentStoragePrimitiveNtree()
 	{
 		return data;
 	}
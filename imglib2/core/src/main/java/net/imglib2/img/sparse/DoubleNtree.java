@@ -39,24 +39,39 @@ package net.imglib2.img.sparse;
 import net.imglib2.img.basictypeaccess.DoubleAccess;
 
 /**
- * DoubleAccess based on a {@link Ntree}<Double>.
+ * DoubleAccess based on a {@link PrimitiveNtree}.
  *
  * @author Tobias Pietzsch
  */
-public final class DoubleNtree implements DoubleAccess, NtreeAccess< Double, DoubleNtree >
+public final class DoubleNtree implements DoubleAccess, NtreeAccess< Double, DoubleNtree >, PrimitiveNtreeAccess
 {
 	private final long[] position;
 
-	private final Ntree< Double > data;
+	private final PrimitiveNtree data;
+
+	private static final PrimitiveNtree.ValueConverter< Double > converter = new PrimitiveNtree.ValueConverter< Double >()
+	{
+		@Override
+		public long toBits( final Double value )
+		{
+			return Double.doubleToLongBits( value );
+		}
+
+		@Override
+		public Double fromBits( final long bits )
+		{
+			return Double.longBitsToDouble( bits );
+		}
+	};
 
 	public DoubleNtree( final long[] dimenions, final long[] position, final Double value )
 	{
-		this.data = new Ntree< Double >( dimenions, value );
+		this.data = new PrimitiveNtree( dimenions, Double.doubleToLongBits( value ) );
 		this.position = position;
 	}
 
 	/* Copy constructor */
-	private DoubleNtree( final Ntree< Double > data, final long[] pos )
+	private DoubleNtree( final PrimitiveNtree data, final long[] pos )
 	{
 		this.data = data;
 		this.position = pos;
@@ -66,18 +81,29 @@ public final class DoubleNtree implements DoubleAccess, NtreeAccess< Double, Dou
 	public double getValue( final int index )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		return data.getNode( position ).getValue();
+		return Double.longBitsToDouble( data.getValue( position ) );
 	}
 
 	@Override
 	public void setValue( final int index, final double value )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		data.createNodeWithValue( position, value );
+		data.setValue( position, Double.doubleToLongBits( value ) );
 	}
 
+	/**
+	 * @deprecated returns a copy of the pixel values, changes to it are not
+	 *             written back. See {@link NtreeAccess#getCurrentStorageNtree()}.
+	 */
+	@Deprecated
 	@Override
 	public Ntree< Double > getCurrentStorageNtree()
+	{
+		return data.toNtree( converter );
+	}
+
+	@Override
+	public PrimitiveNtree getCurrentStoragePrimitiveNtree()
 	{
 		return data;
 	}
@@ -39,24 +39,39 @@ package net.imglib2.img.sparse;
 import net.imglib2.img.basictypeaccess.FloatAccess;
 
 /**
- * FloatAccess based on a {@link Ntree}<Float>.
+ * FloatAccess based on a {@link PrimitiveNtree}.
  *
  * @author Tobias Pietzsch
  */
-public final class FloatNtree implements FloatAccess, NtreeAccess< Float, FloatNtree >
+public final class FloatNtree implements FloatAccess, NtreeAccess< Float, FloatNtree >, PrimitiveNtreeAccess
 {
 	private final long[] position;
 
-	private final Ntree< Float > data;
+	private final PrimitiveNtree data;
+
+	private static final PrimitiveNtree.ValueConverter< Float > converter = new PrimitiveNtree.ValueConverter< Float >()
+	{
+		@Override
+		public long toBits( final Float value )
+		{
+			return Float.floatToIntBits( value );
+		}
+
+		@Override
+		public Float fromBits( final long bits )
+		{
+			return Float.intBitsToFloat( ( int ) bits );
+		}
+	};
 
 	public FloatNtree( final long[] dimenions, final long[] position, final Float value )
 	{
-		this.data = new Ntree< Float >( dimenions, value );
+		this.data = new PrimitiveNtree( dimenions, Float.floatToIntBits( value ) );
 		this.position = position;
 	}
 
 	/* Copy constructor */
-	private FloatNtree( final Ntree< Float > data, final long[] position )
+	private FloatNtree( final PrimitiveNtree data, final long[] position )
 	{
 		this.data = data;
 		this.position = position;
@@ -67,18 +82,29 @@ public final class FloatNtree implements FloatAccess, NtreeAccess< Float, FloatN
 	public float getValue( final int index )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		return data.getNode( position ).getValue();
+		return Float.intBitsToFloat( ( int ) data.getValue( position ) );
 	}
 
 	@Override
 	public void setValue( final int index, final float value )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		data.createNodeWithValue( position, value );
+		data.setValue( position, Float.floatToIntBits( value ) );
 	}
 
+	/**
+	 * @deprecated returns a copy of the pixel values, changes to it are not
+	 *             written back. See {@link NtreeAccess#getCurrentStorageNtree()}.
+	 */
+	@Deprecated
 	@Override
 	public Ntree< Float > getCurrentStorageNtree()
+	{
+		return data.toNtree( converter );
+	}
+
+	@Override
+	public PrimitiveNtree getCurrentStoragePrimitiveNtree()
 	{
 		return data;
 	}
@@ -39,16 +39,31 @@ package net.imglib2.img.sparse;
 import net.imglib2.img.basictypeaccess.IntAccess;
 
 /**
- * IntAccess based on a {@link Ntree}<Integer>.
+ * IntAccess based on a {@link PrimitiveNtree}.
  *
  * @author Tobias Pietzsch
  */
-public final class IntNtree implements IntAccess, NtreeAccess< Integer, IntNtree >
+public final class IntNtree implements IntAccess, NtreeAccess< Integer, IntNtree >, PrimitiveNtreeAccess
 {
 
 	private final long[] position;
 
-	private final Ntree< Integer > data;
+	private final PrimitiveNtree data;
+
+	private static final PrimitiveNtree.ValueConverter< Integer > converter = new PrimitiveNtree.ValueConverter< Integer >()
+	{
+		@Override
+		public long toBits( final Integer value )
+		{
+			return value;
+		}
+
+		@Override
+		public Integer fromBits( final long bits )
+		{
+			return ( int ) bits;
+		}
+	};
 
 	/**
 	 * Standard constructor called by factory
@@ -60,14 +75,14 @@ public final class IntNtree implements IntAccess, NtreeAccess< Integer, IntNtree
 	 */
 	public IntNtree( final long[] dimensions, final long[] position, final int value )
 	{
-		this.data = new Ntree< Integer >( dimensions, value );
+		this.data = new PrimitiveNtree( dimensions, value );
 
 		this.position = position;
 
 	}
 
 	/* Copy constructor */
-	private IntNtree( final Ntree< Integer > data, final long[] position )
+	private IntNtree( final PrimitiveNtree data, final long[] position )
 	{
 		this.data = data;
 		this.position = position;
@@ -77,18 +92,29 @@ public final class IntNtree implements IntAccess, NtreeAccess< Integer, IntNtree
 	public int getValue( final int index )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		return data.getNode( position ).getValue();
+		return ( int ) data.getValue( position );
 	}
 
 	@Override
 	public void setValue( final int index, final int value )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		data.createNodeWithValue( position, value );
+		data.setValue( position, value );
 	}
 
+	/**
+	 * @deprecated returns a copy of the pixel values, changes to it are not
+	 *             written back. See {@link NtreeAccess#getCurrentStorageNtree()}.
+	 */
+	@Deprecated
 	@Override
 	public Ntree< Integer > getCurrentStorageNtree()
+	{
+		return data.toNtree( converter );
+	}
+
+	@Override
+	public PrimitiveNtree getCurrentStoragePrimitiveNtree()
 	{
 		return data;
 	}
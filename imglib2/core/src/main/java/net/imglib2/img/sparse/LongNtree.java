@@ -43,12 +43,27 @@ import net.imglib2.img.basictypeaccess.LongAccess;
  *
  * @author Tobias Pietzsch
  */
-public final class LongNtree implements LongAccess, NtreeAccess< Long, LongNtree >
+public final class LongNtree implements LongAccess, NtreeAccess< Long, LongNtree >, PrimitiveNtreeAccess
 {
 
 	private final long[] position;
 
-	private final Ntree< Long > data;
+	private final PrimitiveNtree data;
+
+	private static final PrimitiveNtree.ValueConverter< Long > converter = new PrimitiveNtree.ValueConverter< Long >()
+	{
+		@Override
+		public long toBits( final Long value )
+		{
+			return value;
+		}
+
+		@Override
+		public Long fromBits( final long bits )
+		{
+			return bits;
+		}
+	};
 
 	/**
 	 * Standard constructor called by factory
@@ -60,12 +75,27 @@ public final class LongNtree implements LongAccess, NtreeAccess< Long, LongNtree
 	 */
 	public LongNtree( final long[] dimensions, final long[] position, final long value )
 	{
-		this.data = new Ntree< Long >( dimensions, value );
+		this.data = new PrimitiveNtree( dimensions, value );
 
 		this.position = position;
 	}
 
+	/**
+	 * Create an access storing a copy of the given tree.
+	 * 
+	 * @deprecated the pixels are stored in a {@link PrimitiveNtree}, so
+	 *             changing the given tree afterwards does not change the
+	 *             pixel values.
+	 */
+	@Deprecated
 	public LongNtree( final Ntree< Long > data, final long[] position )
+	{
+		this.data = new PrimitiveNtree( data, converter );
+		this.position = position;
+	}
+
+	/* Copy constructor */
+	private LongNtree( final PrimitiveNtree data, final long[] position )
 	{
 		this.data = data;
 		this.position = position;
@@ -75,18 +105,29 @@ public final class LongNtree implements LongAccess, NtreeAccess< Long, LongNtree
 	public long getValue( final int index )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		return data.getNode( position ).getValue();
+		return data.getValue( position );
 	}
 
 	@Override
 	public void setValue( final int index, final long value )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		data.createNodeWithValue( position, value );
+		data.setValue( position, value );
 	}
 
+	/**
+	 * @deprecated returns a copy of the pixel values, changes to it are not
+	 *             written back. See {@link NtreeAccess#getCurrentStorageNtree()}.
+	 */
+	@Deprecated
 	@Override
 	public Ntree< Long > getCurrentStorageNtree()
+	{
+		return data.toNtree( converter );
+	}
+
+	@Override
+	public PrimitiveNtree getCurrentStoragePrimitiveNtree()
 	{
 		return data;
 	}
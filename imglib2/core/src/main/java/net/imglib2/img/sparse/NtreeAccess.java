@@ -40,6 +40,17 @@ package net.imglib2.img.sparse;
 public interface NtreeAccess< L extends Comparable< L >, A extends NtreeAccess< L, A > >
 {
 
+	/**
+	 * @return the pixel values as an {@link Ntree}.
+	 * @deprecated The accesses of this package ({@link IntNtree},
+	 *             {@link FloatNtree}, ...) store their pixels in a
+	 *             {@link PrimitiveNtree} and return a <em>copy</em> here:
+	 *             changes to the returned tree are not written back to the
+	 *             pixels. Use
+	 *             {@link PrimitiveNtreeAccess#getCurrentStoragePrimitiveNtree()}
+	 *             to get at the storage itself.
+	 */
+	@Deprecated
 	Ntree< L > getCurrentStorageNtree();
 
 	A createInstance( long[] pos );
@@ -116,18 +116,61 @@ public final class NtreeImg< T extends NativeType< T >, A extends NtreeAccess< ?
 		return new NtreeImgFactory< T >();
 	}
 
+	/**
+	 * Get the tree storing the pixel values, or null if the access does not
+	 * implement {@link PrimitiveNtreeAccess}.
+	 */
+	public PrimitiveNtree getPrimitiveNtree()
+	{
+		if ( data instanceof PrimitiveNtreeAccess )
+			return ( ( PrimitiveNtreeAccess ) data ).getCurrentStoragePrimitiveNtree();
+		return null;
+	}
+
+	/**
+	 * Get a cursor over the leaves of the underlying tree. Each leaf is a
+	 * hyper-rectangle of pixels with uniform value.
+	 * 
+	 * @throws RuntimeException
+	 *             if the access does not implement {@link PrimitiveNtreeAccess}
+	 */
+	public NtreeLeafCursor leafCursor()
+	{
+		final PrimitiveNtree tree = getPrimitiveNtree();
+		if ( tree == null )
+			throw new RuntimeException( "NtreeImg: leafCursor() requires a PrimitiveNtreeAccess, not " + data.getClass().getSimpleName() );
+		return new NtreeLeafCursor( tree );
+	}
+
 	@Override
 	public NtreeImg< T, A > copy()
 	{
-		// TODO: More efficient way to create a copy of the img
 		@SuppressWarnings( "unchecked" )
 		final NtreeImg< T, A > copy = ( NtreeImg< T, A > ) factory().create( dimension, firstElement().createVariable() );
 
-		final NtreeCursor< T > source = this.cursor();
-		final NtreeCursor< T > target = copy.cursor();
-
-		while ( source.hasNext() )
-			target.next().set( source.next() );
+		final PrimitiveNtree target = copy.getPrimitiveNtree();
+		if ( target != null && getPrimitiveNtree() != null )
+		{
+			// fill leaf by leaf instead of pixel by pixel
+			final NtreeLeafCursor leaves = leafCursor();
+			final long[] min = new long[ n ];
+			final long[] max = new long[ n ];
+			while ( leaves.hasNext() )
+			{
+				leaves.fwd();
+				leaves.min( min );
+				leaves.max( max );
+				target.fill( min, max, leaves.getValue() );
+			}
+		}
+		else
+		{
+			final NtreeCursor< T > source = this.cursor();
+			final NtreeCursor< T > cursor = copy.cursor();
+
+			while ( source.hasNext() )
+				cursor.next().set( source.next() );
+		}
 
 		return copy;
 	}
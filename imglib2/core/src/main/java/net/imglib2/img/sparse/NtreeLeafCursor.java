@@ -0,0 +1,221 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.sparse;
+
+/**
+ * Iterates the leaves of a {@link PrimitiveNtree} instead of its pixels. Each
+ * leaf is a hyper-rectangle of uniform value. The bounds of the current leaf
+ * are clipped to the dimensions of the tree, leaves completely outside of the
+ * tree dimensions are skipped.
+ *
+ * <p>
+ * Typical use:
+ *
+ * <pre>
+ * {@code
+ * NtreeLeafCursor c = new NtreeLeafCursor( ntree );
+ * while ( c.hasNext() )
+ * {
+ *     c.fwd();
+ *     doSomething( c.min(), c.max(), c.getValue() );
+ * }
+ * }
+ * </pre>
+ * </p>
+ */
+public final class NtreeLeafCursor
+{
+	private final PrimitiveNtree ntree;
+
+	private final int n;
+
+	/**
+	 * stack of nodes still to be visited.
+	 */
+	private final int[] nodeStack;
+
+	/**
+	 * level of each node on the stack.
+	 */
+	private final int[] levelStack;
+
+	/**
+	 * origin of each node on the stack, {@code n} values per node.
+	 */
+	private final long[] originStack;
+
+	private int stackSize;
+
+	private int node;
+
+	private final long[] min;
+
+	private final long[] max;
+
+	private final long[] tmpOrigin;
+
+	private final long[] tmpChildOrigin;
+
+	public NtreeLeafCursor( final PrimitiveNtree ntree )
+	{
+		this.ntree = ntree;
+		this.n = ntree.numDimensions();
+		final int capacity = ntree.numTreeLevels() * ntree.numChildren + 1;
+		nodeStack = new int[ capacity ];
+		levelStack = new int[ capacity ];
+		originStack = new long[ capacity * n ];
+		min = new long[ n ];
+		max = new long[ n ];
+		tmpOrigin = new long[ n ];
+		tmpChildOrigin = new long[ n ];
+		reset();
+	}
+
+	public void reset()
+	{
+		stackSize = 1;
+		nodeStack[ 0 ] = PrimitiveNtree.ROOT;
+		levelStack[ 0 ] = ntree.numTreeLevels() - 1;
+		for ( int d = 0; d < n; ++d )
+			originStack[ d ] = 0;
+		node = -1;
+		advanceToLeaf();
+	}
+
+	public boolean hasNext()
+	{
+		return stackSize > 0;
+	}
+
+	/**
+	 * Move to the next leaf.
+	 */
+	public void fwd()
+	{
+		--stackSize;
+		node = nodeStack[ stackSize ];
+		final int level = levelStack[ stackSize ];
+		final long side = 1l << level;
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = originStack[ stackSize * n + d ];
+			max[ d ] = Math.min( min[ d ] + side, ntree.dimension( d ) ) - 1;
+		}
+		advanceToLeaf();
+	}
+
+	/**
+	 * Expand inner nodes on top of the stack until a leaf is on top. Children
+	 * that lie completely outside the tree dimensions are not pushed.
+	 */
+	private void advanceToLeaf()
+	{
+		while ( stackSize > 0 )
+		{
+			final int top = stackSize - 1;
+			final int current = nodeStack[ top ];
+			if ( !ntree.hasChildren( current ) )
+				return;
+			final int level = levelStack[ top ];
+			System.arraycopy( originStack, top * n, tmpOrigin, 0, n );
+			stackSize = top;
+			// push in reverse, so that child 0 is visited first
+			for ( int i = ntree.numChildren - 1; i >= 0; --i )
+			{
+				ntree.childOrigin( tmpOrigin, level, i, tmpChildOrigin );
+				boolean outside = false;
+				for ( int d = 0; d < n; ++d )
+					if ( tmpChildOrigin[ d ] >= ntree.dimension( d ) )
+						outside = true;
+				if ( outside )
+					continue;
+				nodeStack[ stackSize ] = ntree.getChild( current, i );
+				levelStack[ stackSize ] = level - 1;
+				System.arraycopy( tmpChildOrigin, 0, originStack, stackSize * n, n );
+				++stackSize;
+			}
+		}
+	}
+
+	/**
+	 * @return index of the current leaf node.
+	 */
+	public int getNode()
+	{
+		return node;
+	}
+
+	/**
+	 * @return value of the current leaf, see {@link PrimitiveNtree} for the
+	 *         encoding of non-integer types.
+	 */
+	public long getValue()
+	{
+		return ntree.getNodeValue( node );
+	}
+
+	public long min( final int d )
+	{
+		return min[ d ];
+	}
+
+	public long max( final int d )
+	{
+		return max[ d ];
+	}
+
+	public void min( final long[] m )
+	{
+		System.arraycopy( min, 0, m, 0, n );
+	}
+
+	public void max( final long[] m )
+	{
+		System.arraycopy( max, 0, m, 0, n );
+	}
+
+	/**
+	 * @return number of pixels in the current leaf.
+	 */
+	public long size()
+	{
+		long size = 1;
+		for ( int d = 0; d < n; ++d )
+			size *= max[ d ] - min[ d ] + 1;
+		return size;
+	}
+}
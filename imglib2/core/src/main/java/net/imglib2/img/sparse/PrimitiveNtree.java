@@ -0,0 +1,576 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.sparse;
+
+import net.imglib2.img.sparse.Ntree.NtreeNode;
+
+/**
+ * N-dimensional equivalent of a quad/oct-tree, like {@link Ntree}, but
+ * without node objects. Nodes live in a pool of primitive arrays and leaf
+ * values are stored as {@code long} bits. The children of a node occupy a
+ * contiguous block of {@code 2^n} node indices. Blocks of merged nodes are
+ * recycled through a free list.
+ *
+ * <p>
+ * Values of other primitive types are stored by their bit patterns, e.g.
+ * {@link Float#floatToIntBits(float)} and
+ * {@link Double#doubleToLongBits(double)}. Two leaves are merged if their
+ * bits are equal.
+ * </p>
+ *
+ * <p>
+ * Besides per-pixel {@link #setValue(long[], long) set}, whole
+ * hyper-rectangles can be {@link #fill(long[], long[], long) filled} and
+ * {@link #merge(long[], long[]) merged} without descending to every pixel.
+ * </p>
+ */
+public final class PrimitiveNtree
+{
+	/**
+	 * number of dimensions.
+	 */
+	final int n;
+
+	/**
+	 * maximum depth of the tree.
+	 */
+	final int numTreeLevels;
+
+	/**
+	 * how many children (if any) each node has.
+	 */
+	final int numChildren;
+
+	/**
+	 * dimensions of tree
+	 */
+	final long[] dimensions;
+
+	/**
+	 * for each node, index of its first child or -1 if the node is a leaf.
+	 */
+	private int[] firstChild;
+
+	/**
+	 * for each node, its value. Only meaningful for leaves.
+	 */
+	private long[] values;
+
+	/**
+	 * for each block of children, the index of the parent node. For free
+	 * blocks, the index of the next free block (or -1).
+	 */
+	private int[] blockParent;
+
+	/**
+	 * number of blocks in use or on the free list.
+	 */
+	private int numBlocks;
+
+	/**
+	 * first free block or -1.
+	 */
+	private int freeBlock;
+
+	/**
+	 * number of blocks on the free list.
+	 */
+	private int numFreeBlocks;
+
+	/**
+	 * index of the root node. Block 0 holds only the root.
+	 */
+	public static final int ROOT = 0;
+
+	/**
+	 * Create a ntree structure capable of representing an array of the given
+	 * dimensions. Initially, the tree contains only a root node and represents
+	 * an array of uniform values.
+	 *
+	 * @param dimensions
+	 *            of the array
+	 * @param value
+	 *            uniform value of all pixels in the array
+	 */
+	public PrimitiveNtree( final long[] dimensions, final long value )
+	{
+		this.n = dimensions.length;
+		this.dimensions = dimensions.clone();
+
+		// set the maximum number of levels in the ntree.
+		// This is how many times to split the maximum dimension
+		// in half to arrive at a single pixel
+		long maxdim = 0;
+		for ( int d = 0; d < n; ++d )
+			maxdim = Math.max( maxdim, dimensions[ d ] );
+		this.numTreeLevels = ( int ) Math.ceil( Math.log( maxdim ) / Math.log( 2 ) ) + 1;
+		this.numChildren = 1 << n;
+
+		final int initialBlocks = 16;
+		firstChild = new int[ initialBlocks * numChildren ];
+		values = new long[ initialBlocks * numChildren ];
+		blockParent = new int[ initialBlocks ];
+		numBlocks = 1;
+		freeBlock = -1;
+		numFreeBlocks = 0;
+
+		firstChild[ ROOT ] = -1;
+		values[ ROOT ] = value;
+		blockParent[ 0 ] = -1;
+	}
+
+	/**
+	 * Copy constructor. Create a deep copy of ntree.
+	 */
+	public PrimitiveNtree( final PrimitiveNtree ntree )
+	{
+		n = ntree.n;
+		numTreeLevels = ntree.numTreeLevels;
+		numChildren = ntree.numChildren;
+		dimensions = ntree.dimensions;
+		firstChild = ntree.firstChild.clone();
+		values = ntree.values.clone();
+		blockParent = ntree.blockParent.clone();
+		numBlocks = ntree.numBlocks;
+		freeBlock = ntree.freeBlock;
+		numFreeBlocks = ntree.numFreeBlocks;
+	}
+
+	/**
+	 * Converts values of type {@code T} to and from the {@code long} bits
+	 * stored in the tree.
+	 */
+	interface ValueConverter< T >
+	{
+		long toBits( T value );
+
+		T fromBits( long bits );
+	}
+
+	/**
+	 * Create a tree with the structure and values of an {@link Ntree}.
+	 */
+	< T extends Comparable< T > > PrimitiveNtree( final Ntree< T > ntree, final ValueConverter< T > converter )
+	{
+		this( ntree.dimensions, 0 );
+		copyFrom( ntree.getRootNode(), ROOT, converter );
+	}
+
+	private < T > void copyFrom( final NtreeNode< T > source, final int node, final ValueConverter< T > converter )
+	{
+		values[ node ] = converter.toBits( source.getValue() );
+		final NtreeNode< T >[] children = source.getChildren();
+		if ( children != null )
+		{
+			split( node );
+			for ( int i = 0; i < numChildren; ++i )
+				copyFrom( children[ i ], getChild( node, i ), converter );
+		}
+	}
+
+	/**
+	 * Create an {@link Ntree} with the structure and values of this tree. The
+	 * result is a copy, changing it does not change this tree.
+	 */
+	< T extends Comparable< T > > Ntree< T > toNtree( final ValueConverter< T > converter )
+	{
+		final Ntree< T > ntree = new Ntree< T >( dimensions, converter.fromBits( values[ ROOT ] ) );
+		copyTo( ROOT, ntree.getRootNode(), converter );
+		return ntree;
+	}
+
+	@SuppressWarnings( "unchecked" )
+	private < T > void copyTo( final int node, final NtreeNode< T > target, final ValueConverter< T > converter )
+	{
+		final int first = firstChild[ node ];
+		if ( first >= 0 )
+		{
+			final NtreeNode< T >[] children = new NtreeNode[ numChildren ];
+			for ( int i = 0; i < numChildren; ++i )
+			{
+				children[ i ] = new NtreeNode< T >( target, converter.fromBits( values[ first + i ] ) );
+				copyTo( first + i, children[ i ], converter );
+			}
+			target.setChildren( children );
+		}
+	}
+
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	/**
+	 * @return maximum depth of the tree. The root covers a hyper-cube of side
+	 *         length {@code 2^(numTreeLevels-1)}.
+	 */
+	public int numTreeLevels()
+	{
+		return numTreeLevels;
+	}
+
+	public long dimension( final int d )
+	{
+		return dimensions[ d ];
+	}
+
+	/**
+	 * @return number of nodes (inner nodes and leaves) in the tree.
+	 */
+	public int numNodes()
+	{
+		return 1 + ( numBlocks - 1 - numFreeBlocks ) * numChildren;
+	}
+
+	public boolean hasChildren( final int node )
+	{
+		return firstChild[ node ] >= 0;
+	}
+
+	/**
+	 * @return the {@code i}th child of {@code node}. Bit {@code d} of
+	 *         {@code i} selects the upper half in dimension {@code d}.
+	 */
+	public int getChild( final int node, final int i )
+	{
+		return firstChild[ node ] + i;
+	}
+
+	/**
+	 * @return parent of {@code node} or -1 for the root.
+	 */
+	public int getParent( final int node )
+	{
+		return blockParent[ node >> n ];
+	}
+
+	/**
+	 * @return value of the leaf {@code node}.
+	 */
+	public long getNodeValue( final int node )
+	{
+		return values[ node ];
+	}
+
+	/**
+	 * Get the lowest-level node containing position. Note that position is not
+	 * necessarily the only pixel inside the node.
+	 *
+	 * @param position
+	 *            a position inside the image.
+	 * @return the lowest-level node containing position.
+	 */
+	public int getNode( final long[] position )
+	{
+		int current = ROOT;
+		for ( int l = numTreeLevels - 2; l >= 0; --l )
+		{
+			final int child = firstChild[ current ];
+			if ( child < 0 )
+				break;
+			current = child + childIndex( position, l );
+		}
+		return current;
+	}
+
+	/**
+	 * Get the value at position.
+	 */
+	public long getValue( final long[] position )
+	{
+		return values[ getNode( position ) ];
+	}
+
+	/**
+	 * Set the value at position. If necessary, new nodes will be created. If
+	 * possible, nodes will be merged.
+	 */
+	public void setValue( final long[] position, final long value )
+	{
+		setValue( position, value, true );
+	}
+
+	/**
+	 * Set the value at position. If necessary, new nodes will be created. If
+	 * {@code mergeUpwards} is false, nodes with equal children are not merged.
+	 * This saves work when writing many pixels of a region, which can be
+	 * merged in one go using {@link #merge(long[], long[])} afterwards.
+	 *
+	 * @param position
+	 *            a position inside the image.
+	 * @param value
+	 *            value to store at position.
+	 * @param mergeUpwards
+	 *            whether to merge nodes with equal children.
+	 */
+	public void setValue( final long[] position, final long value, final boolean mergeUpwards )
+	{
+		int current = ROOT;
+		for ( int l = numTreeLevels - 2; l >= 0; --l )
+		{
+			if ( firstChild[ current ] < 0 )
+			{
+				if ( values[ current ] == value )
+					return;
+				split( current );
+			}
+			current = firstChild[ current ] + childIndex( position, l );
+		}
+		if ( values[ current ] == value )
+			return;
+		values[ current ] = value;
+		if ( mergeUpwards )
+			for ( int parent = getParent( current ); parent >= 0 && collapse( parent ); parent = getParent( parent ) )
+				;
+	}
+
+	/**
+	 * Set all pixels in the hyper-rectangle {@code [min, max]} to value. Nodes
+	 * that lie completely inside the hyper-rectangle are replaced by a single
+	 * leaf, without visiting their pixels.
+	 *
+	 * @param min
+	 *            minimum of the hyper-rectangle (inclusive)
+	 * @param max
+	 *            maximum of the hyper-rectangle (inclusive)
+	 * @param value
+	 *            value to store
+	 */
+	public void fill( final long[] min, final long[] max, final long value )
+	{
+		fill( ROOT, numTreeLevels - 1, new long[ numTreeLevels ][ n ], min, max, value );
+	}
+
+	private void fill( final int node, final int level, final long[][] origins, final long[] min, final long[] max, final long value )
+	{
+		final long[] origin = origins[ level ];
+		final int overlap = overlap( origin, level, min, max );
+		if ( overlap == NONE )
+			return;
+		if ( overlap == INSIDE )
+		{
+			makeLeaf( node, value );
+			return;
+		}
+		if ( firstChild[ node ] < 0 )
+		{
+			if ( values[ node ] == value )
+				return;
+			split( node );
+		}
+		final int first = firstChild[ node ];
+		final long[] childOrigin = origins[ level - 1 ];
+		for ( int i = 0; i < numChildren; ++i )
+		{
+			childOrigin( origin, level, i, childOrigin );
+			fill( first + i, level - 1, origins, min, max, value );
+		}
+		collapse( node );
+	}
+
+	/**
+	 * Merge all nodes overlapping the hyper-rectangle {@code [min, max]}
+	 * whose children are leaves of equal value. This is done bottom-up, so
+	 * uniform subtrees of any depth are collapsed into a single leaf.
+	 *
+	 * @param min
+	 *            minimum of the hyper-rectangle (inclusive)
+	 * @param max
+	 *            maximum of the hyper-rectangle (inclusive)
+	 */
+	public void merge( final long[] min, final long[] max )
+	{
+		merge( ROOT, numTreeLevels - 1, new long[ numTreeLevels ][ n ], min, max );
+	}
+
+	private void merge( final int node, final int level, final long[][] origins, final long[] min, final long[] max )
+	{
+		final int first = firstChild[ node ];
+		if ( first < 0 )
+			return;
+		final long[] origin = origins[ level ];
+		if ( overlap( origin, level, min, max ) == NONE )
+			return;
+		final long[] childOrigin = origins[ level - 1 ];
+		for ( int i = 0; i < numChildren; ++i )
+		{
+			childOrigin( origin, level, i, childOrigin );
+			merge( first + i, level - 1, origins, min, max );
+		}
+		collapse( node );
+	}
+
+	private static final int NONE = 0;
+
+	private static final int PARTIAL = 1;
+
+	private static final int INSIDE = 2;
+
+	/**
+	 * Determine how the hyper-cube of the given level at origin (clipped to
+	 * the tree dimensions) overlaps {@code [min, max]}.
+	 */
+	private int overlap( final long[] origin, final int level, final long[] min, final long[] max )
+	{
+		final long side = 1l << level;
+		boolean inside = true;
+		for ( int d = 0; d < n; ++d )
+		{
+			final long cmin = origin[ d ];
+			final long cmax = Math.min( cmin + side, dimensions[ d ] ) - 1;
+			if ( cmax < min[ d ] || cmin > max[ d ] )
+				return NONE;
+			if ( cmin < min[ d ] || cmax > max[ d ] )
+				inside = false;
+		}
+		return inside ? INSIDE : PARTIAL;
+	}
+
+	/**
+	 * Compute the origin of the {@code i}th child of the hyper-cube of the
+	 * given level at origin.
+	 */
+	void childOrigin( final long[] origin, final int level, final int i, final long[] childOrigin )
+	{
+		final long half = 1l << ( level - 1 );
+		for ( int d = 0; d < n; ++d )
+			childOrigin[ d ] = ( ( i >> d ) & 1 ) == 0 ? origin[ d ] : origin[ d ] + half;
+	}
+
+	private int childIndex( final long[] position, final int l )
+	{
+		final long bitmask = 1l << l;
+		int childindex = 0;
+		for ( int d = 0; d < n; ++d )
+			if ( ( position[ d ] & bitmask ) != 0 )
+				childindex |= 1 << d;
+		return childindex;
+	}
+
+	/**
+	 * Give the leaf {@code node} children which all have its value.
+	 */
+	private void split( final int node )
+	{
+		final int block = allocateBlock();
+		blockParent[ block ] = node;
+		final int first = block << n;
+		final long value = values[ node ];
+		for ( int i = 0; i < numChildren; ++i )
+		{
+			firstChild[ first + i ] = -1;
+			values[ first + i ] = value;
+		}
+		firstChild[ node ] = first;
+	}
+
+	/**
+	 * Turn {@code node} into a leaf with the given value, releasing its
+	 * subtree.
+	 */
+	private void makeLeaf( final int node, final long value )
+	{
+		if ( firstChild[ node ] >= 0 )
+		{
+			releaseSubtree( firstChild[ node ] );
+			firstChild[ node ] = -1;
+		}
+		values[ node ] = value;
+	}
+
+	/**
+	 * If all children of {@code node} are leaves with equal value, remove them.
+	 *
+	 * @return true, if {@code node} is a leaf now.
+	 */
+	private boolean collapse( final int node )
+	{
+		final int first = firstChild[ node ];
+		if ( first < 0 )
+			return true;
+		if ( firstChild[ first ] >= 0 )
+			return false;
+		final long value = values[ first ];
+		for ( int i = 1; i < numChildren; ++i )
+			if ( firstChild[ first + i ] >= 0 || values[ first + i ] != value )
+				return false;
+		releaseBlock( first >> n );
+		firstChild[ node ] = -1;
+		values[ node ] = value;
+		return true;
+	}
+
+	private void releaseSubtree( final int first )
+	{
+		for ( int i = 0; i < numChildren; ++i )
+			if ( firstChild[ first + i ] >= 0 )
+				releaseSubtree( firstChild[ first + i ] );
+		releaseBlock( first >> n );
+	}
+
+	private int allocateBlock()
+	{
+		if ( freeBlock >= 0 )
+		{
+			final int block = freeBlock;
+			freeBlock = blockParent[ block ];
+			--numFreeBlocks;
+			return block;
+		}
+		if ( numBlocks == blockParent.length )
+		{
+			final int capacity = 2 * numBlocks;
+			final int[] newBlockParent = new int[ capacity ];
+			System.arraycopy( blockParent, 0, newBlockParent, 0, numBlocks );
+			blockParent = newBlockParent;
+			final int[] newFirstChild = new int[ capacity * numChildren ];
+			System.arraycopy( firstChild, 0, newFirstChild, 0, numBlocks * numChildren );
+			firstChild = newFirstChild;
+			final long[] newValues = new long[ capacity * numChildren ];
+			System.arraycopy( values, 0, newValues, 0, numBlocks * numChildren );
+			values = newValues;
+		}
+		return numBlocks++;
+	}
+
+	private void releaseBlock( final int block )
+	{
+		blockParent[ block ] = freeBlock;
+		freeBlock = block;
+		++numFreeBlocks;
+	}
+}
@@ -42,20 +42,50 @@ import net.imglib2.img.basictypeaccess.ShortAccess;
  *
  * @author Tobias Pietzsch
  */
-public final class ShortNtree implements ShortAccess, NtreeAccess< Short, ShortNtree >
+public final class ShortNtree implements ShortAccess, NtreeAccess< Short, ShortNtree >, PrimitiveNtreeAccess
 {
 
 	private final long[] position;
 
-	private final Ntree< Short > data;
+	private final PrimitiveNtree data;
+
+	private static final PrimitiveNtree.ValueConverter< Short > converter = new PrimitiveNtree.ValueConverter< Short >()
+	{
+		@Override
+		public long toBits( final Short value )
+		{
+			return value;
+		}
+
+		@Override
+		public Short fromBits( final long bits )
+		{
+			return ( short ) bits;
+		}
+	};
 
 	public ShortNtree( final long[] dimenions, final long[] position, final short value )
 	{
-		this.data = new Ntree< Short >( dimenions, value );
+		this.data = new PrimitiveNtree( dimenions, value );
 		this.position = position;
 	}
 
+	/**
+	 * Create an access storing a copy of the given tree.
+	 * 
+	 * @deprecated the pixels are stored in a {@link PrimitiveNtree}, so
+	 *             changing the given tree afterwards does not change the
+	 *             pixel values.
+	 */
+	@Deprecated
 	public ShortNtree( final Ntree< Short > data, final long[] position )
+	{
+		this.data = new PrimitiveNtree( data, converter );
+		this.position = position;
+	}
+
+	/* Copy constructor */
+	private ShortNtree( final PrimitiveNtree data, final long[] position )
 	{
 		this.data = data;
 		this.position = position;
@@ -65,18 +95,29 @@ public final class ShortNtree implements ShortAccess, NtreeAccess< Short, ShortN
 	public short getValue( final int index )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		return data.getNode( position ).getValue();
+		return ( short ) data.getValue( position );
 	}
 
 	@Override
 	public void setValue( final int index, final short value )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		data.createNodeWithValue( position, value );
+		data.setValue( position, value );
 	}
 
+	/**
+	 * @deprecated returns a copy of the pixel values, changes to it are not
+	 *             written back. See {@link NtreeAccess#getCurrentStorageNtree()}.
+	 */
+	@Deprecated
 	@Override
 	public Ntree< Short > getCurrentStorageNtree()
+	{
+		return data.toNtree( converter );
+	}
+
+	@Override
+	public PrimitiveNtree getCurrentStoragePrimitiveNtree()
 	{
 		return data;
 	}
@@ -76,4 +76,20 @@ final public class Interpolant< T, F extends EuclideanSpace > implements RealRan
 	{
 		return factory.create( source, interval );
 	}
+
+	/**
+	 * @return the interpolated source.
+	 */
+	public F getSource()
+	{
+		return source;
+	}
+
+	/**
+	 * @return the {@link InterpolatorFactory} used to create the accessors.
+	 */
+	public InterpolatorFactory< T, F > getInterpolatorFactory()
+	{
+		return factory;
+	}
 }
@@ -0,0 +1,226 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import net.imglib2.AbstractInterval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.multithreading.Chunk;
+import net.imglib2.multithreading.ChunkTask;
+import net.imglib2.multithreading.TaskExecutor;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+
+/**
+ * Coefficients of the cubic B-spline that interpolates the samples of a
+ * {@link RandomAccessibleInterval}.
+ *
+ * <p>
+ * The coefficients are computed by the recursive prefilter of Unser et al.
+ * (M. Unser, "Splines: A Perfect Fit for Signal and Image Processing", IEEE
+ * Signal Processing Magazine, 1999): one causal and one anti-causal first
+ * order filter with pole <em>z = &radic;3 - 2</em> along each dimension, with
+ * mirror (whole-sample symmetric) boundary conditions. The lines of each
+ * dimension are filtered in parallel by the default {@link TaskExecutor}.
+ * </p>
+ *
+ * <p>
+ * The coefficients are stored in a flat double array, in the flat iteration
+ * order of the interval.
+ * </p>
+ */
+public class BSplineCoefficients extends AbstractInterval
+{
+	/**
+	 * the pole of the cubic B-spline prefilter.
+	 */
+	final static public double pole = Math.sqrt( 3 ) - 2;
+
+	/**
+	 * precision of the causal initialization for long lines.
+	 */
+	final static public double tolerance = 1e-10;
+
+	final protected double[] coefficients;
+
+	final protected int[] dimensions;
+
+	final protected int[] steps;
+
+	/**
+	 * Compute the coefficients of <em>source</em> using all threads of the
+	 * default {@link TaskExecutor}.
+	 */
+	public < T extends RealType< T > > BSplineCoefficients( final RandomAccessibleInterval< T > source )
+	{
+		this( source, TaskExecutor.getDefault().getNumThreads() );
+	}
+
+	/**
+	 * Compute the coefficients of <em>source</em> using at most
+	 * <em>numThreads</em> threads.
+	 */
+	public < T extends RealType< T > > BSplineCoefficients( final RandomAccessibleInterval< T > source, final int numThreads )
+	{
+		super( source );
+
+		dimensions = new int[ n ];
+		steps = new int[ n ];
+		long size = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			dimensions[ d ] = ( int ) dimension( d );
+			steps[ d ] = ( int ) size;
+			size *= dimension( d );
+		}
+		if ( size > Integer.MAX_VALUE )
+			throw new RuntimeException( "BSplineCoefficients: source too large." );
+
+		coefficients = new double[ ( int ) size ];
+		int i = 0;
+		for ( final T t : Views.flatIterable( source ) )
+			coefficients[ i++ ] = t.getRealDouble();
+
+		for ( int d = 0; d < n; ++d )
+			if ( dimensions[ d ] > 1 )
+				prefilter( d, numThreads );
+	}
+
+	/**
+	 * @return the coefficients in flat iteration order.
+	 */
+	public double[] getCoefficients()
+	{
+		return coefficients;
+	}
+
+	/**
+	 * @return the distance between neighboring coefficients in each dimension
+	 *         of the flat array.
+	 */
+	public int[] getSteps()
+	{
+		return steps;
+	}
+
+	/**
+	 * Filter all lines along dimension <em>d</em>.
+	 */
+	private void prefilter( final int d, final int numThreads )
+	{
+		final int length = dimensions[ d ];
+		final int step = steps[ d ];
+		final int numLines = coefficients.length / length;
+
+		TaskExecutor.getDefault().run( numLines, numThreads, new ChunkTask()
+		{
+			@Override
+			public void run( final Chunk chunk )
+			{
+				final double[] line = new double[ length ];
+				final int end = ( int ) ( chunk.getStartPosition() + chunk.getLoopSize() );
+				for ( int l = ( int ) chunk.getStartPosition(); l < end; ++l )
+				{
+					// the line starts at lower index (l % step), upper index (l / step)
+					final int start = ( l % step ) + ( l / step ) * step * length;
+					for ( int k = 0, o = start; k < length; ++k, o += step )
+						line[ k ] = coefficients[ o ];
+					prefilter( line );
+					for ( int k = 0, o = start; k < length; ++k, o += step )
+						coefficients[ o ] = line[ k ];
+				}
+			}
+		} );
+	}
+
+	/**
+	 * Replace the samples of a line (length &ge; 2) by its cubic B-spline
+	 * coefficients.
+	 */
+	static void prefilter( final double[] c )
+	{
+		final int length = c.length;
+		final double z = pole;
+		final double lambda = ( 1 - z ) * ( 1 - 1 / z );
+
+		for ( int k = 0; k < length; ++k )
+			c[ k ] *= lambda;
+
+		c[ 0 ] = causalInit( c, z );
+		for ( int k = 1; k < length; ++k )
+			c[ k ] += z * c[ k - 1 ];
+
+		c[ length - 1 ] = ( z / ( z * z - 1 ) ) * ( z * c[ length - 2 ] + c[ length - 1 ] );
+		for ( int k = length - 2; k >= 0; --k )
+			c[ k ] = z * ( c[ k + 1 ] - c[ k ] );
+	}
+
+	/**
+	 * Initial value of the causal filter for mirror boundary conditions.
+	 */
+	private static double causalInit( final double[] c, final double z )
+	{
+		final int length = c.length;
+		final int horizon = ( int ) Math.ceil( Math.log( tolerance ) / Math.log( Math.abs( z ) ) );
+		if ( horizon < length )
+		{
+			// the influence of samples beyond the horizon is negligible
+			double zn = z;
+			double sum = c[ 0 ];
+			for ( int k = 1; k < horizon; ++k )
+			{
+				sum += zn * c[ k ];
+				zn *= z;
+			}
+			return sum;
+		}
+		else
+		{
+			double zn = z;
+			final double iz = 1 / z;
+			double z2n = Math.pow( z, length - 1 );
+			double sum = c[ 0 ] + z2n * c[ length - 1 ];
+			z2n *= z2n * iz;
+			for ( int k = 1; k < length - 1; ++k )
+			{
+				sum += ( zn + z2n ) * c[ k ];
+				zn *= z;
+				z2n *= iz;
+			}
+			return sum / ( 1 - zn * zn );
+		}
+	}
+}
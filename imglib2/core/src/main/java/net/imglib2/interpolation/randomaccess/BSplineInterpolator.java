@@ -0,0 +1,178 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import net.imglib2.RealPoint;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.position.transform.Floor;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Cubic B-spline interpolation of precomputed {@link BSplineCoefficients}.
+ *
+ * <p>
+ * The value at a position is the weighted sum of the 4<sup><em>n</em></sup>
+ * coefficients around it. The four 1D B-spline weights of each dimension are
+ * computed once per {@link #get()}, and the sum is evaluated separably, one
+ * dimension after another. Outside of the coefficient interval, the spline is
+ * continued by mirroring. For {@link IntegerType integer types}, the
+ * interpolated values are clipped to the range of the type, because the
+ * spline can overshoot the samples.
+ * </p>
+ */
+public class BSplineInterpolator< T extends RealType< T > > extends RealPoint implements RealRandomAccess< T >
+{
+	final protected BSplineCoefficients coefficients;
+
+	final protected double[] c;
+
+	final protected T value;
+
+	/**
+	 * range to which the interpolated values are clipped.
+	 */
+	final protected double minValue, maxValue;
+
+	/**
+	 * B-spline weights of the four contributing coefficients per dimension.
+	 */
+	final protected double[][] weights;
+
+	/**
+	 * array offsets of the four contributing coefficients per dimension.
+	 */
+	final protected int[][] offsets;
+
+	public BSplineInterpolator( final BSplineCoefficients coefficients, final T type )
+	{
+		super( coefficients.numDimensions() );
+		this.coefficients = coefficients;
+		this.c = coefficients.getCoefficients();
+		this.value = type.createVariable();
+		if ( value instanceof IntegerType )
+		{
+			minValue = value.getMinValue();
+			maxValue = value.getMaxValue();
+		}
+		else
+		{
+			minValue = Double.NEGATIVE_INFINITY;
+			maxValue = Double.POSITIVE_INFINITY;
+		}
+		weights = new double[ n ][ 4 ];
+		offsets = new int[ n ][ 4 ];
+	}
+
+	protected BSplineInterpolator( final BSplineInterpolator< T > interpolator )
+	{
+		this( interpolator.coefficients, interpolator.value );
+		setPosition( interpolator );
+	}
+
+	@Override
+	public T get()
+	{
+		final int[] steps = coefficients.getSteps();
+		for ( int d = 0; d < n; ++d )
+		{
+			final double p = position[ d ] - coefficients.min( d );
+			final long f = Floor.floor( p );
+			final double t = p - f;
+			final double t2 = t * t;
+			final double t3 = t2 * t;
+			final double s = 1 - t;
+			final double[] w = weights[ d ];
+			w[ 0 ] = s * s * s / 6;
+			w[ 1 ] = ( 4 - 6 * t2 + 3 * t3 ) / 6;
+			w[ 2 ] = ( 1 + 3 * t + 3 * t2 - 3 * t3 ) / 6;
+			w[ 3 ] = t3 / 6;
+
+			final long size = coefficients.dimension( d );
+			final int[] o = offsets[ d ];
+			for ( int j = 0; j < 4; ++j )
+				o[ j ] = mirror( f - 1 + j, size ) * steps[ d ];
+		}
+		final double v = sum( n - 1, 0 );
+		if ( v < minValue )
+			value.setReal( minValue );
+		else if ( v > maxValue )
+			value.setReal( maxValue );
+		else
+			value.setReal( v );
+		return value;
+	}
+
+	/**
+	 * Sum over the contributing coefficients of dimensions <em>d</em> and
+	 * below, starting at array offset <em>offset</em>.
+	 */
+	private double sum( final int d, final int offset )
+	{
+		final double[] w = weights[ d ];
+		final int[] o = offsets[ d ];
+		if ( d == 0 )
+			return w[ 0 ] * c[ offset + o[ 0 ] ] + w[ 1 ] * c[ offset + o[ 1 ] ] + w[ 2 ] * c[ offset + o[ 2 ] ] + w[ 3 ] * c[ offset + o[ 3 ] ];
+		return w[ 0 ] * sum( d - 1, offset + o[ 0 ] ) + w[ 1 ] * sum( d - 1, offset + o[ 1 ] ) + w[ 2 ] * sum( d - 1, offset + o[ 2 ] ) + w[ 3 ] * sum( d - 1, offset + o[ 3 ] );
+	}
+
+	/**
+	 * Map an index into [0, size) by whole-sample symmetric mirroring.
+	 */
+	static int mirror( final long i, final long size )
+	{
+		if ( size == 1 )
+			return 0;
+		final long period = 2 * size - 2;
+		long j = ( i < 0 ? -i : i ) % period;
+		if ( j >= size )
+			j = period - j;
+		return ( int ) j;
+	}
+
+	@Override
+	public BSplineInterpolator< T > copy()
+	{
+		return new BSplineInterpolator< T >( this );
+	}
+
+	@Override
+	public BSplineInterpolator< T > copyRealRandomAccess()
+	{
+		return copy();
+	}
+}
@@ -0,0 +1,314 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.multithreading.Chunk;
+import net.imglib2.multithreading.ChunkTask;
+import net.imglib2.multithreading.TaskExecutor;
+import net.imglib2.position.transform.Floor;
+import net.imglib2.type.Type;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+
+/**
+ * Resample a {@link RandomAccessible} on a regular grid with a
+ * {@link SeparableInterpolatorFactory}.
+ *
+ * <p>
+ * Along each dimension, the grid positions share the same fractional offsets
+ * in every line. Therefore, the start sample and the {@link
+ * SeparableInterpolatorFactory#numTaps() k} weights of each grid position are
+ * computed once per dimension into a table. The source samples covering the
+ * grid are read into a double buffer, which is then filtered dimension by
+ * dimension with these tables. This costs O(<em>n</em>&middot;<em>k</em>)
+ * operations per pixel instead of O(<em>k<sup>n</sup></em>) for evaluating
+ * the interpolator at every pixel. The filter passes are distributed over the
+ * threads of the default {@link TaskExecutor}. Grids whose buffers would not
+ * fit into an array are resampled in tiles.
+ * </p>
+ *
+ * <p>
+ * The separable path requires {@link RealType} source and target, other types
+ * are resampled by evaluating the interpolator at every target pixel.
+ * </p>
+ */
+final public class GridResampler
+{
+	private GridResampler() {}
+
+	/**
+	 * Fill <em>target</em> with the values interpolated by <em>factory</em>
+	 * from <em>source</em> at the grid positions <em>x * scale + offset</em>,
+	 * where <em>x</em> are the integer coordinates of the target pixels.
+	 * Interpolated values are clipped to [<em>clipMin</em>,
+	 * <em>clipMax</em>].
+	 */
+	public static < T extends Type< T > > void resample( final SeparableInterpolatorFactory< T > factory, final RandomAccessible< T > source, final double[] scale, final double[] offset, final RandomAccessibleInterval< T > target, final double clipMin, final double clipMax )
+	{
+		resample( factory, source, scale, offset, target, clipMin, clipMax, TaskExecutor.getDefault().getNumThreads() );
+	}
+
+	/**
+	 * Fill <em>target</em> with the values interpolated by <em>factory</em>
+	 * from <em>source</em> at the grid positions <em>x * scale + offset</em>,
+	 * using at most <em>numThreads</em> threads. Interpolated values are
+	 * clipped to [<em>clipMin</em>, <em>clipMax</em>].
+	 */
+	public static < T extends Type< T > > void resample( final SeparableInterpolatorFactory< T > factory, final RandomAccessible< T > source, final double[] scale, final double[] offset, final RandomAccessibleInterval< T > target, final double clipMin, final double clipMax, final int numThreads )
+	{
+		resample( factory, source, scale, offset, target, clipMin, clipMax, numThreads, maxBufferSize );
+	}
+
+	/**
+	 * The maximum number of samples in a buffer, limited by the maximum size
+	 * of a Java array.
+	 */
+	static final long maxBufferSize = Integer.MAX_VALUE;
+
+	/**
+	 * Resample as {@link #resample(SeparableInterpolatorFactory,
+	 * RandomAccessible, double[], double[], RandomAccessibleInterval, double,
+	 * double, int)}, in tiles whose buffers hold at most
+	 * <em>maxBufferSize</em> samples.
+	 */
+	static < T extends Type< T > > void resample( final SeparableInterpolatorFactory< T > factory, final RandomAccessible< T > source, final double[] scale, final double[] offset, final RandomAccessibleInterval< T > target, final double clipMin, final double clipMax, final int numThreads, final long maxBufferSize )
+	{
+		final int n = target.numDimensions();
+		if ( source.numDimensions() != n || scale.length != n || offset.length != n )
+			throw new RuntimeException( "GridResampler: source, scale, offset, and target must have the same number of dimensions." );
+
+		final long[] min = new long[ n ];
+		target.min( min );
+		for ( int d = 0; d < n; ++d )
+			if ( target.dimension( d ) == 0 )
+				return;
+
+		final RandomAccess< T > targetAccess = target.randomAccess();
+		targetAccess.setPosition( min );
+		if ( !( targetAccess.get() instanceof RealType ) )
+		{
+			resamplePerPixel( factory, source, scale, offset, target );
+			return;
+		}
+
+		resampleTile( factory, source, scale, offset, target, clipMin, clipMax, numThreads, maxBufferSize );
+	}
+
+	/**
+	 * Resample the <em>tile</em> of the target. If its buffers would hold more
+	 * than <em>maxBufferSize</em> samples, it is split in halves along the
+	 * dimension that covers the most source samples, which are resampled one
+	 * after the other. The grid positions do not depend on the tiles, so
+	 * neither does the result.
+	 */
+	private static < T extends Type< T > > void resampleTile( final SeparableInterpolatorFactory< T > factory, final RandomAccessible< T > source, final double[] scale, final double[] offset, final RandomAccessibleInterval< T > tile, final double clipMin, final double clipMax, final int numThreads, final long maxBufferSize )
+	{
+		final int n = tile.numDimensions();
+		final int k = factory.numTaps();
+		final long[] min = new long[ n ];
+		final long[] dimensions = new long[ n ];
+		tile.min( min );
+		tile.dimensions( dimensions );
+
+		// upper bound of the source samples along each dimension, and of the
+		// size of the weight tables and of the buffers filtered in turn
+		final long[] extents = new long[ n ];
+		int split = -1;
+		double size = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			extents[ d ] = ( long ) Math.ceil( ( dimensions[ d ] - 1 ) * Math.abs( scale[ d ] ) ) + k + 1;
+			size *= extents[ d ];
+			if ( dimensions[ d ] > 1 && ( split < 0 || extents[ d ] > extents[ split ] ) )
+				split = d;
+		}
+		double maxSize = size;
+		for ( int d = 0; d < n; ++d )
+		{
+			size = size / extents[ d ] * dimensions[ d ];
+			maxSize = Math.max( maxSize, Math.max( size, ( double ) dimensions[ d ] * k ) );
+		}
+		if ( maxSize > maxBufferSize && split >= 0 )
+		{
+			final long[] max = new long[ n ];
+			tile.max( max );
+			final long[] splitMax = max.clone();
+			splitMax[ split ] = min[ split ] + dimensions[ split ] / 2 - 1;
+			final long[] splitMin = min.clone();
+			splitMin[ split ] = splitMax[ split ] + 1;
+			resampleTile( factory, source, scale, offset, Views.interval( tile, min, splitMax ), clipMin, clipMax, numThreads, maxBufferSize );
+			resampleTile( factory, source, scale, offset, Views.interval( tile, splitMin, max ), clipMin, clipMax, numThreads, maxBufferSize );
+			return;
+		}
+
+		// weight tables
+		final long[][] starts = new long[ n ][];
+		final double[][] weights = new double[ n ][];
+		final long[] sourceMin = new long[ n ];
+		final long[] sourceMax = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			final int length = ( int ) dimensions[ d ];
+			starts[ d ] = new long[ length ];
+			weights[ d ] = new double[ length * k ];
+			sourceMin[ d ] = Long.MAX_VALUE;
+			sourceMax[ d ] = Long.MIN_VALUE;
+			for ( int i = 0; i < length; ++i )
+			{
+				final double p = ( min[ d ] + i ) * scale[ d ] + offset[ d ];
+				final long s = Floor.floor( p ) + factory.firstTap();
+				starts[ d ][ i ] = s;
+				for ( int j = 0; j < k; ++j )
+					weights[ d ][ i * k + j ] = factory.weight( p - ( s + j ) );
+				sourceMin[ d ] = Math.min( sourceMin[ d ], s );
+				sourceMax[ d ] = Math.max( sourceMax[ d ], s + k - 1 );
+			}
+		}
+
+		// read the source samples covering the grid
+		final long[] bufferDimensions = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			bufferDimensions[ d ] = sourceMax[ d ] - sourceMin[ d ] + 1;
+		double[] buffer = new double[ numElements( bufferDimensions ) ];
+		int i = 0;
+		for ( final T t : Views.flatIterable( Views.interval( source, sourceMin, sourceMax ) ) )
+			buffer[ i++ ] = ( ( RealType< ? > ) t ).getRealDouble();
+
+		// filter dimension by dimension
+		for ( int d = 0; d < n; ++d )
+		{
+			final long[] filteredDimensions = bufferDimensions.clone();
+			filteredDimensions[ d ] = dimensions[ d ];
+			final double[] filtered = new double[ numElements( filteredDimensions ) ];
+			filter( buffer, bufferDimensions, filtered, filteredDimensions, d, starts[ d ], sourceMin[ d ], weights[ d ], k, numThreads );
+			buffer = filtered;
+			bufferDimensions[ d ] = dimensions[ d ];
+		}
+
+		i = 0;
+		for ( final T t : Views.flatIterable( tile ) )
+		{
+			double v = buffer[ i++ ];
+			if ( v < clipMin )
+				v = clipMin;
+			else if ( v > clipMax )
+				v = clipMax;
+			( ( RealType< ? > ) t ).setReal( v );
+		}
+	}
+
+	/**
+	 * Filter <em>input</em> along dimension <em>d</em> into <em>output</em>.
+	 * Both have the same dimensions except in <em>d</em>. Output sample
+	 * <em>i</em> in dimension <em>d</em> is the weighted sum of the
+	 * <em>k</em> input samples starting at <em>starts[i] - inputMin</em>.
+	 */
+	private static void filter( final double[] input, final long[] inputDimensions, final double[] output, final long[] outputDimensions, final int d, final long[] starts, final long inputMin, final double[] weights, final int k, final int numThreads )
+	{
+		// number of elements of one hyperplane below dimension d
+		int stride = 1;
+		for ( int e = 0; e < d; ++e )
+			stride *= ( int ) inputDimensions[ e ];
+		final int blockSize = stride;
+		final int inputSize = ( int ) inputDimensions[ d ];
+		final int outputSize = ( int ) outputDimensions[ d ];
+
+		// each row of output samples (fixed index in dimension d and above)
+		// is computed from k rows of input samples
+		final long numRows = output.length / blockSize;
+		TaskExecutor.getDefault().run( numRows, numThreads, new ChunkTask()
+		{
+			@Override
+			public void run( final Chunk chunk )
+			{
+				final long end = chunk.getStartPosition() + chunk.getLoopSize();
+				for ( long row = chunk.getStartPosition(); row < end; ++row )
+				{
+					final int i = ( int ) ( row % outputSize );
+					final int upper = ( int ) ( row / outputSize );
+					final int outputBase = ( int ) row * blockSize;
+					final int inputBase = ( upper * inputSize + ( int ) ( starts[ i ] - inputMin ) ) * blockSize;
+					final int weightBase = i * k;
+					if ( blockSize == 1 )
+					{
+						double sum = 0;
+						for ( int j = 0; j < k; ++j )
+							sum += weights[ weightBase + j ] * input[ inputBase + j ];
+						output[ outputBase ] = sum;
+					}
+					else
+					{
+						for ( int j = 0; j < k; ++j )
+						{
+							final double w = weights[ weightBase + j ];
+							final int inputRow = inputBase + j * blockSize;
+							for ( int a = 0; a < blockSize; ++a )
+								output[ outputBase + a ] += w * input[ inputRow + a ];
+						}
+					}
+				}
+			}
+		} );
+	}
+
+	private static int numElements( final long[] dimensions )
+	{
+		long size = 1;
+		for ( final long s : dimensions )
+			size *= s;
+		return ( int ) size;
+	}
+
+	private static < T extends Type< T > > void resamplePerPixel( final SeparableInterpolatorFactory< T > factory, final RandomAccessible< T > source, final double[] scale, final double[] offset, final RandomAccessibleInterval< T > target )
+	{
+		final int n = target.numDimensions();
+		final RealRandomAccess< T > access = factory.create( source );
+		final Cursor< T > cursor = Views.iterable( target ).localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			for ( int d = 0; d < n; ++d )
+				access.setPosition( cursor.getLongPosition( d ) * scale[ d ] + offset[ d ], d );
+			cursor.get().set( access.get() );
+		}
+	}
+}
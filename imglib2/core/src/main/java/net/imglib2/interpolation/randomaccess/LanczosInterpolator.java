@@ -132,7 +132,7 @@ public class LanczosInterpolator< T extends RealType< T > > extends FloorOffset<
 		this.maxValue = interpolator.maxValue;
 	}
 	
-	final static private double[] createLanczosLUT( final int max, final int scale )
+	final static double[] createLanczosLUT( final int max, final int scale )
 	{
 		final double[] lut = new double[ max * scale + 2 ];
 		for ( int i = 0; i < lut.length; ++i )
@@ -179,14 +179,13 @@ A:		while ( proceed )
 				final long p = target.getLongPosition( d );
 				if ( p < max[ d ] )
 				{
-					products[ d ] = lookUpLanczos( position[ d ] - p ) * products[ ++d ];
+					products[ d ] = lookUpLanczos( position[ d ] - p ) * products[ d + 1 ];
+					// the lower dimensions were reset, update their products
+					accumulate( d - 1 );
 					continue A;
 				}
 				else
-				{
 					target.move( -size[ d ], d );
-					accumulate( d );
-				}
 			}
 			proceed = false;
 		}
@@ -213,7 +212,7 @@ A:		while ( proceed )
 			return (( a * Math.sin( Math.PI * x ) * Math.sin( Math.PI * x / a ) ) / ( piSquare * x * x ));
 	}
 	
-	final private double lookUpLanczos( final double x )
+	final static double lookUpLanczos( final double[] lut, final double x )
 	{
 		final double y = x < 0 ? -lutScale * x : lutScale * x;
 		final int yi = ( int )y;
@@ -221,6 +220,11 @@ A:		while ( proceed )
 		return ( lut[ yi + 1 ] - lut[ yi ] ) * d + lut[ yi ];
 	}
 
+	final private double lookUpLanczos( final double x )
+	{
+		return lookUpLanczos( lut, x );
+	}
+
 	@Override
 	public Sampler< T > copy() { return copy(); }
 
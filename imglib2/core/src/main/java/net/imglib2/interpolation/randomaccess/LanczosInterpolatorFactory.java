@@ -37,19 +37,26 @@
 package net.imglib2.interpolation.randomaccess;
 
 import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.RealInterval;
-import net.imglib2.interpolation.InterpolatorFactory;
 import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Util;
 
 /**
  * TODO
  *
  * @author ImgLib2 developers
  */
-public class LanczosInterpolatorFactory<T extends RealType<T>> implements InterpolatorFactory< T, RandomAccessible< T > >
+public class LanczosInterpolatorFactory<T extends RealType<T>> implements SeparableInterpolatorFactory< T >
 {
 	int alpha;
 	boolean clipping;
+
+	/**
+	 * lookup table for {@link #weight(double)}, created whenever
+	 * {@link #alpha} is set, so that weight can be called concurrently.
+	 */
+	private double[] lut;
 	double min, max;
 	
 	/**
@@ -62,6 +69,7 @@ public class LanczosInterpolatorFactory<T extends RealType<T>> implements Interp
 	public LanczosInterpolatorFactory( final int alpha, final boolean clipping )
 	{
 		this.alpha = alpha;
+		this.lut = LanczosInterpolator.createLanczosLUT( alpha, LanczosInterpolator.lutScale );
 		this.clipping = clipping;
 		this.min = this.max = 0;
 	}
@@ -78,6 +86,7 @@ public class LanczosInterpolatorFactory<T extends RealType<T>> implements Interp
 	public LanczosInterpolatorFactory( final int alpha, final double min, final double max )
 	{
 		this.alpha = alpha;
+		this.lut = LanczosInterpolator.createLanczosLUT( alpha, LanczosInterpolator.lutScale );
 		this.clipping = true;
 		this.min = min;
 		this.max = max;
@@ -94,6 +103,7 @@ public class LanczosInterpolatorFactory<T extends RealType<T>> implements Interp
 	public LanczosInterpolatorFactory( final double min, final double max )
 	{
 		this.alpha = 3;
+		this.lut = LanczosInterpolator.createLanczosLUT( alpha, LanczosInterpolator.lutScale );
 		this.clipping = true;
 		this.min = min;
 		this.max = max;
@@ -127,7 +137,11 @@ public class LanczosInterpolatorFactory<T extends RealType<T>> implements Interp
 	 * Set the rectangular radius of the window for perfoming the lanczos interpolation
 	 * @param alpha - radius
 	 */
-	public void setAlpha( final int alpha ) { this.alpha = alpha; }
+	public void setAlpha( final int alpha )
+	{
+		this.alpha = alpha;
+		this.lut = LanczosInterpolator.createLanczosLUT( alpha, LanczosInterpolator.lutScale );
+	}
 	
 	/**
 	 * The lanczos-interpolation can create values that are bigger or smaller than the original values,
@@ -146,4 +160,38 @@ public class LanczosInterpolatorFactory<T extends RealType<T>> implements Interp
 	 * @return - if clipping to the {@link RealType} range will be performed 
 	 */
 	public boolean getClipping() { return clipping; }
+
+	@Override
+	public int numTaps() { return 2 * alpha; }
+
+	@Override
+	public int firstTap() { return -alpha + 1; }
+
+	@Override
+	public double weight( final double distance )
+	{
+		return LanczosInterpolator.lookUpLanczos( lut, distance );
+	}
+
+	@Override
+	public void resample( final RandomAccessible< T > source, final double[] scale, final double[] offset, final RandomAccessibleInterval< T > target )
+	{
+		double clipMin = Double.NEGATIVE_INFINITY;
+		double clipMax = Double.POSITIVE_INFINITY;
+		if ( clipping )
+		{
+			if ( min == max )
+			{
+				final T type = Util.getTypeFromInterval( target );
+				clipMin = type.getMinValue();
+				clipMax = type.getMaxValue();
+			}
+			else
+			{
+				clipMin = min;
+				clipMax = max;
+			}
+		}
+		GridResampler.resample( this, source, scale, offset, target, clipMin, clipMax );
+	}
 }
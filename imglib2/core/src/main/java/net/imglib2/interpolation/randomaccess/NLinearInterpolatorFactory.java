@@ -37,8 +37,8 @@
 package net.imglib2.interpolation.randomaccess;
 
 import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.RealInterval;
-import net.imglib2.interpolation.InterpolatorFactory;
 import net.imglib2.type.numeric.NumericType;
 
 /**
@@ -53,7 +53,7 @@ import net.imglib2.type.numeric.NumericType;
  * @author Stephan Preibisch
  * @author Stephan Saalfeld
  */
-public class NLinearInterpolatorFactory< T extends NumericType< T > > implements InterpolatorFactory< T, RandomAccessible< T > >
+public class NLinearInterpolatorFactory< T extends NumericType< T > > implements SeparableInterpolatorFactory< T >
 {
 	@Override
 	public NLinearInterpolator< T > create( final RandomAccessible< T > randomAccessible )
@@ -80,4 +80,29 @@ public class NLinearInterpolatorFactory< T extends NumericType< T > > implements
 	{
 		return create( randomAccessible );
 	}
+
+	@Override
+	public int numTaps()
+	{
+		return 2;
+	}
+
+	@Override
+	public int firstTap()
+	{
+		return 0;
+	}
+
+	@Override
+	public double weight( final double distance )
+	{
+		final double w = 1.0 - Math.abs( distance );
+		return w < 0 ? 0 : w;
+	}
+
+	@Override
+	public void resample( final RandomAccessible< T > source, final double[] scale, final double[] offset, final RandomAccessibleInterval< T > target )
+	{
+		GridResampler.resample( this, source, scale, offset, target, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY );
+	}
 }
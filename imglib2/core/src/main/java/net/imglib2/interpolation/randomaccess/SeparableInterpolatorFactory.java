@@ -0,0 +1,92 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.interpolation.InterpolatorFactory;
+
+/**
+ * An {@link InterpolatorFactory} for interpolators whose weights are a product
+ * of one 1D kernel per dimension. Such interpolators can resample whole grids
+ * separably, dimension by dimension, see {@link GridResampler}.
+ *
+ * <p>
+ * The value at real position <em>p</em> is a weighted sum of the samples at
+ * integer positions <em>floor(p) + {@link #firstTap()}</em> ...
+ * <em>floor(p) + {@link #firstTap()} + {@link #numTaps()} - 1</em> in each
+ * dimension, where the sample at position <em>x</em> has weight
+ * <em>{@link #weight(double) weight}(p - x)</em>.
+ * </p>
+ */
+public interface SeparableInterpolatorFactory< T > extends InterpolatorFactory< T, RandomAccessible< T > >
+{
+	/**
+	 * @return the number of samples per dimension that contribute to an
+	 *         interpolated value.
+	 */
+	public int numTaps();
+
+	/**
+	 * @return the offset of the first contributing sample from the floored
+	 *         position.
+	 */
+	public int firstTap();
+
+	/**
+	 * @return the 1D weight of a sample at <em>distance</em> from the
+	 *         interpolated position.
+	 */
+	public double weight( double distance );
+
+	/**
+	 * Fill <em>target</em> with the interpolated values of <em>source</em> at
+	 * the grid positions <em>x * scale + offset</em>, where <em>x</em> are
+	 * the integer coordinates of the target pixels.
+	 *
+	 * @param source
+	 *            the {@link RandomAccessible} to interpolate. It must be
+	 *            defined at all samples contributing to the target.
+	 * @param scale
+	 *            grid spacing in source coordinates per dimension.
+	 * @param offset
+	 *            source coordinates of the target pixel at 0<sup>n</sup>.
+	 * @param target
+	 *            receives the interpolated values.
+	 */
+	public void resample( RandomAccessible< T > source, double[] scale, double[] offset, RandomAccessibleInterval< T > target );
+}
@@ -0,0 +1,69 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+package net.imglib2.labeling;
+
+import java.util.List;
+
+import net.imglib2.Localizable;
+
+/**
+ * A {@link LabelingROIStrategy} that is told about every pixel written through
+ * the {@link LabelingType} of its labeling, so that it can update its
+ * statistics instead of recomputing them.
+ *
+ * @param <T>
+ *            - the type used to label the space
+ * @param <L>
+ *            - the labeling class that will use this strategy
+ */
+public interface IncrementalLabelingROIStrategy< T extends Comparable< T >, L extends Labeling< T >> extends LabelingROIStrategy< T, L >
+{
+	/**
+	 * Called after the labeling at a pixel was set.
+	 *
+	 * @param position
+	 *            - the position of the pixel
+	 * @param oldLabeling
+	 *            - the interned labeling of the pixel before the change
+	 * @param newLabeling
+	 *            - the interned labeling of the pixel after the change
+	 * @param generation
+	 *            - the generation of the labeling after the change. If the
+	 *            strategy is not up to date with the previous generation, it
+	 *            has to recompute its statistics anyway.
+	 */
+	public void labelingChanged( Localizable position, List< T > oldLabeling, List< T > newLabeling, long generation );
+}
@@ -37,10 +37,12 @@
 package net.imglib2.labeling;
 
 import java.util.Iterator;
+import java.util.List;
 
 import net.imglib2.Cursor;
 import net.imglib2.Interval;
 import net.imglib2.IterableRealInterval;
+import net.imglib2.Localizable;
 import net.imglib2.RandomAccess;
 import net.imglib2.converter.Converter;
 import net.imglib2.converter.read.ConvertedCursor;
@@ -101,7 +103,7 @@ public class NativeImgLabeling< T extends Comparable< T >, I extends IntegerType
 	{
 		final RandomAccess< I > rndAccess = img.randomAccess();
 
-		return new ConvertedRandomAccess< I, LabelingType< T >>( rndAccess, new LabelingTypeConverter(), new LabelingType< T >( rndAccess.get(), mapping, generation ) );
+		return new ConvertedRandomAccess< I, LabelingType< T >>( rndAccess, new LabelingTypeConverter(), createLabelingType( rndAccess.get(), rndAccess ) );
 	}
 
 	/*
@@ -115,14 +117,14 @@ public class NativeImgLabeling< T extends Comparable< T >, I extends IntegerType
 	public Cursor< LabelingType< T >> cursor()
 	{
 		Cursor< I > c = img.cursor();
-		return new ConvertedCursor< I, LabelingType< T >>( c, new LabelingTypeConverter(), new LabelingType< T >( c.get(), mapping, generation ) );
+		return new ConvertedCursor< I, LabelingType< T >>( c, new LabelingTypeConverter(), createLabelingType( c.get(), c ) );
 	}
 
 	@Override
 	public Cursor< LabelingType< T >> localizingCursor()
 	{
 		Cursor< I > c = img.localizingCursor();
-		return new ConvertedCursor< I, LabelingType< T >>( c, new LabelingTypeConverter(), new LabelingType< T >( c.get(), mapping, generation ) );
+		return new ConvertedCursor< I, LabelingType< T >>( c, new LabelingTypeConverter(), createLabelingType( c.get(), c ) );
 	}
 
 	public Img< I > getStorageImg()
@@ -149,6 +151,54 @@ public class NativeImgLabeling< T extends Comparable< T >, I extends IntegerType
 
 	}
 
+	/**
+	 * Create the {@link LabelingType} of an access. If the strategy is an
+	 * {@link IncrementalLabelingROIStrategy}, it is told about writes at the
+	 * position of the access.
+	 */
+	@SuppressWarnings( "unchecked" )
+	protected LabelingType< T > createLabelingType( final I type, final Localizable position )
+	{
+		if ( strategy instanceof IncrementalLabelingROIStrategy )
+			return new LocalizingLabelingType< T >( type, mapping, generation, position, ( IncrementalLabelingROIStrategy< T, ? > ) strategy );
+		return new LabelingType< T >( type, mapping, generation );
+	}
+
+	/**
+	 * A {@link LabelingType} that reports changes with the position of the
+	 * access it belongs to.
+	 */
+	static class LocalizingLabelingType< T extends Comparable< T >> extends LabelingType< T >
+	{
+		final Localizable position;
+
+		final IncrementalLabelingROIStrategy< T, ? > strategy;
+
+		LocalizingLabelingType( final IntegerType< ? > type, final LabelingMapping< T > mapping, final long[] generation, final Localizable position, final IncrementalLabelingROIStrategy< T, ? > strategy )
+		{
+			super( type, mapping, generation );
+			this.position = position;
+			this.strategy = strategy;
+		}
+
+		@Override
+		public void setLabeling( final List< T > labeling )
+		{
+			synchronized ( generation )
+			{
+				final List< T > oldLabeling = getLabeling();
+				super.setLabeling( labeling );
+				strategy.labelingChanged( position, oldLabeling, getLabeling(), generation[ 0 ] );
+			}
+		}
+
+		@Override
+		public LabelingType< T > copy()
+		{
+			return new LocalizingLabelingType< T >( type, mapping, generation, position, strategy );
+		}
+	}
+
 	class LabelingTypeConverter implements Converter< I, LabelingType< T >>
 	{
 
@@ -0,0 +1,755 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+package net.imglib2.labeling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.imglib2.Localizable;
+import net.imglib2.RandomAccess;
+import net.imglib2.roi.AbstractIterableRegionOfInterest;
+import net.imglib2.roi.IterableRegionOfInterest;
+import net.imglib2.roi.RegionOfInterest;
+
+/**
+ * A strategy that stores each labeled region as run-length encoded rasters
+ * along dimension 0, together with its bounding box, area and raster start.
+ *
+ * <p>
+ * The runs are maintained incrementally: the labeling reports every pixel
+ * written through its {@link LabelingType} (see
+ * {@link IncrementalLabelingROIStrategy}), and only the runs of the labels
+ * which were added to or removed from that pixel are updated. A full raster
+ * scan is done only if the statistics are not up to date, i.e. before the
+ * first query and after writes that were not reported. The scan compares the
+ * interned labeling lists of neighboring pixels by reference, so per-label
+ * bookkeeping is only done where the labeling changes along a raster.
+ * </p>
+ *
+ * <p>
+ * Regions of interest take a copy of the runs of their label, iterate them
+ * directly and test membership by binary search, without accessing the
+ * labeling.
+ * </p>
+ *
+ * @param <T>
+ *            - the type used to label the space
+ * @param <L>
+ *            - the labeling class that will use this strategy for cursors and
+ *            random access.
+ */
+public class RunLengthROIStrategy< T extends Comparable< T >, L extends Labeling< T >> implements IncrementalLabelingROIStrategy< T, L >
+{
+	final protected L labeling;
+
+	protected long generation;
+
+	/**
+	 * The runs of one label, sorted in raster order. Each run is stored as the
+	 * {@code n} coordinates of its first pixel followed by its length.
+	 */
+	protected static class LabelRuns extends BoundingBox
+	{
+		private final int n;
+
+		private final long[] rasterStart;
+
+		private long area = 0;
+
+		private long[] runs;
+
+		private int numRuns;
+
+		/**
+		 * whether bounding box and raster start must be recomputed from the
+		 * runs, because a pixel on the bounding box was removed.
+		 */
+		private boolean extentsDirty;
+
+		public LabelRuns( final int dimensions )
+		{
+			super( dimensions );
+			n = dimensions;
+			rasterStart = new long[ dimensions ];
+			Arrays.fill( rasterStart, Integer.MAX_VALUE );
+			runs = new long[ 4 * ( n + 1 ) ];
+			numRuns = 0;
+			extentsDirty = false;
+		}
+
+		/**
+		 * Copy constructor.
+		 */
+		public LabelRuns( final LabelRuns labelRuns )
+		{
+			super( labelRuns.n );
+			labelRuns.validateExtents();
+			n = labelRuns.n;
+			System.arraycopy( labelRuns.min, 0, min, 0, n );
+			System.arraycopy( labelRuns.max, 0, max, 0, n );
+			rasterStart = labelRuns.rasterStart.clone();
+			area = labelRuns.area;
+			numRuns = labelRuns.numRuns;
+			runs = new long[ Math.max( numRuns, 1 ) * ( n + 1 ) ];
+			System.arraycopy( labelRuns.runs, 0, runs, 0, numRuns * ( n + 1 ) );
+			extentsDirty = false;
+		}
+
+		@Override
+		public void getExtents( final long[] destMin, final long[] destMax )
+		{
+			validateExtents();
+			super.getExtents( destMin, destMax );
+		}
+
+		public void getRasterStart( final long[] start )
+		{
+			validateExtents();
+			System.arraycopy( rasterStart, 0, start, 0, rasterStart.length );
+		}
+
+		public long getArea()
+		{
+			return area;
+		}
+
+		public int numRuns()
+		{
+			return numRuns;
+		}
+
+		/**
+		 * Add the run of {@code length} pixels starting at {@code position}.
+		 * Runs must be added in raster order. A run that continues the last
+		 * run is merged with it.
+		 */
+		void addRun( final long[] position, final long length )
+		{
+			area += length;
+			if ( !extentsDirty )
+				includeInExtents( position, 0, length );
+
+			if ( numRuns > 0 )
+			{
+				final int last = numRuns - 1;
+				if ( sameRaster( last, position ) && runEnd( last ) == position[ 0 ] )
+				{
+					runs[ last * ( n + 1 ) + n ] += length;
+					return;
+				}
+			}
+
+			insertRun( numRuns );
+			final int o = ( numRuns - 1 ) * ( n + 1 );
+			System.arraycopy( position, 0, runs, o, n );
+			runs[ o + n ] = length;
+		}
+
+		/**
+		 * Add the pixel at {@code position}, merging it with adjacent runs.
+		 *
+		 * @return false, if the pixel was already contained.
+		 */
+		boolean addPixel( final long[] position )
+		{
+			final int r = firstRunAtOrAfter( position );
+			if ( r < numRuns && compareRunStart( r, position ) == 0 )
+				return false;
+			boolean extendPrevious = false;
+			if ( r > 0 && sameRaster( r - 1, position ) )
+			{
+				final long end = runEnd( r - 1 );
+				if ( end > position[ 0 ] )
+					return false;
+				extendPrevious = end == position[ 0 ];
+			}
+			final boolean extendNext = r < numRuns && sameRaster( r, position ) && runs[ r * ( n + 1 ) ] == position[ 0 ] + 1;
+
+			if ( extendPrevious )
+			{
+				final int o = ( r - 1 ) * ( n + 1 );
+				runs[ o + n ] += 1;
+				if ( extendNext )
+				{
+					runs[ o + n ] += runs[ r * ( n + 1 ) + n ];
+					removeRun( r );
+				}
+			}
+			else if ( extendNext )
+			{
+				final int o = r * ( n + 1 );
+				runs[ o ] -= 1;
+				runs[ o + n ] += 1;
+			}
+			else
+			{
+				insertRun( r );
+				final int o = r * ( n + 1 );
+				System.arraycopy( position, 0, runs, o, n );
+				runs[ o + n ] = 1;
+			}
+
+			++area;
+			if ( !extentsDirty )
+				includeInExtents( position, 0, 1 );
+			return true;
+		}
+
+		/**
+		 * Remove the pixel at {@code position}, splitting the run that
+		 * contains it if necessary.
+		 *
+		 * @return false, if the pixel was not contained.
+		 */
+		boolean removePixel( final long[] position )
+		{
+			int r = firstRunAtOrAfter( position );
+			if ( r == numRuns || compareRunStart( r, position ) != 0 )
+			{
+				// the pixel can only be in the previous run
+				--r;
+				if ( r < 0 || !sameRaster( r, position ) || runEnd( r ) <= position[ 0 ] )
+					return false;
+			}
+
+			final int o = r * ( n + 1 );
+			final long start = runs[ o ];
+			final long end = start + runs[ o + n ];
+			if ( end - start == 1 )
+				removeRun( r );
+			else if ( position[ 0 ] == start )
+			{
+				runs[ o ] += 1;
+				runs[ o + n ] -= 1;
+			}
+			else if ( position[ 0 ] == end - 1 )
+				runs[ o + n ] -= 1;
+			else
+			{
+				runs[ o + n ] = position[ 0 ] - start;
+				insertRun( r + 1 );
+				final int o2 = o + n + 1;
+				System.arraycopy( position, 0, runs, o2, n );
+				runs[ o2 ] = position[ 0 ] + 1;
+				runs[ o2 + n ] = end - position[ 0 ] - 1;
+			}
+
+			--area;
+			// the raster start is on the bounding box too
+			for ( int d = 0; d < n && !extentsDirty; ++d )
+				if ( position[ d ] == min[ d ] || position[ d ] == max[ d ] )
+					extentsDirty = true;
+			return true;
+		}
+
+		/**
+		 * Extend bounding box and raster start by the run of {@code length}
+		 * pixels starting at {@code position[offset]}.
+		 */
+		private void includeInExtents( final long[] position, final int offset, final long length )
+		{
+			// bounding box: the run spans [position[0], position[0] + length - 1]
+			for ( int d = 0; d < n; ++d )
+			{
+				if ( position[ offset + d ] < min[ d ] )
+					min[ d ] = position[ offset + d ];
+				if ( position[ offset + d ] > max[ d ] )
+					max[ d ] = position[ offset + d ];
+			}
+			final long x1 = position[ offset ] + length - 1;
+			if ( x1 > max[ 0 ] )
+				max[ 0 ] = x1;
+
+			for ( int d = 0; d < n; ++d )
+			{
+				if ( rasterStart[ d ] > position[ offset + d ] )
+				{
+					System.arraycopy( position, offset, rasterStart, 0, n );
+					break;
+				}
+				else if ( rasterStart[ d ] < position[ offset + d ] )
+					break;
+			}
+		}
+
+		private void validateExtents()
+		{
+			if ( extentsDirty )
+			{
+				Arrays.fill( max, Integer.MIN_VALUE );
+				Arrays.fill( min, Integer.MAX_VALUE );
+				Arrays.fill( rasterStart, Integer.MAX_VALUE );
+				for ( int r = 0; r < numRuns; ++r )
+				{
+					final int o = r * ( n + 1 );
+					includeInExtents( runs, o, runs[ o + n ] );
+				}
+				extentsDirty = false;
+			}
+		}
+
+		/**
+		 * Make room for a run at index {@code r}.
+		 */
+		private void insertRun( final int r )
+		{
+			final int size = numRuns * ( n + 1 );
+			final int o = r * ( n + 1 );
+			if ( size + n + 1 > runs.length )
+			{
+				final long[] newRuns = new long[ 2 * runs.length ];
+				System.arraycopy( runs, 0, newRuns, 0, o );
+				System.arraycopy( runs, o, newRuns, o + n + 1, size - o );
+				runs = newRuns;
+			}
+			else
+				System.arraycopy( runs, o, runs, o + n + 1, size - o );
+			++numRuns;
+		}
+
+		private void removeRun( final int r )
+		{
+			final int o = r * ( n + 1 );
+			System.arraycopy( runs, o + n + 1, runs, o, ( numRuns - r - 1 ) * ( n + 1 ) );
+			--numRuns;
+		}
+
+		/**
+		 * @return whether run {@code r} lies in the same raster as
+		 *         {@code position}.
+		 */
+		private boolean sameRaster( final int r, final long[] position )
+		{
+			final int o = r * ( n + 1 );
+			for ( int d = 1; d < n; ++d )
+				if ( runs[ o + d ] != position[ d ] )
+					return false;
+			return true;
+		}
+
+		/**
+		 * @return the (exclusive) end of run {@code r} in dimension 0.
+		 */
+		private long runEnd( final int r )
+		{
+			final int o = r * ( n + 1 );
+			return runs[ o ] + runs[ o + n ];
+		}
+
+		/**
+		 * Compare the start of run {@code r} to {@code position} in raster
+		 * order.
+		 */
+		private int compareRunStart( final int r, final long[] position )
+		{
+			final int o = r * ( n + 1 );
+			for ( int d = n - 1; d >= 0; --d )
+			{
+				final long a = runs[ o + d ];
+				if ( a < position[ d ] )
+					return -1;
+				if ( a > position[ d ] )
+					return 1;
+			}
+			return 0;
+		}
+
+		/**
+		 * @return index of the first run which starts at or after
+		 *         {@code position} in raster order.
+		 */
+		int firstRunAtOrAfter( final long[] position )
+		{
+			int lo = 0;
+			int hi = numRuns;
+			while ( lo < hi )
+			{
+				final int mid = ( lo + hi ) >>> 1;
+				if ( compareRunStart( mid, position ) < 0 )
+					lo = mid + 1;
+				else
+					hi = mid;
+			}
+			return lo;
+		}
+
+		/**
+		 * @return whether {@code position} lies in one of the runs.
+		 */
+		boolean contains( final long[] position )
+		{
+			final int next = firstRunAtOrAfter( position );
+			if ( next < numRuns && compareRunStart( next, position ) == 0 )
+				return true;
+			if ( next == 0 )
+				return false;
+			return sameRaster( next - 1, position ) && position[ 0 ] < runEnd( next - 1 );
+		}
+
+		/**
+		 * Get start and (exclusive) end of run {@code r}.
+		 */
+		void getRun( final int r, final long[] start, final long[] end )
+		{
+			final int o = r * ( n + 1 );
+			System.arraycopy( runs, o, start, 0, n );
+			System.arraycopy( runs, o, end, 0, n );
+			end[ 0 ] += runs[ o + n ];
+		}
+	}
+
+	protected Map< T, LabelRuns > statistics;
+
+	/**
+	 * position of the pixel reported to
+	 * {@link #labelingChanged(Localizable, List, List, long)}.
+	 */
+	private long[] changedPosition;
+
+	public RunLengthROIStrategy( final L labeling )
+	{
+		this.labeling = labeling;
+		generation = Long.MIN_VALUE;
+	}
+
+	/**
+	 * Collect the runs of all labels if cache is dirty.
+	 */
+	protected synchronized void computeStatistics()
+	{
+		final LabelingType< T > first = labeling.firstElement();
+		if ( ( first != null ) && ( first.getGeneration() == generation ) )
+			return;
+
+		// writes during the scan are reported with a later generation
+		final long scanGeneration = first == null ? generation : first.getGeneration();
+
+		statistics = new HashMap< T, LabelRuns >();
+		final int n = labeling.numDimensions();
+		final long[] dimensions = new long[ n ];
+		labeling.dimensions( dimensions );
+		final long width = dimensions[ 0 ];
+
+		// the LabelRuns for each interned labeling list
+		final IdentityHashMap< List< T >, LabelRuns[] > runsForList = new IdentityHashMap< List< T >, LabelRuns[] >();
+
+		final RandomAccess< LabelingType< T > > a = labeling.randomAccess();
+		final LabelingType< T > type = a.get();
+		final long[] position = new long[ n ];
+		final long[] runStart = new long[ n ];
+		boolean done = width == 0;
+		for ( int d = 0; d < n; ++d )
+			if ( dimensions[ d ] == 0 )
+				done = true;
+		while ( !done )
+		{
+			// scan one raster
+			position[ 0 ] = 0;
+			a.setPosition( position );
+			List< T > current = type.getLabeling();
+			long start = 0;
+			for ( long x = 1; x <= width; ++x )
+			{
+				List< T > next = null;
+				if ( x < width )
+				{
+					a.fwd( 0 );
+					next = type.getLabeling();
+					if ( next == current )
+						continue;
+				}
+				if ( !current.isEmpty() )
+				{
+					System.arraycopy( position, 0, runStart, 0, n );
+					runStart[ 0 ] = start;
+					for ( final LabelRuns runs : getRuns( current, runsForList, n ) )
+						runs.addRun( runStart, x - start );
+				}
+				current = next;
+				start = x;
+			}
+
+			// next raster
+			done = true;
+			for ( int d = 1; d < n; ++d )
+			{
+				if ( ++position[ d ] < dimensions[ d ] )
+				{
+					done = false;
+					break;
+				}
+				position[ d ] = 0;
+			}
+		}
+
+		generation = scanGeneration;
+	}
+
+	private LabelRuns[] getRuns( final List< T > labels, final IdentityHashMap< List< T >, LabelRuns[] > runsForList, final int n )
+	{
+		LabelRuns[] runs = runsForList.get( labels );
+		if ( runs == null )
+		{
+			final ArrayList< LabelRuns > list = new ArrayList< LabelRuns >( labels.size() );
+			for ( final T label : labels )
+			{
+				LabelRuns r = statistics.get( label );
+				if ( r == null )
+				{
+					r = new LabelRuns( n );
+					statistics.put( label, r );
+				}
+				list.add( r );
+			}
+			runs = list.toArray( new LabelRuns[ list.size() ] );
+			runsForList.put( labels, runs );
+		}
+		return runs;
+	}
+
+	/**
+	 * Update the runs of the labels that were removed from or added to the
+	 * pixel. Adding and removing are idempotent, so a change that was already
+	 * seen by a concurrent scan does no harm.
+	 */
+	@Override
+	public synchronized void labelingChanged( final Localizable position, final List< T > oldLabeling, final List< T > newLabeling, final long generation )
+	{
+		if ( statistics == null || this.generation != generation - 1 )
+			return;
+		this.generation = generation;
+		if ( oldLabeling == newLabeling )
+			return;
+
+		if ( changedPosition == null )
+			changedPosition = new long[ position.numDimensions() ];
+		position.localize( changedPosition );
+
+		for ( final T label : oldLabeling )
+		{
+			if ( !newLabeling.contains( label ) )
+			{
+				final LabelRuns runs = statistics.get( label );
+				if ( runs != null && runs.removePixel( changedPosition ) && runs.getArea() == 0 )
+					statistics.remove( label );
+			}
+		}
+		for ( final T label : newLabeling )
+		{
+			if ( !oldLabeling.contains( label ) )
+			{
+				LabelRuns runs = statistics.get( label );
+				if ( runs == null )
+				{
+					runs = new LabelRuns( changedPosition.length );
+					statistics.put( label, runs );
+				}
+				runs.addPixel( changedPosition );
+			}
+		}
+	}
+
+	@Override
+	public synchronized boolean getExtents( final T label, final long[] minExtents, final long[] maxExtents )
+	{
+		computeStatistics();
+		final LabelRuns stats = statistics.get( label );
+		if ( stats == null )
+		{
+			if ( minExtents != null )
+				Arrays.fill( minExtents, 0 );
+			if ( maxExtents != null )
+				Arrays.fill( maxExtents, 0 );
+			return false;
+		}
+		stats.getExtents( minExtents, maxExtents );
+		return true;
+	}
+
+	@Override
+	public synchronized boolean getRasterStart( final T label, final long[] start )
+	{
+		computeStatistics();
+		final LabelRuns stats = statistics.get( label );
+		if ( stats == null )
+		{
+			Arrays.fill( start, 0 );
+			return false;
+		}
+		stats.getRasterStart( start );
+		return true;
+	}
+
+	@Override
+	public synchronized long getArea( final T label )
+	{
+		computeStatistics();
+		final LabelRuns stats = statistics.get( label );
+		if ( stats == null ) { return 0; }
+		return stats.getArea();
+	}
+
+	/**
+	 * @return a copy of the current labels, which is not changed by later
+	 *         writes.
+	 */
+	@Override
+	public synchronized Collection< T > getLabels()
+	{
+		computeStatistics();
+		return new ArrayList< T >( statistics.keySet() );
+	}
+
+	/**
+	 * @return a copy of the runs of {@code label}, which is not changed by
+	 *         later writes.
+	 */
+	protected synchronized LabelRuns copyLabelRuns( final T label )
+	{
+		computeStatistics();
+		final LabelRuns runs = statistics.get( label );
+		return runs != null ? new LabelRuns( runs ) : new LabelRuns( labeling.numDimensions() );
+	}
+
+	/**
+	 * Implement a region of interest by iterating the runs of a label.
+	 */
+	class RunLengthRegionOfInterest extends AbstractIterableRegionOfInterest
+	{
+		final LabelRuns labelRuns;
+
+		/**
+		 * displacement of the region.
+		 */
+		final double[] origin;
+
+		/**
+		 * displacement of the pixels of the region. A pixel {@code p} of the
+		 * label is at {@code p + ceil(origin)}, because then {@code p + offset}
+		 * is contained exactly if {@code floor(p + offset - origin) == p}.
+		 */
+		final long[] offset;
+
+		final long[] tmp;
+
+		RunLengthRegionOfInterest( final LabelRuns labelRuns )
+		{
+			super( labeling.numDimensions() );
+			this.labelRuns = labelRuns;
+			origin = new double[ labeling.numDimensions() ];
+			offset = new long[ labeling.numDimensions() ];
+			tmp = new long[ labeling.numDimensions() ];
+		}
+
+		@Override
+		protected long size()
+		{
+			return labelRuns.getArea();
+		}
+
+		@Override
+		public boolean contains( final double[] position )
+		{
+			final long[] p = new long[ position.length ];
+			for ( int i = 0; i < position.length; i++ )
+				p[ i ] = ( long ) Math.floor( position[ i ] - origin[ i ] );
+			return labelRuns.contains( p );
+		}
+
+		@Override
+		protected void getExtrema( final long[] minima, final long[] maxima )
+		{
+			labelRuns.getExtents( minima, maxima );
+			for ( int d = 0; d < numDimensions(); ++d )
+			{
+				minima[ d ] += offset[ d ];
+				maxima[ d ] += offset[ d ];
+			}
+		}
+
+		@Override
+		protected boolean nextRaster( final long[] position, final long[] end )
+		{
+			for ( int d = 0; d < numDimensions(); ++d )
+			{
+				// do not overflow for the initial position Long.MIN_VALUE
+				final long p = position[ d ];
+				final long o = offset[ d ];
+				if ( o > 0 && p < Long.MIN_VALUE + o )
+					tmp[ d ] = Long.MIN_VALUE;
+				else if ( o < 0 && p > Long.MAX_VALUE + o )
+					tmp[ d ] = Long.MAX_VALUE;
+				else
+					tmp[ d ] = p - o;
+			}
+			final int r = labelRuns.firstRunAtOrAfter( tmp );
+			if ( r >= labelRuns.numRuns() )
+				return false;
+			labelRuns.getRun( r, position, end );
+			for ( int d = 0; d < numDimensions(); ++d )
+			{
+				position[ d ] += offset[ d ];
+				end[ d ] += offset[ d ];
+			}
+			return true;
+		}
+
+		@Override
+		public void move( final double displacement, final int d )
+		{
+			origin[ d ] += displacement;
+			offset[ d ] = ( long ) Math.ceil( origin[ d ] );
+			invalidateCachedState();
+		}
+	}
+
+	@Override
+	public RegionOfInterest createRegionOfInterest( final T label )
+	{
+		return new RunLengthRegionOfInterest( copyLabelRuns( label ) );
+	}
+
+	@Override
+	public IterableRegionOfInterest createIterableRegionOfInterest( final T label )
+	{
+		return new RunLengthRegionOfInterest( copyLabelRuns( label ) );
+	}
+}
@@ -37,10 +37,14 @@
 
 package net.imglib2.multithreading;
 
+import java.util.Arrays;
 import java.util.Vector;
 
 /**
- * TODO
+ * Helpers to run a piece of work in several threads. The {@link Thread}s
+ * passed to {@link #startAndJoin(Thread[])} are not started, instead their
+ * {@link Thread#run()} methods are executed by the shared
+ * {@link TaskExecutor}.
  *
  * @author Stephan Preibisch
  */
@@ -70,6 +74,11 @@ public class SimpleMultiThreading
 	startAndJoin(threads);
 	*/
 		
+	/**
+	 * Split an image into one {@link Chunk} per thread. Consider
+	 * {@link TaskExecutor#submit(long, int, ChunkTask)}, which creates more
+	 * chunks than threads to balance the load.
+	 */
 	public static Vector<Chunk> divideIntoChunks( final long imageSize, final int numThreads )
 	{
         final long threadChunkSize = imageSize / numThreads;
@@ -97,12 +106,7 @@ public class SimpleMultiThreading
 
 	public static void startTask(Runnable run)
 	{
-		Thread[] threads = newThreads();
-
-		for (int ithread = 0; ithread < threads.length; ++ithread)
-			threads[ithread] = new Thread(run);
-
-		startAndJoin(threads);
+		startTask( run, Runtime.getRuntime().availableProcessors() );
 	}
 
 	public static void startTask(Runnable run, int numThreads)
@@ -113,12 +117,9 @@ public class SimpleMultiThreading
 			return;
 		}
 		
-		Thread[] threads = newThreads(numThreads);
-
-		for (int ithread = 0; ithread < threads.length; ++ithread)
-			threads[ithread] = new Thread(run);
-
-		startAndJoin(threads);
+		final Runnable[] tasks = new Runnable[ numThreads ];
+		Arrays.fill( tasks, run );
+		TaskExecutor.getDefault().run( Arrays.asList( tasks ), numThreads );
 	}
 
 	public static Thread[] newThreads()
@@ -132,6 +133,11 @@ public class SimpleMultiThreading
 	  return new Thread[numThreads];
 	}
 
+	/**
+	 * Run the {@link Thread#run()} methods of the given threads on the shared
+	 * {@link TaskExecutor} and wait until all of them are finished. The
+	 * threads themselves are never started.
+	 */
 	public static void startAndJoin(Thread[] threads)
 	{
 		if ( 1 == threads.length )
@@ -139,21 +145,8 @@ public class SimpleMultiThreading
 			threads[0].run();
 			return;
 		}
-		
-		for (int ithread = 0; ithread < threads.length; ++ithread)
-		{
-			threads[ithread].setPriority(Thread.NORM_PRIORITY);
-			threads[ithread].start();
-		}
 
-		try
-		{
-			for (int ithread = 0; ithread < threads.length; ++ithread)
-				threads[ithread].join();
-		} catch (InterruptedException ie)
-		{
-			throw new RuntimeException(ie);
-		}
+		TaskExecutor.getDefault().run( Arrays.asList( threads ), threads.length );
 	}
 
 	public static void start(Thread[] threads)
@@ -0,0 +1,346 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.multithreading;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of worker threads that is shared by all multithreaded algorithms, so
+ * that no threads have to be created per call.
+ *
+ * Work is submitted as a list of {@link Runnable}s, or as a {@link ChunkTask}
+ * that is split into more {@link Chunk}s than there are threads. At most
+ * <em>parallelism</em> workers process a submission; each of them claims the
+ * next unprocessed task until none are left, so faster workers take over the
+ * work of slower ones. The thread that waits for a submission works on it as
+ * well, therefore submitting from within a task can not dead-lock the pool.
+ *
+ * A submission can be cancelled through its {@link Task}. Tasks that have not
+ * been started are skipped then, tasks that are running are finished.
+ *
+ * The size of the default pool is taken from the system property
+ * <code>imglib2.numThreads</code> and defaults to the number of available
+ * processors. It can be replaced by {@link #setDefault(TaskExecutor)}.
+ */
+public class TaskExecutor
+{
+	/**
+	 * Number of chunks per thread created by {@link #submit(long, int, ChunkTask)}.
+	 */
+	public static final int chunksPerThread = 4;
+
+	private static TaskExecutor defaultExecutor;
+
+	/**
+	 * @return the shared {@link TaskExecutor}.
+	 */
+	public static synchronized TaskExecutor getDefault()
+	{
+		if ( defaultExecutor == null )
+			defaultExecutor = new TaskExecutor( Integer.getInteger( "imglib2.numThreads", Runtime.getRuntime().availableProcessors() ) );
+		return defaultExecutor;
+	}
+
+	/**
+	 * Replace the shared {@link TaskExecutor}. The previous one is shut down.
+	 */
+	public static synchronized void setDefault( final TaskExecutor executor )
+	{
+		if ( defaultExecutor != null && defaultExecutor != executor )
+			defaultExecutor.shutdown();
+		defaultExecutor = executor;
+	}
+
+	/**
+	 * Split <em>size</em> elements into <em>numChunks</em> {@link Chunk}s of
+	 * (almost) equal size. The number of chunks is reduced if there are less
+	 * elements than chunks.
+	 */
+	public static List< Chunk > divideIntoChunks( final long size, final int numChunks )
+	{
+		final int n = ( int ) Math.max( 1, Math.min( size, numChunks ) );
+		final long chunkSize = size / n;
+		final long chunkMod = size % n;
+
+		final ArrayList< Chunk > chunks = new ArrayList< Chunk >( n );
+		long start = 0;
+		for ( int i = 0; i < n; ++i )
+		{
+			// the first chunkMod chunks get one element more
+			final long loopSize = i < chunkMod ? chunkSize + 1 : chunkSize;
+			chunks.add( new Chunk( start, loopSize ) );
+			start += loopSize;
+		}
+		return chunks;
+	}
+
+	final private int numThreads;
+
+	final private ExecutorService pool;
+
+	/**
+	 * Create a {@link TaskExecutor} with its own pool of daemon threads.
+	 *
+	 * @param numThreads
+	 *            number of threads in the pool.
+	 */
+	public TaskExecutor( final int numThreads )
+	{
+		this.numThreads = Math.max( 1, numThreads );
+		final AtomicInteger threadCount = new AtomicInteger();
+		this.pool = Executors.newFixedThreadPool( this.numThreads, new ThreadFactory()
+		{
+			@Override
+			public Thread newThread( final Runnable r )
+			{
+				final Thread thread = new Thread( r, "imglib2-worker-" + threadCount.incrementAndGet() );
+				thread.setDaemon( true );
+				return thread;
+			}
+		} );
+	}
+
+	/**
+	 * @return the number of threads in the pool.
+	 */
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
+
+	public void shutdown()
+	{
+		pool.shutdown();
+	}
+
+	/**
+	 * Start processing a list of tasks.
+	 *
+	 * @param tasks
+	 *            the tasks to run.
+	 * @param parallelism
+	 *            the maximum number of tasks that run concurrently.
+	 * @return a handle to wait for or cancel the tasks.
+	 */
+	public Task submit( final List< ? extends Runnable > tasks, final int parallelism )
+	{
+		final Task task = new Task( tasks );
+		// the thread that joins the task is one of the workers
+		final int numWorkers = Math.min( Math.min( parallelism, tasks.size() ), numThreads + 1 );
+		for ( int i = 1; i < numWorkers; ++i )
+			pool.execute( task );
+		return task;
+	}
+
+	/**
+	 * Start processing <em>size</em> elements, split into chunks.
+	 *
+	 * @param size
+	 *            the number of elements.
+	 * @param parallelism
+	 *            the maximum number of chunks that are processed concurrently.
+	 * @param chunkTask
+	 *            processes one chunk.
+	 * @return a handle to wait for or cancel the chunks.
+	 */
+	public Task submit( final long size, final int parallelism, final ChunkTask chunkTask )
+	{
+		final int numChunks = parallelism == 1 ? 1 : parallelism * chunksPerThread;
+		final List< Chunk > chunks = divideIntoChunks( size, numChunks );
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >( chunks.size() );
+		for ( final Chunk chunk : chunks )
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					chunkTask.run( chunk );
+				}
+			} );
+		return submit( tasks, parallelism );
+	}
+
+	/**
+	 * Run a list of tasks and wait until all of them are finished.
+	 *
+	 * @param tasks
+	 *            the tasks to run.
+	 * @param parallelism
+	 *            the maximum number of tasks that run concurrently.
+	 */
+	public void run( final List< ? extends Runnable > tasks, final int parallelism )
+	{
+		submit( tasks, parallelism ).join();
+	}
+
+	/**
+	 * Process <em>size</em> elements, split into chunks, and wait until all
+	 * chunks are finished.
+	 *
+	 * @param size
+	 *            the number of elements.
+	 * @param parallelism
+	 *            the maximum number of chunks that are processed concurrently.
+	 * @param chunkTask
+	 *            processes one chunk.
+	 */
+	public void run( final long size, final int parallelism, final ChunkTask chunkTask )
+	{
+		submit( size, parallelism, chunkTask ).join();
+	}
+
+	/**
+	 * Handle for a list of tasks submitted to a {@link TaskExecutor}.
+	 */
+	public static class Task implements Runnable
+	{
+		final private List< ? extends Runnable > tasks;
+
+		final private int numTasks;
+
+		/**
+		 * index of the next task to claim.
+		 */
+		final private AtomicInteger next;
+
+		/**
+		 * number of tasks that are neither finished nor skipped.
+		 */
+		private int pending;
+
+		private volatile boolean cancelled;
+
+		private Throwable error;
+
+		protected Task( final List< ? extends Runnable > tasks )
+		{
+			this.tasks = tasks;
+			this.numTasks = tasks.size();
+			this.next = new AtomicInteger();
+			this.pending = numTasks;
+			this.cancelled = false;
+			this.error = null;
+		}
+
+		/**
+		 * Claim and run tasks until there are none left.
+		 */
+		@Override
+		public void run()
+		{
+			for ( int i = next.getAndIncrement(); i < numTasks; i = next.getAndIncrement() )
+			{
+				if ( !cancelled )
+				{
+					try
+					{
+						tasks.get( i ).run();
+					}
+					catch ( final Throwable t )
+					{
+						fail( t );
+					}
+				}
+				finished();
+			}
+		}
+
+		private synchronized void fail( final Throwable t )
+		{
+			if ( error == null )
+				error = t;
+			cancelled = true;
+		}
+
+		private synchronized void finished()
+		{
+			if ( --pending == 0 )
+				notifyAll();
+		}
+
+		/**
+		 * Skip all tasks that have not been started yet.
+		 */
+		public void cancel()
+		{
+			cancelled = true;
+		}
+
+		public boolean isCancelled()
+		{
+			return cancelled;
+		}
+
+		public synchronized boolean isDone()
+		{
+			return pending == 0;
+		}
+
+		/**
+		 * Help to process the tasks and wait until all of them are finished
+		 * or skipped. If a task threw an exception, it is rethrown here.
+		 */
+		public void join()
+		{
+			run();
+			synchronized ( this )
+			{
+				try
+				{
+					while ( pending > 0 )
+						wait();
+				}
+				catch ( final InterruptedException e )
+				{
+					cancelled = true;
+					throw new RuntimeException( e );
+				}
+				if ( error instanceof RuntimeException )
+					throw ( RuntimeException ) error;
+				else if ( error instanceof Error )
+					throw ( Error ) error;
+				else if ( error != null )
+					throw new RuntimeException( error );
+			}
+		}
+	}
+}
@@ -49,10 +49,19 @@ import net.imglib2.type.logic.BitType;
  * A composite region of interest contains all points in its member regions of
  * interest
  * 
+ * The composite can be iterated. Its rasters are computed by combining the
+ * rasters of the members row by row, so iterating takes time proportional to
+ * the number of rasters and pixels rather than to the bounding box. Members
+ * that are not {@link AbstractIterableRegionOfInterest}s are rasterized by
+ * testing each pixel of their bounding box. The combined rasters are computed
+ * once, when the composite is first iterated, and recomputed after the
+ * composite is modified through its own methods. Modifying a member directly
+ * does not update the rasters of the composite.
+ * 
  * @author Stephan Saalfeld
  * @author Lee Kamentsky
  */
-public class CompositeRegionOfInterest extends AbstractRegionOfInterest
+public class CompositeRegionOfInterest extends AbstractIterableRegionOfInterest
 {
 	private enum Operation
 	{
@@ -65,6 +74,11 @@ public class CompositeRegionOfInterest extends AbstractRegionOfInterest
 
 	final private ThreadLocal< Map< RegionOfInterest, RealRandomAccess< BitType >>> randomAccess = new ThreadLocal< Map< RegionOfInterest, RealRandomAccess< BitType >>>();
 
+	/**
+	 * The rasters of the composite, computed on demand.
+	 */
+	private volatile Rasters rasters;
+
 	/**
 	 * Initialize an empty composite region of interest.
 	 * 
@@ -107,6 +121,7 @@ public class CompositeRegionOfInterest extends AbstractRegionOfInterest
 	{
 		rois.add( roi );
 		operations.put( roi, Operation.OR );
+		invalidateCachedState();
 	}
 
 	/**
@@ -118,6 +133,7 @@ public class CompositeRegionOfInterest extends AbstractRegionOfInterest
 	{
 		rois.remove( roi );
 		operations.remove( roi );
+		invalidateCachedState();
 	}
 
 	/**
@@ -129,6 +145,7 @@ public class CompositeRegionOfInterest extends AbstractRegionOfInterest
 	{
 		rois.add( roi );
 		operations.put( roi, Operation.AND );
+		invalidateCachedState();
 	}
 
 	/**
@@ -140,6 +157,7 @@ public class CompositeRegionOfInterest extends AbstractRegionOfInterest
 	{
 		rois.add( roi );
 		operations.put( roi, Operation.XOR );
+		invalidateCachedState();
 	}
 
 	/**
@@ -151,12 +169,14 @@ public class CompositeRegionOfInterest extends AbstractRegionOfInterest
 	{
 		rois.add( roi );
 		operations.put( roi, Operation.NOT );
+		invalidateCachedState();
 	}
 
 	@Override
 	public void move(double displacement, int d) {
 		for (RegionOfInterest roi : rois)
 			roi.move(displacement, d);
+		invalidateCachedState();
 	}
 	
 	/*
@@ -234,4 +254,471 @@ public class CompositeRegionOfInterest extends AbstractRegionOfInterest
 			}
 		}
 	}
+
+	@Override
+	protected void invalidateCachedState()
+	{
+		super.invalidateCachedState();
+		rasters = null;
+	}
+
+	@Override
+	protected boolean nextRaster( long[] position, long[] end )
+	{
+		final Rasters r = getRasters();
+		final int n = numDimensions();
+
+		// find the first row at or after the position
+		int lo = 0;
+		int hi = r.numRows;
+		while ( lo < hi )
+		{
+			final int mid = ( lo + hi ) >>> 1;
+			if ( r.compareRow( mid, position ) < 0 )
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		if ( lo == r.numRows )
+			return false;
+
+		int run = r.rowOffsets[ lo ];
+		if ( r.compareRow( lo, position ) == 0 )
+		{
+			// skip the runs that end before the position
+			final int rowEnd = r.rowOffsets[ lo + 1 ];
+			while ( run < rowEnd && r.ends[ run ] <= position[ 0 ] )
+				++run;
+			if ( run == rowEnd )
+			{
+				if ( ++lo == r.numRows )
+					return false;
+				run = r.rowOffsets[ lo ];
+			}
+		}
+
+		position[ 0 ] = r.compareRow( lo, position ) == 0 ? Math.max( position[ 0 ], r.starts[ run ] ) : r.starts[ run ];
+		end[ 0 ] = r.ends[ run ];
+		for ( int d = 1; d < n; d++ )
+			position[ d ] = end[ d ] = r.rows[ lo * ( n - 1 ) + d - 1 ];
+		return true;
+	}
+
+	@Override
+	protected long size()
+	{
+		final Rasters r = getRasters();
+		long size = 0;
+		for ( int i = 0; i < r.starts.length; i++ )
+			size += r.ends[ i ] - r.starts[ i ];
+		return size;
+	}
+
+	@Override
+	protected void getExtrema( long[] minima, long[] maxima )
+	{
+		final Rasters r = getRasters();
+		final int n = numDimensions();
+		Arrays.fill( minima, Long.MAX_VALUE );
+		Arrays.fill( maxima, Long.MIN_VALUE );
+		for ( int row = 0; row < r.numRows; row++ )
+		{
+			for ( int d = 1; d < n; d++ )
+			{
+				final long p = r.rows[ row * ( n - 1 ) + d - 1 ];
+				minima[ d ] = Math.min( minima[ d ], p );
+				maxima[ d ] = Math.max( maxima[ d ], p );
+			}
+			for ( int run = r.rowOffsets[ row ]; run < r.rowOffsets[ row + 1 ]; run++ )
+			{
+				minima[ 0 ] = Math.min( minima[ 0 ], r.starts[ run ] );
+				maxima[ 0 ] = Math.max( maxima[ 0 ], r.ends[ run ] - 1 );
+			}
+		}
+	}
+
+	/**
+	 * The rasters of the composite. Rows are sorted in raster order, each row
+	 * has a sorted list of non-overlapping runs.
+	 */
+	static private class Rasters
+	{
+		final int numRows;
+
+		/**
+		 * coordinates of dimensions 1 to n-1 of each row.
+		 */
+		final long[] rows;
+
+		/**
+		 * index of the first run of each row, and total number of runs.
+		 */
+		final int[] rowOffsets;
+
+		/**
+		 * start (inclusive) and end (exclusive) of each run in dimension 0.
+		 */
+		final long[] starts;
+
+		final long[] ends;
+
+		Rasters( final int numRows, final long[] rows, final int[] rowOffsets, final long[] starts, final long[] ends )
+		{
+			this.numRows = numRows;
+			this.rows = rows;
+			this.rowOffsets = rowOffsets;
+			this.starts = starts;
+			this.ends = ends;
+		}
+
+		/**
+		 * Compare row to the row of a position in raster order.
+		 */
+		int compareRow( final int row, final long[] position )
+		{
+			final int m = position.length - 1;
+			for ( int d = m; d >= 1; d-- )
+			{
+				final long p = rows[ row * m + d - 1 ];
+				if ( p < position[ d ] )
+					return -1;
+				if ( p > position[ d ] )
+					return 1;
+			}
+			return 0;
+		}
+	}
+
+	/**
+	 * Growable list of runs in raster order.
+	 */
+	static private class RunList
+	{
+		final int m;
+
+		long[] rows;
+
+		long[] starts = new long[ 16 ];
+
+		long[] ends = new long[ 16 ];
+
+		int size = 0;
+
+		RunList( final int numDimensions )
+		{
+			m = numDimensions - 1;
+			rows = new long[ 16 * m ];
+		}
+
+		void add( final long[] position, final long start, final long end )
+		{
+			if ( size == starts.length )
+			{
+				starts = grow( starts, 2 * size );
+				ends = grow( ends, 2 * size );
+				rows = grow( rows, 2 * size * m );
+			}
+			for ( int d = 1; d <= m; d++ )
+				rows[ size * m + d - 1 ] = position[ d ];
+			starts[ size ] = start;
+			ends[ size ] = end;
+			++size;
+		}
+
+		/**
+		 * Compare the row of run i to the row of run j of another list.
+		 */
+		int compareRow( final int i, final RunList other, final int j )
+		{
+			for ( int d = m - 1; d >= 0; d-- )
+			{
+				final long a = rows[ i * m + d ];
+				final long b = other.rows[ j * m + d ];
+				if ( a < b )
+					return -1;
+				if ( a > b )
+					return 1;
+			}
+			return 0;
+		}
+
+		static long[] grow( final long[] array, final int length )
+		{
+			final long[] a = new long[ Math.max( length, 1 ) ];
+			System.arraycopy( array, 0, a, 0, array.length );
+			return a;
+		}
+	}
+
+	private Rasters getRasters()
+	{
+		Rasters r = rasters;
+		if ( r == null )
+		{
+			r = computeRasters();
+			rasters = r;
+		}
+		return r;
+	}
+
+	/**
+	 * Get the rasters of a member in raster order.
+	 */
+	private RunList getRuns( final RegionOfInterest roi )
+	{
+		final int n = numDimensions();
+		final RunList runs = new RunList( n );
+		final long[] position = new long[ n ];
+		final long[] end = new long[ n ];
+		if ( roi instanceof AbstractIterableRegionOfInterest )
+		{
+			final AbstractIterableRegionOfInterest iterable = ( AbstractIterableRegionOfInterest ) roi;
+			Arrays.fill( position, Long.MIN_VALUE );
+			while ( iterable.nextRaster( position, end ) )
+			{
+				runs.add( position, position[ 0 ], end[ 0 ] );
+				position[ 0 ] = end[ 0 ];
+			}
+		}
+		else
+		{
+			// test every pixel of the bounding box
+			final long[] min = new long[ n ];
+			final long[] max = new long[ n ];
+			for ( int d = 0; d < n; d++ )
+			{
+				min[ d ] = ( long ) Math.floor( roi.realMin( d ) );
+				max[ d ] = ( long ) Math.ceil( roi.realMax( d ) );
+				if ( max[ d ] < min[ d ] )
+					return runs;
+			}
+			final RealRandomAccess< BitType > ra = roi.realRandomAccess();
+			System.arraycopy( min, 0, position, 0, n );
+			while ( true )
+			{
+				long start = Long.MIN_VALUE;
+				for ( long x = min[ 0 ]; x <= max[ 0 ] + 1; x++ )
+				{
+					boolean inside = false;
+					if ( x <= max[ 0 ] )
+					{
+						position[ 0 ] = x;
+						ra.setPosition( position );
+						inside = ra.get().get();
+					}
+					if ( inside && start == Long.MIN_VALUE )
+						start = x;
+					else if ( !inside && start != Long.MIN_VALUE )
+					{
+						runs.add( position, start, x );
+						start = Long.MIN_VALUE;
+					}
+				}
+				int d = 1;
+				for ( ; d < n; d++ )
+				{
+					if ( ++position[ d ] <= max[ d ] )
+						break;
+					position[ d ] = min[ d ];
+				}
+				if ( d == n )
+					break;
+			}
+		}
+		return runs;
+	}
+
+	/**
+	 * Combine the rasters of all members row by row.
+	 */
+	private Rasters computeRasters()
+	{
+		final int n = numDimensions();
+		final int numRois = rois.size();
+		final RunList[] memberRuns = new RunList[ numRois ];
+		final Operation[] memberOperations = new Operation[ numRois ];
+		for ( int i = 0; i < numRois; i++ )
+		{
+			memberRuns[ i ] = getRuns( rois.get( i ) );
+			memberOperations[ i ] = operations.get( rois.get( i ) );
+		}
+		final int[] next = new int[ numRois ];
+
+		final RunList result = new RunList( n );
+		long[] rowStarts = new long[ 16 ];
+		long[] rowEnds = new long[ 16 ];
+		long[] memberStarts = new long[ 16 ];
+		long[] memberEnds = new long[ 16 ];
+		long[] combinedStarts = new long[ 16 ];
+		long[] combinedEnds = new long[ 16 ];
+		final long[] rowPosition = new long[ n ];
+		while ( true )
+		{
+			// find the next row of any member
+			int first = -1;
+			for ( int i = 0; i < numRois; i++ )
+				if ( next[ i ] < memberRuns[ i ].size && ( first < 0 || memberRuns[ i ].compareRow( next[ i ], memberRuns[ first ], next[ first ] ) < 0 ) )
+					first = i;
+			if ( first < 0 )
+				break;
+			final RunList firstRuns = memberRuns[ first ];
+			final int firstIndex = next[ first ];
+			for ( int d = 1; d < n; d++ )
+				rowPosition[ d ] = firstRuns.rows[ firstIndex * ( n - 1 ) + d - 1 ];
+
+			// combine the runs of the members in this row
+			int numRow = 0;
+			for ( int i = 0; i < numRois; i++ )
+			{
+				final RunList runs = memberRuns[ i ];
+				int numMember = 0;
+				while ( next[ i ] < runs.size && runs.compareRow( next[ i ], firstRuns, firstIndex ) == 0 )
+				{
+					if ( numMember == memberStarts.length )
+					{
+						memberStarts = RunList.grow( memberStarts, 2 * numMember );
+						memberEnds = RunList.grow( memberEnds, 2 * numMember );
+					}
+					memberStarts[ numMember ] = runs.starts[ next[ i ] ];
+					memberEnds[ numMember ] = runs.ends[ next[ i ] ];
+					++numMember;
+					++next[ i ];
+				}
+				numMember = normalize( memberStarts, memberEnds, numMember );
+
+				final int capacity = 2 * ( numRow + numMember ) + 1;
+				if ( combinedStarts.length < capacity )
+				{
+					combinedStarts = new long[ capacity ];
+					combinedEnds = new long[ capacity ];
+				}
+				final int numCombined = combine( rowStarts, rowEnds, numRow, memberStarts, memberEnds, numMember, memberOperations[ i ], combinedStarts, combinedEnds );
+
+				// swap row and combined
+				long[] tmp = rowStarts;
+				rowStarts = combinedStarts;
+				combinedStarts = tmp;
+				tmp = rowEnds;
+				rowEnds = combinedEnds;
+				combinedEnds = tmp;
+				numRow = numCombined;
+			}
+
+			for ( int k = 0; k < numRow; k++ )
+				result.add( rowPosition, rowStarts[ k ], rowEnds[ k ] );
+		}
+
+		// group the runs by row
+		final int m = n - 1;
+		int numRows = 0;
+		final int[] rowOffsets = new int[ result.size + 1 ];
+		final long[] rows = new long[ result.size * m ];
+		for ( int k = 0; k < result.size; k++ )
+		{
+			if ( k == 0 || result.compareRow( k, result, k - 1 ) != 0 )
+			{
+				System.arraycopy( result.rows, k * m, rows, numRows * m, m );
+				rowOffsets[ numRows++ ] = k;
+			}
+		}
+		final int[] offsets = new int[ numRows + 1 ];
+		System.arraycopy( rowOffsets, 0, offsets, 0, numRows );
+		offsets[ numRows ] = result.size;
+		final long[] starts = new long[ result.size ];
+		final long[] ends = new long[ result.size ];
+		System.arraycopy( result.starts, 0, starts, 0, result.size );
+		System.arraycopy( result.ends, 0, ends, 0, result.size );
+		final long[] rowCoordinates = new long[ numRows * m ];
+		System.arraycopy( rows, 0, rowCoordinates, 0, numRows * m );
+		return new Rasters( numRows, rowCoordinates, offsets, starts, ends );
+	}
+
+	/**
+	 * Sort runs by start and merge overlapping and adjacent runs.
+	 * 
+	 * @return the number of runs after merging.
+	 */
+	private static int normalize( final long[] starts, final long[] ends, final int size )
+	{
+		// insertion sort, runs of a member are usually sorted already
+		for ( int i = 1; i < size; i++ )
+		{
+			final long s = starts[ i ];
+			final long e = ends[ i ];
+			int j = i - 1;
+			while ( j >= 0 && starts[ j ] > s )
+			{
+				starts[ j + 1 ] = starts[ j ];
+				ends[ j + 1 ] = ends[ j ];
+				--j;
+			}
+			starts[ j + 1 ] = s;
+			ends[ j + 1 ] = e;
+		}
+		int k = 0;
+		for ( int i = 0; i < size; i++ )
+		{
+			if ( ends[ i ] <= starts[ i ] )
+				continue;
+			if ( k > 0 && starts[ i ] <= ends[ k - 1 ] )
+				ends[ k - 1 ] = Math.max( ends[ k - 1 ], ends[ i ] );
+			else
+			{
+				starts[ k ] = starts[ i ];
+				ends[ k ] = ends[ i ];
+				++k;
+			}
+		}
+		return k;
+	}
+
+	/**
+	 * Combine two sorted lists of non-overlapping runs by sweeping over their
+	 * boundaries.
+	 * 
+	 * @return the number of combined runs.
+	 */
+	private static int combine( final long[] aStarts, final long[] aEnds, final int na, final long[] bStarts, final long[] bEnds, final int nb, final Operation operation, final long[] starts, final long[] ends )
+	{
+		int ia = 0;
+		int ib = 0;
+		int k = 0;
+		boolean current = false;
+		while ( ia < 2 * na || ib < 2 * nb )
+		{
+			final long pa = ia < 2 * na ? ( ( ia & 1 ) == 0 ? aStarts[ ia >> 1 ] : aEnds[ ia >> 1 ] ) : Long.MAX_VALUE;
+			final long pb = ib < 2 * nb ? ( ( ib & 1 ) == 0 ? bStarts[ ib >> 1 ] : bEnds[ ib >> 1 ] ) : Long.MAX_VALUE;
+			final long p = Math.min( pa, pb );
+			if ( pa == p )
+				++ia;
+			if ( pb == p )
+				++ib;
+			final boolean inA = ( ia & 1 ) == 1;
+			final boolean inB = ( ib & 1 ) == 1;
+			final boolean value;
+			switch ( operation )
+			{
+			case AND:
+				value = inA && inB;
+				break;
+			case NOT:
+				value = inA && !inB;
+				break;
+			case XOR:
+				value = inA ^ inB;
+				break;
+			default:
+				value = inA || inB;
+			}
+			if ( value != current )
+			{
+				if ( value )
+					starts[ k ] = p;
+				else
+					ends[ k++ ] = p;
+				current = value;
+			}
+		}
+		return k;
+	}
 }
@@ -70,13 +70,9 @@ public class PolygonRegionOfInterest extends AbstractIterableRegionOfInterest
 
 		public double yMax;
 
-		/*
-		 * TODO: Replace array lists with accessors that index into arrays to
-		 * save memory.
-		 */
-		final public ArrayList< Double > xTop = new ArrayList< Double >();
+		final public DoubleList xTop = new DoubleList();
 
-		final public ArrayList< Double > xBottom = new ArrayList< Double >();
+		final public DoubleList xBottom = new DoubleList();
 
 		public Stripe( double yMin, double yMax )
 		{
@@ -96,8 +92,82 @@ public class PolygonRegionOfInterest extends AbstractIterableRegionOfInterest
 		}
 	}
 
+	/**
+	 * Growable list of primitive doubles, used for the edge coordinates of
+	 * {@link Stripe}s.
+	 */
+	static protected class DoubleList
+	{
+		private double[] data = new double[ 4 ];
+
+		private int size = 0;
+
+		public int size()
+		{
+			return size;
+		}
+
+		public double get( final int index )
+		{
+			return data[ index ];
+		}
+
+		public void set( final int index, final double value )
+		{
+			data[ index ] = value;
+		}
+
+		public void add( final double value )
+		{
+			add( size, value );
+		}
+
+		public void add( final int index, final double value )
+		{
+			if ( size == data.length )
+			{
+				final double[] newData = new double[ 2 * size ];
+				System.arraycopy( data, 0, newData, 0, size );
+				data = newData;
+			}
+			System.arraycopy( data, index, data, index + 1, size - index );
+			data[ index ] = value;
+			++size;
+		}
+	}
+
+	/**
+	 * The runs of one raster line within a {@link Stripe}, computed from the
+	 * edges of the stripe.
+	 */
+	static protected class ScanLine
+	{
+		final public Stripe stripe;
+
+		final public long y;
+
+		final public long[] xStart;
+
+		final public long[] xEnd;
+
+		public ScanLine( final Stripe stripe, final long y, final long[] xStart, final long[] xEnd )
+		{
+			this.stripe = stripe;
+			this.y = y;
+			this.xStart = xStart;
+			this.xEnd = xEnd;
+		}
+	}
+
 	ArrayList< Stripe > stripes;
 
+	/**
+	 * The most recently computed raster line of each thread, so that cursors
+	 * in several threads working on different lines do not evict each
+	 * other's line.
+	 */
+	private final ThreadLocal< ScanLine > scanLine = new ThreadLocal< ScanLine >();
+
 	public PolygonRegionOfInterest()
 	{
 		super( 2 );
@@ -622,8 +692,8 @@ public class PolygonRegionOfInterest extends AbstractIterableRegionOfInterest
 			 */
 			if ( ( stripe.yMin == y ) && ( index > 0 ) && ( stripes.get( index - 1 ).yMax == y ) )
 			{
-				ArrayList< Double > prevX = stripes.get( index - 1 ).xBottom;
-				ArrayList< Double > nextX = stripe.xTop;
+				DoubleList prevX = stripes.get( index - 1 ).xBottom;
+				DoubleList nextX = stripe.xTop;
 				/*
 				 * Find the two best next candidates from the bottom of the
 				 * previous stripe and the top of the next stripe.
@@ -656,7 +726,7 @@ public class PolygonRegionOfInterest extends AbstractIterableRegionOfInterest
 					long xRightPrev = floor( prevX.get( iPrev + 1 ) ) + 1;
 					long xLeftNext = ceil( nextX.get( iNext ) );
 					long xRightNext = floor( nextX.get( iNext + 1 ) ) + 1;
-					ArrayList< Double > leading, trailing;
+					DoubleList leading, trailing;
 					int iLeading, iTrailing;
 					if ( xLeftNext < xLeftPrev )
 					{
@@ -697,7 +767,7 @@ public class PolygonRegionOfInterest extends AbstractIterableRegionOfInterest
 							iTrailing = temp + 2;
 						}
 						{
-							ArrayList< Double > temp = leading;
+							DoubleList temp = leading;
 							leading = trailing;
 							trailing = temp;
 						}
@@ -708,31 +778,21 @@ public class PolygonRegionOfInterest extends AbstractIterableRegionOfInterest
 				position[ 1 ] = end[ 1 ] = y;
 				return true;
 			}
-			int xIndex;
-			boolean inside = false;
-			long xInterpolatedLast = Long.MIN_VALUE;
-			for ( xIndex = 0; xIndex < stripe.xTop.size(); xIndex++ )
+			ScanLine line = scanLine.get();
+			if ( line == null || line.stripe != stripe || line.y != y )
 			{
-				double xTop = stripe.xTop.get( xIndex );
-				double xBottom = stripe.xBottom.get( xIndex );
-				double xInterpolated = xTop + ( xBottom - xTop ) * ( y - stripe.yMin ) / ( stripe.yMax - stripe.yMin );
-				if ( !inside )
-				{
-					xInterpolatedLast = ceil( xInterpolated );
-					inside = true;
-				}
-				else
+				line = createScanLine( stripe, y );
+				scanLine.set( line );
+			}
+			for ( int i = 0; i < line.xEnd.length; i++ )
+			{
+				if ( x < line.xEnd[ i ] )
 				{
-					xInterpolated = floor( xInterpolated ) + 1;
-					if ( ( x < xInterpolated ) && ( xInterpolated > xInterpolatedLast ) )
-					{
-						position[ 0 ] = xInterpolatedLast;
-						position[ 1 ] = ( long ) y;
-						end[ 0 ] = ( long ) xInterpolated;
-						end[ 1 ] = position[ 1 ];
-						return true;
-					}
-					inside = false;
+					position[ 0 ] = line.xStart[ i ];
+					position[ 1 ] = y;
+					end[ 0 ] = line.xEnd[ i ];
+					end[ 1 ] = position[ 1 ];
+					return true;
 				}
 			}
 			/*
@@ -743,6 +803,49 @@ public class PolygonRegionOfInterest extends AbstractIterableRegionOfInterest
 		}
 	}
 
+	/**
+	 * Compute the runs of raster line y within a stripe. The edges of the
+	 * stripe are sorted by x, each pair of consecutive edges bounds a run.
+	 */
+	private ScanLine createScanLine( final Stripe stripe, final long y )
+	{
+		final int numEdges = stripe.xTop.size();
+		final long[] xStart = new long[ numEdges / 2 ];
+		final long[] xEnd = new long[ numEdges / 2 ];
+		int numRuns = 0;
+		boolean inside = false;
+		long xInterpolatedLast = Long.MIN_VALUE;
+		for ( int xIndex = 0; xIndex < numEdges; xIndex++ )
+		{
+			final double xTop = stripe.xTop.get( xIndex );
+			final double xBottom = stripe.xBottom.get( xIndex );
+			final double xInterpolated = xTop + ( xBottom - xTop ) * ( y - stripe.yMin ) / ( stripe.yMax - stripe.yMin );
+			if ( !inside )
+			{
+				xInterpolatedLast = ceil( xInterpolated );
+				inside = true;
+			}
+			else
+			{
+				final long xRight = floor( xInterpolated ) + 1;
+				if ( xRight > xInterpolatedLast )
+				{
+					xStart[ numRuns ] = xInterpolatedLast;
+					xEnd[ numRuns ] = xRight;
+					++numRuns;
+				}
+				inside = false;
+			}
+		}
+		if ( numRuns == xEnd.length )
+			return new ScanLine( stripe, y, xStart, xEnd );
+		final long[] s = new long[ numRuns ];
+		final long[] e = new long[ numRuns ];
+		System.arraycopy( xStart, 0, s, 0, numRuns );
+		System.arraycopy( xEnd, 0, e, 0, numRuns );
+		return new ScanLine( stripe, y, s, e );
+	}
+
 	@Override
 	public boolean contains( double[] position )
 	{
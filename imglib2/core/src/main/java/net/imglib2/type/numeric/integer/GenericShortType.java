@@ -129,7 +129,7 @@ public abstract class GenericShortType<T extends GenericShortType<T>> extends Ab
 	public void sub( final T c )
 	{
 		final short a = getValue( );
-		setValue( ( byte )( a - c.getValue() ) );
+		setValue( ( short )( a - c.getValue() ) );
 	}
 
 	@Override
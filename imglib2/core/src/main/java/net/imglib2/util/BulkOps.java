@@ -0,0 +1,1097 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.imglib2.Cursor;
+import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
+import net.imglib2.IterableIntervalSplits;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.multithreading.Chunk;
+import net.imglib2.multithreading.TaskExecutor;
+import net.imglib2.type.Type;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Element-wise bulk operations on images: fill, copy, conversion, and
+ * arithmetic with constants or other images.
+ *
+ * <p>
+ * If the images are {@link ArrayImg}s or {@link PlanarImg}s of
+ * {@link ByteType}, {@link UnsignedByteType}, {@link ShortType},
+ * {@link UnsignedShortType}, {@link IntType}, {@link UnsignedIntType},
+ * {@link LongType}, {@link FloatType}, or {@link DoubleType} over primitive
+ * arrays, the operations run in simple loops over the primitive arrays, which
+ * the JIT compiler can unroll and vectorize. The arrays are split into
+ * {@link Chunk}s that are processed in parallel by the default
+ * {@link TaskExecutor}. Binary operations require both images to have the
+ * same dimensions, ArrayImgs and PlanarImgs can be mixed.
+ * </p>
+ *
+ * <p>
+ * All other images are processed with {@link Cursor}s and the methods of their
+ * {@link Type}s. Both paths give the same results, i.e., integer arithmetic
+ * wraps around, integer division truncates, and conversion rounds like
+ * {@link RealType#setReal(double)}.
+ * </p>
+ */
+final public class BulkOps
+{
+	private BulkOps() {}
+
+	/**
+	 * Images smaller than this are processed in a single task.
+	 */
+	public static final long minParallelSize = 1 << 16;
+
+	private static final int BYTE = 0, UBYTE = 1, SHORT = 2, USHORT = 3, INT = 4, UINT = 5, LONG = 6, FLOAT = 7, DOUBLE = 8;
+
+	private static final int ADD = 0, SUB = 1, MUL = 2, DIV = 3;
+
+	/**
+	 * Fill an image with a value.
+	 */
+	public static < T extends Type< T > > void fill( final IterableInterval< T > img, final T value )
+	{
+		final Storage dst = storage( img );
+		if ( dst != null && dst.kind == kind( value ) )
+		{
+			final int kind = dst.kind;
+			final long l = kind < FLOAT ? integerValue( value ) : 0;
+			final double v = kind < FLOAT ? 0 : ( ( RealType< ? > ) value ).getRealDouble();
+			run( dst, dst, new RangeOp()
+			{
+				@Override
+				public void run( final Object d, final int dOffset, final Object s, final int sOffset, final int length )
+				{
+					final int end = dOffset + length;
+					switch ( kind )
+					{
+					case BYTE:
+					case UBYTE:
+						Arrays.fill( ( byte[] ) d, dOffset, end, ( byte ) l );
+						break;
+					case SHORT:
+					case USHORT:
+						Arrays.fill( ( short[] ) d, dOffset, end, ( short ) l );
+						break;
+					case INT:
+					case UINT:
+						Arrays.fill( ( int[] ) d, dOffset, end, ( int ) l );
+						break;
+					case LONG:
+						Arrays.fill( ( long[] ) d, dOffset, end, l );
+						break;
+					case FLOAT:
+						Arrays.fill( ( float[] ) d, dOffset, end, ( float ) v );
+						break;
+					default:
+						Arrays.fill( ( double[] ) d, dOffset, end, v );
+					}
+				}
+			} );
+			return;
+		}
+
+		forEachSplit( img, new SplitOp< T >()
+		{
+			@Override
+			public void run( final IterableInterval< T > part )
+			{
+				for ( final T t : part )
+					t.set( value );
+			}
+		} );
+	}
+
+	/**
+	 * Copy an image into another image of the same type. Pixels of
+	 * <em>src</em> are read at the positions of <em>dst</em>, shifted by the
+	 * difference of the min corners.
+	 */
+	public static < T extends Type< T > > void copy( final RandomAccessibleInterval< T > src, final IterableInterval< T > dst )
+	{
+		final Storage d = storage( dst );
+		final Storage s = storage( src );
+		if ( d != null && s != null && d.kind == s.kind && sameDimensions( src, dst ) )
+		{
+			run( d, s, new RangeOp()
+			{
+				@Override
+				public void run( final Object dArray, final int dOffset, final Object sArray, final int sOffset, final int length )
+				{
+					System.arraycopy( sArray, sOffset, dArray, dOffset, length );
+				}
+			} );
+			return;
+		}
+
+		forEachPair( src, dst, new PairOp< T, T >()
+		{
+			@Override
+			public void apply( final T s, final T t )
+			{
+				t.set( s );
+			}
+		} );
+	}
+
+	/**
+	 * Convert an image into an image of another type, like
+	 * <code>t.setReal( s.getRealDouble() )</code> for each pixel. Pixels of
+	 * <em>src</em> are read at the positions of <em>dst</em>, shifted by the
+	 * difference of the min corners.
+	 */
+	public static < S extends RealType< S >, T extends RealType< T > > void convert( final RandomAccessibleInterval< S > src, final IterableInterval< T > dst )
+	{
+		final Storage d = storage( dst );
+		final Storage s = storage( src );
+		if ( d != null && s != null && sameDimensions( src, dst ) )
+		{
+			final int dKind = d.kind;
+			final int sKind = s.kind;
+			run( d, s, new RangeOp()
+			{
+				@Override
+				public void run( final Object dArray, final int dOffset, final Object sArray, final int sOffset, final int length )
+				{
+					if ( dKind == sKind && dKind != LONG )
+					{
+						System.arraycopy( sArray, sOffset, dArray, dOffset, length );
+						return;
+					}
+					final double[] buf = new double[ Math.min( 1024, length ) ];
+					for ( int i = 0; i < length; i += buf.length )
+					{
+						final int l = Math.min( buf.length, length - i );
+						read( sKind, sArray, sOffset + i, buf, l );
+						write( dKind, buf, dArray, dOffset + i, l );
+					}
+				}
+			} );
+			return;
+		}
+
+		forEachPair( src, dst, new PairOp< S, T >()
+		{
+			@Override
+			public void apply( final S s, final T t )
+			{
+				t.setReal( s.getRealDouble() );
+			}
+		} );
+	}
+
+	/**
+	 * Add a constant to each pixel of an image.
+	 */
+	public static < T extends RealType< T > > void add( final IterableInterval< T > img, final T value )
+	{
+		arithmetic( img, value, ADD );
+	}
+
+	/**
+	 * Subtract a constant from each pixel of an image.
+	 */
+	public static < T extends RealType< T > > void sub( final IterableInterval< T > img, final T value )
+	{
+		arithmetic( img, value, SUB );
+	}
+
+	/**
+	 * Multiply each pixel of an image with a constant.
+	 */
+	public static < T extends RealType< T > > void mul( final IterableInterval< T > img, final T value )
+	{
+		arithmetic( img, value, MUL );
+	}
+
+	/**
+	 * Divide each pixel of an image by a constant.
+	 */
+	public static < T extends RealType< T > > void div( final IterableInterval< T > img, final T value )
+	{
+		arithmetic( img, value, DIV );
+	}
+
+	/**
+	 * Add the pixels of <em>other</em> to the pixels of <em>img</em>.
+	 */
+	public static < T extends RealType< T > > void add( final IterableInterval< T > img, final RandomAccessibleInterval< T > other )
+	{
+		arithmetic( img, other, ADD );
+	}
+
+	/**
+	 * Subtract the pixels of <em>other</em> from the pixels of <em>img</em>.
+	 */
+	public static < T extends RealType< T > > void sub( final IterableInterval< T > img, final RandomAccessibleInterval< T > other )
+	{
+		arithmetic( img, other, SUB );
+	}
+
+	/**
+	 * Multiply the pixels of <em>img</em> with the pixels of <em>other</em>.
+	 */
+	public static < T extends RealType< T > > void mul( final IterableInterval< T > img, final RandomAccessibleInterval< T > other )
+	{
+		arithmetic( img, other, MUL );
+	}
+
+	/**
+	 * Divide the pixels of <em>img</em> by the pixels of <em>other</em>.
+	 */
+	public static < T extends RealType< T > > void div( final IterableInterval< T > img, final RandomAccessibleInterval< T > other )
+	{
+		arithmetic( img, other, DIV );
+	}
+
+	private static < T extends RealType< T > > void arithmetic( final IterableInterval< T > img, final T value, final int op )
+	{
+		final Storage dst = storage( img );
+		if ( dst != null && dst.kind == kind( value ) )
+		{
+			final int kind = dst.kind;
+			final long l = kind < FLOAT ? integerValue( value ) : 0;
+			final double v = value.getRealDouble();
+			run( dst, dst, new RangeOp()
+			{
+				@Override
+				public void run( final Object d, final int dOffset, final Object s, final int sOffset, final int length )
+				{
+					switch ( kind )
+					{
+					case BYTE:
+					case UBYTE:
+						arithmetic( kind, op, ( byte[] ) d, dOffset, length, ( byte ) l );
+						break;
+					case SHORT:
+					case USHORT:
+						arithmetic( kind, op, ( short[] ) d, dOffset, length, ( short ) l );
+						break;
+					case INT:
+					case UINT:
+						arithmetic( kind, op, ( int[] ) d, dOffset, length, ( int ) l );
+						break;
+					case LONG:
+						arithmetic( op, ( long[] ) d, dOffset, length, l );
+						break;
+					case FLOAT:
+						arithmetic( op, ( float[] ) d, dOffset, length, ( float ) v );
+						break;
+					default:
+						arithmetic( op, ( double[] ) d, dOffset, length, v );
+					}
+				}
+			} );
+			return;
+		}
+
+		forEachSplit( img, new SplitOp< T >()
+		{
+			@Override
+			public void run( final IterableInterval< T > part )
+			{
+				for ( final T t : part )
+					apply( op, t, value );
+			}
+		} );
+	}
+
+	private static < T extends RealType< T > > void arithmetic( final IterableInterval< T > img, final RandomAccessibleInterval< T > other, final int op )
+	{
+		final Storage d = storage( img );
+		final Storage s = storage( other );
+		if ( d != null && s != null && d.kind == s.kind && sameDimensions( other, img ) )
+		{
+			final int kind = d.kind;
+			run( d, s, new RangeOp()
+			{
+				@Override
+				public void run( final Object dArray, final int dOffset, final Object sArray, final int sOffset, final int length )
+				{
+					switch ( kind )
+					{
+					case BYTE:
+					case UBYTE:
+						arithmetic( kind, op, ( byte[] ) dArray, dOffset, ( byte[] ) sArray, sOffset, length );
+						break;
+					case SHORT:
+					case USHORT:
+						arithmetic( kind, op, ( short[] ) dArray, dOffset, ( short[] ) sArray, sOffset, length );
+						break;
+					case INT:
+					case UINT:
+						arithmetic( kind, op, ( int[] ) dArray, dOffset, ( int[] ) sArray, sOffset, length );
+						break;
+					case LONG:
+						arithmetic( op, ( long[] ) dArray, dOffset, ( long[] ) sArray, sOffset, length );
+						break;
+					case FLOAT:
+						arithmetic( op, ( float[] ) dArray, dOffset, ( float[] ) sArray, sOffset, length );
+						break;
+					default:
+						arithmetic( op, ( double[] ) dArray, dOffset, ( double[] ) sArray, sOffset, length );
+					}
+				}
+			} );
+			return;
+		}
+
+		forEachPair( other, img, new PairOp< T, T >()
+		{
+			@Override
+			public void apply( final T s, final T t )
+			{
+				BulkOps.apply( op, t, s );
+			}
+		} );
+	}
+
+	private static < T extends RealType< T > > void apply( final int op, final T t, final T c )
+	{
+		switch ( op )
+		{
+		case ADD:
+			t.add( c );
+			break;
+		case SUB:
+			t.sub( c );
+			break;
+		case MUL:
+			t.mul( c );
+			break;
+		default:
+			t.div( c );
+		}
+	}
+
+	/* primitive kernels */
+
+	private static void arithmetic( final int kind, final int op, final byte[] d, final int offset, final int length, final byte c )
+	{
+		final int end = offset + length;
+		switch ( op )
+		{
+		case ADD:
+			for ( int i = offset; i < end; ++i )
+				d[ i ] += c;
+			break;
+		case SUB:
+			for ( int i = offset; i < end; ++i )
+				d[ i ] -= c;
+			break;
+		case MUL:
+			for ( int i = offset; i < end; ++i )
+				d[ i ] *= c;
+			break;
+		default:
+			if ( kind == UBYTE )
+			{
+				final int cu = c & 0xff;
+				for ( int i = offset; i < end; ++i )
+					d[ i ] = ( byte ) ( ( d[ i ] & 0xff ) / cu );
+			}
+			else
+				for ( int i = offset; i < end; ++i )
+					d[ i ] /= c;
+		}
+	}
+
+	private static void arithmetic( final int kind, final int op, final byte[] d, final int dOffset, final byte[] s, final int sOffset, final int length )
+	{
+		final int offset = sOffset - dOffset;
+		final int end = dOffset + length;
+		switch ( op )
+		{
+		case ADD:
+			for ( int i = dOffset; i < end; ++i )
+				d[ i ] += s[ i + offset ];
+			break;
+		case SUB:
+			for ( int i = dOffset; i < end; ++i )
+				d[ i ] -= s[ i + offset ];
+			break;
+		case MUL:
+			for ( int i = dOffset; i < end; ++i )
+				d[ i ] *= s[ i + offset ];
+			break;
+		default:
+			if ( kind == UBYTE )
+				for ( int i = dOffset; i < end; ++i )
+					d[ i ] = ( byte ) ( ( d[ i ] & 0xff ) / ( s[ i + offset ] & 0xff ) );
+			else
+				for ( int i = dOffset; i < end; ++i )
+					d[ i ] /= s[ i + offset ];
+		}
+	}
+
+	private static void arithmetic( final int kind, final int op, final short[] d, final int offset, final int length, final short c )
+	{
+		final int end = offset + length;
+		switch ( op )
+		{
+		case ADD:
+			for ( int i = offset; i < end; ++i )
+				d[ i ] += c;
+			break;
+		case SUB:
+			for ( int i = offset; i < end; ++i )
+				d[ i ] -= c;
+			break;
+		case MUL:
+			for ( int i = offset; i < end; ++i )
+				d[ i ] *= c;
+			break;
+		default:
+			if ( kind == USHORT )
+			{
+				final int cu = c & 0xffff;
+				for ( int i = offset; i < end; ++i )
+					d[ i ] = ( short ) ( ( d[ i ] & 0xffff ) / cu );
+			}
+			else
+				for ( int i = offset; i < end; ++i )
+					d[ i ] /= c;
+		}
+	}
+
+	private static void arithmetic( final int kind, final int op, final short[] d, final int dOffset, final short[] s, final int sOffset, final int length )
+	{
+		final int offset = sOffset - dOffset;
+		final int end = dOffset + length;
+		switch ( op )
+		{
+		case ADD:
+			for ( int i = dOffset; i < end; ++i )
+				d[ i ] += s[ i + offset ];
+			break;
+		case SUB:
+			for ( int i = dOffset; i < end; ++i )
+				d[ i ] -= s[ i + offset ];
+			break;
+		case MUL:
+			for ( int i = dOffset; i < end; ++i )
+				d[ i ] *= s[ i + offset ];
+			break;
+		default:
+			if ( kind == USHORT )
+				for ( int i = dOffset; i < end; ++i )
+					d[ i ] = ( short ) ( ( d[ i ] & 0xffff ) / ( s[ i + offset ] & 0xffff ) );
+			else
+				for ( int i = dOffset; i < end; ++i )
+					d[ i ] /= s[ i + offset ];
+		}
+	}
+
+	private static void arithmetic( final int kind, final int op, final int[] d, final int offset, final int length, final int c )
+	{
+		final int end = offset + length;
+		switch ( op )
+		{
+		case ADD:
+			for ( int i = offset; i < end; ++i )
+				d[ i ] += c;
+			break;
+		case SUB:
+			for ( int i = offset; i < end; ++i )
+				d[ i ] -= c;
+			break;
+		case MUL:
+			for ( int i = offset; i < end; ++i )
+				d[ i ] *= c;
+			break;
+		default:
+			if ( kind == UINT )
+			{
+				final long cu = c & 0xffffffffL;
+				for ( int i = offset; i < end; ++i )
+					d[ i ] = ( int ) ( ( d[ i ] & 0xffffffffL ) / cu );
+			}
+			else
+				for ( int i = offset; i < end; ++i )
+					d[ i ] /= c;
+		}
+	}
+
+	private static void arithmetic( final int kind, final int op, final int[] d, final int dOffset, final int[] s, final int sOffset, final int length )
+	{
+		final int offset = sOffset - dOffset;
+		final int end = dOffset + length;
+		switch ( op )
+		{
+		case ADD:
+			for ( int i = dOffset; i < end; ++i )
+				d[ i ] += s[ i + offset ];
+			break;
+		case SUB:
+			for ( int i = dOffset; i < end; ++i )
+				d[ i ] -= s[ i + offset ];
+			break;
+		case MUL:
+			for ( int i = dOffset; i < end; ++i )
+				d[ i ] *= s[ i + offset ];
+			break;
+		default:
+			if ( kind == UINT )
+				for ( int i = dOffset; i < end; ++i )
+					d[ i ] = ( int ) ( ( d[ i ] & 0xffffffffL ) / ( s[ i + offset ] & 0xffffffffL ) );
+			else
+				for ( int i = dOffset; i < end; ++i )
+					d[ i ] /= s[ i + offset ];
+		}
+	}
+
+	private static void arithmetic( final int op, final long[] d, final int offset, final int length, final long c )
+	{
+		final int end = offset + length;
+		switch ( op )
+		{
+		case ADD:
+			for ( int i = offset; i < end; ++i )
+				d[ i ] += c;
+			break;
+		case SUB:
+			for ( int i = offset; i < end; ++i )
+				d[ i ] -= c;
+			break;
+		case MUL:
+			for ( int i = offset; i < end; ++i )
+				d[ i ] *= c;
+			break;
+		default:
+			for ( int i = offset; i < end; ++i )
+				d[ i ] /= c;
+		}
+	}
+
+	private static void arithmetic( final int op, final long[] d, final int dOffset, final long[] s, final int sOffset, final int length )
+	{
+		final int offset = sOffset - dOffset;
+		final int end = dOffset + length;
+		switch ( op )
+		{
+		case ADD:
+			for ( int i = dOffset; i < end; ++i )
+				d[ i ] += s[ i + offset ];
+			break;
+		case SUB:
+			for ( int i = dOffset; i < end; ++i )
+				d[ i ] -= s[ i + offset ];
+			break;
+		case MUL:
+			for ( int i = dOffset; i < end; ++i )
+				d[ i ] *= s[ i + offset ];
+			break;
+		default:
+			for ( int i = dOffset; i < end; ++i )
+				d[ i ] /= s[ i + offset ];
+		}
+	}
+
+	private static void arithmetic( final int op, final float[] d, final int offset, final int length, final float c )
+	{
+		final int end = offset + length;
+		switch ( op )
+		{
+		case ADD:
+			for ( int i = offset; i < end; ++i )
+				d[ i ] += c;
+			break;
+		case SUB:
+			for ( int i = offset; i < end; ++i )
+				d[ i ] -= c;
+			break;
+		case MUL:
+			for ( int i = offset; i < end; ++i )
+				d[ i ] *= c;
+			break;
+		default:
+			for ( int i = offset; i < end; ++i )
+				d[ i ] /= c;
+		}
+	}
+
+	private static void arithmetic( final int op, final float[] d, final int dOffset, final float[] s, final int sOffset, final int length )
+	{
+		final int offset = sOffset - dOffset;
+		final int end = dOffset + length;
+		switch ( op )
+		{
+		case ADD:
+			for ( int i = dOffset; i < end; ++i )
+				d[ i ] += s[ i + offset ];
+			break;
+		case SUB:
+			for ( int i = dOffset; i < end; ++i )
+				d[ i ] -= s[ i + offset ];
+			break;
+		case MUL:
+			for ( int i = dOffset; i < end; ++i )
+				d[ i ] *= s[ i + offset ];
+			break;
+		default:
+			for ( int i = dOffset; i < end; ++i )
+				d[ i ] /= s[ i + offset ];
+		}
+	}
+
+	private static void arithmetic( final int op, final double[] d, final int offset, final int length, final double c )
+	{
+		final int end = offset + length;
+		switch ( op )
+		{
+		case ADD:
+			for ( int i = offset; i < end; ++i )
+				d[ i ] += c;
+			break;
+		case SUB:
+			for ( int i = offset; i < end; ++i )
+				d[ i ] -= c;
+			break;
+		case MUL:
+			for ( int i = offset; i < end; ++i )
+				d[ i ] *= c;
+			break;
+		default:
+			for ( int i = offset; i < end; ++i )
+				d[ i ] /= c;
+		}
+	}
+
+	private static void arithmetic( final int op, final double[] d, final int dOffset, final double[] s, final int sOffset, final int length )
+	{
+		final int offset = sOffset - dOffset;
+		final int end = dOffset + length;
+		switch ( op )
+		{
+		case ADD:
+			for ( int i = dOffset; i < end; ++i )
+				d[ i ] += s[ i + offset ];
+			break;
+		case SUB:
+			for ( int i = dOffset; i < end; ++i )
+				d[ i ] -= s[ i + offset ];
+			break;
+		case MUL:
+			for ( int i = dOffset; i < end; ++i )
+				d[ i ] *= s[ i + offset ];
+			break;
+		default:
+			for ( int i = dOffset; i < end; ++i )
+				d[ i ] /= s[ i + offset ];
+		}
+	}
+
+	/**
+	 * Read values of a primitive array as doubles, like
+	 * {@link RealType#getRealDouble()}.
+	 */
+	private static void read( final int kind, final Object array, final int offset, final double[] buf, final int length )
+	{
+		switch ( kind )
+		{
+		case BYTE:
+		{
+			final byte[] a = ( byte[] ) array;
+			for ( int i = 0; i < length; ++i )
+				buf[ i ] = a[ offset + i ];
+			break;
+		}
+		case UBYTE:
+		{
+			final byte[] a = ( byte[] ) array;
+			for ( int i = 0; i < length; ++i )
+				buf[ i ] = a[ offset + i ] & 0xff;
+			break;
+		}
+		case SHORT:
+		{
+			final short[] a = ( short[] ) array;
+			for ( int i = 0; i < length; ++i )
+				buf[ i ] = a[ offset + i ];
+			break;
+		}
+		case USHORT:
+		{
+			final short[] a = ( short[] ) array;
+			for ( int i = 0; i < length; ++i )
+				buf[ i ] = a[ offset + i ] & 0xffff;
+			break;
+		}
+		case INT:
+		{
+			final int[] a = ( int[] ) array;
+			for ( int i = 0; i < length; ++i )
+				buf[ i ] = a[ offset + i ];
+			break;
+		}
+		case UINT:
+		{
+			final int[] a = ( int[] ) array;
+			for ( int i = 0; i < length; ++i )
+				buf[ i ] = a[ offset + i ] & 0xffffffffL;
+			break;
+		}
+		case LONG:
+		{
+			final long[] a = ( long[] ) array;
+			for ( int i = 0; i < length; ++i )
+				buf[ i ] = a[ offset + i ];
+			break;
+		}
+		case FLOAT:
+		{
+			final float[] a = ( float[] ) array;
+			for ( int i = 0; i < length; ++i )
+				buf[ i ] = a[ offset + i ];
+			break;
+		}
+		default:
+			System.arraycopy( array, offset, buf, 0, length );
+		}
+	}
+
+	/**
+	 * Write doubles into a primitive array, like
+	 * {@link RealType#setReal(double)}.
+	 */
+	private static void write( final int kind, final double[] buf, final Object array, final int offset, final int length )
+	{
+		switch ( kind )
+		{
+		case BYTE:
+		case UBYTE:
+		{
+			final byte[] a = ( byte[] ) array;
+			for ( int i = 0; i < length; ++i )
+				a[ offset + i ] = ( byte ) Util.round( buf[ i ] );
+			break;
+		}
+		case SHORT:
+		case USHORT:
+		{
+			final short[] a = ( short[] ) array;
+			for ( int i = 0; i < length; ++i )
+				a[ offset + i ] = ( short ) Util.round( buf[ i ] );
+			break;
+		}
+		case INT:
+		case UINT:
+		{
+			final int[] a = ( int[] ) array;
+			for ( int i = 0; i < length; ++i )
+				a[ offset + i ] = ( int ) Util.round( buf[ i ] );
+			break;
+		}
+		case LONG:
+		{
+			final long[] a = ( long[] ) array;
+			for ( int i = 0; i < length; ++i )
+				a[ offset + i ] = Util.round( buf[ i ] );
+			break;
+		}
+		case FLOAT:
+		{
+			final float[] a = ( float[] ) array;
+			for ( int i = 0; i < length; ++i )
+				a[ offset + i ] = ( float ) buf[ i ];
+			break;
+		}
+		default:
+			System.arraycopy( buf, 0, array, offset, length );
+		}
+	}
+
+	/* storage */
+
+	/**
+	 * The primitive arrays of an image. Each array holds
+	 * <em>segmentLength</em> consecutive pixels in flat iteration order.
+	 */
+	private static final class Storage
+	{
+		final int kind;
+
+		final Object[] arrays;
+
+		final int segmentLength;
+
+		final long size;
+
+		Storage( final int kind, final Object[] arrays, final int segmentLength, final long size )
+		{
+			this.kind = kind;
+			this.arrays = arrays;
+			this.segmentLength = segmentLength;
+			this.size = size;
+		}
+	}
+
+	/**
+	 * @return kind of a type, or -1 if it is not one of the supported types.
+	 */
+	private static int kind( final Object type )
+	{
+		final Class< ? > c = type.getClass();
+		if ( c == UnsignedByteType.class )
+			return UBYTE;
+		if ( c == ByteType.class )
+			return BYTE;
+		if ( c == UnsignedShortType.class )
+			return USHORT;
+		if ( c == ShortType.class )
+			return SHORT;
+		if ( c == IntType.class )
+			return INT;
+		if ( c == UnsignedIntType.class )
+			return UINT;
+		if ( c == LongType.class )
+			return LONG;
+		if ( c == FloatType.class )
+			return FLOAT;
+		if ( c == DoubleType.class )
+			return DOUBLE;
+		return -1;
+	}
+
+	private static boolean matches( final int kind, final Object array )
+	{
+		switch ( kind )
+		{
+		case BYTE:
+		case UBYTE:
+			return array instanceof byte[];
+		case SHORT:
+		case USHORT:
+			return array instanceof short[];
+		case INT:
+		case UINT:
+			return array instanceof int[];
+		case LONG:
+			return array instanceof long[];
+		case FLOAT:
+			return array instanceof float[];
+		case DOUBLE:
+			return array instanceof double[];
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * @return the primitive arrays of an {@link ArrayImg} or {@link PlanarImg}
+	 *         of a supported type, or null.
+	 */
+	private static Storage storage( final Object img )
+	{
+		if ( !( img instanceof ArrayImg || img instanceof PlanarImg ) )
+			return null;
+		final IterableInterval< ? > interval = ( IterableInterval< ? > ) img;
+		final long size = interval.size();
+		if ( size == 0 )
+			return null;
+		final int kind = kind( interval.firstElement() );
+		if ( kind < 0 )
+			return null;
+
+		final Object[] arrays;
+		if ( img instanceof ArrayImg )
+		{
+			final Object access = ( ( ArrayImg< ?, ? > ) img ).update( null );
+			if ( !( access instanceof ArrayDataAccess ) )
+				return null;
+			arrays = new Object[] { ( ( ArrayDataAccess< ? > ) access ).getCurrentStorageArray() };
+		}
+		else
+		{
+			final PlanarImg< ?, ? > planar = ( PlanarImg< ?, ? > ) img;
+			arrays = new Object[ planar.numSlices() ];
+			for ( int i = 0; i < arrays.length; ++i )
+				arrays[ i ] = planar.getPlane( i ).getCurrentStorageArray();
+		}
+		for ( final Object array : arrays )
+			if ( !matches( kind, array ) )
+				return null;
+		return new Storage( kind, arrays, ( int ) ( size / arrays.length ), size );
+	}
+
+	private static long integerValue( final Object type )
+	{
+		return ( ( IntegerType< ? > ) type ).getIntegerLong();
+	}
+
+	private static boolean sameDimensions( final Interval a, final Interval b )
+	{
+		if ( a.numDimensions() != b.numDimensions() )
+			return false;
+		for ( int d = 0; d < a.numDimensions(); ++d )
+			if ( a.dimension( d ) != b.dimension( d ) )
+				return false;
+		return true;
+	}
+
+	/* threading */
+
+	/**
+	 * Operation on a range of pixels that lies within one array of the
+	 * destination and one array of the source.
+	 */
+	private static abstract class RangeOp
+	{
+		public abstract void run( Object dArray, int dOffset, Object sArray, int sOffset, int length );
+	}
+
+	/**
+	 * Split the pixels into chunks, and the chunks into ranges that do not
+	 * cross array boundaries of <em>dst</em> or <em>src</em>.
+	 */
+	private static void run( final Storage dst, final Storage src, final RangeOp op )
+	{
+		final int numThreads = dst.size < minParallelSize ? 1 : TaskExecutor.getDefault().getNumThreads();
+		final List< Chunk > chunks = TaskExecutor.divideIntoChunks( dst.size, numThreads );
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >();
+		for ( final Chunk chunk : chunks )
+		{
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					long pos = chunk.getStartPosition();
+					final long end = pos + chunk.getLoopSize();
+					while ( pos < end )
+					{
+						final int dIndex = ( int ) ( pos / dst.segmentLength );
+						final int dOffset = ( int ) ( pos % dst.segmentLength );
+						final int sIndex = ( int ) ( pos / src.segmentLength );
+						final int sOffset = ( int ) ( pos % src.segmentLength );
+						final int length = ( int ) Math.min( end - pos, Math.min( dst.segmentLength - dOffset, src.segmentLength - sOffset ) );
+						op.run( dst.arrays[ dIndex ], dOffset, src.arrays[ sIndex ], sOffset, length );
+						pos += length;
+					}
+				}
+			} );
+		}
+		TaskExecutor.getDefault().run( tasks, numThreads );
+	}
+
+	private static abstract class SplitOp< T >
+	{
+		public abstract void run( IterableInterval< T > part );
+	}
+
+	private static < T > void forEachSplit( final IterableInterval< T > img, final SplitOp< T > op )
+	{
+		final int numThreads = img.size() < minParallelSize ? 1 : TaskExecutor.getDefault().getNumThreads();
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >();
+		for ( final IterableInterval< T > part : IterableIntervalSplits.split( img, numThreads ) )
+		{
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					op.run( part );
+				}
+			} );
+		}
+		TaskExecutor.getDefault().run( tasks, numThreads );
+	}
+
+	private static abstract class PairOp< S, T >
+	{
+		public abstract void apply( S s, T t );
+	}
+
+	/**
+	 * Apply an operation to each pixel of <em>dst</em> and the corresponding
+	 * pixel of <em>src</em>, shifted by the difference of the min corners.
+	 */
+	private static < S, T > void forEachPair( final RandomAccessibleInterval< S > src, final IterableInterval< T > dst, final PairOp< S, T > op )
+	{
+		final int n = dst.numDimensions();
+		boolean sameMin = true;
+		for ( int d = 0; d < n; ++d )
+			if ( src.min( d ) != dst.min( d ) )
+				sameMin = false;
+
+		if ( sameMin && src instanceof IterableInterval && ( ( IterableInterval< ? > ) src ).equalIterationOrder( dst ) )
+		{
+			final Cursor< S > s = ( ( IterableInterval< S > ) src ).cursor();
+			final Cursor< T > t = dst.cursor();
+			while ( t.hasNext() )
+				op.apply( s.next(), t.next() );
+		}
+		else
+		{
+			final long[] offset = new long[ n ];
+			for ( int d = 0; d < n; ++d )
+				offset[ d ] = src.min( d ) - dst.min( d );
+			final long[] position = new long[ n ];
+			final Cursor< T > t = dst.localizingCursor();
+			final RandomAccess< S > s = src.randomAccess();
+			while ( t.hasNext() )
+			{
+				t.fwd();
+				t.localize( position );
+				for ( int d = 0; d < n; ++d )
+					position[ d ] += offset[ d ];
+				s.setPosition( position );
+				op.apply( s.get(), t.get() );
+			}
+		}
+	}
+}
@@ -39,6 +39,7 @@ package net.imglib2.util;
 import net.imglib2.Cursor;
 import net.imglib2.img.Img;
 import net.imglib2.type.BooleanType;
+import net.imglib2.type.Type;
 import net.imglib2.type.numeric.IntegerType;
 import net.imglib2.type.numeric.RealType;
 
@@ -238,4 +239,26 @@ public class ImgUtil {
 			dest[this_offset] = t.get();
 		}
 	}
+
+	/**
+	 * Copy the contents of one Img into another Img of the same type and
+	 * dimensions. Array and planar images of primitive types are copied
+	 * array-wise, see {@link BulkOps#copy}.
+	 *
+	 * @param src - the source image
+	 * @param dest - the destination image
+	 */
+	public static <T extends Type<T>> void copy(final Img<T> src, final Img<T> dest) {
+		BulkOps.copy(src, dest);
+	}
+
+	/**
+	 * Copy the contents of one Img into another Img of the same dimensions,
+	 * converting the values as {@link RealType#setReal(double)} does.
+	 *
+	 * @see BulkOps#convert
+	 */
+	public static <S extends RealType<S>, T extends RealType<T>> void convert(final Img<S> src, final Img<T> dest) {
+		BulkOps.convert(src, dest);
+	}
 }
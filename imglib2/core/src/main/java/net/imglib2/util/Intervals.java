@@ -29,6 +29,9 @@
  */
 package net.imglib2.util;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
 import net.imglib2.Localizable;
@@ -196,4 +199,104 @@ public class Intervals
 		}
 		return true;
 	}
+
+	/**
+	 * Test whether an interval is empty, that is, whether its max is smaller
+	 * than its min in any dimension.
+	 *
+	 * @return true, iff {@code interval} contains no points.
+	 */
+	public static boolean isEmpty( final Interval interval )
+	{
+		final int n = interval.numDimensions();
+		for ( int d = 0; d < n; ++d )
+			if ( interval.max( d ) < interval.min( d ) )
+				return true;
+		return false;
+	}
+
+	/**
+	 * Compute the interior of an interval with respect to a neighborhood.
+	 *
+	 * The interior comprises all positions <em>x</em> in {@code interval}
+	 * such that <em>x + o</em> lies in {@code valid} for every offset
+	 * {@code reachMin} &le; <em>o</em> &le; {@code reachMax}. For example, to
+	 * find the positions where a 3x3 neighborhood does not leave
+	 * {@code valid}, use {@code reachMin = (-1,-1)} and
+	 * {@code reachMax = (1,1)}.
+	 *
+	 * @param interval
+	 *            the positions to consider.
+	 * @param valid
+	 *            the interval which the neighborhood must not leave.
+	 * @param reachMin
+	 *            minimum offset of the neighborhood in every dimension.
+	 * @param reachMax
+	 *            maximum offset of the neighborhood in every dimension.
+	 * @return the interior, which may be {@link #isEmpty(Interval) empty}.
+	 */
+	public static FinalInterval interior( final Interval interval, final Interval valid, final long[] reachMin, final long[] reachMax )
+	{
+		final int n = interval.numDimensions();
+		final long[] min = new long[ n ];
+		final long[] max = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = Math.max( interval.min( d ), valid.min( d ) - reachMin[ d ] );
+			max[ d ] = Math.min( interval.max( d ), valid.max( d ) - reachMax[ d ] );
+		}
+		return new FinalInterval( min, max );
+	}
+
+	/**
+	 * Split the part of {@code interval} that is not in {@code interior} into
+	 * at most <em>2n</em> disjoint intervals. Together with {@code interior}
+	 * they cover {@code interval} exactly.
+	 *
+	 * @param interval
+	 *            the interval to split.
+	 * @param interior
+	 *            an interval contained in {@code interval}, or an empty
+	 *            interval.
+	 * @return the non-empty parts of {@code interval} outside of
+	 *         {@code interior}.
+	 */
+	public static List< FinalInterval > subtract( final Interval interval, final Interval interior )
+	{
+		final ArrayList< FinalInterval > parts = new ArrayList< FinalInterval >();
+		if ( isEmpty( interval ) )
+			return parts;
+		if ( isEmpty( interior ) )
+		{
+			parts.add( new FinalInterval( interval ) );
+			return parts;
+		}
+
+		// cut slabs below and above the interior, dimension by dimension.
+		// after dimension d, the remainder is restricted to the interior in
+		// dimensions 0 ... d.
+		final int n = interval.numDimensions();
+		final long[] min = new long[ n ];
+		final long[] max = new long[ n ];
+		interval.min( min );
+		interval.max( max );
+		for ( int d = 0; d < n; ++d )
+		{
+			if ( min[ d ] < interior.min( d ) )
+			{
+				final long[] partMax = max.clone();
+				partMax[ d ] = interior.min( d ) - 1;
+				parts.add( new FinalInterval( min.clone(), partMax ) );
+				min[ d ] = interior.min( d );
+			}
+			if ( max[ d ] > interior.max( d ) )
+			{
+				final long[] partMin = min.clone();
+				partMin[ d ] = interior.max( d ) + 1;
+				parts.add( new FinalInterval( partMin, max.clone() ) );
+				max[ d ] = interior.max( d );
+			}
+		}
+		return parts;
+	}
 }
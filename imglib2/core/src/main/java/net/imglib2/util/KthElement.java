@@ -342,6 +342,96 @@ public class KthElement
 		kthElement( 0, values.length - 1, k, values );
 	}
 
+	/**
+	 * Partition a subarray of {@code values} such that the k-th smallest value
+	 * is at position {@code k}, elements before the k-th are smaller or equal
+	 * and elements after the k-th are larger or equal.
+	 * 
+	 * <p>
+	 * The {@code permutation} array is permuted in the same way as the array.
+	 * Unlike the other variants, the pivot of each partitioning step is chosen
+	 * as the median of the first, middle, and last element, and elements equal
+	 * to the pivot are distributed to both sides (see
+	 * {@link Partition#partitionSubList(int, int, double[], int[])}), so that
+	 * neither sorted input nor many equal values degrade to quadratic running
+	 * time.
+	 * </p>
+	 * 
+	 * @param i
+	 *            index of first element of subarray
+	 * @param j
+	 *            index of last element of subarray
+	 * @param k
+	 *            index for k-th smallest value. i <= k <= j.
+	 * @param values
+	 *            array
+	 * @param permutation
+	 *            elements of this array are permuted in the same way as the elements in the values array
+	 */
+	public static void kthElement( int i, int j, int k, double[] values, final int[] permutation )
+	{
+		while ( true )
+		{
+			if ( j - i > 2 )
+				medianOfThreeToEnd( i, j, values, permutation );
+			int pivotpos = Partition.partitionSubList( i, j, values, permutation );
+			if ( pivotpos > k )
+			{
+				// partition lower half
+				j = pivotpos - 1;
+			}
+			else if ( pivotpos < k )
+			{
+				// partition upper half
+				i = pivotpos + 1;
+			}
+			else
+				return;
+		}
+	}
+
+	/**
+	 * Partition an array of {@code values} such that the k-th smallest value is
+	 * at position {@code k}, elements before the k-th are smaller or equal and
+	 * elements after the k-th are larger or equal.
+	 * 
+	 * @param k
+	 *            index for k-th smallest value. 0 <= k < values.length.
+	 * @param values
+	 *            array
+	 * @param permutation
+	 *            elements of this array are permuted in the same way as the elements in the values array
+	 */
+	public static void kthElement( int k, double[] values, final int[] permutation )
+	{
+		kthElement( 0, values.length - 1, k, values, permutation );
+	}
+
+	/**
+	 * Move the median of {@code values[i]}, {@code values[(i+j)/2]}, and
+	 * {@code values[j]} to index {@code j}, where it will be used as the pivot.
+	 */
+	private static void medianOfThreeToEnd( final int i, final int j, final double[] values, final int[] permutation )
+	{
+		final int m = i + ( j - i ) / 2;
+		final double a = values[ i ];
+		final double b = values[ m ];
+		final double c = values[ j ];
+		final int median;
+		if ( a < b )
+			median = ( b < c ) ? m : ( ( a < c ) ? j : i );
+		else
+			median = ( a < c ) ? i : ( ( b < c ) ? j : m );
+		if ( median != j )
+		{
+			values[ median ] = c;
+			values[ j ] = median == i ? a : b;
+			final int tmp = permutation[ median ];
+			permutation[ median ] = permutation[ j ];
+			permutation[ j ] = tmp;
+		}
+	}
+
 	/**
 	 * Partition a subarray of {@code values} such that the k-th smallest value
 	 * is at position {@code k}, elements before the k-th are smaller or equal
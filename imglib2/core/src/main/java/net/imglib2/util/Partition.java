@@ -454,6 +454,79 @@ public class Partition
 		return i;
 	}
 
+	/**
+	 * Partition a subarray of {@code values}.
+	 * 
+	 * The element at index {@code j} is taken as the pivot value. The elements
+	 * {@code [i,j]} are reordered, such that all elements before the pivot are
+	 * smaller or equal and all elements after the pivot are equal or larger
+	 * than the pivot. The index of the pivot element is returned.
+	 * 
+	 * <p>
+	 * Unlike the other variants, elements equal to the pivot are distributed
+	 * to both sides, so that many equal values do not degrade
+	 * {@link KthElement} or quicksort to quadratic running time.
+	 * </p>
+	 * 
+	 * <p>
+	 * The {@code permutation} array is permuted in the same way as the array.
+	 * Usually, this will be an array of indices, so that the partition operation
+	 * can be mirrored in another array.
+	 * </p>
+	 * 
+	 * @param i
+	 *            index of first element of subarray
+	 * @param j
+	 *            index of last element of subarray
+	 * @param values
+	 *            array
+	 * @param permutation
+	 *            elements of this array are permuted in the same way as the elements in the values array
+	 * @return index of pivot element
+	 */
+	public static int partitionSubList( int i, int j, double[] values, final int[] permutation )
+	{
+		final int pivotIndex = j;
+		final double pivot = values[ j-- ];
+
+		while ( true )
+		{
+			// move i forward while < pivot
+			// (stops at the pivot element at the latest)
+			while ( values[ i ] < pivot )
+				++i;
+
+			// move j backward while > pivot (and not at i)
+			while ( j > i && values[ j ] > pivot )
+				--j;
+
+			if ( i >= j )
+				break;
+
+			// swap [j] with [i], equal elements are swapped as well
+			final int indicesTmp = permutation[ i ];
+			permutation[ i ] = permutation[ j ];
+			permutation[ j ] = indicesTmp;
+			final double tmp = values[ i ];
+			values[ i ] = values[ j ];
+			values[ j ] = tmp;
+			++i;
+			--j;
+		}
+
+		// we are done. put the pivot element here.
+		// [i] >= pivot, because the scan for smaller values stopped there.
+		if ( i != pivotIndex )
+		{
+			values[ pivotIndex ] = values[ i ];
+			values[ i ] = pivot;
+			final int permutationPivot = permutation[ pivotIndex ];
+			permutation[ pivotIndex ] = permutation[ i ];
+			permutation[ i ] = permutationPivot;
+		}
+		return i;
+	}
+
 	/**
 	 * Partition a subarray of {@code values}.
 	 * 
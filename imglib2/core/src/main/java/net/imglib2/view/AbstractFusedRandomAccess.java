@@ -0,0 +1,172 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.view;
+
+import net.imglib2.AbstractLocalizableInt;
+import net.imglib2.Localizable;
+import net.imglib2.RandomAccess;
+import net.imglib2.type.NativeType;
+
+/**
+ * Base class for the {@link RandomAccess}es of a {@link FusedRandomAccessible}
+ * into the image. Keeps track of the view position. Derived classes translate
+ * changes of the position into changes of the index of the linked type.
+ */
+public abstract class AbstractFusedRandomAccess< T extends NativeType< T > > extends AbstractLocalizableInt implements RandomAccess< T >
+{
+	protected final T type;
+
+	/**
+	 * image dimension that each view dimension maps to.
+	 */
+	protected final int[] component;
+
+	/**
+	 * +1 or -1 for each view dimension, depending on whether the image axis is
+	 * inverted.
+	 */
+	protected final int[] sign;
+
+	/**
+	 * image coordinate (along {@code component[d]}) for view coordinate 0.
+	 */
+	protected final int[] offset;
+
+	protected AbstractFusedRandomAccess( final FusedRandomAccessible< T > f )
+	{
+		super( f.n );
+		type = f.img.createLinkedType();
+		component = f.component;
+		sign = f.sign;
+		offset = f.offset;
+	}
+
+	protected AbstractFusedRandomAccess( final AbstractFusedRandomAccess< T > a )
+	{
+		super( a.position.clone() );
+		type = a.type.duplicateTypeOnSameNativeImg();
+		component = a.component;
+		sign = a.sign;
+		offset = a.offset;
+	}
+
+	/**
+	 * Set the index of the linked type from the current position.
+	 */
+	protected abstract void updateIndex();
+
+	@Override
+	public T get()
+	{
+		return type;
+	}
+
+	@Override
+	public void move( final long distance, final int d )
+	{
+		move( ( int ) distance, d );
+	}
+
+	@Override
+	public void move( final Localizable localizable )
+	{
+		for ( int d = 0; d < n; ++d )
+			position[ d ] += localizable.getIntPosition( d );
+		updateIndex();
+	}
+
+	@Override
+	public void move( final int[] distance )
+	{
+		for ( int d = 0; d < n; ++d )
+			position[ d ] += distance[ d ];
+		updateIndex();
+	}
+
+	@Override
+	public void move( final long[] distance )
+	{
+		for ( int d = 0; d < n; ++d )
+			position[ d ] += ( int ) distance[ d ];
+		updateIndex();
+	}
+
+	@Override
+	public void setPosition( final Localizable localizable )
+	{
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = localizable.getIntPosition( d );
+		updateIndex();
+	}
+
+	@Override
+	public void setPosition( final int[] pos )
+	{
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = pos[ d ];
+		updateIndex();
+	}
+
+	@Override
+	public void setPosition( final long[] pos )
+	{
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = ( int ) pos[ d ];
+		updateIndex();
+	}
+
+	@Override
+	public void setPosition( final int pos, final int d )
+	{
+		move( pos - position[ d ], d );
+	}
+
+	@Override
+	public void setPosition( final long pos, final int d )
+	{
+		move( ( int ) pos - position[ d ], d );
+	}
+
+	@Override
+	public abstract AbstractFusedRandomAccess< T > copy();
+
+	@Override
+	public AbstractFusedRandomAccess< T > copyRandomAccess()
+	{
+		return copy();
+	}
+}
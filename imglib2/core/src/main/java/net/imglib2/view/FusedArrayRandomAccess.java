@@ -0,0 +1,130 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.view;
+
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * {@link FusedRandomAccessible fused} RandomAccess on an {@link ArrayImg}. The
+ * index into the storage array is computed directly from the view position.
+ */
+public final class FusedArrayRandomAccess< T extends NativeType< T > > extends AbstractFusedRandomAccess< T >
+{
+	/**
+	 * index step of the image dimension that each view dimension maps to,
+	 * negated if the axis is inverted.
+	 */
+	private final int[] steps;
+
+	/**
+	 * index for view position 0.
+	 */
+	private final int baseIndex;
+
+	FusedArrayRandomAccess( final FusedRandomAccessible< T > f )
+	{
+		super( f );
+
+		final int m = f.img.numDimensions();
+		final int[] dim = new int[ m ];
+		for ( int e = 0; e < m; ++e )
+			dim[ e ] = ( int ) f.img.dimension( e );
+		final int[] imgSteps = new int[ m ];
+		IntervalIndexer.createAllocationSteps( dim, imgSteps );
+
+		steps = new int[ n ];
+		int i = 0;
+		for ( int e = 0; e < m; ++e )
+			i += f.fixed[ e ] * imgSteps[ e ];
+		for ( int d = 0; d < n; ++d )
+		{
+			steps[ d ] = sign[ d ] * imgSteps[ component[ d ] ];
+			i += offset[ d ] * imgSteps[ component[ d ] ];
+		}
+		baseIndex = i;
+
+		type.updateContainer( this );
+		type.updateIndex( baseIndex );
+	}
+
+	private FusedArrayRandomAccess( final FusedArrayRandomAccess< T > a )
+	{
+		super( a );
+		steps = a.steps;
+		baseIndex = a.baseIndex;
+		type.updateContainer( this );
+		type.updateIndex( a.type.getIndex() );
+	}
+
+	@Override
+	protected void updateIndex()
+	{
+		int i = baseIndex;
+		for ( int d = 0; d < n; ++d )
+			i += position[ d ] * steps[ d ];
+		type.updateIndex( i );
+	}
+
+	@Override
+	public void fwd( final int d )
+	{
+		++position[ d ];
+		type.incIndex( steps[ d ] );
+	}
+
+	@Override
+	public void bck( final int d )
+	{
+		--position[ d ];
+		type.decIndex( steps[ d ] );
+	}
+
+	@Override
+	public void move( final int distance, final int d )
+	{
+		position[ d ] += distance;
+		type.incIndex( distance * steps[ d ] );
+	}
+
+	@Override
+	public FusedArrayRandomAccess< T > copy()
+	{
+		return new FusedArrayRandomAccess< T >( this );
+	}
+}
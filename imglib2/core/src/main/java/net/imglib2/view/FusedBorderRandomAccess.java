@@ -0,0 +1,202 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.view;
+
+import net.imglib2.AbstractLocalizableInt;
+import net.imglib2.Localizable;
+import net.imglib2.RandomAccess;
+import net.imglib2.type.NativeType;
+
+/**
+ * {@link FusedRandomAccessible fused} RandomAccess on a border-extended image.
+ * The view position is clamped to the range of view coordinates that map into
+ * the image, and the clamped position is passed on to a
+ * {@link FusedArrayRandomAccess} or {@link FusedPlanarRandomAccess}. This
+ * replaces the {@link net.imglib2.outofbounds.OutOfBoundsBorder} below the
+ * transform, so that the transform does not have to be applied separately.
+ */
+public final class FusedBorderRandomAccess< T extends NativeType< T > > extends AbstractLocalizableInt implements RandomAccess< T >
+{
+	private final AbstractFusedRandomAccess< T > source;
+
+	/**
+	 * range of view coordinates that map into the image.
+	 */
+	private final int[] clampMin, clampMax;
+
+	private final int[] tmp;
+
+	FusedBorderRandomAccess( final AbstractFusedRandomAccess< T > source, final int[] clampMin, final int[] clampMax )
+	{
+		super( source.numDimensions() );
+		this.source = source;
+		this.clampMin = clampMin;
+		this.clampMax = clampMax;
+		tmp = new int[ n ];
+		updateSource();
+	}
+
+	private FusedBorderRandomAccess( final FusedBorderRandomAccess< T > a )
+	{
+		super( a.position.clone() );
+		source = a.source.copy();
+		clampMin = a.clampMin;
+		clampMax = a.clampMax;
+		tmp = new int[ n ];
+	}
+
+	private int clamp( final int d, final int pos )
+	{
+		return pos < clampMin[ d ] ? clampMin[ d ] : ( pos > clampMax[ d ] ? clampMax[ d ] : pos );
+	}
+
+	private void updateSource()
+	{
+		for ( int d = 0; d < n; ++d )
+			tmp[ d ] = clamp( d, position[ d ] );
+		source.setPosition( tmp );
+	}
+
+	@Override
+	public T get()
+	{
+		return source.get();
+	}
+
+	@Override
+	public void fwd( final int d )
+	{
+		final int p = ++position[ d ];
+		if ( p > clampMin[ d ] && p <= clampMax[ d ] )
+			source.fwd( d );
+	}
+
+	@Override
+	public void bck( final int d )
+	{
+		final int p = --position[ d ];
+		if ( p >= clampMin[ d ] && p < clampMax[ d ] )
+			source.bck( d );
+	}
+
+	@Override
+	public void move( final int distance, final int d )
+	{
+		setPosition( position[ d ] + distance, d );
+	}
+
+	@Override
+	public void move( final long distance, final int d )
+	{
+		setPosition( position[ d ] + ( int ) distance, d );
+	}
+
+	@Override
+	public void move( final Localizable localizable )
+	{
+		for ( int d = 0; d < n; ++d )
+			position[ d ] += localizable.getIntPosition( d );
+		updateSource();
+	}
+
+	@Override
+	public void move( final int[] distance )
+	{
+		for ( int d = 0; d < n; ++d )
+			position[ d ] += distance[ d ];
+		updateSource();
+	}
+
+	@Override
+	public void move( final long[] distance )
+	{
+		for ( int d = 0; d < n; ++d )
+			position[ d ] += ( int ) distance[ d ];
+		updateSource();
+	}
+
+	@Override
+	public void setPosition( final Localizable localizable )
+	{
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = localizable.getIntPosition( d );
+		updateSource();
+	}
+
+	@Override
+	public void setPosition( final int[] pos )
+	{
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = pos[ d ];
+		updateSource();
+	}
+
+	@Override
+	public void setPosition( final long[] pos )
+	{
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = ( int ) pos[ d ];
+		updateSource();
+	}
+
+	@Override
+	public void setPosition( final int pos, final int d )
+	{
+		final int distance = clamp( d, pos ) - clamp( d, position[ d ] );
+		position[ d ] = pos;
+		if ( distance != 0 )
+			source.move( distance, d );
+	}
+
+	@Override
+	public void setPosition( final long pos, final int d )
+	{
+		setPosition( ( int ) pos, d );
+	}
+
+	@Override
+	public FusedBorderRandomAccess< T > copy()
+	{
+		return new FusedBorderRandomAccess< T >( this );
+	}
+
+	@Override
+	public FusedBorderRandomAccess< T > copyRandomAccess()
+	{
+		return copy();
+	}
+}
@@ -0,0 +1,217 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.view;
+
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.NativeType;
+
+/**
+ * {@link FusedRandomAccessible fused} RandomAccess on a {@link PlanarImg}. The
+ * index into the current plane and the plane index are computed directly from
+ * the view position. The plane is only switched when the view moves along a
+ * dimension that maps to image dimension 2 or higher.
+ */
+public final class FusedPlanarRandomAccess< T extends NativeType< T > > extends AbstractFusedRandomAccess< T > implements PlanarImg.PlanarContainerSampler
+{
+	/**
+	 * index step within the plane of the image dimension that each view
+	 * dimension maps to, negated if the axis is inverted. 0 for view
+	 * dimensions that map to image dimension 2 or higher.
+	 */
+	private final int[] steps;
+
+	/**
+	 * plane step of the image dimension that each view dimension maps to,
+	 * negated if the axis is inverted. 0 for view dimensions that map to image
+	 * dimension 0 or 1.
+	 */
+	private final int[] sliceSteps;
+
+	/**
+	 * whether view dimensions 0 and 1 map to image dimensions 0 and 1. Then
+	 * {@code d < 2} tells whether moving along {@code d} stays within the
+	 * plane, which the JIT can resolve for constant {@code d}.
+	 */
+	private final boolean inPlane01;
+
+	/**
+	 * index within the plane for view position 0.
+	 */
+	private final int baseIndex;
+
+	/**
+	 * plane index for view position 0.
+	 */
+	private final int baseSliceIndex;
+
+	private int sliceIndex;
+
+	FusedPlanarRandomAccess( final FusedRandomAccessible< T > f )
+	{
+		super( f );
+
+		final int m = f.img.numDimensions();
+		final int[] imgSteps = new int[ m ];
+		imgSteps[ 0 ] = 1;
+		if ( m > 1 )
+			imgSteps[ 1 ] = ( int ) f.img.dimension( 0 );
+		if ( m > 2 )
+		{
+			imgSteps[ 2 ] = 1;
+			for ( int e = 3; e < m; ++e )
+				imgSteps[ e ] = imgSteps[ e - 1 ] * ( int ) f.img.dimension( e - 1 );
+		}
+
+		steps = new int[ n ];
+		sliceSteps = new int[ n ];
+		int i = 0;
+		int s = 0;
+		for ( int e = 0; e < m; ++e )
+		{
+			if ( e < 2 )
+				i += f.fixed[ e ] * imgSteps[ e ];
+			else
+				s += f.fixed[ e ] * imgSteps[ e ];
+		}
+		for ( int d = 0; d < n; ++d )
+		{
+			final int e = component[ d ];
+			if ( e < 2 )
+			{
+				steps[ d ] = sign[ d ] * imgSteps[ e ];
+				i += offset[ d ] * imgSteps[ e ];
+			}
+			else
+			{
+				sliceSteps[ d ] = sign[ d ] * imgSteps[ e ];
+				s += offset[ d ] * imgSteps[ e ];
+			}
+		}
+		baseIndex = i;
+		baseSliceIndex = s;
+		boolean b = true;
+		for ( int d = 0; d < n && d < 2; ++d )
+			b &= component[ d ] < 2;
+		inPlane01 = b;
+
+		sliceIndex = baseSliceIndex;
+		type.updateContainer( this );
+		type.updateIndex( baseIndex );
+	}
+
+	private FusedPlanarRandomAccess( final FusedPlanarRandomAccess< T > a )
+	{
+		super( a );
+		steps = a.steps;
+		sliceSteps = a.sliceSteps;
+		baseIndex = a.baseIndex;
+		baseSliceIndex = a.baseSliceIndex;
+		inPlane01 = a.inPlane01;
+		sliceIndex = a.sliceIndex;
+		type.updateContainer( this );
+		type.updateIndex( a.type.getIndex() );
+	}
+
+	@Override
+	public int getCurrentSliceIndex()
+	{
+		return sliceIndex;
+	}
+
+	@Override
+	protected void updateIndex()
+	{
+		int i = baseIndex;
+		int s = baseSliceIndex;
+		for ( int d = 0; d < n; ++d )
+		{
+			i += position[ d ] * steps[ d ];
+			s += position[ d ] * sliceSteps[ d ];
+		}
+		if ( s != sliceIndex )
+		{
+			sliceIndex = s;
+			type.updateContainer( this );
+		}
+		type.updateIndex( i );
+	}
+
+	@Override
+	public void fwd( final int d )
+	{
+		++position[ d ];
+		if ( ( d < 2 && inPlane01 ) || sliceSteps[ d ] == 0 )
+			type.incIndex( steps[ d ] );
+		else
+		{
+			sliceIndex += sliceSteps[ d ];
+			type.updateContainer( this );
+		}
+	}
+
+	@Override
+	public void bck( final int d )
+	{
+		--position[ d ];
+		if ( ( d < 2 && inPlane01 ) || sliceSteps[ d ] == 0 )
+			type.decIndex( steps[ d ] );
+		else
+		{
+			sliceIndex -= sliceSteps[ d ];
+			type.updateContainer( this );
+		}
+	}
+
+	@Override
+	public void move( final int distance, final int d )
+	{
+		position[ d ] += distance;
+		if ( ( d < 2 && inPlane01 ) || sliceSteps[ d ] == 0 )
+			type.incIndex( distance * steps[ d ] );
+		else
+		{
+			sliceIndex += distance * sliceSteps[ d ];
+			type.updateContainer( this );
+		}
+	}
+
+	@Override
+	public FusedPlanarRandomAccess< T > copy()
+	{
+		return new FusedPlanarRandomAccess< T >( this );
+	}
+}
@@ -0,0 +1,273 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.view;
+
+import net.imglib2.ExtendedRandomAccessibleInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.img.NativeImg;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.outofbounds.OutOfBoundsBorderFactory;
+import net.imglib2.transform.Transform;
+import net.imglib2.transform.integer.Mixed;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Util;
+
+/**
+ * A view chain compiled into a single accessor. This is created by the
+ * {@link TransformBuilder} for the common case of at most one {@link Mixed}
+ * transform (translation, permutation, inversion, slicing) on top of an
+ * {@link ArrayImg} or {@link PlanarImg}, optionally extended by
+ * {@link OutOfBoundsBorderFactory border} out-of-bounds values.
+ *
+ * <p>
+ * Instead of stacking a {@link TranslationRandomAccess} or
+ * {@link MixedRandomAccess} on the
+ * {@link net.imglib2.outofbounds.OutOfBoundsBorder} on the image
+ * accessor, every view dimension is mapped to one image dimension, a sign,
+ * and an offset. The {@link RandomAccess} then computes the index into the
+ * storage array directly ({@link FusedArrayRandomAccess}) or the index into
+ * the current plane and the plane index ({@link FusedPlanarRandomAccess}).
+ * For border extension, the view coordinates are clamped to the range that
+ * maps into the image ({@link FusedBorderRandomAccess}).
+ * </p>
+ */
+public final class FusedRandomAccessible< T extends NativeType< T > > implements RandomAccessible< T >
+{
+	/**
+	 * Create a {@link FusedRandomAccessible} for {@code transformToSource}
+	 * applied to {@code source}, if the pattern is supported.
+	 *
+	 * @param source
+	 *            the end of the view chain, i.e., an image or an extended
+	 *            image.
+	 * @param transformToSource
+	 *            transforms view coordinates into {@code source} coordinates.
+	 *            May be {@code null} if there is no transform.
+	 * @return the fused {@link RandomAccessible} or {@code null} if the view
+	 *         chain can not be fused.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	public static < T > RandomAccessible< T > create( final RandomAccessible< T > source, final Transform transformToSource )
+	{
+		RandomAccessible< ? > img = source;
+		Interval bounds = null;
+		if ( ExtendedRandomAccessibleInterval.class.isInstance( source ) )
+		{
+			final ExtendedRandomAccessibleInterval< T, ? > extended = ( ExtendedRandomAccessibleInterval< T, ? > ) source;
+			if ( !OutOfBoundsBorderFactory.class.isInstance( extended.getOutOfBoundsFactory() ) )
+				return null;
+			bounds = extended.getSource();
+			img = extended.getSource();
+			if ( IntervalView.class.isInstance( img ) )
+				img = ( ( IntervalView< ? > ) img ).getSource();
+		}
+		else if ( transformToSource == null )
+			return null;
+
+		final boolean planar;
+		if ( img.getClass() == ArrayImg.class )
+			planar = false;
+		else if ( img.getClass() == PlanarImg.class )
+			planar = true;
+		else
+			return null;
+		if ( bounds != null )
+		{
+			if ( !Util.contains( ( Interval ) img, bounds ) )
+				return null;
+			for ( int d = 0; d < bounds.numDimensions(); ++d )
+				if ( bounds.max( d ) < bounds.min( d ) )
+					return null;
+		}
+
+		final int m = img.numDimensions();
+		final int n;
+		final int[] component;
+		final int[] sign;
+		final int[] offset;
+		final int[] fixed = new int[ m ];
+		if ( transformToSource == null )
+		{
+			n = m;
+			component = new int[ n ];
+			sign = new int[ n ];
+			offset = new int[ n ];
+			for ( int d = 0; d < n; ++d )
+			{
+				component[ d ] = d;
+				sign[ d ] = 1;
+			}
+		}
+		else
+		{
+			if ( !Mixed.class.isInstance( transformToSource ) || transformToSource.numTargetDimensions() != m )
+				return null;
+			final Mixed t = ( Mixed ) transformToSource;
+			n = t.numSourceDimensions();
+			component = new int[ n ];
+			sign = new int[ n ];
+			offset = new int[ n ];
+			for ( int d = 0; d < n; ++d )
+				component[ d ] = -1;
+			for ( int e = 0; e < m; ++e )
+			{
+				final long translation = t.getTranslation( e );
+				if ( translation != ( int ) translation )
+					return null;
+				if ( t.getComponentZero( e ) )
+				{
+					fixed[ e ] = bounds == null ? ( int ) translation : ( int ) Math.min( Math.max( translation, bounds.min( e ) ), bounds.max( e ) );
+				}
+				else
+				{
+					final int d = t.getComponentMapping( e );
+					if ( component[ d ] != -1 )
+						return null;
+					component[ d ] = e;
+					sign[ d ] = t.getComponentInversion( e ) ? -1 : 1;
+					offset[ d ] = ( int ) translation;
+				}
+			}
+			for ( int d = 0; d < n; ++d )
+				if ( component[ d ] == -1 )
+					return null;
+		}
+
+		int[] clampMin = null;
+		int[] clampMax = null;
+		if ( bounds != null )
+		{
+			// range of view coordinates that map into bounds
+			clampMin = new int[ n ];
+			clampMax = new int[ n ];
+			for ( int d = 0; d < n; ++d )
+			{
+				final int min = ( int ) bounds.min( component[ d ] );
+				final int max = ( int ) bounds.max( component[ d ] );
+				if ( sign[ d ] > 0 )
+				{
+					clampMin[ d ] = min - offset[ d ];
+					clampMax[ d ] = max - offset[ d ];
+				}
+				else
+				{
+					clampMin[ d ] = offset[ d ] - max;
+					clampMax[ d ] = offset[ d ] - min;
+				}
+			}
+		}
+
+		return new FusedRandomAccessible( ( NativeImg ) img, planar, n, component, sign, offset, clampMin, clampMax, fixed );
+	}
+
+	final NativeImg< T, ? > img;
+
+	final boolean planar;
+
+	final int n;
+
+	/**
+	 * image dimension that each view dimension maps to.
+	 */
+	final int[] component;
+
+	/**
+	 * +1 or -1 for each view dimension, depending on whether the image axis is
+	 * inverted.
+	 */
+	final int[] sign;
+
+	/**
+	 * image coordinate (along {@code component[d]}) for view coordinate 0.
+	 */
+	final int[] offset;
+
+	/**
+	 * range of view coordinates that map into the image. View coordinates
+	 * outside are clamped to this range. {@code null} if the image is not
+	 * extended.
+	 */
+	final int[] clampMin, clampMax;
+
+	/**
+	 * image coordinate for image dimensions that are not mapped to any view
+	 * dimension (sliced dimensions). Contains 0 for the others.
+	 */
+	final int[] fixed;
+
+	FusedRandomAccessible( final NativeImg< T, ? > img, final boolean planar, final int n, final int[] component, final int[] sign, final int[] offset, final int[] clampMin, final int[] clampMax, final int[] fixed )
+	{
+		this.img = img;
+		this.planar = planar;
+		this.n = n;
+		this.component = component;
+		this.sign = sign;
+		this.offset = offset;
+		this.clampMin = clampMin;
+		this.clampMax = clampMax;
+		this.fixed = fixed;
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public RandomAccess< T > randomAccess()
+	{
+		final AbstractFusedRandomAccess< T > a;
+		if ( planar )
+			a = new FusedPlanarRandomAccess< T >( this );
+		else
+			a = new FusedArrayRandomAccess< T >( this );
+		if ( clampMin == null )
+			return a;
+		else
+			return new FusedBorderRandomAccess< T >( a, clampMin, clampMax );
+	}
+
+	@Override
+	public RandomAccess< T > randomAccess( final Interval interval )
+	{
+		return randomAccess();
+	}
+}
@@ -103,10 +103,14 @@ public final class RandomAccessibleIntervalCursor< T > extends AbstractInterval
 	@Override
 	public void jumpFwd( final long steps )
 	{
+		if ( steps == 0 )
+			return;
 		index += steps;
-		maxIndexOnLine += steps / dimensions[ 0 ];
-		IntervalIndexer.indexToPosition( steps, dimensions, tmp );
-		randomAccess.move( tmp );
+		IntervalIndexer.indexToPosition( index, dimensions, tmp );
+		for ( int d = 0; d < n; ++d )
+			tmp[ d ] += min[ d ];
+		randomAccess.setPosition( tmp );
+		maxIndexOnLine = index - index % dimensions[ 0 ] + dimensions[ 0 ] - 1;
 	}
 
 	@Override
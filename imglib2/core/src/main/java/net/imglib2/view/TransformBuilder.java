@@ -79,6 +79,17 @@ public class TransformBuilder< T >
 		return new TransformBuilder< S >( interval, randomAccessible ).build();
 	}
 
+	/**
+	 * Get a RandomAccessible which provides RandomAccess to the specified
+	 * {@code interval} of {@code randomAccessible}, without fusing the view
+	 * chain if {@code fuse} is false. This is used to compare fused and
+	 * stacked RandomAccesses in tests and benchmarks.
+	 */
+	static < S > RandomAccessible< S > getEfficientRandomAccessible( final Interval interval, final RandomAccessible< S > randomAccessible, final boolean fuse )
+	{
+		return new TransformBuilder< S >( interval, randomAccessible, fuse ).build();
+	}
+
 	/**
 	 * Provides the untransformed random access.
 	 */
@@ -97,6 +108,13 @@ public class TransformBuilder< T >
 	 */
 	LinkedList< Transform > transforms;
 
+	/**
+	 * Whether {@link #build()} compiles supported view chains into a single
+	 * {@link FusedRandomAccessible}, instead of stacking RandomAccesses for
+	 * each transform and the out-of-bounds extension.
+	 */
+	final boolean fuse;
+
 	/**
 	 * Create a new TransformBuilder. Starting from {@code randomAccessible}, go
 	 * down the view hierarchy to the RandomAccessible that will provide the
@@ -114,6 +132,17 @@ public class TransformBuilder< T >
 	 */
 	TransformBuilder( final Interval interval, final RandomAccessible< T > randomAccessible )
 	{
+		this( interval, randomAccessible, true );
+	}
+
+	/**
+	 * Create a new TransformBuilder, see
+	 * {@link #TransformBuilder(Interval, RandomAccessible)}. If {@code fuse}
+	 * is false, {@link #build()} always stacks RandomAccesses.
+	 */
+	TransformBuilder( final Interval interval, final RandomAccessible< T > randomAccessible, final boolean fuse )
+	{
+		this.fuse = fuse;
 		transforms = new LinkedList< Transform >();
 		boundingBox = ( interval == null) ? null : new BoundingBox( interval );
 		// System.out.println( randomAccessible );
@@ -332,6 +361,15 @@ public class TransformBuilder< T >
 			}
 		}
 
+		// fuse translation, permutation, slicing, and border extension of
+		// ArrayImg and PlanarImg into a single RandomAccess
+		if ( fuse && transforms.size() <= 1 )
+		{
+			final RandomAccessible< T > fused = FusedRandomAccessible.create( source, transforms.isEmpty() ? null : transforms.getFirst() );
+			if ( fused != null )
+				return fused;
+		}
+
 		// build RandomAccessibles
 		RandomAccessible< T > result = source;
 		for ( final ListIterator< Transform > i = transforms.listIterator(); i.hasNext(); )
@@ -0,0 +1,153 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.numeric.integer.LongType;
+
+import org.junit.Test;
+
+public class IterableIntervalSplitsTest
+{
+	final static private long[] dimensions = new long[] { 17, 13, 11 };
+
+	private Img< LongType > createImg( final ImgFactory< LongType > factory )
+	{
+		final Img< LongType > img = factory.create( dimensions, new LongType() );
+		long i = 0;
+		for ( final LongType t : img )
+			t.set( i++ );
+		return img;
+	}
+
+	/**
+	 * Check that the parts iterate the elements of the interval in order.
+	 */
+	private void checkSplits( final IterableInterval< LongType > interval, final List< IterableInterval< LongType > > parts )
+	{
+		final Cursor< LongType > c = interval.localizingCursor();
+		final long[] expected = new long[ interval.numDimensions() ];
+		final long[] actual = new long[ interval.numDimensions() ];
+		long size = 0;
+		for ( final IterableInterval< LongType > part : parts )
+		{
+			assertTrue( part.size() > 0 );
+			size += part.size();
+			final Cursor< LongType > pc = part.localizingCursor();
+			while ( pc.hasNext() )
+			{
+				pc.fwd();
+				c.fwd();
+				assertEquals( c.get().get(), pc.get().get() );
+				c.localize( expected );
+				pc.localize( actual );
+				for ( int d = 0; d < expected.length; ++d )
+					assertEquals( expected[ d ], actual[ d ] );
+			}
+		}
+		assertEquals( interval.size(), size );
+		assertTrue( !c.hasNext() );
+	}
+
+	@Test
+	public void testArrayImg()
+	{
+		final Img< LongType > img = createImg( new ArrayImgFactory< LongType >() );
+		final List< IterableInterval< LongType > > parts = IterableIntervalSplits.split( img, 7 );
+		assertEquals( 7, parts.size() );
+		checkSplits( img, parts );
+	}
+
+	@Test
+	public void testPlanarImg()
+	{
+		final Img< LongType > img = createImg( new PlanarImgFactory< LongType >() );
+		final List< IterableInterval< LongType > > parts = IterableIntervalSplits.split( img, 4 );
+		assertEquals( 4, parts.size() );
+		for ( final IterableInterval< LongType > part : parts )
+			assertEquals( 0, part.firstElement().get() % ( 17 * 13 ) );
+		checkSplits( img, parts );
+	}
+
+	@Test
+	public void testCellImg()
+	{
+		final Img< LongType > img = createImg( new CellImgFactory< LongType >( 5 ) );
+		final List< IterableInterval< LongType > > parts = IterableIntervalSplits.split( img, 6 );
+		assertTrue( parts.size() > 1 );
+		for ( final IterableInterval< LongType > part : parts )
+		{
+			final Cursor< LongType > c = part.localizingCursor();
+			c.fwd();
+			for ( int d = 0; d < dimensions.length; ++d )
+				assertEquals( 0, c.getLongPosition( d ) % 5 );
+		}
+		checkSplits( img, parts );
+	}
+
+	@Test
+	public void testSubset()
+	{
+		final Img< LongType > img = createImg( new ArrayImgFactory< LongType >() );
+		final IterableIntervalSubset< LongType > subset = new IterableIntervalSubset< LongType >( img, 100, 1000 );
+		final List< IterableInterval< LongType > > parts = IterableIntervalSplits.split( subset, 3 );
+		assertEquals( 3, parts.size() );
+		assertEquals( 100, parts.get( 0 ).firstElement().get() );
+		checkSplits( subset, parts );
+	}
+
+	@Test
+	public void testCopyCursor()
+	{
+		final Img< LongType > img = createImg( new ArrayImgFactory< LongType >() );
+		final IterableIntervalSubset< LongType > subset = new IterableIntervalSubset< LongType >( img, 100, 1000 );
+		final Cursor< LongType > c = subset.cursor();
+		c.jumpFwd( 10 );
+		final Cursor< LongType > copy = c.copyCursor();
+		assertEquals( c.get().get(), copy.get().get() );
+		assertEquals( c.next().get(), copy.next().get() );
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+import net.imglib2.RealLocalizable;
+import net.imglib2.RealPoint;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnFlatKDTree;
+import net.imglib2.type.numeric.real.DoubleType;
+
+import org.junit.Test;
+
+/**
+ * Compares searches on {@link FlatKDTree} with exhaustive search.
+ */
+public class FlatKDTreeTest
+{
+	final static private int n = 3;
+
+	final static private int numPoints = 50000;
+
+	final static private int numQueries = 200;
+
+	private static ArrayList< RealPoint > randomPoints( final Random rnd, final int count )
+	{
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >( count );
+		for ( int i = 0; i < count; ++i )
+		{
+			final double[] p = new double[ n ];
+			for ( int d = 0; d < n; ++d )
+				p[ d ] = rnd.nextDouble();
+			points.add( new RealPoint( p ) );
+		}
+		return points;
+	}
+
+	private static double squDistance( final RealLocalizable a, final RealLocalizable b )
+	{
+		double sum = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			final double diff = a.getDoublePosition( d ) - b.getDoublePosition( d );
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	private static double[] sortedSquDistances( final ArrayList< RealPoint > points, final RealLocalizable query )
+	{
+		final double[] distances = new double[ points.size() ];
+		for ( int i = 0; i < distances.length; ++i )
+			distances[ i ] = squDistance( points.get( i ), query );
+		Arrays.sort( distances );
+		return distances;
+	}
+
+	@Test
+	public void testIteration()
+	{
+		final ArrayList< RealPoint > points = randomPoints( new Random( 1 ), numPoints );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points );
+		assertEquals( numPoints, tree.size() );
+		final HashSet< RealPoint > seen = new HashSet< RealPoint >();
+		final FlatKDTree< RealPoint >.FlatKDTreeCursor cursor = tree.cursor();
+		while ( cursor.hasNext() )
+		{
+			final RealPoint p = cursor.next();
+			assertTrue( seen.add( p ) );
+			for ( int d = 0; d < n; ++d )
+				assertEquals( p.getDoublePosition( d ), cursor.getDoublePosition( d ), 0 );
+		}
+		assertEquals( numPoints, seen.size() );
+	}
+
+	@Test
+	public void testSearches()
+	{
+		final Random rnd = new Random( 2 );
+		final ArrayList< RealPoint > points = randomPoints( rnd, numPoints );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points );
+		final NearestNeighborSearchOnFlatKDTree< RealPoint > nn = new NearestNeighborSearchOnFlatKDTree< RealPoint >( tree );
+		final int k = 10;
+		final KNearestNeighborSearchOnFlatKDTree< RealPoint > knn = new KNearestNeighborSearchOnFlatKDTree< RealPoint >( tree, k );
+		final RadiusNeighborSearchOnFlatKDTree< RealPoint > radius = new RadiusNeighborSearchOnFlatKDTree< RealPoint >( tree );
+		final double r = 0.05;
+
+		for ( final RealPoint query : randomPoints( rnd, numQueries ) )
+		{
+			final double[] expected = sortedSquDistances( points, query );
+
+			nn.search( query );
+			assertEquals( expected[ 0 ], nn.getSquareDistance(), 0 );
+			assertEquals( expected[ 0 ], squDistance( nn.getSampler().get(), query ), 0 );
+
+			knn.search( query );
+			for ( int i = 0; i < k; ++i )
+			{
+				assertEquals( expected[ i ], knn.getSquareDistance( i ), 0 );
+				assertEquals( expected[ i ], squDistance( knn.getPosition( i ), query ), 0 );
+			}
+
+			radius.search( query, r, true );
+			int expectedCount = 0;
+			while ( expectedCount < expected.length && expected[ expectedCount ] <= r * r )
+				++expectedCount;
+			assertEquals( expectedCount, radius.numNeighbors() );
+			for ( int i = 0; i < expectedCount; ++i )
+				assertEquals( expected[ i ], radius.getSquareDistance( i ), 0 );
+		}
+	}
+
+	@Test
+	public void testSortedGridWithDuplicates()
+	{
+		// sorted input with many equal coordinates
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+		for ( int z = 0; z < 20; ++z )
+			for ( int y = 0; y < 20; ++y )
+				for ( int x = 0; x < 20; ++x )
+					for ( int rep = 0; rep < 2; ++rep )
+						points.add( new RealPoint( new double[] { x, y, z } ) );
+		final double[] flat = new double[ points.size() * n ];
+		for ( int i = 0; i < points.size(); ++i )
+			for ( int d = 0; d < n; ++d )
+				flat[ i * n + d ] = points.get( i ).getDoublePosition( d );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( n, points, flat, 4 );
+		final KNearestNeighborSearchOnFlatKDTree< RealPoint > knn = new KNearestNeighborSearchOnFlatKDTree< RealPoint >( tree, 5 );
+		final Random rnd = new Random( 3 );
+		for ( int q = 0; q < numQueries; ++q )
+		{
+			final RealPoint query = new RealPoint( new double[] { rnd.nextDouble() * 20, rnd.nextDouble() * 20, rnd.nextDouble() * 20 } );
+			final double[] expected = sortedSquDistances( points, query );
+			knn.search( query );
+			for ( int i = 0; i < 5; ++i )
+				assertEquals( expected[ i ], knn.getSquareDistance( i ), 0 );
+		}
+	}
+
+	@Test
+	public void testIterableRealInterval()
+	{
+		final Random rnd = new Random( 4 );
+		final RealPointSampleList< DoubleType > list = new RealPointSampleList< DoubleType >( n );
+		final ArrayList< RealPoint > points = randomPoints( rnd, 1000 );
+		for ( final RealPoint p : points )
+			list.add( p, new DoubleType( p.getDoublePosition( 0 ) ) );
+		final FlatKDTree< DoubleType > tree = new FlatKDTree< DoubleType >( list );
+		final NearestNeighborSearchOnFlatKDTree< DoubleType > nn = new NearestNeighborSearchOnFlatKDTree< DoubleType >( tree );
+		for ( final RealPoint query : randomPoints( rnd, numQueries ) )
+		{
+			nn.search( query );
+			final double[] expected = sortedSquDistances( points, query );
+			assertEquals( expected[ 0 ], nn.getSquareDistance(), 0 );
+			assertEquals( nn.getPosition().getDoublePosition( 0 ), nn.getSampler().get().get(), 0 );
+		}
+	}
+}
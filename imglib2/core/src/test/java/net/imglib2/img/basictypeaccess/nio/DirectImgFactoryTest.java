@@ -0,0 +1,157 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.basictypeaccess.nio;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.DirectArrayImgFactory;
+import net.imglib2.img.cell.DirectCellImgFactory;
+import net.imglib2.img.planar.DirectPlanarImgFactory;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.IntervalIndexer;
+
+import org.junit.Test;
+
+/**
+ * Tests images backed by direct and memory-mapped buffers.
+ */
+public class DirectImgFactoryTest
+{
+	final long[] dimensions = new long[] { 23, 17, 5 };
+
+	final int numValues = 23 * 17 * 5;
+
+	protected void testFloats( final ImgFactory< FloatType > factory )
+	{
+		final float[] data = new float[ numValues ];
+		final Random random = new Random( 0 );
+		for ( int i = 0; i < numValues; ++i )
+			data[ i ] = random.nextFloat();
+
+		final Img< FloatType > img = factory.create( dimensions, new FloatType() );
+		final RandomAccess< FloatType > a = img.randomAccess();
+		final long[] pos = new long[ dimensions.length ];
+		for ( int i = 0; i < numValues; ++i )
+		{
+			IntervalIndexer.indexToPosition( i, dimensions, pos );
+			a.setPosition( pos );
+			a.get().set( data[ i ] );
+		}
+
+		final Cursor< FloatType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.localize( pos );
+			assertEquals( data[ ( int ) IntervalIndexer.positionToIndex( pos, dimensions ) ], c.get().get(), 0 );
+		}
+	}
+
+	protected void testBits( final ImgFactory< BitType > factory )
+	{
+		final Img< BitType > img = factory.create( dimensions, new BitType() );
+		int i = 0;
+		for ( final BitType t : img )
+			t.set( i++ % 3 == 0 );
+		i = 0;
+		for ( final BitType t : img )
+			assertEquals( i++ % 3 == 0, t.get() );
+	}
+
+	@Test
+	public void testDirectArrayImg()
+	{
+		testFloats( new DirectArrayImgFactory< FloatType >() );
+		testBits( new DirectArrayImgFactory< BitType >() );
+	}
+
+	@Test
+	public void testDirectPlanarImg()
+	{
+		testFloats( new DirectPlanarImgFactory< FloatType >() );
+		testBits( new DirectPlanarImgFactory< BitType >() );
+	}
+
+	@Test
+	public void testDirectCellImg()
+	{
+		testFloats( new DirectCellImgFactory< FloatType >( 4 ) );
+		testBits( new DirectCellImgFactory< BitType >( 4 ) );
+	}
+
+	@Test
+	public void testMappedArrayImg() throws IOException
+	{
+		final File file = File.createTempFile( "mapped", ".raw" );
+		file.deleteOnExit();
+
+		final long offset = 16;
+		final ByteBuffer buffer = ByteBuffer.allocate( ( int ) offset + 4 * numValues ).order( ByteOrder.BIG_ENDIAN );
+		for ( int i = 0; i < numValues; ++i )
+			buffer.putFloat( ( int ) offset + 4 * i, i );
+		final RandomAccessFile raf = new RandomAccessFile( file, "rw" );
+		raf.write( buffer.array() );
+		raf.close();
+
+		final Img< FloatType > img = new DirectArrayImgFactory< FloatType >( file, offset, false, ByteOrder.BIG_ENDIAN ).create( dimensions, new FloatType() );
+		int i = 0;
+		for ( final FloatType t : img )
+		{
+			assertEquals( i++, t.get(), 0 );
+			t.mul( 2 );
+		}
+
+		final Img< FloatType > planar = new DirectPlanarImgFactory< FloatType >( file, offset, true, ByteOrder.BIG_ENDIAN ).create( dimensions, new FloatType() );
+		i = 0;
+		for ( final FloatType t : planar )
+			assertEquals( 2 * i++, t.get(), 0 );
+
+		file.delete();
+	}
+}
@@ -0,0 +1,264 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.util.IntervalIndexer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link LazyCells} with a memory budget that is much smaller than the
+ * image.
+ */
+public class LazyCellsTest
+{
+	long[] dimensions;
+
+	int numValues;
+
+	int[] intData;
+
+	long intDataSum;
+
+	File directory;
+
+	/**
+	 * budget for 4 cells of 4^4 ints.
+	 */
+	final long maxCacheBytes = 4 * 4 * 256;
+
+	CellImg< IntType, ?, ? > intImg;
+
+	@Before
+	public void createSourceData() throws IOException
+	{
+		directory = File.createTempFile( "lazycells", "" );
+		directory.delete();
+
+		dimensions = new long[] { 16, 37, 5, 13 };
+
+		numValues = 1;
+		for ( int d = 0; d < dimensions.length; ++d )
+			numValues *= dimensions[ d ];
+
+		intData = new int[ numValues ];
+		intDataSum = 0;
+		final Random random = new Random( 0 );
+		for ( int i = 0; i < numValues; ++i )
+		{
+			intData[ i ] = random.nextInt();
+			intDataSum += intData[ i ];
+		}
+
+		intImg = new LazyCellImgFactory< IntType >( new DiskCellLoader( directory ), maxCacheBytes, 4 ).create( dimensions, new IntType() );
+
+		final long[] pos = new long[ dimensions.length ];
+		final RandomAccess< IntType > a = intImg.randomAccess();
+
+		for ( int i = 0; i < numValues; ++i )
+		{
+			IntervalIndexer.indexToPosition( i, dimensions, pos );
+			a.setPosition( pos );
+			a.get().set( intData[ i ] );
+		}
+	}
+
+	@After
+	public void deleteDirectory()
+	{
+		final File[] files = directory.listFiles();
+		if ( files != null )
+			for ( final File f : files )
+				f.delete();
+		directory.delete();
+	}
+
+	@Test
+	public void testCacheBudget()
+	{
+		final LazyCells< ? > cells = ( LazyCells< ? > ) intImg.getCells();
+		assertTrue( cells.getCacheBytes() <= maxCacheBytes );
+	}
+
+	@Test
+	public void testSumWithCursor()
+	{
+		long sum = 0;
+		final Cursor< IntType > cursor = intImg.cursor();
+		while ( cursor.hasNext() )
+			sum += cursor.next().get();
+
+		assertEquals( intDataSum, sum );
+	}
+
+	@Test
+	public void testRandomAccess()
+	{
+		final long[] pos = new long[ dimensions.length ];
+		final RandomAccess< IntType > a = intImg.randomAccess();
+		for ( int i = numValues - 1; i >= 0; --i )
+		{
+			IntervalIndexer.indexToPosition( i, dimensions, pos );
+			a.setPosition( pos );
+			assertEquals( intData[ i ], a.get().get() );
+		}
+	}
+
+	@Test
+	public void testFlushAndReload()
+	{
+		( ( LazyCells< ? > ) intImg.getCells() ).flush();
+
+		final CellImg< IntType, ?, ? > reloaded = new LazyCellImgFactory< IntType >( new DiskCellLoader( directory, true ), maxCacheBytes, 4 ).create( dimensions, new IntType() );
+
+		final long[] pos = new long[ dimensions.length ];
+		final Cursor< IntType > cursor = reloaded.localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			cursor.localize( pos );
+			assertEquals( intData[ ( int ) IntervalIndexer.positionToIndex( pos, dimensions ) ], cursor.get().get() );
+		}
+	}
+
+	@Test
+	public void testWriteAfterEviction()
+	{
+		final long[] pos = new long[ dimensions.length ];
+		final RandomAccess< IntType > a = intImg.randomAccess();
+		a.setPosition( pos );
+		a.get();
+
+		// evict the first cell, while a still points into it
+		long sum = 0;
+		for ( final IntType t : intImg )
+			sum += t.get();
+		assertEquals( intDataSum, sum );
+		a.get().set( 12345 );
+
+		// the cell is requested again while a uses it, its data is reused
+		final RandomAccess< IntType > b = intImg.randomAccess();
+		b.setPosition( pos );
+		assertEquals( 12345, b.get().get() );
+
+		// and saved again when it is evicted
+		for ( final IntType t : intImg )
+			t.get();
+		( ( LazyCells< ? > ) intImg.getCells() ).flush();
+		final RandomAccess< IntType > c = new LazyCellImgFactory< IntType >( new DiskCellLoader( directory, true ), maxCacheBytes, 4 ).create( dimensions, new IntType() ).randomAccess();
+		c.setPosition( pos );
+		assertEquals( 12345, c.get().get() );
+		assertEquals( 12345, a.get().get() );
+	}
+
+	@Test
+	public void testClose()
+	{
+		final File parent = new File( directory.getPath() + "-images" );
+		try
+		{
+			final CellImg< IntType, ?, ? > img = new LazyCellImgFactory< IntType >( new DiskCellLoaderFactory( parent ), maxCacheBytes, 4 ).create( dimensions, new IntType() );
+			for ( final IntType t : img )
+				t.set( 1 );
+			assertEquals( 1, parent.listFiles().length );
+			assertTrue( parent.listFiles()[ 0 ].listFiles().length > 0 );
+
+			( ( LazyCells< ? > ) img.getCells() ).close();
+			assertEquals( 0, parent.listFiles().length );
+		}
+		finally
+		{
+			delete( parent );
+		}
+	}
+
+	@Test
+	public void testCopyHasOwnStorage()
+	{
+		final File parent = new File( directory.getPath() + "-images" );
+		final CellImg< IntType, ?, ? > img = new LazyCellImgFactory< IntType >( new DiskCellLoaderFactory( parent ), maxCacheBytes, 4 ).create( dimensions, new IntType() );
+		try
+		{
+			final long[] pos = new long[ dimensions.length ];
+			final Cursor< IntType > c = img.localizingCursor();
+			while ( c.hasNext() )
+			{
+				c.fwd();
+				c.localize( pos );
+				c.get().set( intData[ ( int ) IntervalIndexer.positionToIndex( pos, dimensions ) ] );
+			}
+
+			final CellImg< IntType, ?, ? > copy = img.copy();
+			for ( final IntType t : copy )
+				t.set( 0 );
+			( ( LazyCells< ? > ) copy.getCells() ).flush();
+			( ( LazyCells< ? > ) img.getCells() ).flush();
+
+			long sum = 0;
+			for ( final IntType t : img )
+				sum += t.get();
+			assertEquals( intDataSum, sum );
+			for ( final IntType t : copy )
+				assertEquals( 0, t.get() );
+		}
+		finally
+		{
+			delete( parent );
+		}
+	}
+
+	private static void delete( final File file )
+	{
+		final File[] files = file.listFiles();
+		if ( files != null )
+			for ( final File f : files )
+				delete( f );
+		file.delete();
+	}
+}
@@ -0,0 +1,238 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.sparse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.type.numeric.integer.IntType;
+
+import org.junit.Test;
+
+public class PrimitiveNtreeTest
+{
+	final static private long[] dimensions = new long[] { 37, 20, 9 };
+
+	private static int index( final long[] pos )
+	{
+		return ( int ) ( pos[ 0 ] + dimensions[ 0 ] * ( pos[ 1 ] + dimensions[ 1 ] * pos[ 2 ] ) );
+	}
+
+	private static void fillDense( final long[] dense, final long[] min, final long[] max, final long value )
+	{
+		final long[] pos = new long[ 3 ];
+		for ( pos[ 2 ] = min[ 2 ]; pos[ 2 ] <= max[ 2 ]; ++pos[ 2 ] )
+			for ( pos[ 1 ] = min[ 1 ]; pos[ 1 ] <= max[ 1 ]; ++pos[ 1 ] )
+				for ( pos[ 0 ] = min[ 0 ]; pos[ 0 ] <= max[ 0 ]; ++pos[ 0 ] )
+					dense[ index( pos ) ] = value;
+	}
+
+	private static void assertEqualsDense( final long[] dense, final PrimitiveNtree t )
+	{
+		final long[] pos = new long[ 3 ];
+		for ( pos[ 2 ] = 0; pos[ 2 ] < dimensions[ 2 ]; ++pos[ 2 ] )
+			for ( pos[ 1 ] = 0; pos[ 1 ] < dimensions[ 1 ]; ++pos[ 1 ] )
+				for ( pos[ 0 ] = 0; pos[ 0 ] < dimensions[ 0 ]; ++pos[ 0 ] )
+					assertEquals( dense[ index( pos ) ], t.getValue( pos ) );
+	}
+
+	private static void randomBox( final Random rnd, final long[] min, final long[] max )
+	{
+		for ( int d = 0; d < 3; ++d )
+		{
+			final long a = rnd.nextInt( ( int ) dimensions[ d ] );
+			final long b = rnd.nextInt( ( int ) dimensions[ d ] );
+			min[ d ] = Math.min( a, b );
+			max[ d ] = Math.max( a, b );
+		}
+	}
+
+	@Test
+	public void testFill()
+	{
+		final Random rnd = new Random( 1 );
+		final PrimitiveNtree t = new PrimitiveNtree( dimensions, 0 );
+		final long[] dense = new long[ ( int ) ( dimensions[ 0 ] * dimensions[ 1 ] * dimensions[ 2 ] ) ];
+		final long[] min = new long[ 3 ];
+		final long[] max = new long[ 3 ];
+		for ( int i = 0; i < 50; ++i )
+		{
+			randomBox( rnd, min, max );
+			final long value = rnd.nextInt( 3 );
+			t.fill( min, max, value );
+			fillDense( dense, min, max, value );
+			assertEqualsDense( dense, t );
+		}
+
+		// filling everything collapses to the root
+		t.fill( new long[ 3 ], new long[] { 36, 19, 8 }, 7 );
+		assertFalse( t.hasChildren( PrimitiveNtree.ROOT ) );
+		assertEquals( 1, t.numNodes() );
+	}
+
+	@Test
+	public void testDeferredMerge()
+	{
+		final Random rnd = new Random( 2 );
+		final PrimitiveNtree merged = new PrimitiveNtree( dimensions, 0 );
+		final PrimitiveNtree deferred = new PrimitiveNtree( dimensions, 0 );
+		final long[] pos = new long[ 3 ];
+		for ( int i = 0; i < 5000; ++i )
+		{
+			for ( int d = 0; d < 3; ++d )
+				pos[ d ] = rnd.nextInt( ( int ) dimensions[ d ] );
+			final long value = pos[ 0 ] < 16 ? 1 : rnd.nextInt( 2 );
+			merged.setValue( pos, value );
+			deferred.setValue( pos, value, false );
+		}
+		deferred.merge( new long[ 3 ], new long[] { 36, 19, 8 } );
+		assertEquals( merged.numNodes(), deferred.numNodes() );
+		for ( pos[ 2 ] = 0; pos[ 2 ] < dimensions[ 2 ]; ++pos[ 2 ] )
+			for ( pos[ 1 ] = 0; pos[ 1 ] < dimensions[ 1 ]; ++pos[ 1 ] )
+				for ( pos[ 0 ] = 0; pos[ 0 ] < dimensions[ 0 ]; ++pos[ 0 ] )
+					assertEquals( merged.getValue( pos ), deferred.getValue( pos ) );
+	}
+
+	@Test
+	public void testLeafCursor()
+	{
+		final Random rnd = new Random( 3 );
+		final PrimitiveNtree t = new PrimitiveNtree( dimensions, 0 );
+		final long[] min = new long[ 3 ];
+		final long[] max = new long[ 3 ];
+		for ( int i = 0; i < 20; ++i )
+		{
+			randomBox( rnd, min, max );
+			t.fill( min, max, i );
+		}
+
+		final int[] visited = new int[ ( int ) ( dimensions[ 0 ] * dimensions[ 1 ] * dimensions[ 2 ] ) ];
+		final NtreeLeafCursor c = new NtreeLeafCursor( t );
+		final long[] pos = new long[ 3 ];
+		long numPixels = 0;
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			numPixels += c.size();
+			for ( pos[ 2 ] = c.min( 2 ); pos[ 2 ] <= c.max( 2 ); ++pos[ 2 ] )
+				for ( pos[ 1 ] = c.min( 1 ); pos[ 1 ] <= c.max( 1 ); ++pos[ 1 ] )
+					for ( pos[ 0 ] = c.min( 0 ); pos[ 0 ] <= c.max( 0 ); ++pos[ 0 ] )
+					{
+						++visited[ index( pos ) ];
+						assertEquals( t.getValue( pos ), c.getValue() );
+					}
+		}
+		assertEquals( visited.length, numPixels );
+		for ( final int v : visited )
+			assertEquals( 1, v );
+	}
+
+	@Test
+	public void testImgCopy()
+	{
+		final Random rnd = new Random( 4 );
+		final NtreeImg< IntType, ? > img = new NtreeImgFactory< IntType >().create( dimensions, new IntType() );
+		final RandomAccess< IntType > a = img.randomAccess();
+		for ( int i = 0; i < 1000; ++i )
+		{
+			for ( int d = 0; d < 3; ++d )
+				a.setPosition( rnd.nextInt( ( int ) dimensions[ d ] ), d );
+			a.get().set( rnd.nextInt( 4 ) - 2 );
+		}
+		final NtreeImg< IntType, ? > copy = img.copy();
+		final Cursor< IntType > c = img.localizingCursor();
+		final RandomAccess< IntType > b = copy.randomAccess();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			b.setPosition( c );
+			assertEquals( c.get().get(), b.get().get() );
+		}
+	}
+
+	@Test
+	public void testPrimitiveNtreeIsLive()
+	{
+		final NtreeImg< IntType, ? > img = new NtreeImgFactory< IntType >().create( dimensions, new IntType() );
+		final PrimitiveNtree t = img.getPrimitiveNtree();
+		final long[] pos = new long[] { 3, 5, 7 };
+		final RandomAccess< IntType > a = img.randomAccess();
+		a.setPosition( pos );
+		a.get().set( 42 );
+		assertEquals( 42, t.getValue( pos ) );
+		t.fill( new long[ 3 ], pos, -3 );
+		assertEquals( -3, a.get().get() );
+	}
+
+	@Test
+	@SuppressWarnings( "deprecation" )
+	public void testNtreeConversion()
+	{
+		final Random rnd = new Random( 5 );
+		final ShortNtree access = new ShortNtree( dimensions, new long[ 3 ], ( short ) 0 );
+		final PrimitiveNtree t = access.getCurrentStoragePrimitiveNtree();
+		final long[] min = new long[ 3 ];
+		final long[] max = new long[ 3 ];
+		for ( int i = 0; i < 20; ++i )
+		{
+			randomBox( rnd, min, max );
+			t.fill( min, max, -i );
+		}
+
+		final Ntree< Short > ntree = access.getCurrentStorageNtree();
+		final PrimitiveNtree converted = new ShortNtree( ntree, new long[ 3 ] ).getCurrentStoragePrimitiveNtree();
+		assertEquals( t.numNodes(), converted.numNodes() );
+		final long[] pos = new long[ 3 ];
+		for ( pos[ 2 ] = 0; pos[ 2 ] < dimensions[ 2 ]; ++pos[ 2 ] )
+			for ( pos[ 1 ] = 0; pos[ 1 ] < dimensions[ 1 ]; ++pos[ 1 ] )
+				for ( pos[ 0 ] = 0; pos[ 0 ] < dimensions[ 0 ]; ++pos[ 0 ] )
+				{
+					assertEquals( t.getValue( pos ), ntree.getNode( pos ).getValue().longValue() );
+					assertEquals( t.getValue( pos ), converted.getValue( pos ) );
+				}
+
+		// the Ntree is a copy
+		final int numNodes = t.numNodes();
+		ntree.getRootNode().setChildren( null );
+		ntree.getRootNode().setValue( ( short ) 1 );
+		assertEquals( numNodes, t.numNodes() );
+	}
+}
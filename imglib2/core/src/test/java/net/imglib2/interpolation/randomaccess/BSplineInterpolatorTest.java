@@ -0,0 +1,186 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.RealRandomAccessible;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link BSplineInterpolator} and {@link BSplineCoefficients}.
+ */
+public class BSplineInterpolatorTest
+{
+	static ArrayImg< DoubleType, ? > createRandom( final long... dimensions )
+	{
+		final ArrayImg< DoubleType, ? > img = ArrayImgs.doubles( dimensions );
+		final Random random = new Random( 1 );
+		for ( final DoubleType t : img )
+			t.set( random.nextDouble() * 100 );
+		return img;
+	}
+
+	static double smooth( final double x, final double y, final double z )
+	{
+		return ( Math.sin( 2 * Math.PI * x / 7 ) + Math.sin( 2 * Math.PI * y / 12 ) + Math.sin( 2 * Math.PI * z / 5 ) ) / 3;
+	}
+
+	@Test
+	public void testInterpolatesSamples()
+	{
+		final long[][] dimensions = new long[][] { { 1 }, { 2 }, { 37 }, { 20, 13 }, { 9, 1, 11 } };
+		for ( final long[] dim : dimensions )
+		{
+			final ArrayImg< DoubleType, ? > img = createRandom( dim );
+			// interpolate a translated interval, to test its min offset
+			final long[] offset = new long[ dim.length ];
+			for ( int d = 0; d < dim.length; ++d )
+				offset[ d ] = 3 - 2 * d;
+			final RandomAccessibleInterval< DoubleType > source = Views.translate( img, offset );
+			final RealRandomAccess< DoubleType > a = Views.interpolate( Views.extendMirrorSingle( source ), new BSplineInterpolatorFactory< DoubleType >() ).realRandomAccess();
+			final Cursor< DoubleType > c = Views.iterable( source ).localizingCursor();
+			while ( c.hasNext() )
+			{
+				c.fwd();
+				a.setPosition( c );
+				assertEquals( c.get().get(), a.get().get(), 1e-8 );
+			}
+		}
+	}
+
+	@Test
+	public void testParallelPrefilter()
+	{
+		final ArrayImg< DoubleType, ? > img = createRandom( 31, 17, 9 );
+		final BSplineCoefficients single = new BSplineCoefficients( img, 1 );
+		final BSplineCoefficients parallel = new BSplineCoefficients( img, 4 );
+		assertArrayEquals( single.getCoefficients(), parallel.getCoefficients(), 0 );
+	}
+
+	@Test
+	public void testAccuracy()
+	{
+		final ArrayImg< DoubleType, ? > img = ArrayImgs.doubles( 32, 32, 32 );
+		final Cursor< DoubleType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.get().set( smooth( c.getDoublePosition( 0 ), c.getDoublePosition( 1 ), c.getDoublePosition( 2 ) ) );
+		}
+		final RealRandomAccess< DoubleType > spline = Views.interpolate( Views.extendMirrorSingle( img ), new BSplineInterpolatorFactory< DoubleType >() ).realRandomAccess();
+		final RealRandomAccess< DoubleType > linear = Views.interpolate( Views.extendMirrorSingle( img ), new NLinearInterpolatorFactory< DoubleType >() ).realRandomAccess();
+
+		final Random random = new Random( 2 );
+		final double[] p = new double[ 3 ];
+		double splineError = 0;
+		double linearError = 0;
+		for ( int i = 0; i < 1000; ++i )
+		{
+			for ( int d = 0; d < 3; ++d )
+				p[ d ] = 4 + random.nextDouble() * 23;
+			final double expected = smooth( p[ 0 ], p[ 1 ], p[ 2 ] );
+			spline.setPosition( p );
+			linear.setPosition( p );
+			splineError = Math.max( splineError, Math.abs( spline.get().get() - expected ) );
+			linearError = Math.max( linearError, Math.abs( linear.get().get() - expected ) );
+		}
+		assertTrue( splineError < 0.01 );
+		assertTrue( splineError < linearError / 5 );
+	}
+
+	@Test
+	public void testCache()
+	{
+		final ArrayImg< DoubleType, ? > img = createRandom( 10, 10 );
+		final BSplineInterpolatorFactory< DoubleType > cached = new BSplineInterpolatorFactory< DoubleType >();
+		final RealRandomAccessible< DoubleType > interpolant = Views.interpolate( Views.extendMirrorSingle( img ), cached );
+		final BSplineInterpolator< DoubleType > a = ( BSplineInterpolator< DoubleType > ) interpolant.realRandomAccess();
+		final BSplineInterpolator< DoubleType > b = ( BSplineInterpolator< DoubleType > ) interpolant.realRandomAccess();
+		assertSame( a.coefficients, b.coefficients );
+		assertSame( cached.getCoefficients( img ), cached.getCoefficients( img ) );
+		final BSplineCoefficients before = cached.getCoefficients( img );
+		cached.clearCache();
+		assertNotSame( before, cached.getCoefficients( img ) );
+
+		final BSplineInterpolatorFactory< DoubleType > uncached = new BSplineInterpolatorFactory< DoubleType >( false );
+		assertNotSame( uncached.getCoefficients( img ), uncached.getCoefficients( img ) );
+	}
+
+	@Test
+	public void testClipIntegerTypes()
+	{
+		// a step edge, the spline overshoots on both sides of it
+		final byte[] step = new byte[] { 0, 0, 0, 0, ( byte ) 255, ( byte ) 255, ( byte ) 255, ( byte ) 255 };
+		final ArrayImg< UnsignedByteType, ? > img = ArrayImgs.unsignedBytes( step, step.length );
+		final ArrayImg< DoubleType, ? > doubles = ArrayImgs.doubles( step.length );
+		final Cursor< UnsignedByteType > c = img.cursor();
+		for ( final DoubleType t : doubles )
+			t.set( c.next().get() );
+
+		final RealRandomAccess< UnsignedByteType > a = Views.interpolate( Views.extendMirrorSingle( img ), new BSplineInterpolatorFactory< UnsignedByteType >() ).realRandomAccess();
+		final RealRandomAccess< DoubleType > unclipped = Views.interpolate( Views.extendMirrorSingle( doubles ), new BSplineInterpolatorFactory< DoubleType >() ).realRandomAccess();
+		double minUnclipped = 0;
+		double maxUnclipped = 255;
+		for ( double x = 0; x <= step.length - 1; x += 0.125 )
+		{
+			a.setPosition( x, 0 );
+			unclipped.setPosition( x, 0 );
+			final double expected = Math.max( 0, Math.min( 255, unclipped.get().get() ) );
+			assertEquals( expected, a.get().get(), 0.5 );
+			minUnclipped = Math.min( minUnclipped, unclipped.get().get() );
+			maxUnclipped = Math.max( maxUnclipped, unclipped.get().get() );
+		}
+		assertTrue( minUnclipped < -1 );
+		assertTrue( maxUnclipped > 256 );
+	}
+}
@@ -0,0 +1,166 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Compare {@link GridResampler} to evaluating the interpolators per pixel.
+ */
+public class GridResamplerTest
+{
+	final double[] scale = new double[] { 0.37, 0.5, 1.61 };
+
+	final double[] offset = new double[] { 0.3, -0.2, 0.1 };
+
+	final long[] targetMin = new long[] { -3, 0, 2 };
+
+	final long[] targetMax = new long[] { 40, 24, 7 };
+
+	static RandomAccessible< FloatType > createSource()
+	{
+		final ArrayImg< FloatType, ? > img = ArrayImgs.floats( 20, 15, 10 );
+		final Random random = new Random( 1 );
+		for ( final FloatType t : img )
+			t.set( random.nextFloat() * 100 );
+		return Views.extendMirrorSingle( img );
+	}
+
+	/**
+	 * @return the maximum absolute difference between <em>target</em> and
+	 *         the values of the interpolator created by <em>factory</em> at
+	 *         the grid positions.
+	 */
+	double maxDifference( final SeparableInterpolatorFactory< FloatType > factory, final RandomAccessible< FloatType > source, final RandomAccessibleInterval< FloatType > target )
+	{
+		final RealRandomAccess< FloatType > access = factory.create( source );
+		final Cursor< FloatType > c = Views.iterable( target ).localizingCursor();
+		double maxDiff = 0;
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			for ( int d = 0; d < 3; ++d )
+				access.setPosition( c.getLongPosition( d ) * scale[ d ] + offset[ d ], d );
+			maxDiff = Math.max( maxDiff, Math.abs( access.get().get() - c.get().get() ) );
+		}
+		return maxDiff;
+	}
+
+	@Test
+	public void testNLinear3D()
+	{
+		final RandomAccessible< FloatType > source = createSource();
+		final NLinearInterpolatorFactory< FloatType > factory = new NLinearInterpolatorFactory< FloatType >();
+		assertTrue( factory.create( source ) instanceof NLinearInterpolator3D );
+
+		final RandomAccessibleInterval< FloatType > target = Views.interval( ArrayImgs.floats( 60, 30, 20 ), targetMin, targetMax );
+		factory.resample( source, scale, offset, target );
+		assertEquals( 0, maxDifference( factory, source, target ), 1e-4 );
+	}
+
+	@Test
+	public void testLanczos3D()
+	{
+		final RandomAccessible< FloatType > source = createSource();
+		for ( int alpha = 2; alpha <= 3; ++alpha )
+		{
+			final LanczosInterpolatorFactory< FloatType > factory = new LanczosInterpolatorFactory< FloatType >( alpha, 10, 90 );
+			final RandomAccessibleInterval< FloatType > target = Views.interval( ArrayImgs.floats( 60, 30, 20 ), targetMin, targetMax );
+			factory.resample( source, scale, offset, target );
+			assertEquals( 0, maxDifference( factory, source, target ), 1e-3 );
+		}
+	}
+
+	@Test
+	public void testTiles()
+	{
+		final RandomAccessible< FloatType > source = createSource();
+		final SeparableInterpolatorFactory< FloatType > lanczos = new LanczosInterpolatorFactory< FloatType >( 3, 10, 90 );
+		final SeparableInterpolatorFactory< FloatType > linear = new NLinearInterpolatorFactory< FloatType >();
+		for ( final SeparableInterpolatorFactory< FloatType > factory : new SeparableInterpolatorFactory[] { lanczos, linear } )
+		{
+			final ArrayImg< FloatType, ? > whole = ArrayImgs.floats( 60, 30, 20 );
+			final ArrayImg< FloatType, ? > tiled = ArrayImgs.floats( 60, 30, 20 );
+			GridResampler.resample( factory, source, scale, offset, Views.interval( whole, targetMin, targetMax ), 10, 90, 2 );
+			GridResampler.resample( factory, source, scale, offset, Views.interval( tiled, targetMin, targetMax ), 10, 90, 2, 500 );
+			final Cursor< FloatType > c = tiled.cursor();
+			for ( final FloatType t : whole )
+				assertEquals( t.get(), c.next().get(), 0 );
+		}
+	}
+
+	@Test
+	public void testPerPixelFallback()
+	{
+		final ArrayImg< ARGBType, ? > img = ArrayImgs.argbs( 10, 10 );
+		final Random random = new Random( 2 );
+		for ( final ARGBType t : img )
+			t.set( random.nextInt() );
+		final RandomAccessible< ARGBType > source = Views.extendBorder( img );
+
+		final NLinearInterpolatorFactory< ARGBType > factory = new NLinearInterpolatorFactory< ARGBType >();
+		final ArrayImg< ARGBType, ? > target = ArrayImgs.argbs( 25, 25 );
+		final double[] s = new double[] { 0.4, 0.4 };
+		final double[] o = new double[] { -0.5, 0.25 };
+		factory.resample( source, s, o, target );
+
+		final RealRandomAccess< ARGBType > access = factory.create( source );
+		final Cursor< ARGBType > c = target.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			for ( int d = 0; d < 2; ++d )
+				access.setPosition( c.getLongPosition( d ) * s[ d ] + o[ d ], d );
+			assertEquals( access.get().get(), c.get().get() );
+		}
+	}
+}
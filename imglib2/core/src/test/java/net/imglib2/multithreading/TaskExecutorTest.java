@@ -0,0 +1,156 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.multithreading;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class TaskExecutorTest
+{
+	@Test
+	public void testDivideIntoChunks()
+	{
+		final long size = 1003;
+		final List< Chunk > chunks = TaskExecutor.divideIntoChunks( size, 10 );
+		assertEquals( 10, chunks.size() );
+		long next = 0;
+		for ( final Chunk chunk : chunks )
+		{
+			assertEquals( next, chunk.getStartPosition() );
+			assertTrue( chunk.getLoopSize() == 100 || chunk.getLoopSize() == 101 );
+			next += chunk.getLoopSize();
+		}
+		assertEquals( size, next );
+
+		assertEquals( 3, TaskExecutor.divideIntoChunks( 3, 10 ).size() );
+	}
+
+	@Test
+	public void testChunkSum()
+	{
+		final TaskExecutor executor = new TaskExecutor( 3 );
+		final long size = 100000;
+		final AtomicLong sum = new AtomicLong();
+		executor.run( size, 8, new ChunkTask()
+		{
+			@Override
+			public void run( final Chunk chunk )
+			{
+				long s = 0;
+				for ( long i = chunk.getStartPosition(); i < chunk.getStartPosition() + chunk.getLoopSize(); ++i )
+					s += i;
+				sum.addAndGet( s );
+			}
+		} );
+		assertEquals( size * ( size - 1 ) / 2, sum.get() );
+		executor.shutdown();
+	}
+
+	@Test
+	public void testNestedSubmission()
+	{
+		final TaskExecutor executor = new TaskExecutor( 1 );
+		final AtomicInteger count = new AtomicInteger();
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >();
+		for ( int i = 0; i < 4; ++i )
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					executor.run( 10, 4, new ChunkTask()
+					{
+						@Override
+						public void run( final Chunk chunk )
+						{
+							count.addAndGet( ( int ) chunk.getLoopSize() );
+						}
+					} );
+				}
+			} );
+		executor.run( tasks, 4 );
+		assertEquals( 40, count.get() );
+		executor.shutdown();
+	}
+
+	@Test
+	public void testCancel()
+	{
+		final TaskExecutor executor = new TaskExecutor( 2 );
+		final AtomicInteger count = new AtomicInteger();
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >();
+		for ( int i = 0; i < 100; ++i )
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					count.incrementAndGet();
+				}
+			} );
+		final TaskExecutor.Task task = executor.submit( tasks, 1 );
+		task.cancel();
+		task.join();
+		assertTrue( task.isDone() );
+		assertTrue( count.get() < 100 );
+		executor.shutdown();
+	}
+
+	@Test( expected = IllegalStateException.class )
+	public void testException()
+	{
+		final TaskExecutor executor = new TaskExecutor( 2 );
+		final ArrayList< Runnable > tasks = new ArrayList< Runnable >();
+		for ( int i = 0; i < 10; ++i )
+			tasks.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					throw new IllegalStateException();
+				}
+			} );
+		executor.run( tasks, 2 );
+	}
+}
@@ -40,8 +40,14 @@ import static org.junit.Assert.*;
 
 import java.util.ArrayList;
 
+import net.imglib2.Cursor;
+import net.imglib2.RealPoint;
 import net.imglib2.RealRandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.util.IntervalIndexer;
 
 import org.junit.Test;
 
@@ -195,4 +201,156 @@ public class CompositeRegionOfInterestTest {
 		assertEquals(6, c.realMax(0), 0);
 		assertEquals(9, c.realMax(1), 0);
 	}
+
+	/**
+	 * A disk that is not iterable by itself.
+	 */
+	private static class Disk extends AbstractRegionOfInterest {
+		final double x, y, r;
+
+		Disk(double x, double y, double r) {
+			super(2);
+			this.x = x;
+			this.y = y;
+			this.r = r;
+		}
+
+		@Override
+		public boolean contains(double[] position) {
+			final double dx = position[0] - x;
+			final double dy = position[1] - y;
+			return dx * dx + dy * dy <= r * r;
+		}
+
+		@Override
+		protected void getRealExtrema(double[] minima, double[] maxima) {
+			minima[0] = x - r;
+			minima[1] = y - r;
+			maxima[0] = x + r;
+			maxima[1] = y + r;
+		}
+
+		@Override
+		public void move(double displacement, int d) {
+		}
+	}
+
+	/**
+	 * Mark the pixels of a member: iterated pixels if the member is
+	 * iterable, else pixels that it contains.
+	 */
+	private boolean[] getMask(RegionOfInterest roi, Img<IntType> img) {
+		final long[] dimensions = new long[img.numDimensions()];
+		img.dimensions(dimensions);
+		final boolean[] mask = new boolean[(int) img.size()];
+		final long[] position = new long[dimensions.length];
+		if (roi instanceof IterableRegionOfInterest) {
+			Cursor<IntType> c = ((IterableRegionOfInterest) roi).getIterableIntervalOverROI(img).localizingCursor();
+			while (c.hasNext()) {
+				c.fwd();
+				c.localize(position);
+				mask[(int) IntervalIndexer.positionToIndex(position, dimensions)] = true;
+			}
+		} else {
+			RealRandomAccess<BitType> ra = roi.realRandomAccess();
+			for (int i = 0; i < mask.length; i++) {
+				IntervalIndexer.indexToPosition(i, dimensions, position);
+				ra.setPosition(position);
+				mask[i] = ra.get().get();
+			}
+		}
+		return mask;
+	}
+
+	private void assertIteration(CompositeRegionOfInterest c, boolean[] expected, Img<IntType> img) {
+		final long[] dimensions = new long[img.numDimensions()];
+		img.dimensions(dimensions);
+		final boolean[] actual = new boolean[expected.length];
+		final long[] position = new long[dimensions.length];
+		long count = 0;
+		int previousIndex = -1;
+		Cursor<IntType> cursor = c.getIterableIntervalOverROI(img).localizingCursor();
+		while (cursor.hasNext()) {
+			cursor.fwd();
+			cursor.localize(position);
+			final int index = (int) IntervalIndexer.positionToIndex(position, dimensions);
+			assertTrue("raster order", index > previousIndex);
+			assertFalse(actual[index]);
+			actual[index] = true;
+			previousIndex = index;
+			++count;
+		}
+		long expectedCount = 0;
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals("pixel " + i, expected[i], actual[i]);
+			if (expected[i])
+				++expectedCount;
+		}
+		assertEquals(expectedCount, count);
+		assertEquals(expectedCount, c.getIterableIntervalOverROI(img).size());
+	}
+
+	/**
+	 * Test iterating composites of iterable and non-iterable members
+	 */
+	@Test
+	public void testIteration() {
+		Img<IntType> img = new ArrayImgFactory<IntType>().create(new long[] {40, 30}, new IntType());
+		RectangleRegionOfInterest rect = new RectangleRegionOfInterest(new double[] {3, 4}, new double[] {20, 15});
+		EllipseRegionOfInterest ellipse = new EllipseRegionOfInterest(new RealPoint(new double[] {22, 14}), new double[] {9, 6});
+		PolygonRegionOfInterest polygon = new PolygonRegionOfInterest();
+		polygon.addVertex(0, new RealPoint(new double[] {10, 2}));
+		polygon.addVertex(1, new RealPoint(new double[] {35, 8}));
+		polygon.addVertex(2, new RealPoint(new double[] {20, 27}));
+		polygon.addVertex(3, new RealPoint(new double[] {22, 12}));
+		Disk disk = new Disk(14, 18, 7.5);
+
+		boolean[] r = getMask(rect, img);
+		boolean[] e = getMask(ellipse, img);
+		boolean[] p = getMask(polygon, img);
+		boolean[] d = getMask(disk, img);
+
+		CompositeRegionOfInterest c = new CompositeRegionOfInterest(rect);
+		c.or(ellipse);
+		c.xor(polygon);
+		c.not(disk);
+		boolean[] expected = new boolean[r.length];
+		for (int i = 0; i < expected.length; i++)
+			expected[i] = ((r[i] || e[i]) ^ p[i]) && !d[i];
+		assertIteration(c, expected, img);
+
+		// modifying the composite updates the rasters
+		EllipseRegionOfInterest ellipse2 = new EllipseRegionOfInterest(new RealPoint(new double[] {18, 12}), new double[] {12, 10});
+		boolean[] e2 = getMask(ellipse2, img);
+		c.and(ellipse2);
+		for (int i = 0; i < expected.length; i++)
+			expected[i] = expected[i] && e2[i];
+		assertIteration(c, expected, img);
+
+		// nested composite
+		CompositeRegionOfInterest outer = new CompositeRegionOfInterest(disk);
+		outer.or(c);
+		for (int i = 0; i < expected.length; i++)
+			expected[i] = expected[i] || d[i];
+		assertIteration(outer, expected, img);
+	}
+
+	/**
+	 * Test iterating a 3D composite
+	 */
+	@Test
+	public void testIteration3D() {
+		Img<IntType> img = new ArrayImgFactory<IntType>().create(new long[] {20, 15, 10}, new IntType());
+		RectangleRegionOfInterest rect = new RectangleRegionOfInterest(new double[] {2, 3, 1}, new double[] {12, 8, 5});
+		EllipseRegionOfInterest ellipse = new EllipseRegionOfInterest(new RealPoint(new double[] {10, 8, 5}), new double[] {6, 5, 4});
+		boolean[] r = getMask(rect, img);
+		boolean[] e = getMask(ellipse, img);
+
+		CompositeRegionOfInterest c = new CompositeRegionOfInterest(rect);
+		c.xor(ellipse);
+		boolean[] expected = new boolean[r.length];
+		for (int i = 0; i < expected.length; i++)
+			expected[i] = r[i] ^ e[i];
+		assertIteration(c, expected, img);
+	}
 }
@@ -464,4 +464,57 @@ public class PolygonRegionOfInterestTest {
 			}
 		}
 	}
+
+	private static long sum(IterableInterval<IntType> ii) {
+		long sum = 0;
+		for (IntType t : ii)
+			sum += t.get();
+		return sum;
+	}
+
+	/**
+	 * Iterate a polygon with cursors in several threads and with interleaved
+	 * cursors in one thread, which work on different raster lines.
+	 */
+	@Test
+	public void testConcurrentCursors() throws InterruptedException {
+		double [][] points = { { 1.5, 0.5 }, { 90.2, 10.7 }, { 60.3, 95.1 }, { 40, 50 }, { 5.5, 70.2 } };
+		final PolygonRegionOfInterest p = makePolygon(points);
+		final Img<IntType> img = makeNumberedArray(100, 100);
+		final long expected = sum(p.getIterableIntervalOverROI(img));
+
+		final long [] sums = new long[4];
+		Thread [] threads = new Thread[sums.length];
+		for (int i = 0; i < threads.length; i++) {
+			final int index = i;
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 20; j++)
+						sums[index] += sum(p.getIterableIntervalOverROI(img));
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+		for (long s : sums)
+			assertEquals(20 * expected, s);
+
+		IterableInterval<IntType> ii = p.getIterableIntervalOverROI(img);
+		long half = ii.size() / 2;
+		Cursor<IntType> c1 = ii.cursor();
+		Cursor<IntType> c2 = ii.cursor();
+		long firstHalf = 0;
+		for (long i = 0; i < half; i++)
+			firstHalf += c2.next().get();
+		long sum1 = 0, sum2 = 0;
+		while (c1.hasNext()) {
+			sum1 += c1.next().get();
+			if (c2.hasNext())
+				sum2 += c2.next().get();
+		}
+		assertEquals(expected, sum1);
+		assertEquals(expected, firstHalf + sum2);
+	}
 }
@@ -0,0 +1,307 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Compare {@link BulkOps} on array, planar, and cell images to the results of
+ * the corresponding {@link RealType} methods.
+ */
+public class BulkOpsTest
+{
+	static final long[] dimensions = new long[] { 13, 7, 5 };
+
+	@SuppressWarnings( "rawtypes" )
+	static final RealType[] types = new RealType[] { new ByteType(), new UnsignedByteType(), new ShortType(), new UnsignedShortType(), new IntType(), new UnsignedIntType(), new LongType(), new FloatType(), new DoubleType() };
+
+	@SuppressWarnings( "rawtypes" )
+	static final ImgFactory[] factories = new ImgFactory[] { new ArrayImgFactory(), new PlanarImgFactory(), new CellImgFactory( 4 ) };
+
+	@SuppressWarnings( "unchecked" )
+	static < T extends RealType< T > & NativeType< T > > Img< T > create( final int factory, final RealType< ? > type, final long seed, final boolean nonZero )
+	{
+		final Img< T > img = ( ( ImgFactory< T > ) factories[ factory ] ).create( dimensions, ( T ) type );
+		// values depend on the position only, not on the iteration order
+		final long[] position = new long[ dimensions.length ];
+		final Cursor< T > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			final T t = c.next();
+			c.localize( position );
+			final Random random = new Random( seed * 1000003 + IntervalIndexer.positionToIndex( position, dimensions ) );
+			t.setReal( random.nextInt( 2000 ) - 1000 + ( t instanceof FloatType || t instanceof DoubleType ? random.nextDouble() : 0 ) );
+			if ( nonZero && t.getRealDouble() == 0 )
+				t.setOne();
+		}
+		return img;
+	}
+
+	static < T extends RealType< T > > void assertImgEquals( final Img< T > expected, final Img< T > actual )
+	{
+		final Cursor< T > c = expected.localizingCursor();
+		final RandomAccess< T > a = actual.randomAccess();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			a.setPosition( c );
+			assertEquals( c.get().getRealDouble(), a.get().getRealDouble(), 0 );
+		}
+	}
+
+	static < T extends RealType< T > > void apply( final int op, final T t, final T c )
+	{
+		switch ( op )
+		{
+		case 0:
+			t.add( c );
+			break;
+		case 1:
+			t.sub( c );
+			break;
+		case 2:
+			t.mul( c );
+			break;
+		default:
+			t.div( c );
+		}
+	}
+
+	static < T extends RealType< T > > void bulk( final int op, final Img< T > img, final Img< T > other )
+	{
+		switch ( op )
+		{
+		case 0:
+			BulkOps.add( img, other );
+			break;
+		case 1:
+			BulkOps.sub( img, other );
+			break;
+		case 2:
+			BulkOps.mul( img, other );
+			break;
+		default:
+			BulkOps.div( img, other );
+		}
+	}
+
+	static < T extends RealType< T > > void bulk( final int op, final Img< T > img, final T c )
+	{
+		switch ( op )
+		{
+		case 0:
+			BulkOps.add( img, c );
+			break;
+		case 1:
+			BulkOps.sub( img, c );
+			break;
+		case 2:
+			BulkOps.mul( img, c );
+			break;
+		default:
+			BulkOps.div( img, c );
+		}
+	}
+
+	@Test
+	public < T extends RealType< T > & NativeType< T > > void testArithmeticWithConstant()
+	{
+		for ( final RealType< ? > type : types )
+			for ( int f = 0; f < factories.length; ++f )
+				for ( int op = 0; op < 4; ++op )
+				{
+					final Img< T > expected = create( 0, type, 1, false );
+					final Img< T > img = create( f, type, 1, false );
+					final T c = expected.firstElement().createVariable();
+					c.setReal( type instanceof UnsignedByteType ? 201 : -7 );
+					for ( final T t : expected )
+						apply( op, t, c );
+					bulk( op, img, c );
+					assertImgEquals( expected, img );
+				}
+	}
+
+	@Test
+	public < T extends RealType< T > & NativeType< T > > void testArithmeticWithImage()
+	{
+		for ( final RealType< ? > type : types )
+			for ( int f = 0; f < factories.length; ++f )
+				for ( int g = 0; g < factories.length; ++g )
+					for ( int op = 0; op < 4; ++op )
+					{
+						final Img< T > expected = create( 0, type, 1, false );
+						final Img< T > img = create( f, type, 1, false );
+						final Img< T > other = create( g, type, 2, true );
+						final Cursor< T > e = expected.cursor();
+						final Img< T > otherExpected = create( 0, type, 2, true );
+						final Cursor< T > o = otherExpected.cursor();
+						while ( e.hasNext() )
+							apply( op, e.next(), o.next() );
+						bulk( op, img, other );
+						assertImgEquals( expected, img );
+					}
+	}
+
+	@Test
+	public < S extends RealType< S > & NativeType< S >, T extends RealType< T > & NativeType< T > > void testConvert()
+	{
+		for ( final RealType< ? > sourceType : types )
+			for ( final RealType< ? > targetType : types )
+				for ( int f = 0; f < factories.length; ++f )
+					for ( int g = 0; g < factories.length; ++g )
+					{
+						final Img< S > source = create( f, sourceType, 3, false );
+						final Img< T > expected = create( 0, targetType, 4, false );
+						final Img< T > img = create( g, targetType, 4, false );
+						final Cursor< S > s = source.localizingCursor();
+						final RandomAccess< T > e = expected.randomAccess();
+						while ( s.hasNext() )
+						{
+							s.fwd();
+							e.setPosition( s );
+							e.get().setReal( s.get().getRealDouble() );
+						}
+						BulkOps.convert( source, img );
+						assertImgEquals( expected, img );
+					}
+	}
+
+	@Test
+	public < T extends RealType< T > & NativeType< T > > void testCopyAndFill()
+	{
+		for ( final RealType< ? > type : types )
+			for ( int f = 0; f < factories.length; ++f )
+				for ( int g = 0; g < factories.length; ++g )
+				{
+					final Img< T > source = create( f, type, 5, false );
+					final Img< T > img = create( g, type, 6, false );
+					BulkOps.copy( source, img );
+					assertImgEquals( source, img );
+
+					final T value = source.firstElement().copy();
+					BulkOps.fill( img, value );
+					for ( final T t : img )
+						assertEquals( value.getRealDouble(), t.getRealDouble(), 0 );
+				}
+	}
+
+	@Test
+	@SuppressWarnings( "unchecked" )
+	public void testParallel()
+	{
+		/*
+		 * Images above BulkOps.minParallelSize are split into chunks, which
+		 * do not align with the planes and cells.
+		 */
+		final long[] large = new long[] { 67, 41, 29 };
+		assertTrue( large[ 0 ] * large[ 1 ] * large[ 2 ] >= BulkOps.minParallelSize );
+		final Img< IntType > source = new CellImgFactory< IntType >( 5 ).create( large, new IntType() );
+		int i = 0;
+		for ( final IntType t : source )
+			t.set( ( i++ * 7919 ) % 2001 - 1000 );
+		final Img< FloatType > expected = new ArrayImgFactory< FloatType >().create( large, new FloatType() );
+		final Cursor< IntType > s = source.localizingCursor();
+		final RandomAccess< FloatType > e = expected.randomAccess();
+		while ( s.hasNext() )
+		{
+			s.fwd();
+			e.setPosition( s );
+			e.get().set( 3 * s.get().get() - 2 );
+		}
+		final FloatType three = new FloatType( 3 );
+		final FloatType two = new FloatType( 2 );
+		for ( final ImgFactory< FloatType > factory : new ImgFactory[] { new ArrayImgFactory< FloatType >(), new PlanarImgFactory< FloatType >(), new CellImgFactory< FloatType >( 6 ) } )
+		{
+			final Img< FloatType > img = factory.create( large, new FloatType() );
+			BulkOps.fill( img, three );
+			final Img< FloatType > converted = factory.create( large, new FloatType() );
+			BulkOps.convert( source, converted );
+			BulkOps.mul( img, converted );
+			BulkOps.sub( img, two );
+			assertImgEquals( expected, img );
+
+			final Img< FloatType > copy = new CellImgFactory< FloatType >( 4 ).create( large, new FloatType() );
+			BulkOps.copy( img, copy );
+			assertImgEquals( expected, copy );
+		}
+	}
+
+	@Test
+	public void testConvertInterval()
+	{
+		final ArrayImg< DoubleType, ? > source = ArrayImgs.doubles( 10, 10 );
+		final Cursor< DoubleType > c = source.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.get().set( c.getDoublePosition( 0 ) + 0.1 * c.getDoublePosition( 1 ) );
+		}
+		final ArrayImg< FloatType, ? > img = ArrayImgs.floats( Views.interval( source, new long[] { 2, 3 }, new long[] { 5, 9 } ) );
+		assertEquals( 4, img.dimension( 0 ) );
+		assertEquals( 7, img.dimension( 1 ) );
+		final RandomAccess< FloatType > a = img.randomAccess();
+		a.setPosition( new long[] { 1, 2 } );
+		assertEquals( 3.5f, a.get().get(), 0 );
+	}
+}
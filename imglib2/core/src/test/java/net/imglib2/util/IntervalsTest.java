@@ -0,0 +1,125 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.iterator.LocalizingIntervalIterator;
+
+import org.junit.Test;
+
+/**
+ * Test splitting of intervals into interior and border.
+ */
+public class IntervalsTest
+{
+	@Test
+	public void testInterior()
+	{
+		final FinalInterval valid = new FinalInterval( new long[] { 0, 10 }, new long[] { 9, 29 } );
+		final FinalInterval interior = Intervals.interior( valid, valid, new long[] { -1, -2 }, new long[] { 1, 3 } );
+		assertEquals( 1, interior.min( 0 ) );
+		assertEquals( 8, interior.max( 0 ) );
+		assertEquals( 12, interior.min( 1 ) );
+		assertEquals( 26, interior.max( 1 ) );
+		assertFalse( Intervals.isEmpty( interior ) );
+
+		final FinalInterval none = Intervals.interior( valid, valid, new long[] { -6, 0 }, new long[] { 6, 0 } );
+		assertTrue( Intervals.isEmpty( none ) );
+	}
+
+	@Test
+	public void testSubtractPartitionsInterval()
+	{
+		final Random random = new Random( 1 );
+		for ( int n = 1; n <= 3; ++n )
+		{
+			for ( int trial = 0; trial < 20; ++trial )
+			{
+				final long[] min = new long[ n ];
+				final long[] max = new long[ n ];
+				final long[] reachMin = new long[ n ];
+				final long[] reachMax = new long[ n ];
+				for ( int d = 0; d < n; ++d )
+				{
+					min[ d ] = random.nextInt( 10 ) - 5;
+					max[ d ] = min[ d ] + random.nextInt( 8 );
+					reachMin[ d ] = -random.nextInt( 4 );
+					reachMax[ d ] = random.nextInt( 4 );
+				}
+				final FinalInterval interval = new FinalInterval( min, max );
+				final FinalInterval interior = Intervals.interior( interval, interval, reachMin, reachMax );
+				final List< FinalInterval > border = Intervals.subtract( interval, interior );
+				assertTrue( border.size() <= 2 * n );
+
+				// every point of the interval is covered exactly once
+				final LocalizingIntervalIterator i = new LocalizingIntervalIterator( interval );
+				while ( i.hasNext() )
+				{
+					i.fwd();
+					int count = ( !Intervals.isEmpty( interior ) && Intervals.contains( interior, i ) ) ? 1 : 0;
+					for ( final Interval part : border )
+					{
+						assertFalse( Intervals.isEmpty( part ) );
+						if ( Intervals.contains( part, i ) )
+							++count;
+					}
+					assertEquals( 1, count );
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSubtractEmptyInterior()
+	{
+		final FinalInterval interval = new FinalInterval( new long[] { 4, 5 } );
+		final FinalInterval interior = Intervals.interior( interval, interval, new long[] { -3, 0 }, new long[] { 3, 0 } );
+		final List< FinalInterval > border = Intervals.subtract( interval, interior );
+		assertEquals( 1, border.size() );
+		assertEquals( 0, border.get( 0 ).min( 0 ) );
+		assertEquals( 3, border.get( 0 ).max( 0 ) );
+		assertEquals( 4, border.get( 0 ).max( 1 ) );
+	}
+}
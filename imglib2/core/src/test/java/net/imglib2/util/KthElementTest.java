@@ -45,6 +45,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.ListIterator;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -307,6 +308,69 @@ public class KthElementTest
 		assertArrayEquals( sortedValues, values, 0 );
 	}
 	
+	@Test
+	public void testMedianDoubleFullPermutation()
+	{
+		double[] values = new double[] {2, 453, 233, 1, 1, 1, 1, 1, 0.7};
+		double[] origvalues = values.clone();
+		double[] sortedValues = values.clone();
+		Arrays.sort( sortedValues );
+
+		final int[] permutation = new int[ values.length ];
+		for( int k = 0; k < permutation.length; ++k )
+			permutation[ k ] = k;
+
+		final int i = 0;
+		final int j = values.length - 1;
+		int k = i + ( j - i ) / 2;
+		KthElement.kthElement( k, values, permutation );
+
+		// the elements at the k-th positions should be equal 
+		assertEquals( values[ k ], sortedValues[ k ], 0 );
+
+		// the elements before the k-th should be equal or smaller than the k-th
+		for ( int p = i; p < k; ++p )
+			assertTrue( values[ p ] <= values[ k ] );
+
+		// the elements after the k-th should be equal or greater than the k-th
+		for ( int p = k + 1; p <= j; ++p )
+			assertTrue( values[ p ] >= values[ k ] );
+
+		for( int p = 0; p < permutation.length; ++p )
+			assertEquals( origvalues[ permutation[ p ] ], values[ p ], 0 );
+	}
+
+	@Test
+	public void testMedianDoubleManyEqualValuesPermutation()
+	{
+		// this would take quadratic time if equal values were not split
+		final int n = 1000000;
+		final double[] values = new double[ n ];
+		final Random random = new Random( 0 );
+		for ( int p = 0; p < n; ++p )
+			values[ p ] = random.nextInt( 3 );
+		final double[] origvalues = values.clone();
+		final double[] sortedValues = values.clone();
+		Arrays.sort( sortedValues );
+
+		final int[] permutation = new int[ n ];
+		for( int p = 0; p < n; ++p )
+			permutation[ p ] = p;
+
+		for ( final int k : new int[] { 0, n / 3, n / 2, n - 1 } )
+		{
+			KthElement.kthElement( k, values, permutation );
+			assertEquals( sortedValues[ k ], values[ k ], 0 );
+			for ( int p = 0; p < k; ++p )
+				assertTrue( values[ p ] <= values[ k ] );
+			for ( int p = k + 1; p < n; ++p )
+				assertTrue( values[ p ] >= values[ k ] );
+		}
+
+		for( int p = 0; p < n; ++p )
+			assertEquals( origvalues[ permutation[ p ] ], values[ p ], 0 );
+	}
+
 	@Test
 	public void testMedianFloatObject()
 	{
@@ -191,6 +191,52 @@ public class PartitionTest
 		assertArrayEquals( sortedValues, values, 0 );
 	}
 
+	@Test
+	public void testPartitionDoublePermutation()
+	{
+		double[] values = new double[] {123, 21, 12912, 321, 32, 12345, 249, 5823, 834, 10, 23, 329, 1, 1, 1, 100};
+		double[] origvalues = values.clone();
+
+		final int[] permutation = new int[ values.length ];
+		for( int k = 0; k < permutation.length; ++k )
+			permutation[ k ] = k;
+
+		final int i = 0;
+		final int j = values.length - 1;
+		final int p = Partition.partitionSubList( i, j, values, permutation );
+
+		assertTrue ( p >= i && p <= j );
+
+		for ( int k = i; k < p; ++k )
+			assertTrue( values[ k ] <= values[ p ] );
+
+		for ( int k = p + 1; k <= j; ++k )
+			assertTrue( values[ k ] >= values[ p ] );
+
+		for( int k = 0; k < permutation.length; ++k )
+			assertEquals( origvalues[ permutation[ k ] ], values[ k ], 0 );
+	}
+
+	@Test
+	public void testPartitionDoublePermutationEqualValues()
+	{
+		double[] values = new double[ 1001 ];
+		Arrays.fill( values, 5 );
+
+		final int[] permutation = new int[ values.length ];
+		for( int k = 0; k < permutation.length; ++k )
+			permutation[ k ] = k;
+
+		final int p = Partition.partitionSubList( 0, values.length - 1, values, permutation );
+
+		// equal values are split evenly
+		assertEquals( values.length / 2, p );
+
+		Arrays.sort( permutation );
+		for( int k = 0; k < permutation.length; ++k )
+			assertEquals( k, permutation[ k ] );
+	}
+
 	@Test
 	public void testPartitionChar()
 	{
@@ -0,0 +1,207 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.view;
+
+import java.util.Random;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.BenchmarkHelper;
+
+/**
+ * Compare {@link FusedRandomAccessible fused} view chains with stacked
+ * RandomAccesses, see
+ * {@link TransformBuilder#getEfficientRandomAccessible(net.imglib2.Interval, net.imglib2.RandomAccessible, boolean)}.
+ */
+public class FusedRandomAccessBenchmark
+{
+	final long[] dimensions = new long[] { 256, 256, 64 };
+
+	Img< FloatType > array;
+
+	Img< FloatType > planar;
+
+	double sum;
+
+	public void setUp()
+	{
+		array = new ArrayImgFactory< FloatType >().create( dimensions, new FloatType() );
+		planar = new PlanarImgFactory< FloatType >().create( dimensions, new FloatType() );
+	}
+
+	/**
+	 * Sum all values of {@code view}, iterating along dimension 0 fastest.
+	 */
+	static double sum( final RandomAccessibleInterval< FloatType > view, final boolean fuse )
+	{
+		final int n = view.numDimensions();
+		final RandomAccess< FloatType > a = TransformBuilder.getEfficientRandomAccessible( view, view, fuse ).randomAccess();
+		final long[] min = new long[ n ];
+		view.min( min );
+		a.setPosition( min );
+		double sum = 0;
+		final long size0 = view.dimension( 0 );
+		final long size1 = view.dimension( 1 );
+		final long size2 = view.dimension( 2 );
+		for ( long z = 0; z < size2; ++z )
+		{
+			for ( long y = 0; y < size1; ++y )
+			{
+				for ( long x = 0; x < size0; ++x )
+				{
+					sum += a.get().get();
+					a.fwd( 0 );
+				}
+				a.move( -size0, 0 );
+				a.fwd( 1 );
+			}
+			a.move( -size1, 1 );
+			a.fwd( 2 );
+		}
+		return sum;
+	}
+
+	/**
+	 * Sum values of {@code view} at random positions, which are set one
+	 * dimension at a time.
+	 */
+	static double sumRandom( final RandomAccessibleInterval< FloatType > view, final boolean fuse, final int[] positions )
+	{
+		final RandomAccess< FloatType > a = TransformBuilder.getEfficientRandomAccessible( view, view, fuse ).randomAccess();
+		double sum = 0;
+		for ( int i = 0; i < positions.length; i += 3 )
+		{
+			a.setPosition( positions[ i ], 0 );
+			a.setPosition( positions[ i + 1 ], 1 );
+			a.setPosition( positions[ i + 2 ], 2 );
+			sum += a.get().get();
+		}
+		return sum;
+	}
+
+	static int[] randomPositions( final RandomAccessibleInterval< FloatType > view, final int numPositions )
+	{
+		final Random random = new Random( 0 );
+		final int[] positions = new int[ 3 * numPositions ];
+		for ( int i = 0; i < positions.length; ++i )
+		{
+			final int d = i % 3;
+			positions[ i ] = ( int ) view.min( d ) + random.nextInt( ( int ) view.dimension( d ) );
+		}
+		return positions;
+	}
+
+	void benchmark( final String name, final RandomAccessibleInterval< FloatType > view, final boolean fuse )
+	{
+		System.out.println( name + ( fuse ? " (fused)" : " (stacked)" ) );
+		BenchmarkHelper.benchmarkAndPrint( 20, false, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				sum += sum( view, fuse );
+			}
+		} );
+		final int[] positions = randomPositions( view, 1000000 );
+		System.out.println( name + ( fuse ? " (fused)" : " (stacked)" ) + " random positions" );
+		BenchmarkHelper.benchmarkAndPrint( 20, false, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				sum += sumRandom( view, fuse, positions );
+			}
+		} );
+	}
+
+	RandomAccessibleInterval< FloatType > chain( final int i )
+	{
+		final long[] min = new long[] { -8, -8, -8 };
+		final long[] max = new long[] { 263, 263, 71 };
+		switch ( i )
+		{
+		default:
+		case 0:
+			return Views.translate( array, new long[] { 10, 20, 30 } );
+		case 1:
+			return Views.rotate( planar, 0, 2 );
+		case 2:
+			return Views.interval( Views.extendBorder( array ), min, max );
+		case 3:
+			return Views.translate( Views.interval( Views.extendBorder( planar ), min, max ), new long[] { 1, 2, 3 } );
+		}
+	}
+
+	static final String[] names = new String[] { "translate ArrayImg", "permute PlanarImg", "extendBorder ArrayImg", "translate extendBorder PlanarImg" };
+
+	/**
+	 * Without arguments, run all view chains, fused and stacked, in the same
+	 * JVM. Then the JIT sees several RandomAccess classes at the same call
+	 * sites, as it would in an application that uses different views.
+	 *
+	 * With arguments, run only one view chain, either fused or stacked. Each
+	 * should be run in a separate JVM.
+	 *
+	 * @param args
+	 *            index of the view chain (0 to 3) and "fused" or "stacked".
+	 */
+	public static void main( final String[] args )
+	{
+		final FusedRandomAccessBenchmark b = new FusedRandomAccessBenchmark();
+		b.setUp();
+
+		if ( args.length > 1 )
+		{
+			final int i = Integer.parseInt( args[ 0 ] );
+			b.benchmark( names[ i ], b.chain( i ), args[ 1 ].equals( "fused" ) );
+		}
+		else
+		{
+			for ( int iteration = 0; iteration < 3; ++iteration )
+				for ( int i = 0; i < names.length; ++i )
+				{
+					b.benchmark( names[ i ], b.chain( i ), false );
+					b.benchmark( names[ i ], b.chain( i ), true );
+				}
+		}
+		System.out.println( b.sum );
+	}
+}
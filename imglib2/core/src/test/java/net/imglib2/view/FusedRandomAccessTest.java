@@ -0,0 +1,212 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.view;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.Point;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.ArrayRandomAccess;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.numeric.integer.IntType;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Compare {@link FusedRandomAccessible fused} view chains with the stacked
+ * RandomAccesses built by the {@link TransformBuilder} otherwise.
+ */
+public class FusedRandomAccessTest
+{
+	final long[] dimensions = new long[] { 13, 11, 7 };
+
+	Img< IntType > array;
+
+	Img< IntType > planar;
+
+	@Before
+	public void setUp()
+	{
+		array = new ArrayImgFactory< IntType >().create( dimensions, new IntType() );
+		planar = new PlanarImgFactory< IntType >().create( dimensions, new IntType() );
+		fill( array );
+		fill( planar );
+	}
+
+	static void fill( final Img< IntType > img )
+	{
+		final Cursor< IntType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.get().set( c.getIntPosition( 0 ) + 100 * c.getIntPosition( 1 ) + 10000 * c.getIntPosition( 2 ) );
+		}
+	}
+
+	static boolean isFused( final RandomAccess< ? > a )
+	{
+		return a instanceof AbstractFusedRandomAccess || a instanceof FusedBorderRandomAccess;
+	}
+
+	/**
+	 * Run the same random sequence of positioning operations on a fused and
+	 * on a stacked RandomAccess and compare values and positions.
+	 */
+	static void compare( final RandomAccessibleInterval< IntType > view, final boolean expectFused )
+	{
+		final RandomAccess< IntType > fused = view.randomAccess( view );
+		final RandomAccess< IntType > stacked = TransformBuilder.getEfficientRandomAccessible( view, view, false ).randomAccess();
+
+		assertEquals( expectFused, isFused( fused ) );
+		assertFalse( isFused( stacked ) );
+		compare( view, fused, stacked, new Random( 0 ) );
+
+		// copies must be independent of the original
+		final RandomAccess< IntType > copy = fused.copyRandomAccess();
+		final RandomAccess< IntType > stackedCopy = stacked.copyRandomAccess();
+		assertEquals( stackedCopy.get().get(), copy.get().get() );
+		fused.move( 1, 0 );
+		assertEquals( stackedCopy.get().get(), copy.get().get() );
+		compare( view, copy, stackedCopy, new Random( 1 ) );
+	}
+
+	static void compare( final RandomAccessibleInterval< IntType > view, final RandomAccess< IntType > a, final RandomAccess< IntType > b, final Random random )
+	{
+		final int n = view.numDimensions();
+		final long[] pos = new long[ n ];
+		final long[] pa = new long[ n ];
+		final long[] pb = new long[ n ];
+		view.min( pos );
+		a.setPosition( pos );
+		b.setPosition( pos );
+		for ( int i = 0; i < 2000; ++i )
+		{
+			final int d = random.nextInt( n );
+			switch ( random.nextInt( 6 ) )
+			{
+			case 0:
+				for ( int k = 0; k < n; ++k )
+					pos[ k ] = view.min( k ) + random.nextInt( ( int ) view.dimension( k ) );
+				a.setPosition( pos );
+				b.setPosition( pos );
+				break;
+			case 1:
+				final long p = view.min( d ) + random.nextInt( ( int ) view.dimension( d ) );
+				a.setPosition( p, d );
+				b.setPosition( p, d );
+				break;
+			case 2:
+				if ( a.getLongPosition( d ) < view.max( d ) )
+				{
+					a.fwd( d );
+					b.fwd( d );
+				}
+				break;
+			case 3:
+				if ( a.getLongPosition( d ) > view.min( d ) )
+				{
+					a.bck( d );
+					b.bck( d );
+				}
+				break;
+			case 4:
+				final long dist = view.min( d ) + random.nextInt( ( int ) view.dimension( d ) ) - a.getLongPosition( d );
+				a.move( dist, d );
+				b.move( dist, d );
+				break;
+			case 5:
+				final Point distance = new Point( n );
+				for ( int k = 0; k < n; ++k )
+					distance.setPosition( view.min( k ) + random.nextInt( ( int ) view.dimension( k ) ) - a.getLongPosition( k ), k );
+				a.move( distance );
+				b.move( distance );
+				break;
+			}
+			a.localize( pa );
+			b.localize( pb );
+			assertArrayEquals( pb, pa );
+			assertEquals( b.get().get(), a.get().get() );
+		}
+	}
+
+	void compareAll( final Img< IntType > img )
+	{
+		compare( Views.translate( img, new long[] { 3, -2, 5 } ), true );
+		compare( Views.rotate( img, 0, 2 ), true );
+		compare( Views.invertAxis( img, 1 ), true );
+		compare( Views.hyperSlice( img, 1, 4 ), true );
+		compare( Views.hyperSlice( img, 2, 3 ), true );
+		compare( Views.interval( Views.extendBorder( img ), new long[] { -5, -5, -5 }, new long[] { 17, 15, 11 } ), true );
+		compare( Views.hyperSlice( Views.rotate( Views.translate( Views.interval( Views.extendBorder( Views.interval( img, new long[] { 2, 1, 1 }, new long[] { 10, 8, 5 } ) ), new long[] { -3, -4, -5 }, new long[] { 12, 12, 10 } ), new long[] { 7, 1, -2 } ), 2, 0 ), 1, 20 ), true );
+		compare( Views.interval( Views.extendMirrorSingle( img ), new long[] { -5, -5, -5 }, new long[] { 17, 15, 11 } ), false );
+	}
+
+	@Test
+	public void testArrayImg()
+	{
+		compareAll( array );
+	}
+
+	@Test
+	public void testPlanarImg()
+	{
+		compareAll( planar );
+	}
+
+	@Test
+	public void testInterior()
+	{
+		// the extension is dropped inside the image, no fusing is necessary
+		final RandomAccessibleInterval< IntType > view = Views.interval( Views.extendBorder( array ), new long[] { 1, 1, 1 }, new long[] { 5, 5, 5 } );
+		assertTrue( view.randomAccess( view ) instanceof ArrayRandomAccess );
+
+		// fused without border clamping
+		final RandomAccessibleInterval< IntType > rotated = Views.rotate( view, 1, 2 );
+		assertTrue( rotated.randomAccess( rotated ) instanceof FusedArrayRandomAccess );
+		compare( rotated, true );
+	}
+}
@@ -39,6 +39,7 @@ package net.imglib2.view;
 import static org.junit.Assert.assertTrue;
 
 import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.img.Img;
 import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.type.numeric.integer.UnsignedByteType;
@@ -82,7 +83,8 @@ public class RandomAccessTest
 	{
 		long[] offset = new long[] { 1, 10, 0, -5 };
 		long[] dim = new long[] { 10, 10, 10, 10 };
-		RandomAccess< UnsignedByteType > a = Views.offsetInterval( Views.flippedView( Views.hyperSlice( img, 2, 2 ), 3 ), offset, dim ).randomAccess();
+		RandomAccessibleInterval< UnsignedByteType > view = Views.offsetInterval( Views.flippedView( Views.hyperSlice( img, 2, 2 ), 3 ), offset, dim );
+		RandomAccess< UnsignedByteType > a = TransformBuilder.getEfficientRandomAccessible( view, view, false ).randomAccess();
 		
 		assertTrue( FullSourceMapMixedRandomAccess.class.isInstance( a ) );
 
@@ -97,6 +99,26 @@ public class RandomAccessTest
 		testmove( a, pos, dist );
 	}
 
+	@Test
+	public void testFusedAccess()
+	{
+		long[] offset = new long[] { 1, 10, 0, -5 };
+		long[] dim = new long[] { 10, 10, 10, 10 };
+		RandomAccess< UnsignedByteType > a = Views.offsetInterval( Views.flippedView( Views.hyperSlice( img, 2, 2 ), 3 ), offset, dim ).randomAccess();
+		
+		assertTrue( FusedArrayRandomAccess.class.isInstance( a ) );
+
+		long[] pos = new long[] { 28, 30, 2, 15 };
+		long[] dist = new long[] { 2, 3, 4, 1 };
+		
+		testlocalize( a, pos );
+		testfwd( a, pos );
+		testbck( a, pos );
+		testmove( a, pos, 3 );
+		testmove( a, pos, -2 );
+		testmove( a, pos, dist );
+	}
+
 	public < T > void testlocalize( RandomAccess< T > a, final long[] pos )
 	{
 		long[] loc = new long[ pos.length ];
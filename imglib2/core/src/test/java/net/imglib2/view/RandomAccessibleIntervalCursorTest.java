@@ -147,6 +147,23 @@ public class RandomAccessibleIntervalCursorTest
 		assertEquals( c1.get().get(), c2.get().get() );
 	}
 
+	@Test
+	public void testJumpFwdThenFwd()
+	{
+		final Cursor< IntType > c1 = array1.cursor();
+		final Cursor< IntType > c2 = new RandomAccessibleIntervalCursor< IntType >( array1 );
+
+		c1.jumpFwd( 713 );
+		c2.jumpFwd( 713 );
+		while ( c1.hasNext() )
+		{
+			assertEquals( c1.next().get(), c2.next().get() );
+			assertEquals( c1.getLongPosition( 0 ), c2.getLongPosition( 0 ) );
+			assertEquals( c1.getLongPosition( 1 ), c2.getLongPosition( 1 ) );
+		}
+		assertEquals( c1.hasNext(), c2.hasNext() );
+	}
+
 	@Test
 	public void testArrayCopy()
 	{
@@ -0,0 +1,272 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package tests.labeling;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.labeling.DefaultROIStrategyFactory;
+import net.imglib2.labeling.Labeling;
+import net.imglib2.labeling.LabelingROIStrategy;
+import net.imglib2.labeling.LabelingROIStrategyFactory;
+import net.imglib2.labeling.LabelingType;
+import net.imglib2.labeling.NativeImgLabeling;
+import net.imglib2.labeling.RunLengthROIStrategy;
+import net.imglib2.labeling.RunLengthROIStrategyFactory;
+import net.imglib2.roi.IterableRegionOfInterest;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Runs the {@link LabelingTest} tests with a {@link RunLengthROIStrategyFactory}
+ * and compares its regions to the default strategy.
+ */
+public class RunLengthLabelingTest extends LabelingTest
+{
+	@Override
+	protected < T extends Comparable< T >> Labeling< T > makeLabeling( final T exemplar, final long[] dimensions )
+	{
+		return new NativeImgLabeling< T, IntType >( new RunLengthROIStrategyFactory< T >(), new ArrayImgFactory< IntType >().create( dimensions, new IntType() ) );
+	}
+
+	private static void labelRandomSpheres( final Labeling< Integer > labeling, final long seed )
+	{
+		final Random rnd = new Random( seed );
+		final long[] position = new long[ labeling.numDimensions() ];
+		final double[][] centers = new double[ 12 ][ labeling.numDimensions() ];
+		final double[] radii = new double[ centers.length ];
+		for ( int i = 0; i < centers.length; ++i )
+		{
+			for ( int d = 0; d < position.length; ++d )
+				centers[ i ][ d ] = rnd.nextDouble() * labeling.dimension( d );
+			radii[ i ] = 2 + rnd.nextDouble() * 6;
+		}
+		final Cursor< LabelingType< Integer > > c = labeling.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.localize( position );
+			final List< Integer > labels = new ArrayList< Integer >();
+			for ( int i = 0; i < centers.length; ++i )
+			{
+				double distance2 = 0;
+				for ( int d = 0; d < position.length; ++d )
+					distance2 += ( position[ d ] - centers[ i ][ d ] ) * ( position[ d ] - centers[ i ][ d ] );
+				if ( distance2 <= radii[ i ] * radii[ i ] )
+					labels.add( i );
+			}
+			if ( !labels.isEmpty() )
+				c.get().setLabeling( labels );
+		}
+	}
+
+	private static void assertSameRegions( final Labeling< Integer > reference, final Labeling< Integer > runLength )
+	{
+		assertEquals( reference.getLabels().size(), runLength.getLabels().size() );
+		final long[] min1 = new long[ 3 ], max1 = new long[ 3 ], min2 = new long[ 3 ], max2 = new long[ 3 ];
+		for ( final Integer label : reference.getLabels() )
+		{
+			assertEquals( reference.getArea( label ), runLength.getArea( label ) );
+			reference.getExtents( label, min1, max1 );
+			runLength.getExtents( label, min2, max2 );
+			assertArrayEquals( min1, min2 );
+			assertArrayEquals( max1, max2 );
+			reference.getRasterStart( label, min1 );
+			runLength.getRasterStart( label, min2 );
+			assertArrayEquals( min1, min2 );
+
+			final IterableRegionOfInterest roi1 = reference.getIterableRegionOfInterest( label );
+			final IterableRegionOfInterest roi2 = runLength.getIterableRegionOfInterest( label );
+			final Cursor< LabelingType< Integer > > c1 = roi1.getIterableIntervalOverROI( reference ).cursor();
+			final Cursor< LabelingType< Integer > > c2 = roi2.getIterableIntervalOverROI( runLength ).cursor();
+			long count = 0;
+			while ( c1.hasNext() )
+			{
+				assertTrue( c2.hasNext() );
+				c1.fwd();
+				c2.fwd();
+				c1.localize( min1 );
+				c2.localize( min2 );
+				assertArrayEquals( min1, min2 );
+				assertTrue( roi2.contains( new double[] { min2[ 0 ], min2[ 1 ], min2[ 2 ] } ) );
+				++count;
+			}
+			assertTrue( !c2.hasNext() );
+			assertEquals( reference.getArea( label ), count );
+		}
+	}
+
+	@Test
+	public void testCompareToDefaultStrategy()
+	{
+		final long[] dimensions = new long[] { 40, 30, 20 };
+		final Img< IntType > img = new ArrayImgFactory< IntType >().create( dimensions, new IntType() );
+		final Labeling< Integer > runLength = new NativeImgLabeling< Integer, IntType >( new RunLengthROIStrategyFactory< Integer >(), img );
+		final Labeling< Integer > reference = new NativeImgLabeling< Integer, IntType >( new DefaultROIStrategyFactory< Integer >(), new ArrayImgFactory< IntType >().create( dimensions, new IntType() ) );
+		labelRandomSpheres( runLength, 7 );
+		labelRandomSpheres( reference, 7 );
+
+		assertSameRegions( reference, runLength );
+
+		// regions are recomputed after the labeling changed
+		final Cursor< LabelingType< Integer > > c = runLength.cursor();
+		while ( c.hasNext() )
+			c.next().setLabeling( c.get().intern( 100 ) );
+		assertEquals( 1, runLength.getLabels().size() );
+		assertEquals( 40 * 30 * 20, runLength.getArea( 100 ) );
+	}
+
+	/**
+	 * A {@link RunLengthROIStrategy} that counts full scans of the labeling.
+	 */
+	private static class CountingStrategy< L extends Labeling< Integer >> extends RunLengthROIStrategy< Integer, L >
+	{
+		int numScans = 0;
+
+		public CountingStrategy( final L labeling )
+		{
+			super( labeling );
+		}
+
+		@Override
+		protected synchronized void computeStatistics()
+		{
+			final Map< Integer, LabelRuns > previous = statistics;
+			super.computeStatistics();
+			if ( statistics != previous )
+				++numScans;
+		}
+	}
+
+	@Test
+	public void testIncrementalUpdate()
+	{
+		final long[] dimensions = new long[] { 40, 30, 20 };
+		final ArrayList< CountingStrategy< ? > > strategies = new ArrayList< CountingStrategy< ? > >();
+		final LabelingROIStrategyFactory< Integer > factory = new LabelingROIStrategyFactory< Integer >()
+		{
+			@Override
+			public < L extends Labeling< Integer >> LabelingROIStrategy< Integer, L > createLabelingROIStrategy( final L labeling )
+			{
+				final CountingStrategy< L > strategy = new CountingStrategy< L >( labeling );
+				strategies.add( strategy );
+				return strategy;
+			}
+		};
+		final Labeling< Integer > runLength = new NativeImgLabeling< Integer, IntType >( factory, new ArrayImgFactory< IntType >().create( dimensions, new IntType() ) );
+		final Labeling< Integer > reference = new NativeImgLabeling< Integer, IntType >( new DefaultROIStrategyFactory< Integer >(), new ArrayImgFactory< IntType >().create( dimensions, new IntType() ) );
+		labelRandomSpheres( runLength, 11 );
+		labelRandomSpheres( reference, 11 );
+		assertSameRegions( reference, runLength );
+		final CountingStrategy< ? > strategy = strategies.get( 0 );
+		assertEquals( 1, strategy.numScans );
+
+		// overwrite single pixels, splitting and merging runs, adding and
+		// removing labels
+		final Random rnd = new Random( 12 );
+		final RandomAccess< LabelingType< Integer > > a1 = reference.randomAccess();
+		final RandomAccess< LabelingType< Integer > > a2 = runLength.randomAccess();
+		for ( int batch = 0; batch < 5; ++batch )
+		{
+			for ( int i = 0; i < 2000; ++i )
+			{
+				for ( int d = 0; d < 3; ++d )
+				{
+					final long x = rnd.nextInt( ( int ) dimensions[ d ] / 2 );
+					a1.setPosition( x, d );
+					a2.setPosition( x, d );
+				}
+				final List< Integer > labels = new ArrayList< Integer >();
+				for ( int label = 0; label < 14; ++label )
+					if ( rnd.nextInt( 8 ) == 0 )
+						labels.add( label );
+				a1.get().setLabeling( labels );
+				a2.get().setLabeling( labels );
+			}
+			assertSameRegions( reference, runLength );
+		}
+		assertEquals( 1, strategy.numScans );
+	}
+
+	@Test
+	public void testMove()
+	{
+		final long[] dimensions = new long[] { 40, 30, 20 };
+		final Labeling< Integer > runLength = makeLabeling( 0, dimensions );
+		labelRandomSpheres( runLength, 13 );
+		final Integer label = runLength.getLabels().iterator().next();
+		final IterableRegionOfInterest roi = runLength.getIterableRegionOfInterest( label );
+		final long[] min = new long[ 3 ], max = new long[ 3 ];
+		runLength.getExtents( label, min, max );
+
+		final double[] displacement = new double[] { 2.5, -1, 0 };
+		final long[] offset = new long[] { 3, -1, 0 };
+		roi.move( displacement );
+		assertEquals( min[ 0 ] + offset[ 0 ], roi.realMin( 0 ), 0 );
+		assertEquals( max[ 1 ] + offset[ 1 ], roi.realMax( 1 ), 0 );
+
+		final Img< IntType > img = new ArrayImgFactory< IntType >().create( new long[] { 50, 40, 30 }, new IntType() );
+		final Cursor< IntType > c = roi.getIterableIntervalOverROI( Views.extendValue( img, new IntType() ) ).localizingCursor();
+		final RandomAccess< LabelingType< Integer > > a = runLength.randomAccess();
+		final long[] position = new long[ 3 ];
+		long count = 0;
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.localize( position );
+			assertTrue( roi.contains( new double[] { position[ 0 ], position[ 1 ], position[ 2 ] } ) );
+			for ( int d = 0; d < 3; ++d )
+				position[ d ] -= offset[ d ];
+			a.setPosition( position );
+			assertTrue( a.get().getLabeling().contains( label ) );
+			++count;
+		}
+		assertEquals( runLength.getArea( label ), count );
+	}
+}
@@ -0,0 +1,568 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.realtransform;
+
+import net.imglib2.ExtendedRandomAccessibleInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.RealRandomAccessible;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.interpolation.Interpolant;
+import net.imglib2.interpolation.randomaccess.NLinearInterpolatorFactory;
+import net.imglib2.interpolation.randomaccess.NearestNeighborInterpolatorFactory;
+import net.imglib2.multithreading.Chunk;
+import net.imglib2.multithreading.ChunkTask;
+import net.imglib2.multithreading.TaskExecutor;
+import net.imglib2.outofbounds.OutOfBoundsConstantValueFactory;
+import net.imglib2.position.transform.Floor;
+import net.imglib2.position.transform.Round;
+import net.imglib2.type.Type;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Render an affinely transformed {@link RealRandomAccessible} into a
+ * {@link RandomAccessibleInterval}. The result is that of copying
+ * {@link RealViews#affine(RealRandomAccessible, AffineGet)} pixel by pixel,
+ * except for n-linear interpolation read directly from primitive arrays (see
+ * below): it is computed in double precision and rounded once, where
+ * {@link NLinearInterpolatorFactory} rounds every weighted sample to the
+ * type. For integer types the results can then differ by up to
+ * 2<sup>n-1</sup>, for floating point types by rounding errors.
+ *
+ * <p>
+ * The target is processed line by line along dimension 0, and the lines are
+ * distributed over the threads of the default {@link TaskExecutor}. The
+ * source coordinates of a line are computed once for its first pixel and
+ * then advanced by the constant partial differential
+ * {@link AffineGet#d(int) d(0)}, instead of transforming the coordinates of
+ * every pixel.
+ * </p>
+ *
+ * <p>
+ * If the source is an {@link ArrayImg} or {@link PlanarImg} of a primitive
+ * {@link RealType}, extended by a constant value, and interpolated by
+ * {@link NearestNeighborInterpolatorFactory} or
+ * {@link NLinearInterpolatorFactory}, the samples are read directly from the
+ * primitive arrays.
+ * </p>
+ */
+public class AffineResampler
+{
+	/**
+	 * Copy an affinely transformed view, as created by
+	 * {@link RealViews#affine(RealRandomAccessible, AffineGet)}, into
+	 * <em>target</em>.
+	 */
+	public static < T extends Type< T > > void resample( final AffineRandomAccessible< T, ? > view, final RandomAccessibleInterval< T > target )
+	{
+		resample( view, target, TaskExecutor.getDefault().getNumThreads() );
+	}
+
+	/**
+	 * Copy an affinely transformed view, as created by
+	 * {@link RealViews#affine(RealRandomAccessible, AffineGet)}, into
+	 * <em>target</em> using at most <em>numThreads</em> threads.
+	 */
+	public static < T extends Type< T > > void resample( final AffineRandomAccessible< T, ? > view, final RandomAccessibleInterval< T > target, final int numThreads )
+	{
+		render( view.getSource(), view.getTransformToSource(), target, numThreads );
+	}
+
+	/**
+	 * Render <em>source</em> transformed by <em>affine</em> into
+	 * <em>target</em>. As in
+	 * {@link RealViews#affine(RealRandomAccessible, AffineGet)}, the samples
+	 * are taken at the inverse transformed target coordinates.
+	 */
+	public static < T extends Type< T > > void resample( final RealRandomAccessible< T > source, final AffineGet affine, final RandomAccessibleInterval< T > target )
+	{
+		resample( source, affine, target, TaskExecutor.getDefault().getNumThreads() );
+	}
+
+	/**
+	 * Render <em>source</em> transformed by <em>affine</em> into
+	 * <em>target</em> using at most <em>numThreads</em> threads.
+	 */
+	public static < T extends Type< T > > void resample( final RealRandomAccessible< T > source, final AffineGet affine, final RandomAccessibleInterval< T > target, final int numThreads )
+	{
+		render( source, affine.inverseAffine(), target, numThreads );
+	}
+
+	private static < T extends Type< T > > void render( final RealRandomAccessible< T > source, final AffineGet transformToSource, final RandomAccessibleInterval< T > target, final int numThreads )
+	{
+		final int n = target.numDimensions();
+		if ( source.numDimensions() != n || transformToSource.numSourceDimensions() != n || transformToSource.numTargetDimensions() != n )
+			throw new RuntimeException( "AffineResampler: source, transform, and target must have the same number of dimensions." );
+
+		final long[] min = new long[ n ];
+		final long[] dimensions = new long[ n ];
+		target.min( min );
+		target.dimensions( dimensions );
+		long numLines = 1;
+		for ( int d = 1; d < n; ++d )
+			numLines *= dimensions[ d ];
+		if ( dimensions[ 0 ] == 0 || numLines == 0 )
+			return;
+
+		// snapshot of the transform, it is not touched while rendering
+		final double[] matrix = transformToSource.getRowPackedCopy();
+		final double[] step = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+			step[ d ] = matrix[ d * ( n + 1 ) ];
+
+		final RandomAccess< T > a = target.randomAccess();
+		a.setPosition( min );
+		final LineSampler< T > prototype = a.get() instanceof RealType ? ArraySampler.< T >create( source ) : null;
+
+		TaskExecutor.getDefault().run( numLines, numThreads, new ChunkTask()
+		{
+			@Override
+			public void run( final Chunk chunk )
+			{
+				final LineSampler< T > sampler = prototype == null ? new GenericSampler< T >( source ) : prototype.copy();
+				final RandomAccess< T > access = target.randomAccess();
+				final long[] position = new long[ n ];
+				final double[] start = new double[ n ];
+				final long end = chunk.getStartPosition() + chunk.getLoopSize();
+				for ( long line = chunk.getStartPosition(); line < end; ++line )
+				{
+					position[ 0 ] = min[ 0 ];
+					long index = line;
+					for ( int d = 1; d < n; ++d )
+					{
+						position[ d ] = min[ d ] + index % dimensions[ d ];
+						index /= dimensions[ d ];
+					}
+					access.setPosition( position );
+					for ( int r = 0; r < n; ++r )
+					{
+						final int row = r * ( n + 1 );
+						double s = matrix[ row + n ];
+						for ( int c = 0; c < n; ++c )
+							s += matrix[ row + c ] * position[ c ];
+						start[ r ] = s;
+					}
+					sampler.line( start, step, access, dimensions[ 0 ] );
+				}
+			}
+		} );
+	}
+
+	/**
+	 * Samples one line of the target.
+	 */
+	private static abstract class LineSampler< T >
+	{
+		/**
+		 * Write <em>length</em> samples into <em>target</em>, advancing it along
+		 * dimension 0. The first sample is taken at source coordinates
+		 * <em>position</em>, each further sample at <em>step</em> from the
+		 * previous one. <em>position</em> is modified.
+		 */
+		abstract void line( double[] position, double[] step, RandomAccess< T > target, long length );
+
+		/**
+		 * @return a sampler that can be used concurrently with this one.
+		 */
+		abstract LineSampler< T > copy();
+	}
+
+	/**
+	 * Samples any {@link RealRandomAccessible} through its
+	 * {@link RealRandomAccess}.
+	 */
+	private static final class GenericSampler< T extends Type< T > > extends LineSampler< T >
+	{
+		final RealRandomAccessible< T > source;
+
+		final RealRandomAccess< T > access;
+
+		GenericSampler( final RealRandomAccessible< T > source )
+		{
+			this.source = source;
+			this.access = source.realRandomAccess();
+		}
+
+		@Override
+		void line( final double[] position, final double[] step, final RandomAccess< T > target, final long length )
+		{
+			final int n = position.length;
+			for ( long x = 0; x < length; ++x )
+			{
+				access.setPosition( position );
+				target.get().set( access.get() );
+				target.fwd( 0 );
+				for ( int d = 0; d < n; ++d )
+					position[ d ] += step[ d ];
+			}
+		}
+
+		@Override
+		LineSampler< T > copy()
+		{
+			return new GenericSampler< T >( source );
+		}
+	}
+
+	/**
+	 * Samples the primitive arrays of an {@link ArrayImg} or {@link PlanarImg}
+	 * directly, with nearest neighbor or n-linear interpolation.
+	 */
+	private static final class ArraySampler< T > extends LineSampler< T >
+	{
+		final Samples samples;
+
+		final boolean linear;
+
+		final double outOfBoundsValue;
+
+		final int n;
+
+		final long[] dimensions;
+
+		/**
+		 * the index of a pixel is split into the index of its array and the
+		 * offset in that array, both computed from the pixel coordinates by
+		 * these strides.
+		 */
+		final int[] planeSteps;
+
+		final int[] offsetSteps;
+
+		/**
+		 * plane and offset increments of the 2<sup>n</sup> corners of the
+		 * n-linear interpolation.
+		 */
+		final int[] cornerPlanes;
+
+		final int[] cornerOffsets;
+
+		final long[] floor;
+
+		final double[] fraction;
+
+		ArraySampler( final Samples samples, final boolean linear, final double outOfBoundsValue, final long[] dimensions, final int[] planeSteps, final int[] offsetSteps )
+		{
+			this.samples = samples;
+			this.linear = linear;
+			this.outOfBoundsValue = outOfBoundsValue;
+			this.n = dimensions.length;
+			this.dimensions = dimensions;
+			this.planeSteps = planeSteps;
+			this.offsetSteps = offsetSteps;
+			final int numCorners = 1 << n;
+			cornerPlanes = new int[ numCorners ];
+			cornerOffsets = new int[ numCorners ];
+			for ( int k = 0; k < numCorners; ++k )
+				for ( int d = 0; d < n; ++d )
+					if ( ( k & ( 1 << d ) ) != 0 )
+					{
+						cornerPlanes[ k ] += planeSteps[ d ];
+						cornerOffsets[ k ] += offsetSteps[ d ];
+					}
+			floor = new long[ n ];
+			fraction = new double[ n ];
+		}
+
+		@Override
+		LineSampler< T > copy()
+		{
+			return new ArraySampler< T >( samples, linear, outOfBoundsValue, dimensions, planeSteps, offsetSteps );
+		}
+
+		@Override
+		void line( final double[] position, final double[] step, final RandomAccess< T > target, final long length )
+		{
+			for ( long x = 0; x < length; ++x )
+			{
+				( ( RealType< ? > ) target.get() ).setReal( linear ? linear( position ) : nearest( position ) );
+				target.fwd( 0 );
+				for ( int d = 0; d < n; ++d )
+					position[ d ] += step[ d ];
+			}
+		}
+
+		private double nearest( final double[] position )
+		{
+			int plane = 0;
+			int offset = 0;
+			for ( int d = 0; d < n; ++d )
+			{
+				final long p = Round.round( position[ d ] );
+				if ( p < 0 || p >= dimensions[ d ] )
+					return outOfBoundsValue;
+				plane += ( int ) p * planeSteps[ d ];
+				offset += ( int ) p * offsetSteps[ d ];
+			}
+			return samples.get( plane, offset );
+		}
+
+		private double linear( final double[] position )
+		{
+			int plane = 0;
+			int offset = 0;
+			boolean inside = true;
+			for ( int d = 0; d < n; ++d )
+			{
+				final long f = Floor.floor( position[ d ] );
+				floor[ d ] = f;
+				fraction[ d ] = position[ d ] - f;
+				if ( f < 0 || f + 1 >= dimensions[ d ] )
+					inside = false;
+				plane += ( int ) f * planeSteps[ d ];
+				offset += ( int ) f * offsetSteps[ d ];
+			}
+
+			double value = 0;
+			final int numCorners = cornerPlanes.length;
+			for ( int k = 0; k < numCorners; ++k )
+			{
+				double weight = 1;
+				boolean cornerInside = inside;
+				for ( int d = 0; d < n; ++d )
+				{
+					if ( ( k & ( 1 << d ) ) == 0 )
+						weight *= 1 - fraction[ d ];
+					else
+						weight *= fraction[ d ];
+				}
+				if ( !inside )
+				{
+					cornerInside = true;
+					for ( int d = 0; d < n; ++d )
+					{
+						final long p = floor[ d ] + ( ( k >> d ) & 1 );
+						if ( p < 0 || p >= dimensions[ d ] )
+						{
+							cornerInside = false;
+							break;
+						}
+					}
+				}
+				value += weight * ( cornerInside ? samples.get( plane + cornerPlanes[ k ], offset + cornerOffsets[ k ] ) : outOfBoundsValue );
+			}
+			return value;
+		}
+
+		/**
+		 * @return an {@link ArraySampler} if <em>source</em> is an
+		 *         {@link Interpolant} that it can handle, null otherwise.
+		 */
+		static < T > ArraySampler< T > create( final RealRandomAccessible< T > source )
+		{
+			if ( !( source instanceof Interpolant ) )
+				return null;
+			final Interpolant< ?, ? > interpolant = ( Interpolant< ?, ? > ) source;
+			final Object factory = interpolant.getInterpolatorFactory();
+			final boolean linear = factory instanceof NLinearInterpolatorFactory;
+			if ( !linear && !( factory instanceof NearestNeighborInterpolatorFactory ) )
+				return null;
+			if ( !( interpolant.getSource() instanceof ExtendedRandomAccessibleInterval ) )
+				return null;
+			final ExtendedRandomAccessibleInterval< ?, ? > extended = ( ExtendedRandomAccessibleInterval< ?, ? > ) interpolant.getSource();
+			if ( !( extended.getOutOfBoundsFactory() instanceof OutOfBoundsConstantValueFactory ) )
+				return null;
+			final Object value = ( ( OutOfBoundsConstantValueFactory< ?, ? > ) extended.getOutOfBoundsFactory() ).getValue();
+			if ( !( value instanceof RealType ) )
+				return null;
+			final double outOfBoundsValue = ( ( RealType< ? > ) value ).getRealDouble();
+
+			final Object img = extended.getSource();
+			final int n = extended.numDimensions();
+			final long[] dimensions = new long[ n ];
+			final int[] planeSteps = new int[ n ];
+			final int[] offsetSteps = new int[ n ];
+			final Object[] arrays;
+			final Object type;
+			if ( img instanceof ArrayImg )
+			{
+				final ArrayImg< ?, ? > arrayImg = ( ArrayImg< ?, ? > ) img;
+				final Object access = arrayImg.update( null );
+				if ( !( access instanceof ArrayDataAccess ) )
+					return null;
+				arrays = new Object[] { ( ( ArrayDataAccess< ? > ) access ).getCurrentStorageArray() };
+				arrayImg.dimensions( dimensions );
+				int s = 1;
+				for ( int d = 0; d < n; ++d )
+				{
+					offsetSteps[ d ] = s;
+					s *= ( int ) dimensions[ d ];
+				}
+				type = arrayImg.firstElement();
+			}
+			else if ( img instanceof PlanarImg )
+			{
+				final PlanarImg< ?, ? > planarImg = ( PlanarImg< ?, ? > ) img;
+				arrays = new Object[ planarImg.numSlices() ];
+				for ( int i = 0; i < arrays.length; ++i )
+					arrays[ i ] = planarImg.getPlane( i ).getCurrentStorageArray();
+				planarImg.dimensions( dimensions );
+				int s = 1;
+				for ( int d = 0; d < n; ++d )
+				{
+					if ( d < 2 )
+						offsetSteps[ d ] = s;
+					else
+						planeSteps[ d ] = s;
+					s = d == 1 ? 1 : s * ( int ) dimensions[ d ];
+				}
+				type = planarImg.firstElement();
+			}
+			else
+				return null;
+
+			final Samples samples = Samples.create( type, arrays );
+			return samples == null ? null : new ArraySampler< T >( samples, linear, outOfBoundsValue, dimensions, planeSteps, offsetSteps );
+		}
+	}
+
+	/**
+	 * Read access to the primitive arrays of an image.
+	 */
+	private static abstract class Samples
+	{
+		abstract double get( int plane, int offset );
+
+		/**
+		 * @return {@link Samples} for the arrays of an image of
+		 *         <em>type</em>, or null if the type is not supported.
+		 */
+		static Samples create( final Object type, final Object[] arrays )
+		{
+			final Class< ? > c = type.getClass();
+			final Class< ? > arrayClass = arrays[ 0 ].getClass();
+			for ( final Object array : arrays )
+				if ( array.getClass() != arrayClass )
+					return null;
+
+			if ( c == FloatType.class && arrayClass == float[].class )
+			{
+				final float[][] a = new float[ arrays.length ][];
+				System.arraycopy( arrays, 0, a, 0, a.length );
+				return new Samples()
+				{
+					@Override
+					double get( final int plane, final int offset )
+					{
+						return a[ plane ][ offset ];
+					}
+				};
+			}
+			if ( c == DoubleType.class && arrayClass == double[].class )
+			{
+				final double[][] a = new double[ arrays.length ][];
+				System.arraycopy( arrays, 0, a, 0, a.length );
+				return new Samples()
+				{
+					@Override
+					double get( final int plane, final int offset )
+					{
+						return a[ plane ][ offset ];
+					}
+				};
+			}
+			if ( ( c == UnsignedShortType.class || c == ShortType.class ) && arrayClass == short[].class )
+			{
+				final short[][] a = new short[ arrays.length ][];
+				System.arraycopy( arrays, 0, a, 0, a.length );
+				if ( c == ShortType.class )
+					return new Samples()
+					{
+						@Override
+						double get( final int plane, final int offset )
+						{
+							return a[ plane ][ offset ];
+						}
+					};
+				return new Samples()
+				{
+					@Override
+					double get( final int plane, final int offset )
+					{
+						return a[ plane ][ offset ] & 0xffff;
+					}
+				};
+			}
+			if ( ( c == UnsignedByteType.class || c == ByteType.class ) && arrayClass == byte[].class )
+			{
+				final byte[][] a = new byte[ arrays.length ][];
+				System.arraycopy( arrays, 0, a, 0, a.length );
+				if ( c == ByteType.class )
+					return new Samples()
+					{
+						@Override
+						double get( final int plane, final int offset )
+						{
+							return a[ plane ][ offset ];
+						}
+					};
+				return new Samples()
+				{
+					@Override
+					double get( final int plane, final int offset )
+					{
+						return a[ plane ][ offset ] & 0xff;
+					}
+				};
+			}
+			if ( c == IntType.class && arrayClass == int[].class )
+			{
+				final int[][] a = new int[ arrays.length ][];
+				System.arraycopy( arrays, 0, a, 0, a.length );
+				return new Samples()
+				{
+					@Override
+					double get( final int plane, final int offset )
+					{
+						return a[ plane ][ offset ];
+					}
+				};
+			}
+			return null;
+		}
+	}
+}
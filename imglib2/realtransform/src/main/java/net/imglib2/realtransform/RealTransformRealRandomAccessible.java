@@ -130,4 +130,20 @@ public class RealTransformRealRandomAccessible< T, R extends RealTransform > imp
 		return realRandomAccess();
 	}
 
+	/**
+	 * @return the transformed {@link RealRandomAccessible}.
+	 */
+	public RealRandomAccessible< T > getSource()
+	{
+		return target;
+	}
+
+	/**
+	 * @return the {@link RealTransform} that maps coordinates of this view
+	 *   into coordinates of the source.
+	 */
+	public R getTransformToSource()
+	{
+		return transform;
+	}
 }
@@ -127,6 +127,8 @@ public class RealViews
 	 * method that is expected to generate and inverse that changes with the
 	 * original transformation accordingly.  That way, changing the state of
 	 * the {@link AffineGet} will immediately change the state of the view.
+	 * To render the view into an image, use
+	 * {@link AffineResampler#resample(AffineRandomAccessible, net.imglib2.RandomAccessibleInterval)}.
 	 * 
 	 * @param source the {@link RealRandomAccessible} to be transformed
 	 * @param transform the {@link AffineGet} transforming source
@@ -0,0 +1,191 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2012 Stephan Preibisch, Stephan Saalfeld, Tobias
+ * Pietzsch, Albert Cardona, Barry DeZonia, Curtis Rueden, Lee Kamentsky, Larry
+ * Lindsey, Johannes Schindelin, Christian Dietz, Grant Harris, Jean-Yves
+ * Tinevez, Steffen Jaensch, Mark Longair, Nick Perry, and Jan Funke.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.realtransform;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.RealRandomAccessible;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.interpolation.InterpolatorFactory;
+import net.imglib2.interpolation.randomaccess.NLinearInterpolatorFactory;
+import net.imglib2.interpolation.randomaccess.NearestNeighborInterpolatorFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link AffineResampler}, comparing it with a pixel by pixel copy
+ * of {@link RealViews#affine(RealRandomAccessible, AffineGet)}.
+ *
+ * <p>
+ * The transforms have dyadic coefficients and their inverses are dyadic as
+ * well, so the source coordinates are exact however they are computed.
+ * </p>
+ */
+public class AffineResamplerTest
+{
+	static final int[] numThreads = new int[] { 1, 2, 3, 16 };
+
+	static AffineTransform2D transform2D()
+	{
+		final AffineTransform2D affine = new AffineTransform2D();
+		affine.set( 2, 1, -3.5, 0, 4, 2.25 );
+		return affine;
+	}
+
+	static AffineTransform3D transform3D()
+	{
+		final AffineTransform3D affine = new AffineTransform3D();
+		affine.set( 2, 1, 0, -1.5, 0, 4, 2, 0.75, 0, 0, 0.5, 1.25 );
+		return affine;
+	}
+
+	static < T extends RealType< T > & NativeType< T > > Img< T > createRandom( final ImgFactory< T > factory, final T type, final long... dimensions )
+	{
+		final Img< T > img = factory.create( dimensions, type );
+		final Random random = new Random( 1 );
+		for ( final T t : img )
+			t.setReal( random.nextInt( 200 ) + random.nextDouble() );
+		return img;
+	}
+
+	static < T extends RealType< T > & NativeType< T > > RandomAccessibleInterval< T > createTarget( final T type, final long[] min, final long[] dimensions )
+	{
+		return Views.translate( new ArrayImgFactory< T >().create( dimensions, type ), min );
+	}
+
+	static < T extends RealType< T > > void copyPerPixel( final RandomAccessible< T > view, final RandomAccessibleInterval< T > target )
+	{
+		final Cursor< T > c = Views.iterable( target ).localizingCursor();
+		final RandomAccess< T > a = view.randomAccess();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			a.setPosition( c );
+			c.get().set( a.get() );
+		}
+	}
+
+	static < T extends RealType< T > > void assertImagesEqual( final RandomAccessibleInterval< T > expected, final RandomAccessibleInterval< T > actual, final double delta )
+	{
+		final Cursor< T > e = Views.iterable( expected ).cursor();
+		final Cursor< T > a = Views.iterable( actual ).cursor();
+		while ( e.hasNext() )
+			assertEquals( e.next().getRealDouble(), a.next().getRealDouble(), delta );
+	}
+
+	/**
+	 * Resample <em>source</em> with both resample methods and every number of
+	 * threads, and compare with the pixel by pixel copy.
+	 */
+	static < T extends RealType< T > & NativeType< T > > void compare( final RealRandomAccessible< T > source, final AffineGet affine, final T type, final long[] min, final long[] dimensions, final double delta )
+	{
+		final RandomAccessibleInterval< T > expected = createTarget( type, min, dimensions );
+		copyPerPixel( RealViews.affine( source, affine ), expected );
+		for ( final int t : numThreads )
+		{
+			final RandomAccessibleInterval< T > actual = createTarget( type, min, dimensions );
+			AffineResampler.resample( source, affine, actual, t );
+			assertImagesEqual( expected, actual, delta );
+
+			final RandomAccessibleInterval< T > actualView = createTarget( type, min, dimensions );
+			AffineResampler.resample( RealViews.affine( source, affine ), actualView, t );
+			assertImagesEqual( expected, actualView, delta );
+		}
+	}
+
+	/**
+	 * Compare for a 2D {@link net.imglib2.img.array.ArrayImg} and a 3D
+	 * {@link net.imglib2.img.planar.PlanarImg} source, extended by a constant
+	 * value, or mirrored if <em>mirror</em> is set.
+	 */
+	static < T extends RealType< T > & NativeType< T > > void compare( final T type, final InterpolatorFactory< T, RandomAccessible< T > > interpolatorFactory, final boolean mirror, final double delta2D, final double delta3D )
+	{
+		final T outOfBoundsValue = type.createVariable();
+		outOfBoundsValue.setReal( 17 );
+
+		final Img< T > img2D = createRandom( new ArrayImgFactory< T >(), type, 23, 17 );
+		final RandomAccessible< T > extended2D = mirror ? Views.extendMirrorSingle( img2D ) : Views.extendValue( img2D, outOfBoundsValue );
+		compare( Views.interpolate( extended2D, interpolatorFactory ), transform2D(), type, new long[] { -5, -3 }, new long[] { 60, 75 }, delta2D );
+
+		final Img< T > img3D = createRandom( new PlanarImgFactory< T >(), type, 13, 11, 5 );
+		final RandomAccessible< T > extended3D = mirror ? Views.extendMirrorSingle( img3D ) : Views.extendValue( img3D, outOfBoundsValue );
+		compare( Views.interpolate( extended3D, interpolatorFactory ), transform3D(), type, new long[] { -2, -1, 0 }, new long[] { 30, 50, 6 }, delta3D );
+	}
+
+	@Test
+	public void testGeneric()
+	{
+		compare( new FloatType(), new NLinearInterpolatorFactory< FloatType >(), true, 0, 0 );
+		compare( new UnsignedByteType(), new NLinearInterpolatorFactory< UnsignedByteType >(), true, 0, 0 );
+		compare( new UnsignedByteType(), new NearestNeighborInterpolatorFactory< UnsignedByteType >(), true, 0, 0 );
+	}
+
+	@Test
+	public void testArrayNearestNeighbor()
+	{
+		compare( new FloatType(), new NearestNeighborInterpolatorFactory< FloatType >(), false, 0, 0 );
+		compare( new DoubleType(), new NearestNeighborInterpolatorFactory< DoubleType >(), false, 0, 0 );
+		compare( new UnsignedByteType(), new NearestNeighborInterpolatorFactory< UnsignedByteType >(), false, 0, 0 );
+		compare( new ShortType(), new NearestNeighborInterpolatorFactory< ShortType >(), false, 0, 0 );
+	}
+
+	@Test
+	public void testArrayNLinear()
+	{
+		compare( new DoubleType(), new NLinearInterpolatorFactory< DoubleType >(), false, 1e-10, 1e-10 );
+		compare( new FloatType(), new NLinearInterpolatorFactory< FloatType >(), false, 1e-3, 1e-3 );
+		// integer types differ by at most 2^(n-1), see the class documentation
+		compare( new UnsignedByteType(), new NLinearInterpolatorFactory< UnsignedByteType >(), false, 2, 4 );
+		compare( new ShortType(), new NLinearInterpolatorFactory< ShortType >(), false, 2, 4 );
+	}
+}